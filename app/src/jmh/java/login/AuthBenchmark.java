@@ -0,0 +1,66 @@
+package login;
+
+//#region IMPORTS
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: AuthBenchmark.java
+ * 
+ * Measures a whole login through the headless AuthService: username,
+ * password and MFA Code against the real Database, then CompleteLogin().
+ * Run with {@code -Dlogin.data.dir} pointing somewhere disposable, the
+ * Database writes its log, snapshot and export there.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see Database
+ * @apiNote Added in version 1.5.
+ */
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+    //#region CONSTANTS
+    private static final String PASSWORD = "Passw0rd1234";
+    private static final int CODE        = 1234567890;
+    //#endregion CONSTANTS
+
+    //#region SERVICES
+    private final AuthService _authService = AuthService.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    private String _username;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    @Setup
+    public void Setup() {
+        // Unique per fork, since the Database keeps its Users between runs.
+        _username = "bench" + Long.toString(System.nanoTime(), 36);
+        Cryptographer cryptographer = Cryptographer.GetInstance();
+        Database.GetInstance().AddUser(new User(
+            cryptographer.EncryptVigenere(_username), cryptographer.EncryptVigenere(PASSWORD), CODE
+        ));
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    public boolean Login() {
+        LoginSession session = _authService.StartSession(_username);
+        boolean success = _authService.AuthenticateUsername(session).IsSuccess()
+            && _authService.VerifyPassword(session, PASSWORD.toCharArray()).IsSuccess()
+            && _authService.VerifyCode(session, Integer.toString(CODE)).IsSuccess();
+        if(!success) {
+            throw new IllegalStateException("Login failed, the benchmark would only measure the failure path.");
+        }
+        _authService.CompleteLogin(session);
+        return success;
+    }
+    //#endregion BENCHMARKS
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package login;
+
+//#region IMPORTS
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: CryptographerBenchmark.java
+ * 
+ * Measures the Vigenere cipher of the Cryptographer through the String
+ * functions and the allocation-free char[] functions.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @apiNote Added in version 1.5.
+ */
+@State(Scope.Thread)
+public class CryptographerBenchmark {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    @Param({ "Passw0rd", "ARGOSROCK1963abcdefghijklmnop" })
+    private String _plaintext;
+
+    private String _encrypted;
+    private char[] _chars;
+    private char[] _output;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    @Setup
+    public void Setup() {
+        _encrypted = _cryptographer.EncryptVigenere(_plaintext);
+        _chars = _plaintext.toCharArray();
+        _output = new char[_chars.length];
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    public String EncryptString() {
+        return _cryptographer.EncryptVigenere(_plaintext);
+    }
+
+    @Benchmark
+    public String DecryptString() {
+        return _cryptographer.DecryptVigenere(_encrypted);
+    }
+
+    @Benchmark
+    public char[] EncryptChars() {
+        _cryptographer.EncryptVigenere(_chars, _chars.length, _output);
+        return _output;
+    }
+    //#endregion BENCHMARKS
+}
\ No newline at end of file
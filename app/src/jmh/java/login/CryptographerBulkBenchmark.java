@@ -0,0 +1,97 @@
+package login;
+
+//#region IMPORTS
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: CryptographerBulkBenchmark.java
+ * 
+ * Measures the bulk functions of the Cryptographer against calling the
+ * one-value functions in a loop, per value. The bulk functions run on the
+ * VectorCipher under the benchmark's JVM arguments. Add
+ * {@code -Dlogin.crypto.vector=false} to time their scalar loop instead.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @see VectorCipher
+ * @apiNote Added in version 1.5.
+ */
+@State(Scope.Thread)
+public class CryptographerBulkBenchmark {
+    //#region CONSTANTS
+    private static final int COUNT = 10_000;
+    private static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    //#endregion CONSTANTS
+
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    @Param({ "8", "24", "64" })
+    private int _maxLength;
+
+    private String[] _values;
+    private String[] _encrypted;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    @Setup
+    public void Setup() {
+        Random random = new Random(4078);
+        _values = new String[COUNT];
+        for(int i = 0; i < COUNT; i++) {
+            char[] value = new char[1 + random.nextInt(_maxLength)];
+            for(int j = 0; j < value.length; j++) {
+                value[j] = CHARS.charAt(random.nextInt(CHARS.length()));
+            }
+            _values[i] = new String(value);
+        }
+        _encrypted = _cryptographer.EncryptAll(_values);
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public String[] EncryptAll() {
+        return _cryptographer.EncryptAll(_values);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public String[] EncryptEach() {
+        String[] results = new String[COUNT];
+        for(int i = 0; i < COUNT; i++) {
+            results[i] = _cryptographer.EncryptVigenere(_values[i]);
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public String[] DecryptAll() {
+        return _cryptographer.DecryptAll(_encrypted);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public String[] DecryptEach() {
+        String[] results = new String[COUNT];
+        for(int i = 0; i < COUNT; i++) {
+            results[i] = _cryptographer.DecryptVigenere(_encrypted[i]);
+        }
+        return results;
+    }
+    //#endregion BENCHMARKS
+}
\ No newline at end of file
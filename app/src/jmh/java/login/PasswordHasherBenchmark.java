@@ -0,0 +1,74 @@
+package login;
+
+//#region IMPORTS
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: PasswordHasherBenchmark.java
+ * 
+ * Measures checking a password against a PBKDF2 hash at different iteration
+ * counts, to help pick {@code -Dlogin.hash.iterations}. Checks go through the
+ * hashing pool like a login does. One check takes one core for its whole run,
+ * so the throughput per thread times the cores is how many password logins
+ * per second the server can take.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see PasswordHasher
+ * @apiNote Added in version 1.5.
+ */
+@State(Scope.Thread)
+public class PasswordHasherBenchmark {
+    //#region CONSTANTS
+    private static final char[] PASSWORD = "Benchmark123".toCharArray();
+    //#endregion CONSTANTS
+
+    //#region SERVICES
+    private final PasswordHasher _passwordHasher = PasswordHasher.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    @Param({ "100000", "310000", "600000" })
+    private int _iterations;
+
+    private String _storedHash;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    /**
+     * Builds a stored hash of {@link #PASSWORD} at the iteration count being measured,
+     * since the PasswordHasher only hashes at {@link PasswordHasher#ITERATIONS}.
+     */
+    @Setup
+    public void Setup() throws GeneralSecurityException {
+        byte[] salt = new byte[16];
+        byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+            .generateSecret(new PBEKeySpec(PASSWORD, salt, _iterations, 256))
+            .getEncoded();
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        _storedHash = PasswordHasher.PREFIX + _iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+        if(!_passwordHasher.VerifyAsync(_storedHash, PASSWORD).join()) {
+            throw new IllegalStateException("The stored hash doesn't match, the benchmark would measure a failed parse.");
+        }
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    public boolean Verify() {
+        return _passwordHasher.VerifyAsync(_storedHash, PASSWORD).join();
+    }
+    //#endregion BENCHMARKS
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package login;
+
+//#region IMPORTS
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserLookupBenchmark.java
+ * 
+ * Measures looking up a User by entered username at different table sizes.
+ * The {@code store} path encrypts the username and searches the UserStore,
+ * the uncached part of {@link Database#GetUserByUsername(String)}. The
+ * {@code database} path calls it for real, through the UsernameCache and the
+ * UsernameFilter, against a Database filled in a fresh directory under
+ * {@code -Dlogin.data.dir} that is deleted afterwards.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see UserStore
+ * @see UsernameCache
+ * @see UsernameFilter
+ * @apiNote Added in version 1.5.
+ * @implNote The Database reads its store type and directory once per JVM, so
+ * the {@code database} path sets them before its first use. JMH runs every
+ * parameter combination in its own fork, so each one gets a new Database.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = { "-Xms4g", "-Xmx4g" })
+public class UserLookupBenchmark {
+    //#region CONSTANTS
+    /**
+     * Users added to the Database per AddUsers() call.
+     */
+    private static final int BATCH_SIZE = 10_000;
+    //#endregion CONSTANTS
+
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    @Param({ "heap", "columnar", "offheap" })
+    private String _storeType;
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    private int _size;
+
+    @Param({ "store", "database" })
+    private String _path;
+
+    private UserStore _store;
+    private Database _database;
+    private Path _directory;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    @Setup
+    public void Setup() throws IOException {
+        String password = _cryptographer.EncryptVigenere("Passw0rd");
+        if(_path.equals("store")) {
+            _store = CreateStore(_storeType);
+            for(int i = 0; i < _size; i++) {
+                _store.Add(new User(_cryptographer.EncryptVigenere(Username(i)), password, i));
+            }
+            return;
+        }
+
+        _directory = Files.createTempDirectory(Paths.get(System.getProperty("login.data.dir", ".")), "lookup");
+        System.setProperty("login.data.dir", _directory.toString());
+        System.setProperty("login.store", _storeType);
+        _database = Database.GetInstance();
+        User[] batch = new User[BATCH_SIZE];
+        for(int start = 0; start < _size; start += BATCH_SIZE) {
+            int length = Math.min(BATCH_SIZE, _size - start);
+            for(int i = 0; i < length; i++) {
+                batch[i] = new User(_cryptographer.EncryptVigenere(Username(start + i)), password, start + i);
+            }
+            _database.AddUsers(length == BATCH_SIZE ? batch : Arrays.copyOf(batch, length));
+        }
+    }
+
+    @TearDown
+    public void TearDown() throws IOException {
+        if(_store != null) _store.Close();
+        if(_database == null) return;
+
+        _database.Close();
+        try(Stream<Path> files = Files.walk(_directory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    public User FindExisting() {
+        return Find(Username(ThreadLocalRandom.current().nextInt(_size)));
+    }
+
+    @Benchmark
+    public User FindMissing() {
+        return Find("missing" + ThreadLocalRandom.current().nextInt(_size));
+    }
+    //#endregion BENCHMARKS
+
+    //#region HELPER FUNCTIONS
+    private User Find(String username) {
+        if(_database != null) return _database.GetUserByUsername(username);
+        return _store.Get(_cryptographer.EncryptVigenere(username));
+    }
+
+    private static UserStore CreateStore(String type) {
+        switch(type) {
+            case "columnar":
+                return new ColumnarUserStore();
+            case "offheap":
+                return new OffHeapUserStore();
+            default:
+                return new HeapUserStore();
+        }
+    }
+
+    private static String Username(int index) {
+        return "user" + index;
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package login;
+
+//#region IMPORTS
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserStoreFootprintBenchmark.java
+ * 
+ * Measures the memory each UserStore takes per User against an
+ * {@code ArrayList<User>}, the layout the Database used before the stores.
+ * The footprint is measured once per fork after the store is filled and
+ * printed with the fork's output as a {@code Footprint:} line, since JMH only
+ * reports timings. The timed part walks every User, the cost a full scan
+ * such as an export or re-key pays for each layout.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserStore
+ * @see ColumnarUserStore
+ * @see OffHeapUserStore
+ * @apiNote Added in version 1.5.
+ * @implNote Heap use is read after a full GC, and native use from the direct
+ * buffer pool, which counts the segments of the OffHeapUserStore.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = { "-Xms4g", "-Xmx4g" })
+public class UserStoreFootprintBenchmark {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    @Param({ "list", "heap", "columnar", "offheap" })
+    private String _storeType;
+
+    @Param({ "1000000", "10000000" })
+    private int _size;
+
+    private List<User> _list;
+    private UserStore _store;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    /**
+     * Fills the store and prints the heap and native bytes it took per User.
+     */
+    @Setup
+    public void Setup() {
+        long heapBefore = UsedHeap();
+        long nativeBefore = UsedNative();
+
+        String password = _cryptographer.EncryptVigenere("Passw0rd");
+        if(_storeType.equals("list")) {
+            _list = new ArrayList<>();
+            for(int i = 0; i < _size; i++) {
+                _list.add(new User(_cryptographer.EncryptVigenere("user" + i), password, i));
+            }
+        }
+        else {
+            _store = CreateStore(_storeType);
+            for(int i = 0; i < _size; i++) {
+                _store.Add(new User(_cryptographer.EncryptVigenere("user" + i), password, i));
+            }
+        }
+
+        double heapPerUser = (double)(UsedHeap() - heapBefore) / _size;
+        double nativePerUser = (double)(UsedNative() - nativeBefore) / _size;
+        System.out.printf(
+            "Footprint: %s with %,d users: %.1f heap + %.1f native = %.1f bytes per user%n",
+            _storeType, _size, heapPerUser, nativePerUser, heapPerUser + nativePerUser
+        );
+    }
+
+    @TearDown
+    public void TearDown() {
+        if(_store != null) _store.Close();
+    }
+    //#endregion SETUP
+
+    //#region BENCHMARKS
+    @Benchmark
+    public long ScanAll() {
+        long[] total = { 0 };
+        if(_list != null) {
+            for(User user : _list) {
+                total[0] += user.GetCode();
+            }
+        }
+        else {
+            _store.ForEach(user -> total[0] += user.GetCode());
+        }
+        return total[0];
+    }
+    //#endregion BENCHMARKS
+
+    //#region HELPER FUNCTIONS
+    private static UserStore CreateStore(String type) {
+        switch(type) {
+            case "columnar":
+                return new ColumnarUserStore();
+            case "offheap":
+                return new OffHeapUserStore();
+            default:
+                return new HeapUserStore();
+        }
+    }
+
+    /**
+     * Returns the heap left in use right after a full GC.
+     * 
+     * @return Used heap in bytes.
+     */
+    private static long UsedHeap() {
+        System.gc();
+        long used = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                used += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Returns the native memory held by direct buffers and memory segments.
+     * 
+     * @return Used native memory in bytes.
+     */
+    private static long UsedNative() {
+        long used = 0;
+        for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if(pool.getName().equals("direct")) used += pool.getMemoryUsed();
+        }
+        return used;
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
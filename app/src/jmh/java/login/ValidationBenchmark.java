@@ -0,0 +1,53 @@
+package login;
+
+//#region IMPORTS
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import login.exception_handlers.PasswordValidationException;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: ValidationBenchmark.java
+ * 
+ * Measures the password, username and MFA Code checks of the Validation
+ * class on input that passes, which is what every login runs.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Validation
+ * @see InputPolicy
+ * @apiNote Added in version 1.5.
+ */
+@State(Scope.Thread)
+public class ValidationBenchmark {
+    //#region SERVICES
+    private final Validation _validation = Validation.GetInstance();
+    //#endregion SERVICES
+
+    //#region VARIABLES
+    private final char[] _password = "Passw0rd1234".toCharArray();
+    private final String _username = "noah.nickles";
+    private final String _code = "1234567890";
+    //#endregion VARIABLES
+
+    //#region BENCHMARKS
+    @Benchmark
+    public char[] ValidatePassword() throws PasswordValidationException {
+        _validation.ValidatePassword(_password);
+        return _password;
+    }
+
+    @Benchmark
+    public boolean ValidateUsername() {
+        return _validation.ValidateUsername(_username);
+    }
+
+    @Benchmark
+    public boolean ValidateCode() {
+        return _validation.ValidateCode(_code);
+    }
+    //#endregion BENCHMARKS
+}
\ No newline at end of file
@@ -1,5 +1,11 @@
 package login;
 
+//#region IMPORTS
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+//#endregion IMPORTS
+
 /**
  * COP 4078 Exercise: 5
  * File Name: App.java
@@ -10,10 +16,23 @@ package login;
  * which executes the Run() function to start the main program loop.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @see Login
+ * @see LoginServer
+ * @see LoadTestClient
+ * @see KeyRotator
+ * @see UserImporter
  * @apiNote Added in version 1.0.
  * @apiNote Rewrote 90% of the entire program in version 1.4 due to cluttered logic.
+ * @apiNote Closes the Database before exiting in version 1.5 so its log is flushed.
+ * @apiNote Added the {@code --server [port]} and {@code --load-test [port] [sessions]}
+ * modes in version 1.5. With no arguments the console login runs as before.
+ * @apiNote Added the {@code --import <file> [rejects]} mode in version 1.5 to load accounts
+ * from CSV or JSON-lines files.
+ * @apiNote The server sweeps old passwords over to the hash format in version 1.5
+ * when run with {@code -Dlogin.hash=pbkdf2}.
+ * @apiNote The server re-encrypts Users under the newest key from {@code -Dlogin.keys}
+ * in version 1.5.
  * @implNote Currently {@link #DEBUG} is set to {@code true} so that generated password
  * can be printed to the console since sending emails is not a feature (yet).
  */
@@ -29,9 +48,119 @@ public class App {
      * Main method. 
      * 
      * @param args Command line arguments.
+     * @apiNote Updated in version 1.5 to start the LoginServer or LoadTestClient
+     * when asked to by the arguments.
+     * @apiNote Updated in version 1.5 to import users from a file.
      */
     public static void main(String[] args) {
-        Login.GetInstance();
-        System.exit(0);
+        String mode = args.length > 0 ? args[0] : "";
+        switch(mode) {
+            case "--server"    -> RunServer(ParseArgument(args, 1, LoginServer.DEFAULT_PORT));
+            case "--load-test" -> {
+                LoadTestClient client = new LoadTestClient(
+                    ParseArgument(args, 1, LoginServer.DEFAULT_PORT),
+                    LoadTestClient.DEFAULT_USERNAME,
+                    LoadTestClient.DEFAULT_PASSWORD,
+                    LoadTestClient.DEFAULT_CODE
+                );
+                System.exit(client.Run(ParseArgument(args, 2, 1000)) ? 0 : 1);
+            }
+            case "--import" -> System.exit(RunImport(args) ? 0 : 1);
+            default -> {
+                Login.GetInstance();
+                Database.GetInstance().Close();
+                System.exit(0);
+            }
+        }
+    }
+
+    /**
+     * Runs the LoginServer until the JVM is told to stop, then closes it
+     * and the Database.
+     * Also sweeps old passwords over to the hash format if hashing is on,
+     * and re-encrypts Users stored under an older key.
+     * 
+     * @param port Loopback port to listen on.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to start the PasswordMigrator sweep.
+     * @apiNote Updated in version 1.5 to start the KeyRotator.
+     */
+    private static void RunServer(int port) {
+        LoginServer server = new LoginServer(port);
+        try {
+            server.Start();
+        }
+        catch(IOException e) {
+            System.err.println("Error starting login server: " + e.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.Close();
+            PasswordMigrator.GetInstance().StopSweep();
+            KeyRotator.GetInstance().Stop();
+            Database.GetInstance().Close();
+        }, "login-server-shutdown"));
+        System.out.println("Login server listening on port " + server.GetPort());
+        if(PasswordHandler.HASH_PASSWORDS) {
+            PasswordMigrator.GetInstance().StartSweep();
+        }
+        if(Cryptographer.GetInstance().GetKeyCount() > 1 && KeyRotator.GetInstance().Start()) {
+            System.out.println("Re-encrypting users under key version " + Cryptographer.GetInstance().GetKeyVersion());
+        }
+    }
+
+    /**
+     * Imports users from a file into the Database and prints the throughput report.
+     * 
+     * @param args Command line arguments, the file at index 1 and the reject file at
+     * index 2. Rejects go to {@code <file>.rejects.csv} if none is given.
+     * @return {@code true} if the file was imported, {@code false} if it couldn't be read.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean RunImport(String[] args) {
+        if(args.length < 2) {
+            System.err.println("Error importing users: usage is --import <file> [rejects]");
+            return false;
+        }
+        Path file = Paths.get(args[1]);
+        Path rejectFile = args.length > 2 ? Paths.get(args[2]) : Paths.get(args[1] + ".rejects.csv");
+        try {
+            UserImporter.Report report = UserImporter.GetInstance().Import(file, rejectFile);
+            System.out.printf("Imported %d of %d rows in %d ms: %.0f rows/s, %.1f MB/s.%n",
+                report.GetImported(), report.GetRows(), report.GetMillis(),
+                report.GetRowsPerSecond(), report.GetMegabytesPerSecond());
+            if(report.GetRejected() > 0) {
+                System.out.println(report.GetRejected() + " rows rejected, see " + rejectFile);
+            }
+            return true;
+        }
+        catch(IOException e) {
+            System.err.println("Error importing users: " + e.getMessage());
+            return false;
+        }
+        finally {
+            Database.GetInstance().Close();
+        }
+    }
+
+    /**
+     * Reads a number argument.
+     * 
+     * @param args Command line arguments.
+     * @param index Index of the argument.
+     * @param defaultValue Value to use if the argument is missing.
+     * @return The parsed argument, or {@code defaultValue}.
+     * @apiNote Added in version 1.5.
+     */
+    private static int ParseArgument(String[] args, int index, int defaultValue) {
+        if(args.length <= index) return defaultValue;
+        try {
+            return Integer.parseInt(args[index]);
+        }
+        catch(NumberFormatException e) {
+            System.err.println("Error reading argument: " + e.getMessage());
+            System.exit(1);
+            return defaultValue;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package login;
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: AuthResult.java
+ * 
+ * The AuthResult class is returned by every AuthService call.
+ * It holds whether the step passed and the message to show
+ * the client if it didn't, so callers don't need a console.
+ * A step refused because the User is locked out has its own status
+ * so clients can stop retrying.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @apiNote Added in version 1.5.
+ */
+public class AuthResult {
+    //#region ENUMS
+    /**
+     * Outcome of a single authentication step.
+     */
+    public enum Status {
+        SUCCESS,
+        FAILED,
+        LOCKED_OUT
+    }
+    //#endregion ENUMS
+
+    //#region CONSTANTS
+    private static final AuthResult SUCCESS = new AuthResult(Status.SUCCESS, null);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final Status _status;
+    private final String _message;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs an AuthResult with the given status and message.
+     * 
+     * @param status Outcome of the step.
+     * @param message Message for the client, {@code null} if there is nothing to show.
+     * @apiNote Added in version 1.5.
+     */
+    private AuthResult(Status status, String message) {
+        _status = status;
+        _message = message;
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region FACTORY FUNCTIONS
+    /**
+     * Returns the shared successful result.
+     * 
+     * @return Successful AuthResult with no message.
+     * @apiNote Added in version 1.5.
+     */
+    public static AuthResult Success() {
+        return SUCCESS;
+    }
+
+    /**
+     * Creates a successful result with a message for the client.
+     * 
+     * @param message Message to show the client.
+     * @return Successful AuthResult.
+     * @apiNote Added in version 1.5.
+     */
+    public static AuthResult Success(String message) {
+        return new AuthResult(Status.SUCCESS, message);
+    }
+
+    /**
+     * Creates a failed result with a message for the client.
+     * 
+     * @param message Message describing the failure, may be {@code null}.
+     * @return Failed AuthResult.
+     * @apiNote Added in version 1.5.
+     */
+    public static AuthResult Failed(String message) {
+        return new AuthResult(Status.FAILED, message);
+    }
+
+    /**
+     * Creates a result for an attempt refused because the User is locked out.
+     * 
+     * @param message Message for the client.
+     * @return Locked out AuthResult.
+     * @see LockoutTracker
+     * @apiNote Added in version 1.5.
+     */
+    public static AuthResult LockedOut(String message) {
+        return new AuthResult(Status.LOCKED_OUT, message);
+    }
+    //#endregion FACTORY FUNCTIONS
+
+    //#region GETTERS
+    public Status GetStatus()    { return _status;                      }
+    public String GetMessage()   { return _message;                     }
+    public boolean IsSuccess()   { return _status == Status.SUCCESS;    }
+    public boolean IsLockedOut() { return _status == Status.LOCKED_OUT; }
+    public boolean HasMessage()  { return _message != null;             }
+    //#endregion GETTERS
+}
\ No newline at end of file
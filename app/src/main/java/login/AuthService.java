@@ -0,0 +1,310 @@
+package login;
+
+//#region IMPORTS
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+//#endregion IMPORTS
+
+import login.exception_handlers.DefaultPasswordException;
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: AuthService.java
+ * 
+ * The AuthService class is the headless entry point to the login flow.
+ * Each step (username, password, MFA Code, creating a password) is a
+ * single call that returns an AuthResult instead of reading from or
+ * writing to the console, so the flow can be driven by any client.
+ * The *Async versions apply the brute force delay to failed attempts
+ * without holding the caller's thread and are what clients taking
+ * untrusted input should use. Every step after StartSession() takes the
+ * LoginSession, which carries the User resolved at the username stage.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthResult
+ * @see BatchAuthenticator
+ * @see CodeHandler
+ * @see Database
+ * @see DelayScheduler
+ * @see FailureBackoff
+ * @see LockoutTracker
+ * @see LoginSession
+ * @see PasswordHandler
+ * @see SprayDetector
+ * @see UsernameHandler
+ * @apiNote Added in version 1.5. Logic was pulled out of the Login class.
+ */
+public class AuthService {
+    //#region SERVICES
+    private final BatchAuthenticator _batchAuthenticator = BatchAuthenticator.GetInstance();
+    private final CodeHandler _codeHandler = CodeHandler.GetInstance();
+    private final Database _database = Database.GetInstance();
+    private final PasswordHandler _passwordHandler = PasswordHandler.GetInstance();
+    private final UsernameHandler _usernameHandler = UsernameHandler.GetInstance();
+    private final DelayScheduler _delayScheduler = DelayScheduler.GetInstance();
+    private final FailureBackoff _failureBackoff = FailureBackoff.GetInstance();
+    private final LockoutTracker _lockoutTracker = LockoutTracker.GetInstance();
+    private final SprayDetector _sprayDetector = SprayDetector.GetInstance();
+    //#endregion SERVICES
+
+    //#region CONSTANTS
+    /**
+     * Delay for failed attempts on a session or from a source flagged by the SprayDetector.
+     */
+    private static final long SUSPICIOUS_DELAY_MILLIS = 30_000;
+
+    private static final AuthResult DEFAULT_PASSWORD_SET = AuthResult.Success(
+        MessageHandler.GetExceptionMessage(MessageHandler.DEFAULT_PASSWORD_SET)
+    );
+    //#endregion CONSTANTS
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final AuthService INSTANCE = new AuthService();
+    }
+
+    private AuthService() {}
+
+    public static AuthService GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region FUNCTIONS
+    /**
+     * Starts a login for the entered username. Pass the session to every later step
+     * so the username is only encrypted and looked up once.
+     * 
+     * @param username Client-entered username.
+     * @return New LoginSession for the username.
+     * @see LoginSession
+     * @apiNote Added in version 1.5.
+     */
+    public LoginSession StartSession(String username) {
+        return new LoginSession(username);
+    }
+
+    /**
+     * Same as {@link #StartSession(String)} for a client whose source is known,
+     * so failures can be counted per source.
+     * 
+     * @param username Client-entered username.
+     * @param source Where the client connected from, such as its address.
+     * @return New LoginSession for the username.
+     * @see LoginSession
+     * @see SprayDetector
+     * @apiNote Added in version 1.5.
+     */
+    public LoginSession StartSession(String username, String source) {
+        return new LoginSession(username, source);
+    }
+
+    /**
+     * Authenticates the username of the session and resolves its User.
+     * 
+     * @param session Session from {@link #StartSession(String)}.
+     * @return Successful result if the username exists, failed result otherwise.
+     * @see UsernameHandler
+     * @apiNote Added in version 1.5.
+     */
+    public AuthResult AuthenticateUsername(LoginSession session) {
+        return _usernameHandler.AuthenticateUsername(session);
+    }
+
+    /**
+     * Checks if the User of the session already has a password.
+     * Clients should call {@link #CreatePassword(LoginSession, char[])} first if not.
+     * 
+     * @param session Authenticated session.
+     * @return {@code true} if a password is set, {@code false} otherwise.
+     * @see PasswordHandler
+     * @apiNote Added in version 1.5.
+     */
+    public boolean HasPassword(LoginSession session) {
+        return _passwordHandler.DoesPasswordExist(session);
+    }
+
+    /**
+     * Verifies the password for the User of the session.
+     * 
+     * @param session Authenticated session.
+     * @param passwordChars Client-entered password.
+     * @return Successful result if the password matches, failed result otherwise.
+     * @see PasswordHandler
+     * @apiNote Added in version 1.5.
+     */
+    public AuthResult VerifyPassword(LoginSession session, char[] passwordChars) {
+        return _passwordHandler.AuthenticatePassword(session, passwordChars);
+    }
+
+    /**
+     * Verifies the MFA Code for the User of the session.
+     * 
+     * @param session Authenticated session.
+     * @param code Client-entered MFA Code.
+     * @return Successful result if the code matches, failed result otherwise.
+     * @see CodeHandler
+     * @apiNote Added in version 1.5.
+     */
+    public AuthResult VerifyCode(LoginSession session, String code) {
+        return _codeHandler.AuthenticateCode(session, code);
+    }
+
+    /**
+     * Sets a new password for the User of the session if it passes validation.
+     * 
+     * @param session Authenticated session.
+     * @param newPasswordChars Client-entered new password.
+     * @return Successful result if the password was set, failed result otherwise.
+     * @see PasswordHandler
+     * @apiNote Added in version 1.5.
+     */
+    public AuthResult CreatePassword(LoginSession session, char[] newPasswordChars) {
+        return _passwordHandler.CreateNewPassword(session, newPasswordChars);
+    }
+
+    /**
+     * Sets a randomly generated default password for the User of the session.
+     * 
+     * @param session Authenticated session.
+     * @return Successful result with a confirmation message if the password was set, failed result otherwise.
+     * @see PasswordHandler
+     * @apiNote Added in version 1.5.
+     */
+    public AuthResult CreateDefaultPassword(LoginSession session) {
+        try {
+            _passwordHandler.CreateDefaultPassword(session);
+            return DEFAULT_PASSWORD_SET;
+        }
+        catch(DefaultPasswordException e) {
+            return AuthResult.Failed(e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes a login once every credential has been verified.
+     * Clears the failure streak and lockout failures for the username and requests
+     * the login info file to be written in the background.
+     * 
+     * @param session Fully authenticated session.
+     * @see Database
+     * @see FailureBackoff
+     * @see LockoutTracker
+     * @apiNote Added in version 1.5.
+     */
+    public void CompleteLogin(LoginSession session) {
+        _failureBackoff.RecordSuccess(session.GetUsername());
+        _lockoutTracker.RecordSuccess(session.GetEncryptedUsername());
+        _database.GenerateFile();
+    }
+
+    /**
+     * Checks a stream of credentials in parallel for migrations and audits.
+     * These checks are not login attempts and are never delayed or locked out.
+     * 
+     * @param credentials Credentials to check. Passwords are cleared once checked.
+     * @param results Called with each result in input order on the calling thread.
+     * @return Number of credentials checked.
+     * @see BatchAuthenticator
+     * @apiNote Added in version 1.5.
+     */
+    public long AuthenticateBatch(
+        Stream<BatchAuthenticator.Credential> credentials,
+        Consumer<BatchAuthenticator.Result> results
+    ) {
+        return _batchAuthenticator.Authenticate(credentials, results);
+    }
+    //#endregion FUNCTIONS
+
+    //#region ASYNC FUNCTIONS
+    /**
+     * Same as {@link #AuthenticateUsername(LoginSession)}, but a failed result is only
+     * delivered once the brute force delay for the username has passed.
+     * 
+     * @param session Session from {@link #StartSession(String)}.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<AuthResult> AuthenticateUsernameAsync(LoginSession session) {
+        return ApplyDelay(session, AuthenticateUsername(session));
+    }
+
+    /**
+     * Same as {@link #VerifyPassword(LoginSession, char[])}, but a failed result is only
+     * delivered once the brute force delay for the username has passed.
+     * 
+     * @param session Authenticated session.
+     * @param passwordChars Client-entered password.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<AuthResult> VerifyPasswordAsync(LoginSession session, char[] passwordChars) {
+        return _passwordHandler.AuthenticatePasswordAsync(session, passwordChars)
+            .thenCompose(result -> ApplyDelay(session, result));
+    }
+
+    /**
+     * Same as {@link #VerifyCode(LoginSession, String)}, but a failed result is only
+     * delivered once the brute force delay for the username has passed.
+     * 
+     * @param session Authenticated session.
+     * @param code Client-entered MFA Code.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<AuthResult> VerifyCodeAsync(LoginSession session, String code) {
+        return ApplyDelay(session, VerifyCode(session, code));
+    }
+
+    /**
+     * Same as {@link #CreatePassword(LoginSession, char[])}, but a failed result is only
+     * delivered once the brute force delay for the username has passed.
+     * 
+     * @param session Authenticated session.
+     * @param newPasswordChars Client-entered new password.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<AuthResult> CreatePasswordAsync(LoginSession session, char[] newPasswordChars) {
+        return ApplyDelay(session, CreatePassword(session, newPasswordChars));
+    }
+
+    /**
+     * Returns a future that completes after the given delay
+     * without holding the caller's thread.
+     * 
+     * @param millis Delay in milliseconds.
+     * @return Future completed once the delay has passed.
+     * @see DelayScheduler
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> Delay(long millis) {
+        return _delayScheduler.Delay(millis);
+    }
+    //#endregion ASYNC FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Completes successful results right away. Failed results are recorded
+     * against the username and completed by the DelayScheduler after the backoff.
+     * Sessions or sources flagged by the SprayDetector get the longest delay.
+     * 
+     * @param session Session the attempt was made with.
+     * @param result Result of the attempt.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    private CompletableFuture<AuthResult> ApplyDelay(LoginSession session, AuthResult result) {
+        if(result.IsSuccess()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        long delay = _failureBackoff.RecordFailure(session.GetUsername());
+        if(session.IsSuspicious() || _sprayDetector.IsSourceFlagged(session.GetSource())) {
+            delay = Math.max(delay, SUSPICIOUS_DELAY_MILLIS);
+        }
+        return _delayScheduler.Delay(delay).thenApply(ignored -> result);
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+package login;
+
+//#region IMPORTS
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: BatchAuthenticator.java
+ * 
+ * The BatchAuthenticator class checks large sets of credentials against the
+ * Database for migrations and audits. Credentials are read in chunks, each
+ * chunk is checked on the BatchAuthenticator's own pool, and results are handed
+ * back in input order. Only a fixed number of chunks are in flight at once, so
+ * the batch is never held in memory.
+ * Hashed passwords are checked on the PasswordHasher's pool, one per batch thread
+ * at most and only while no login is queued on it, so a batch can't starve logins
+ * or the common pool.
+ * Checks here are not login attempts: they don't count towards the
+ * LockoutTracker, SprayDetector or FailureBackoff and aren't delayed.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see CodeHandler
+ * @see PasswordHandler
+ * @see PasswordHasher
+ * @apiNote Added in version 1.5.
+ */
+public class BatchAuthenticator {
+    //#region SERVICES
+    private final CodeHandler _codeHandler = CodeHandler.GetInstance();
+    private final Database _database = Database.GetInstance();
+    private final PasswordHandler _passwordHandler = PasswordHandler.GetInstance();
+    private final PasswordHasher _passwordHasher = PasswordHasher.GetInstance();
+    //#endregion SERVICES
+
+    //#region ENUMS
+    /**
+     * Outcome of checking one set of credentials.
+     */
+    public enum Outcome {
+        SUCCESS,
+        UNKNOWN_USERNAME,
+        NO_PASSWORD,
+        WRONG_PASSWORD,
+        WRONG_CODE
+    }
+    //#endregion ENUMS
+
+    //#region CONSTANTS
+    /**
+     * Credentials checked by one task. Large enough that scheduling is a small
+     * part of the work, small enough that results start flowing right away.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * Chunks in flight per core. Bounds memory while keeping every core busy
+     * when one chunk takes longer than the others.
+     */
+    private static final int CHUNKS_PER_CORE = 4;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How long a check waits before trying the PasswordHasher again once it was busy.
+     */
+    private static final long BUSY_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Pool the chunks are checked on. Its queue only holds the chunks in flight,
+     * which every call to Authenticate bounds.
+     */
+    private final ThreadPoolExecutor _executor;
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final BatchAuthenticator INSTANCE = new BatchAuthenticator();
+    }
+
+    private BatchAuthenticator() {
+        AtomicInteger count = new AtomicInteger();
+        _executor = new ThreadPoolExecutor(
+            THREADS, THREADS,
+            0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            task -> {
+                Thread thread = new Thread(task, "login-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    public static BatchAuthenticator GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region FUNCTIONS
+    /**
+     * Checks every credential in the stream.
+     * 
+     * @param credentials Credentials to check. Passwords are cleared once checked.
+     * @param results Called with each result in the order of {@code credentials},
+     * always on the calling thread.
+     * @return Number of credentials checked.
+     * @apiNote Added in version 1.5.
+     */
+    public long Authenticate(Stream<Credential> credentials, Consumer<Result> results) {
+        try(credentials) {
+            return Authenticate(credentials.iterator(), results);
+        }
+    }
+
+    /**
+     * Checks every credential from the iterator.
+     * 
+     * @param credentials Credentials to check. Passwords are cleared once checked.
+     * @param results Called with each result in the order of {@code credentials},
+     * always on the calling thread.
+     * @return Number of credentials checked.
+     * @apiNote Added in version 1.5.
+     */
+    public long Authenticate(Iterator<Credential> credentials, Consumer<Result> results) {
+        int maxInFlight = THREADS * CHUNKS_PER_CORE;
+        Queue<CompletableFuture<Result[]>> inFlight = new ArrayDeque<>(maxInFlight);
+        long index = 0;
+
+        while(credentials.hasNext()) {
+            Credential[] chunk = new Credential[CHUNK_SIZE];
+            int size = 0;
+            while(size < CHUNK_SIZE && credentials.hasNext()) {
+                chunk[size++] = credentials.next();
+            }
+
+            Credential[] filled = size == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, size);
+            long firstIndex = index;
+            index += size;
+
+            if(inFlight.size() == maxInFlight) {
+                Deliver(inFlight.poll(), results);
+            }
+            inFlight.add(CompletableFuture.supplyAsync(() -> CheckChunk(filled, firstIndex), _executor));
+        }
+
+        while(!inFlight.isEmpty()) {
+            Deliver(inFlight.poll(), results);
+        }
+        return index;
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Waits for a chunk and hands its results over in order.
+     * 
+     * @param chunk Results of a chunk.
+     * @param results Consumer of the results.
+     * @apiNote Added in version 1.5.
+     */
+    private static void Deliver(CompletableFuture<Result[]> chunk, Consumer<Result> results) {
+        for(Result result : chunk.join()) {
+            results.accept(result);
+        }
+    }
+
+    /**
+     * Checks a chunk of credentials on a pool thread.
+     * 
+     * @param chunk Credentials to check.
+     * @param firstIndex Position of the first credential in the batch.
+     * @return Results in the same order as the chunk.
+     * @apiNote Added in version 1.5.
+     */
+    private Result[] CheckChunk(Credential[] chunk, long firstIndex) {
+        Result[] results = new Result[chunk.length];
+        for(int i = 0; i < chunk.length; i++) {
+            Credential credential = chunk[i];
+            try {
+                results[i] = new Result(firstIndex + i, credential._username, Check(credential));
+            }
+            finally {
+                Arrays.fill(credential._password, '\0');
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks one set of credentials, stopping at the first that doesn't match.
+     * The username is looked up around the UsernameCache, so a batch doesn't
+     * push the Users that are logging in out of it.
+     * 
+     * @param credential Credentials to check.
+     * @return Outcome of the check.
+     * @apiNote Added in version 1.5.
+     */
+    private Outcome Check(Credential credential) {
+        User user = _database.FindUsername(credential._username).GetUser();
+        if(user == null) return Outcome.UNKNOWN_USERNAME;
+        if(user.GetPassword() == null) return Outcome.NO_PASSWORD;
+        if(!MatchesPassword(user, credential._password)) return Outcome.WRONG_PASSWORD;
+        if(!_codeHandler.MatchesCode(user, credential._code)) return Outcome.WRONG_CODE;
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Checks a password, waiting for the PasswordHasher whenever logins are
+     * queued on it or it refused the check.
+     * 
+     * @param user User to check the password of.
+     * @param passwordChars Password to check.
+     * @return {@code true} if it matches, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean MatchesPassword(User user, char[] passwordChars) {
+        while(true) {
+            boolean hashed = PasswordHasher.IsHash(user.GetPassword());
+            // The batch never has more checks on the pool than it has threads, so a queue means logins are waiting.
+            while(hashed && _passwordHasher.GetQueueDepth() > 0) {
+                LockSupport.parkNanos(this, BUSY_WAIT);
+            }
+            try {
+                return _passwordHandler.MatchesPasswordAsync(user, passwordChars).join();
+            }
+            catch(CompletionException e) {
+                // Busy between the check above and the submit, wait and try again.
+                if(!(e.getCause() instanceof RejectedExecutionException || e.getCause() instanceof TimeoutException)) throw e;
+                LockSupport.parkNanos(this, BUSY_WAIT);
+            }
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * One set of credentials to check.
+     */
+    public static class Credential {
+        private final String _username;
+        private final char[] _password;
+        private final String _code;
+
+        /**
+         * Constructs a set of credentials.
+         * 
+         * @param username Plain username.
+         * @param password Plain password. Cleared once it has been checked.
+         * @param code MFA Code.
+         * @apiNote Added in version 1.5.
+         */
+        public Credential(String username, char[] password, String code) {
+            _username = username;
+            _password = password;
+            _code = code;
+        }
+    }
+
+    /**
+     * Result of checking one set of credentials.
+     */
+    public static class Result {
+        private final long _index;
+        private final String _username;
+        private final Outcome _outcome;
+
+        private Result(long index, String username, Outcome outcome) {
+            _index = index;
+            _username = username;
+            _outcome = outcome;
+        }
+
+        public long GetIndex()       { return _index;                      }
+        public String GetUsername()  { return _username;                   }
+        public Outcome GetOutcome()  { return _outcome;                    }
+        public boolean IsSuccess()   { return _outcome == Outcome.SUCCESS; }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -7,27 +7,40 @@ package login;
  * This class handles the authentication of the MFA Code for a User.
  * 
  * @author Noah Nickles
- * @version 1.4
- * @see Database
+ * @version 1.5
+ * @see LockoutTracker
+ * @see LoginSession
  * @see Validation
  * @apiNote Added in version 1.4.
+ * @apiNote Singleton uses the holder idiom in version 1.5 so it is safe to share across threads.
+ * Works on the User resolved in the LoginSession instead of querying the Database in version 1.5.
+ * @apiNote Wrong MFA Codes count towards the LockoutTracker in version 1.5.
  */
 public class CodeHandler {
     //#region SERVICES
-    private final Database _database = Database.GetInstance();
+    private final LockoutTracker _lockoutTracker = LockoutTracker.GetInstance();
     private final Validation _validation = Validation.GetInstance();
     //#endregion SERVICES
 
+    //#region CONSTANTS
+    private static final AuthResult CODE_INCORRECT = AuthResult.Failed(
+        MessageHandler.GetExceptionMessage(MessageHandler.INCORRECT_INPUT, "MFA Code")
+    );
+
+    private static final AuthResult ACCOUNT_LOCKED = AuthResult.LockedOut(
+        MessageHandler.GetExceptionMessage(MessageHandler.ACCOUNT_LOCKED)
+    );
+    //#endregion CONSTANTS
+
     //#region SINGLETON PATTERN
-    private static CodeHandler _instance = null;
+    private static class InstanceHolder {
+        private static final CodeHandler INSTANCE = new CodeHandler();
+    }
 
     private CodeHandler() {}
 
     public static CodeHandler GetInstance() {
-        if(_instance == null) {
-            _instance = new CodeHandler();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
@@ -35,19 +48,52 @@ public class CodeHandler {
     /**
      * Authenticates the user input against the stored MFA Code in the Database.
      * 
-     * @param username Username of the associated User object.
+     * @param session Session holding the User resolved at the username stage.
      * @param code User-entered code to validate against the User object's code.
-     * @return {@code true} if code exists and is valid, {@code false} otherwise.
-     * @see Database
+     * @return Successful result if code is valid and matches, locked out result if the User
+     * is locked out, failed result with the reason otherwise.
+     * @see LockoutTracker
+     * @see LoginSession
      * @see Validation
      * @see User
      * @apiNote Added in version 1.4.
+     * @apiNote Updated in version 1.5 to return an AuthResult, validate without printing
+     * and compare the parsed code to the User object's code.
+     * Takes a LoginSession instead of querying the Database again.
+     * @apiNote Updated in version 1.5 to refuse Users that are locked out and
+     * record wrong codes with the LockoutTracker.
      */
-    public boolean AuthenticateCode(String username, String code) {
-        User user = _database.GetUserByUsername(username);
-        if(user == null) return false;
+    public AuthResult AuthenticateCode(LoginSession session, String code) {
+        User user = session.GetUser();
+        if(user == null) return CODE_INCORRECT;
+
+        if(_lockoutTracker.IsLockedOut(session.GetEncryptedUsername())) return ACCOUNT_LOCKED;
+
+        int violations = _validation.CheckCode(code);
+        if(violations != 0) {
+            return AuthResult.Failed(_validation.GetViolationMessage(violations, "MFA Code"));
+        }
 
-        return _validation.ValidateCode(code);
+        if(_validation.ParseCode(code) != user.GetCode()) {
+            _lockoutTracker.RecordFailure(session.GetEncryptedUsername());
+            return CODE_INCORRECT;
+        }
+
+        return AuthResult.Success();
+    }
+
+    /**
+     * Compares an MFA Code to the User's without counting it as a login attempt,
+     * for checking credentials in bulk.
+     * 
+     * @param user User to check the code of.
+     * @param code Code to check.
+     * @return {@code true} if it is valid and matches, {@code false} if otherwise.
+     * @see BatchAuthenticator
+     * @apiNote Added in version 1.5.
+     */
+    public boolean MatchesCode(User user, String code) {
+        return _validation.CheckCode(code) == 0 && _validation.ParseCode(code) == user.GetCode();
     }
     //#endregion FUNCTIONS
 }
\ No newline at end of file
@@ -0,0 +1,496 @@
+package login;
+
+//#region IMPORTS
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: ColumnarUserStore.java
+ * 
+ * The ColumnarUserStore class packs Users into primitive columns instead of
+ * keeping a User object per row: fixed-width byte slabs for the encrypted
+ * usernames and passwords, byte columns for the versions of their key tags,
+ * an int column for the MFA Codes and an open addressing int index keyed by
+ * username. PBKDF2 hashes are packed into a binary slab of their own.
+ * A lookup returns a small view that reads and writes the password in the columns.
+ * Usernames that don't fit a slot are kept in a HeapUserStore instead, and
+ * passwords that fit neither a slot nor the hash slab are kept in a side map.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserStore
+ * @apiNote Added in version 1.5 for deployments with millions of Users.
+ * @implNote Reads take a shared lock and writes an exclusive one, so a view
+ * never sees a column while it is being grown.
+ * @implNote The UserExporter's dirty mark is kept per row, so the separate
+ * views of one row queue it for export once.
+ */
+public class ColumnarUserStore implements UserStore {
+    //#region CONSTANTS
+    private static final int USERNAME_WIDTH = 16;
+
+    /**
+     * Wide enough for any password allowed by the default password policy once its key tag,
+     * which is kept in {@link #_passwordVersions}, is taken off.
+     */
+    private static final int PASSWORD_WIDTH = Validation.DEFAULT_PASSWORD_POLICY.GetMaxLength();
+    private static final int HASH_WIDTH     = PasswordHasher.PACKED_LENGTH;
+
+    private static final byte NO_PASSWORD       = -1;
+    private static final byte OVERFLOW_PASSWORD = -2;
+    private static final byte HASHED_PASSWORD   = -3;
+    private static final int INITIAL_CAPACITY   = 1024; // Must be a power of two.
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private byte[] _usernames        = new byte[INITIAL_CAPACITY * USERNAME_WIDTH];
+    private byte[] _usernameLengths  = new byte[INITIAL_CAPACITY];
+    private byte[] _usernameVersions = new byte[INITIAL_CAPACITY];
+    private byte[] _passwords        = new byte[INITIAL_CAPACITY * PASSWORD_WIDTH];
+    private byte[] _passwordLengths  = new byte[INITIAL_CAPACITY];
+    private byte[] _passwordVersions = new byte[INITIAL_CAPACITY];
+    private int[] _codes             = new int[INITIAL_CAPACITY];
+
+    /**
+     * Slot + 1 of each row's packed hash in {@link #_hashes}, {@code 0} if it never had one.
+     * A row keeps its slot once it has one, hashes are only replaced by newer hashes.
+     */
+    private int[] _hashSlots = new int[INITIAL_CAPACITY];
+
+    /**
+     * Packed PBKDF2 hashes, {@link #HASH_WIDTH} bytes each. Grown on first use,
+     * so stores without hashed passwords don't pay for it.
+     */
+    private byte[] _hashes = new byte[0];
+    private int _hashCount = 0;
+
+    /**
+     * Rows changed since the UserExporter last read them. Kept per row since
+     * every lookup returns a new view, and views of one row share the mark.
+     */
+    private boolean[] _dirtyRows = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Open addressing index of row + 1 by username hash, {@code 0} for an empty slot.
+     */
+    private int[] _index = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Passwords that fit neither a slot nor the hash slab, by row.
+     */
+    private final Map<Integer, String> _overflowPasswords = new HashMap<>();
+    private int _size = 0;
+
+    private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    /**
+     * Users whose username doesn't fit in a slot.
+     */
+    private final HeapUserStore _overflowUsers = new HeapUserStore();
+    //#endregion VARIABLES
+
+    //#region FUNCTIONS
+    @Override
+    public User Get(String encryptedUsername) {
+        int version = ReadTagVersion(encryptedUsername);
+        if(!FitsSlot(encryptedUsername, Cryptographer.GetTagLength(version), USERNAME_WIDTH)) {
+            return _overflowUsers.Get(encryptedUsername);
+        }
+
+        _lock.readLock().lock();
+        try {
+            int row = FindRow(encryptedUsername, version);
+            return row < 0 ? null : new RowView(encryptedUsername, _codes[row], row);
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean Add(User user) {
+        String username = user.GetUsername();
+        int version = ReadTagVersion(username);
+        int tagLength = Cryptographer.GetTagLength(version);
+        if(!FitsSlot(username, tagLength, USERNAME_WIDTH)) {
+            return _overflowUsers.Add(user);
+        }
+
+        _lock.writeLock().lock();
+        try {
+            if(FindRow(username, version) >= 0) return false;
+            if(_size == _codes.length) Grow();
+
+            int row = _size;
+            for(int i = tagLength; i < username.length(); i++) {
+                _usernames[row * USERNAME_WIDTH + i - tagLength] = (byte)username.charAt(i);
+            }
+            _usernameLengths[row] = (byte)(username.length() - tagLength);
+            _usernameVersions[row] = (byte)version;
+            _codes[row] = user.GetCode();
+            WritePassword(row, user.GetPassword());
+            _size++;
+            IndexRow(row, username, version);
+            return true;
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int Size() {
+        _lock.readLock().lock();
+        try {
+            return _size + _overflowUsers.Size();
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void ForEach(Consumer<User> action) {
+        for(int row = 0; ; row++) {
+            RowView view;
+            _lock.readLock().lock();
+            try {
+                if(row >= _size) break;
+                String username = Cryptographer.RestoreTag(_usernameVersions[row], new String(
+                    _usernames, row * USERNAME_WIDTH, _usernameLengths[row], StandardCharsets.ISO_8859_1
+                ));
+                view = new RowView(username, _codes[row], row);
+            }
+            finally {
+                _lock.readLock().unlock();
+            }
+            action.accept(view);
+        }
+        _overflowUsers.ForEach(action);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Reads the key version from the tag of a value, if it fits in a version column.
+     * 
+     * @param value Encrypted username or password.
+     * @return Version of the tag, {@code 0} if the value is kept whole.
+     * @apiNote Added in version 1.5.
+     */
+    private static int ReadTagVersion(String value) {
+        int version = Cryptographer.ReadTagVersion(value);
+        return version <= Byte.MAX_VALUE ? version : 0;
+    }
+
+    /**
+     * Checks if the part of a value after its tag fits in a slot: ASCII only and no longer than the slot.
+     * 
+     * @param value Value to store.
+     * @param start Length of the tag that is kept in a version column.
+     * @param width Width of the slot in bytes.
+     * @return {@code true} if the value fits, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean FitsSlot(String value, int start, int width) {
+        if(value.length() - start > width) return false;
+        for(int i = start; i < value.length(); i++) {
+            if(value.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the row of a username that fits in a slot. The caller must hold {@link #_lock}.
+     * 
+     * @param username Encrypted username.
+     * @param version Version of its tag from {@link #ReadTagVersion(String)}.
+     * @return Row of the username, {@code -1} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    private int FindRow(String username, int version) {
+        int start = Cryptographer.GetTagLength(version);
+        int mask = _index.length - 1;
+        int slot = Hash(username, start, version) & mask;
+        while(true) {
+            int entry = _index[slot];
+            if(entry == 0) return -1;
+            if(UsernameEquals(entry - 1, username, start, version)) return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Compares the username stored in a row to the given one.
+     * 
+     * @param row Row to compare.
+     * @param username Encrypted username that fits in a slot.
+     * @param start Length of its tag.
+     * @param version Version of its tag.
+     * @return {@code true} if they match, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean UsernameEquals(int row, String username, int start, int version) {
+        if(_usernameVersions[row] != version || _usernameLengths[row] != username.length() - start) return false;
+        int offset = row * USERNAME_WIDTH - start;
+        for(int i = start; i < username.length(); i++) {
+            if(_usernames[offset + i] != (byte)username.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a row to the index, growing the index once it is three quarters full.
+     * The caller must hold the write lock.
+     * 
+     * @param row Row to add.
+     * @param username Encrypted username stored in the row.
+     * @param version Version of its tag.
+     * @apiNote Added in version 1.5.
+     */
+    private void IndexRow(int row, String username, int version) {
+        if(_size * 4L > _index.length * 3L) {
+            _index = new int[_index.length * 2];
+            for(int i = 0; i < _size; i++) {
+                if(i == row) continue;
+                PlaceInIndex(i, Hash(_usernames, i * USERNAME_WIDTH, _usernameLengths[i], _usernameVersions[i]));
+            }
+        }
+        PlaceInIndex(row, Hash(username, Cryptographer.GetTagLength(version), version));
+    }
+
+    /**
+     * Puts a row in the first free index slot after its hash.
+     * 
+     * @param row Row to place.
+     * @param hash Hash of the row's username.
+     * @apiNote Added in version 1.5.
+     */
+    private void PlaceInIndex(int row, int hash) {
+        int mask = _index.length - 1;
+        int slot = hash & mask;
+        while(_index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        _index[slot] = row + 1;
+    }
+
+    /**
+     * Doubles the capacity of every column. The caller must hold the write lock.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Grow() {
+        int capacity = _codes.length * 2;
+        _usernames = Arrays.copyOf(_usernames, capacity * USERNAME_WIDTH);
+        _usernameLengths = Arrays.copyOf(_usernameLengths, capacity);
+        _usernameVersions = Arrays.copyOf(_usernameVersions, capacity);
+        _passwords = Arrays.copyOf(_passwords, capacity * PASSWORD_WIDTH);
+        _passwordLengths = Arrays.copyOf(_passwordLengths, capacity);
+        _passwordVersions = Arrays.copyOf(_passwordVersions, capacity);
+        _codes = Arrays.copyOf(_codes, capacity);
+        _hashSlots = Arrays.copyOf(_hashSlots, capacity);
+        _dirtyRows = Arrays.copyOf(_dirtyRows, capacity);
+    }
+
+    /**
+     * Reads the password stored in a row.
+     * 
+     * @param row Row to read.
+     * @return The encrypted password, {@code null} if none is set.
+     * @apiNote Added in version 1.5.
+     */
+    private String ReadPassword(int row) {
+        _lock.readLock().lock();
+        try {
+            byte length = _passwordLengths[row];
+            if(length == NO_PASSWORD) return null;
+            if(length == OVERFLOW_PASSWORD) return _overflowPasswords.get(row);
+            if(length == HASHED_PASSWORD) return PasswordHasher.Unpack(_hashes, (_hashSlots[row] - 1) * HASH_WIDTH);
+            return Cryptographer.RestoreTag(
+                _passwordVersions[row],
+                new String(_passwords, row * PASSWORD_WIDTH, length, StandardCharsets.ISO_8859_1)
+            );
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a password in a row: a hash in the hash slab, an encrypted password in
+     * the password slot with its tag in the version column, or in the side map if
+     * it fits neither. The caller must hold the write lock.
+     * 
+     * @param row Row to write.
+     * @param password Encrypted password or hash, {@code null} for none.
+     * @apiNote Added in version 1.5.
+     */
+    private void WritePassword(int row, String password) {
+        int start = row * PASSWORD_WIDTH;
+        Arrays.fill(_passwords, start, start + PASSWORD_WIDTH, (byte)0);
+        if(_hashSlots[row] != 0) {
+            int hashStart = (_hashSlots[row] - 1) * HASH_WIDTH;
+            Arrays.fill(_hashes, hashStart, hashStart + HASH_WIDTH, (byte)0);
+        }
+        _overflowPasswords.remove(row);
+        _passwordVersions[row] = 0;
+
+        if(password == null) {
+            _passwordLengths[row] = NO_PASSWORD;
+            return;
+        }
+        if(PasswordHasher.IsHash(password)) {
+            if(_hashSlots[row] == 0) AddHashSlot(row);
+            if(PasswordHasher.Pack(password, _hashes, (_hashSlots[row] - 1) * HASH_WIDTH)) {
+                _passwordLengths[row] = HASHED_PASSWORD;
+                return;
+            }
+        }
+
+        int version = ReadTagVersion(password);
+        int tagLength = Cryptographer.GetTagLength(version);
+        if(!FitsSlot(password, tagLength, PASSWORD_WIDTH)) {
+            _passwordLengths[row] = OVERFLOW_PASSWORD;
+            _overflowPasswords.put(row, password);
+            return;
+        }
+        for(int i = tagLength; i < password.length(); i++) {
+            _passwords[start + i - tagLength] = (byte)password.charAt(i);
+        }
+        _passwordLengths[row] = (byte)(password.length() - tagLength);
+        _passwordVersions[row] = (byte)version;
+    }
+
+    /**
+     * Gives a row a slot in the hash slab, doubling the slab when it is full.
+     * The caller must hold the write lock.
+     * 
+     * @param row Row to give a slot.
+     * @apiNote Added in version 1.5.
+     */
+    private void AddHashSlot(int row) {
+        if(_hashCount * HASH_WIDTH == _hashes.length) {
+            _hashes = Arrays.copyOf(_hashes, Math.max(INITIAL_CAPACITY, _hashCount * 2) * HASH_WIDTH);
+        }
+        _hashSlots[row] = ++_hashCount;
+    }
+
+    /**
+     * Marks a row as changed since the last export.
+     * 
+     * @param row Row to mark.
+     * @return {@code true} if the row was not already marked.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean MarkRowDirty(int row) {
+        _lock.writeLock().lock();
+        try {
+            if(_dirtyRows[row]) return false;
+            _dirtyRows[row] = true;
+            return true;
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears the mark set by {@link #MarkRowDirty(int)}.
+     * 
+     * @param row Row to clear.
+     * @apiNote Added in version 1.5.
+     */
+    private void ClearRowDirty(int row) {
+        _lock.writeLock().lock();
+        try {
+            _dirtyRows[row] = false;
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hashes the version of an ASCII username's tag and the rest of it with FNV-1a,
+     * spreading the high bits into the low ones.
+     * 
+     * @param username Encrypted username that fits in a slot.
+     * @param start Length of its tag.
+     * @param version Version of its tag.
+     * @return Hash of the username.
+     * @apiNote Added in version 1.5.
+     */
+    private static int Hash(String username, int start, int version) {
+        int hash = (0x811C9DC5 ^ version) * 0x01000193;
+        for(int i = start; i < username.length(); i++) {
+            hash = (hash ^ username.charAt(i)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Same as {@link #Hash(String, int, int)} over a username stored in a slab.
+     * 
+     * @param bytes Username slab.
+     * @param start Offset of the username.
+     * @param length Length of the username.
+     * @param version Version of its tag.
+     * @return Hash of the username.
+     * @apiNote Added in version 1.5.
+     */
+    private static int Hash(byte[] bytes, int start, int length, int version) {
+        int hash = (0x811C9DC5 ^ version) * 0x01000193;
+        for(int i = start; i < start + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * A User that reads and writes its password and dirty mark in the columns of its row.
+     */
+    private class RowView extends User {
+        private final int _row;
+
+        private RowView(String username, int code, int row) {
+            super(username, code);
+            _row = row;
+        }
+
+        @Override
+        public String GetPassword() {
+            return ReadPassword(_row);
+        }
+
+        @Override
+        public void SetPassword(String password) {
+            _lock.writeLock().lock();
+            try {
+                WritePassword(_row, password);
+            }
+            finally {
+                _lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean MarkDirty() {
+            return MarkRowDirty(_row);
+        }
+
+        @Override
+        public void ClearDirty() {
+            ClearRowDirty(_row);
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
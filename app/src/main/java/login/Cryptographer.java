@@ -1,5 +1,11 @@
 package login;
 
+//#region IMPORTS
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+//#endregion IMPORTS
+
 /**
  * COP 4078 Exercise: 5
  * File Name: Cryptographer.java
@@ -10,35 +16,103 @@ package login;
  * input if needed.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @apiNote Added in version 1.2.
  * @apiNote Moved around variables, modified comments in verison 1.4.
+ * @apiNote Added char[] overloads with precomputed key shifts and a digit inverse table
+ * in version 1.5 so the hot path doesn't allocate.
+ * @apiNote Singleton uses the holder idiom in version 1.5. The table is built once and never
+ * modified, so encryption is safe to call from any thread.
+ * @apiNote Keys are versioned in version 1.5. Extra keys are listed in {@code -Dlogin.keys}
+ * and the last one is used for new values. Values encrypted under a key other than the
+ * built-in one start with a {@code $k<version>$} tag, so every stored value says which key
+ * it needs and values from before versioning read the same as before.
+ * @apiNote Added bulk functions in version 1.5 that run on SIMD lanes through the VectorCipher
+ * when the JVM has {@code jdk.incubator.vector}, and on the scalar loop with the same output otherwise.
+ * @see KeyRotator
+ * @see VectorCipher
  */
 public class Cryptographer {
     //#region CONSTANTS
+    /**
+     * Version of the built-in key. Values encrypted under it carry no tag.
+     */
+    public static final int BUILT_IN_VERSION = 1;
+    private static final String TAG_PREFIX = "$k";
+    private static final char TAG_END = '$';
+
+    /**
+     * Whether the bulk functions run through the VectorCipher, from {@code -Dlogin.crypto.vector}.
+     * Needs the JVM started with {@code --add-modules jdk.incubator.vector}.
+     */
+    private static final boolean VECTOR_BULK = Boolean.parseBoolean(System.getProperty("login.crypto.vector", "true"))
+        && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
     private final String ALPHAKEY = "ARGOSROCK";
     private final String NUMBERKEY = "1963"; 
     private final int[][] VIGENERE_TABLE;
+
+    /**
+     * Inverse of {@link #VIGENERE_TABLE}, indexed by [ciphertextDigit][keyDigit].
+     */
+    private final int[][] INVERSE_TABLE;
+
+    /**
+     * Every known key, indexed by version - 1. The built-in key comes first,
+     * followed by the keys from {@code -Dlogin.keys} in the order they are listed.
+     */
+    private final Key[] KEYS;
+
+    /**
+     * Key used for new values, always the newest one.
+     */
+    private final Key CURRENT;
     //#endregion CONSTANTS
 
     //#region SINGLETON PATTERN
-    private static Cryptographer _instance = null;
+    private static class InstanceHolder {
+        private static final Cryptographer INSTANCE = new Cryptographer();
+    }
     
+    /**
+     * Builds the tables and reads the extra keys from {@code -Dlogin.keys}, a comma
+     * separated list of {@code ALPHAKEY:NUMBERKEY} pairs numbered from version 2.
+     * 
+     * @throws IllegalArgumentException If a listed key is malformed. Skipping it would
+     * shift the versions of the keys after it, so nothing encrypted under them could be read.
+     * @apiNote Updated in version 1.5 to build the inverse table and read the extra keys.
+     */
     private Cryptographer() {
         VIGENERE_TABLE = GenerateTable();
+        INVERSE_TABLE = GenerateInverseTable(VIGENERE_TABLE);
+
+        List<Key> keys = new ArrayList<>();
+        keys.add(new Key(BUILT_IN_VERSION, ALPHAKEY, NUMBERKEY));
+        String extraKeys = System.getProperty("login.keys", "").trim();
+        if(!extraKeys.isEmpty()) {
+            for(String pair : extraKeys.split(",")) {
+                String[] parts = pair.trim().split(":");
+                if(parts.length != 2) {
+                    throw new IllegalArgumentException("Error reading key " + (keys.size() + 1) + ": expected ALPHAKEY:NUMBERKEY.");
+                }
+                keys.add(new Key(keys.size() + 1, parts[0], parts[1]));
+            }
+        }
+        KEYS = keys.toArray(new Key[0]);
+        CURRENT = KEYS[KEYS.length - 1];
     }
 
     public static Cryptographer GetInstance() {
-        if(_instance == null) {
-            _instance = new Cryptographer();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
     //#region GETTERS
-    public String GetAlphakey()  { return ALPHAKEY;  }
-    public String GetNumberkey() { return NUMBERKEY; }
+    public String GetAlphakey()   { return CURRENT._alphakey;  }
+    public String GetNumberkey()  { return CURRENT._numberkey; }
+    public int GetKeyVersion()    { return CURRENT._version;   }
+    public int GetKeyCount()      { return KEYS.length;        }
+    public boolean IsVectorBulk() { return VECTOR_BULK;        }
     //#endregion GETTERS
 
     //#region FUNCTIONS
@@ -46,6 +120,7 @@ public class Cryptographer {
      * Generates the Vigenere table from the exercise 3 instructions.
      * 
      * @return Generated Vingenre table.
+     * @apiNote Updated in version 1.5 to also feed {@link #GenerateInverseTable(int[][])}.
      */
     private int[][] GenerateTable() {
         int[][] table = new int[10][10];
@@ -56,6 +131,139 @@ public class Cryptographer {
         }
         return table;
     }
+
+    /**
+     * Generates the inverse of the Vigenere table so decrypting a digit
+     * is a single lookup instead of a search down the key column.
+     * 
+     * @param table Vigenere table from {@link #GenerateTable()}.
+     * @return Inverse table indexed by [ciphertextDigit][keyDigit].
+     * @apiNote Added in version 1.5.
+     */
+    private int[][] GenerateInverseTable(int[][] table) {
+        int[][] inverse = new int[10][10];
+        for(int plaintext = 0; plaintext < 10; plaintext++) {
+            for(int key = 0; key < 10; key++) {
+                inverse[table[plaintext][key]][key] = plaintext;
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * Reads which key a stored value was encrypted under.
+     * 
+     * @param value Encrypted value, with or without a tag.
+     * @return Version of the key, {@link #BUILT_IN_VERSION} if the value has no tag,
+     * {@code -1} if the tag names a key that isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    public int GetTagVersion(String value) {
+        if(!value.startsWith(TAG_PREFIX)) return BUILT_IN_VERSION;
+        int end = value.indexOf(TAG_END, TAG_PREFIX.length());
+        if(end < 0) return -1;
+        try {
+            int version = Integer.parseInt(value, TAG_PREFIX.length(), end, 10);
+            return version >= 1 && version <= KEYS.length ? version : -1;
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of chars the tag of a stored value takes up.
+     * 
+     * @param value Encrypted value, with or without a tag.
+     * @return Length of the tag, {@code 0} if the value has none.
+     * @apiNote Added in version 1.5.
+     */
+    public int GetTagLength(String value) {
+        if(!value.startsWith(TAG_PREFIX)) return 0;
+        return value.indexOf(TAG_END, TAG_PREFIX.length()) + 1;
+    }
+
+    /**
+     * Reads the version from the tag of a stored value without checking that the key is known,
+     * for stores that keep the version in a column of its own and the rest of the value in a slot.
+     * 
+     * @param value Stored value, with or without a tag.
+     * @return Version in the tag, {@code 0} if the value has no tag or one that
+     * {@link #RestoreTag(int, String)} wouldn't write back the same.
+     * @apiNote Added in version 1.5.
+     */
+    public static int ReadTagVersion(String value) {
+        if(!value.startsWith(TAG_PREFIX)) return 0;
+        int end = value.indexOf(TAG_END, TAG_PREFIX.length());
+        if(end < 0 || end == TAG_PREFIX.length() || value.charAt(TAG_PREFIX.length()) == '0') return 0;
+        int version = 0;
+        for(int i = TAG_PREFIX.length(); i < end; i++) {
+            char c = value.charAt(i);
+            if(c < '0' || c > '9' || version > (Integer.MAX_VALUE - 9) / 10) return 0;
+            version = version * 10 + (c - '0');
+        }
+        return version;
+    }
+
+    /**
+     * Returns the number of chars the tag of a version takes up.
+     * 
+     * @param version Version from {@link #ReadTagVersion(String)}.
+     * @return Length of the tag, {@code 0} for version {@code 0}.
+     * @apiNote Added in version 1.5.
+     */
+    public static int GetTagLength(int version) {
+        if(version == 0) return 0;
+        return TAG_PREFIX.length() + Integer.toString(version).length() + 1;
+    }
+
+    /**
+     * Puts back a tag read by {@link #ReadTagVersion(String)}.
+     * 
+     * @param version Version from {@link #ReadTagVersion(String)}.
+     * @param untagged Rest of the value after the tag.
+     * @return The stored value, {@code untagged} itself for version {@code 0}.
+     * @apiNote Added in version 1.5.
+     */
+    public static String RestoreTag(int version, String untagged) {
+        if(version == 0) return untagged;
+        return TAG_PREFIX + version + TAG_END + untagged;
+    }
+
+    /**
+     * Tags a value that was encrypted under the current key with its version.
+     * 
+     * @param encrypted Value from {@link #EncryptVigenere(char[], int, char[])}.
+     * @return The tagged value, {@code encrypted} itself if the current key is the built-in one.
+     * @apiNote Added in version 1.5.
+     */
+    public String TagCurrent(String encrypted) {
+        return Tag(CURRENT, encrypted);
+    }
+
+    /**
+     * Checks if a stored value was encrypted under the current key.
+     * 
+     * @param value Encrypted value, with or without a tag.
+     * @return {@code true} if it is, {@code false} if it needs re-encrypting.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean IsCurrent(String value) {
+        return GetTagVersion(value) == CURRENT._version;
+    }
+
+    /**
+     * Decrypts a stored value and encrypts it again under the current key.
+     * 
+     * @param value Encrypted value, with or without a tag.
+     * @return The value under the current key, {@code value} itself if it already is.
+     * @throws IllegalArgumentException If the value's key isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    public String Reencrypt(String value) {
+        if(IsCurrent(value)) return value;
+        return EncryptVigenere(DecryptVigenere(value));
+    }
     //#endregion FUNCTIONS
 
     //#region HELPER FUNCTIONS
@@ -65,6 +273,7 @@ public class Cryptographer {
      * @param plaintextDigit Digit from user input.
      * @param keyDigit Digit in associated place value from key.
      * @return The ecrypted digit.
+     * @apiNote Updated in version 1.5 to take the key digit from the precomputed shifts of a Key.
      */
     private int EncryptDigit(int plaintextDigit, int keyDigit) {
         return VIGENERE_TABLE[plaintextDigit][keyDigit];
@@ -77,14 +286,50 @@ public class Cryptographer {
      * @param ciphertextDigit Encrypted digit from database. 
      * @param keyDigit Digit in associated place value from key.
      * @return The decrypted digit.
+     * @apiNote Updated in version 1.5 to use {@link #INVERSE_TABLE} instead of searching each row.
      */
     private int DecryptDigit(int ciphertextDigit, int keyDigit) {
-        for(int i = 0; i < 10; i++) {
-            if(VIGENERE_TABLE[i][keyDigit] == ciphertextDigit) {
-                return i; // Return the index which is the plaintext digit.
-            }
+        return INVERSE_TABLE[ciphertextDigit][keyDigit];
+    }
+
+    /**
+     * Advances a key position, wrapping back to the start of the key.
+     * 
+     * @param index Current key position.
+     * @param keyLength Length of the key.
+     * @return Next key position.
+     * @apiNote Added in version 1.5 to replace {@code index % length} on every char.
+     */
+    private int NextIndex(int index, int keyLength) {
+        return ++index == keyLength ? 0 : index;
+    }
+
+    /**
+     * Looks up a key by version.
+     * 
+     * @param version Version of the key.
+     * @return The key.
+     * @throws IllegalArgumentException If no key has that version.
+     * @apiNote Added in version 1.5.
+     */
+    private Key GetKey(int version) {
+        if(version < 1 || version > KEYS.length) {
+            throw new IllegalArgumentException("Error finding key: no key has version " + version + ".");
         }
-        return -1; // Error case, should never get here.
+        return KEYS[version - 1];
+    }
+
+    /**
+     * Puts the tag of a key in front of a value encrypted under it.
+     * 
+     * @param key Key the value was encrypted under.
+     * @param encrypted Encrypted value.
+     * @return The tagged value, {@code encrypted} itself for the built-in key.
+     * @apiNote Added in version 1.5.
+     */
+    private String Tag(Key key, String encrypted) {
+        if(key._version == BUILT_IN_VERSION) return encrypted;
+        return TAG_PREFIX + key._version + TAG_END + encrypted;
     }
 
     /**
@@ -94,6 +339,7 @@ public class Cryptographer {
      * @param charToEncrypt Char from user input.
      * @param keyChar Char in associated place value from key.
      * @return The encrypted char.
+     * @apiNote Updated in version 1.5 to take the key char from the alphakey of any Key version.
      */
     private char EncryptChar(char charToEncrypt, char keyChar) {
         if(Character.isUpperCase(charToEncrypt)) {
@@ -109,6 +355,7 @@ public class Cryptographer {
      * @param charToDecrypt Encrypted char from database.
      * @param keyChar Char in associated place value from key.
      * @return The decrypted char.
+     * @apiNote Updated in version 1.5 to take the key char from the alphakey of any Key version.
      */
     private char DecryptChar(char charToDecrypt, char keyChar) {
         if(Character.isUpperCase(charToDecrypt)) {
@@ -123,80 +370,407 @@ public class Cryptographer {
      * Encrypts the password by shifting letters with the alphakey and numbers with the numberkey.
      * 
      * @param plaintext The user-entered password.
-     * @param alphakey The key used to shift alphabetic characters.
-     * @param numberkey The key used to shift numeric characters.
      * @return The encrypted password.
+     * @apiNote Updated in version 1.5 to run through {@link #EncryptVigenere(char[], int, char[])}.
+     * @apiNote Updated in version 1.5 to encrypt under the current key and tag the result.
      */
     public String EncryptVigenere(String plaintext) {
-        StringBuilder encryptedPassword = new StringBuilder();
+        return EncryptVigenere(plaintext, CURRENT._version);
+    }
+
+    /**
+     * Encrypts the password under a given key and tags the result with its version.
+     * 
+     * @param plaintext The user-entered password.
+     * @param version Version of the key to use.
+     * @return The tagged encrypted password.
+     * @throws IllegalArgumentException If no key has that version.
+     * @apiNote Added in version 1.5.
+     */
+    public String EncryptVigenere(String plaintext, int version) {
+        Key key = GetKey(version);
+        char[] buffer = plaintext.toCharArray();
+        int length = Encrypt(key, buffer, buffer.length, buffer);
+        return Tag(key, new String(buffer, 0, length));
+    }
+
+    /**
+     * Encrypts the first {@code length} chars of {@code plaintext} into {@code output}.
+     * Letters are shifted with the alphakey and digits with the numberkey, anything else is dropped.
+     * Nothing is allocated, so passwords never need to become Strings.
+     * 
+     * @param plaintext The user-entered password.
+     * @param length Number of chars of {@code plaintext} to encrypt.
+     * @param output Buffer with room for at least {@code length} chars. May be {@code plaintext} itself.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to encrypt under the current key. No tag is written.
+     */
+    public int EncryptVigenere(char[] plaintext, int length, char[] output) {
+        return Encrypt(CURRENT, plaintext, length, output);
+    }
+
+    /**
+     * Same as {@link #EncryptVigenere(char[], int, char[])} under a given key,
+     * for comparing against a value stored under an older one.
+     * 
+     * @param plaintext The user-entered password.
+     * @param length Number of chars of {@code plaintext} to encrypt.
+     * @param output Buffer with room for at least {@code length} chars. May be {@code plaintext} itself.
+     * @param version Version of the key to use.
+     * @return Number of chars written to {@code output}. No tag is written.
+     * @throws IllegalArgumentException If no key has that version.
+     * @apiNote Added in version 1.5.
+     */
+    public int EncryptVigenere(char[] plaintext, int length, char[] output, int version) {
+        return Encrypt(GetKey(version), plaintext, length, output);
+    }
+
+    /**
+     * Encrypts chars under a key.
+     * 
+     * @param key Key to use.
+     * @param plaintext The user-entered password.
+     * @param length Number of chars of {@code plaintext} to encrypt.
+     * @param output Buffer with room for at least {@code length} chars.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5. Moved out of {@link #EncryptVigenere(char[], int, char[])}.
+     */
+    private int Encrypt(Key key, char[] plaintext, int length, char[] output) {
+        int written = 0;
         int alphakeyIndex = 0;
         int numkeyIndex = 0;
 
-        for(int i = 0; i < plaintext.length(); i++) {
-            char currentChar = plaintext.charAt(i);
+        for(int i = 0; i < length; i++) {
+            char currentChar = plaintext[i];
 
-            if(Character.isLetter(currentChar)) {
-                // Encrypt letters using the alphakey.
-                char encryptedChar = EncryptChar(
-                    currentChar, 
-                    ALPHAKEY.charAt(alphakeyIndex % ALPHAKEY.length())
-                );
-                //if(Config.DEBUG) System.out.println("Encryption: " + currentChar + " -> " + encryptedChar);
-                encryptedPassword.append(encryptedChar);
-                alphakeyIndex++;
-            } 
+            if(currentChar >= 'A' && currentChar <= 'Z') {
+                output[written++] = (char)((currentChar - 'A' + key._alphaShifts[alphakeyIndex]) % 26 + 'A');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= 'a' && currentChar <= 'z') {
+                output[written++] = (char)((currentChar - 'a' + key._alphaShifts[alphakeyIndex]) % 26 + 'a');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= '0' && currentChar <= '9') {
+                output[written++] = (char)(EncryptDigit(currentChar - '0', key._numberShifts[numkeyIndex]) + '0');
+                numkeyIndex = NextIndex(numkeyIndex, key._numberShifts.length);
+            }
+            else if(Character.isLetter(currentChar)) {
+                // Non-ASCII letters keep the original behavior.
+                output[written++] = EncryptChar(currentChar, key._alphakey.charAt(alphakeyIndex));
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
             else if(Character.isDigit(currentChar)) {
-                // Encrypt digits using the numberkey.
-                int encryptedDigit = EncryptDigit(
-                    Character.getNumericValue(currentChar), 
-                    Character.getNumericValue(NUMBERKEY.charAt(numkeyIndex % NUMBERKEY.length()))
-                );
-                //if(Config.DEBUG) System.out.println("Encryption: " + currentChar + " -> " + encryptedDigit);
-                encryptedPassword.append(encryptedDigit);
-                numkeyIndex++;
+                // Non-ASCII digits keep the original behavior.
+                output[written++] = (char)(EncryptDigit(Character.getNumericValue(currentChar), key._numberShifts[numkeyIndex]) + '0');
+                numkeyIndex = NextIndex(numkeyIndex, key._numberShifts.length);
             }
         }
-        return encryptedPassword.toString();
+        return written;
+    }
+
+    /**
+     * Encrypts the first {@code length} chars of {@code plaintext} into {@code output} as ASCII bytes.
+     * 
+     * @param plaintext The user-entered password.
+     * @param length Number of chars of {@code plaintext} to encrypt.
+     * @param output Buffer with room for at least {@code length} bytes.
+     * @return Number of bytes written to {@code output}.
+     * @see #EncryptVigenere(char[], int, char[])
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to encrypt under the current key. No tag is written.
+     */
+    public int EncryptVigenere(char[] plaintext, int length, byte[] output) {
+        Key key = CURRENT;
+        int written = 0;
+        int alphakeyIndex = 0;
+        int numkeyIndex = 0;
+
+        for(int i = 0; i < length; i++) {
+            char currentChar = plaintext[i];
+
+            if(currentChar >= 'A' && currentChar <= 'Z') {
+                output[written++] = (byte)((currentChar - 'A' + key._alphaShifts[alphakeyIndex]) % 26 + 'A');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= 'a' && currentChar <= 'z') {
+                output[written++] = (byte)((currentChar - 'a' + key._alphaShifts[alphakeyIndex]) % 26 + 'a');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= '0' && currentChar <= '9') {
+                output[written++] = (byte)(EncryptDigit(currentChar - '0', key._numberShifts[numkeyIndex]) + '0');
+                numkeyIndex = NextIndex(numkeyIndex, key._numberShifts.length);
+            }
+            // Non-ASCII chars can't be stored as single bytes and are dropped.
+        }
+        return written;
     }
 
     /**
      * Decrypts the password by shifting letters with the alphakey and numbers with the numberkey.
      * 
      * @param encryptedPassword The encrypted password to decrypt.
-     * @param alphakey The key used to shift alphabetic characters.
-     * @param numberkey The key used to shift numeric characters.
      * @return The decrypted password.
+     * @throws IllegalArgumentException If the password's tag names a key that isn't known.
+     * @apiNote Updated in version 1.5 to run through {@link #DecryptVigenere(char[], int, char[])}.
+     * @apiNote Updated in version 1.5 to decrypt under the key named by the password's tag.
      */
     public String DecryptVigenere(String encryptedPassword) {
-        StringBuilder decryptedPassword = new StringBuilder();
+        Key key = GetKey(GetTagVersion(encryptedPassword));
+        char[] buffer = encryptedPassword.substring(GetTagLength(encryptedPassword)).toCharArray();
+        int length = Decrypt(key, buffer, buffer.length, buffer);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Decrypts the first {@code length} chars of {@code ciphertext} into {@code output}.
+     * 
+     * @param ciphertext The encrypted password to decrypt.
+     * @param length Number of chars of {@code ciphertext} to decrypt.
+     * @param output Buffer with room for at least {@code length} chars. May be {@code ciphertext} itself.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to decrypt untagged chars under the current key.
+     */
+    public int DecryptVigenere(char[] ciphertext, int length, char[] output) {
+        return Decrypt(CURRENT, ciphertext, length, output);
+    }
+
+    /**
+     * Same as {@link #DecryptVigenere(char[], int, char[])} under a given key.
+     * 
+     * @param ciphertext The encrypted password to decrypt, without its tag.
+     * @param length Number of chars of {@code ciphertext} to decrypt.
+     * @param output Buffer with room for at least {@code length} chars. May be {@code ciphertext} itself.
+     * @param version Version of the key to use.
+     * @return Number of chars written to {@code output}.
+     * @throws IllegalArgumentException If no key has that version.
+     * @apiNote Added in version 1.5.
+     */
+    public int DecryptVigenere(char[] ciphertext, int length, char[] output, int version) {
+        return Decrypt(GetKey(version), ciphertext, length, output);
+    }
+
+    /**
+     * Decrypts chars under a key.
+     * 
+     * @param key Key to use.
+     * @param ciphertext The encrypted password to decrypt.
+     * @param length Number of chars of {@code ciphertext} to decrypt.
+     * @param output Buffer with room for at least {@code length} chars.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5. Moved out of {@link #DecryptVigenere(char[], int, char[])}.
+     */
+    private int Decrypt(Key key, char[] ciphertext, int length, char[] output) {
+        int written = 0;
         int alphakeyIndex = 0;
         int numkeyIndex = 0;
-    
-        for(int i = 0; i < encryptedPassword.length(); i++) {
-            char currentChar = encryptedPassword.charAt(i);
-
-            if(Character.isLetter(currentChar)) {
-                // Decrypt letters using the alphakey.
-                char decryptedChar = DecryptChar(
-                    currentChar, 
-                    ALPHAKEY.charAt(alphakeyIndex % ALPHAKEY.length())
-                );
-                //if(Config.DEBUG) System.out.println("Decryption: " + currentChar + " -> " + decryptedChar);
-                decryptedPassword.append(decryptedChar);
-                alphakeyIndex++;
-            } 
+
+        for(int i = 0; i < length; i++) {
+            char currentChar = ciphertext[i];
+
+            if(currentChar >= 'A' && currentChar <= 'Z') {
+                output[written++] = (char)((currentChar - 'A' - key._alphaShifts[alphakeyIndex] + 26) % 26 + 'A');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= 'a' && currentChar <= 'z') {
+                output[written++] = (char)((currentChar - 'a' - key._alphaShifts[alphakeyIndex] + 26) % 26 + 'a');
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
+            else if(currentChar >= '0' && currentChar <= '9') {
+                output[written++] = (char)(DecryptDigit(currentChar - '0', key._numberShifts[numkeyIndex]) + '0');
+                numkeyIndex = NextIndex(numkeyIndex, key._numberShifts.length);
+            }
+            else if(Character.isLetter(currentChar)) {
+                output[written++] = DecryptChar(currentChar, key._alphakey.charAt(alphakeyIndex));
+                alphakeyIndex = NextIndex(alphakeyIndex, key._alphaShifts.length);
+            }
             else if(Character.isDigit(currentChar)) {
-                // Decrypt digits using the numberkey.
-                int decryptedDigit = DecryptDigit(
-                    Character.getNumericValue(currentChar), 
-                    Character.getNumericValue(NUMBERKEY.charAt(numkeyIndex % NUMBERKEY.length()))
-                );
-                //if(Config.DEBUG) System.out.println("Decryption: " + currentChar + " -> " + decryptedDigit);
-                decryptedPassword.append(decryptedDigit);
-                numkeyIndex++;
+                output[written++] = (char)(DecryptDigit(Character.getNumericValue(currentChar), key._numberShifts[numkeyIndex]) + '0');
+                numkeyIndex = NextIndex(numkeyIndex, key._numberShifts.length);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Encrypts many values under the current key and tags them, the same as calling
+     * {@link #EncryptVigenere(String)} on each. Meant for imports and other bulk work.
+     * 
+     * @param plaintexts Values to encrypt. {@code null} entries are passed through.
+     * @return The tagged encrypted values, in the same order.
+     * @apiNote Added in version 1.5.
+     */
+    public String[] EncryptAll(String[] plaintexts) {
+        return Bulk(plaintexts, false, true);
+    }
+
+    /**
+     * Decrypts many values under the keys named by their tags, the same as calling
+     * {@link #DecryptVigenere(String)} on each.
+     * 
+     * @param encrypted Values to decrypt. {@code null} entries are passed through.
+     * @return The decrypted values, in the same order.
+     * @throws IllegalArgumentException If a value's tag names a key that isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    public String[] DecryptAll(String[] encrypted) {
+        return Bulk(encrypted, true, false);
+    }
+
+    /**
+     * Moves many values over to the current key, the same as calling {@link #Reencrypt(String)} on each.
+     * 
+     * @param encrypted Values to re-encrypt. {@code null} entries are passed through.
+     * @return The values under the current key, in the same order.
+     * @throws IllegalArgumentException If a value's tag names a key that isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    public String[] ReencryptAll(String[] encrypted) {
+        return Bulk(encrypted, true, true);
+    }
+
+    /**
+     * Runs a bulk function, reusing one pair of char buffers for every value.
+     * 
+     * @param values Values to transform.
+     * @param decrypt {@code true} to decrypt each value under the key named by its tag first.
+     * @param encrypt {@code true} to encrypt each value under the current key and tag it.
+     * @return The transformed values, in the same order.
+     * @throws IllegalArgumentException If a value's tag names a key that isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    private String[] Bulk(String[] values, boolean decrypt, boolean encrypt) {
+        String[] results = new String[values.length];
+        char[] input = new char[64];
+        char[] output = new char[64];
+
+        for(int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if(value == null || (decrypt && encrypt && IsCurrent(value))) {
+                results[i] = value;
+                continue;
+            }
+
+            int offset = decrypt ? GetTagLength(value) : 0;
+            int length = value.length() - offset;
+            if(input.length < length) {
+                input = new char[Math.max(length, input.length * 2)];
+                output = new char[input.length];
+            }
+            value.getChars(offset, value.length(), input, 0);
+
+            if(decrypt) {
+                length = BulkDecrypt(GetKey(GetTagVersion(value)), input, length, output);
+                if(encrypt) {
+                    char[] swap = input;
+                    input = output;
+                    output = swap;
+                }
+            }
+            if(encrypt) {
+                length = BulkEncrypt(CURRENT, input, length, output);
             }
+            String result = new String(output, 0, length);
+            results[i] = encrypt ? Tag(CURRENT, result) : result;
         }
-        return decryptedPassword.toString();
+
+        Arrays.fill(input, '\0');
+        Arrays.fill(output, '\0');
+        return results;
+    }
+
+    /**
+     * Encrypts one value of a bulk function, on the VectorCipher if it can take the value.
+     * 
+     * @param key Key to use.
+     * @param input Plain chars.
+     * @param length Number of chars of {@code input} to encrypt.
+     * @param output Buffer with room for at least {@code length} chars. Must not be {@code input}.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5.
+     */
+    private int BulkEncrypt(Key key, char[] input, int length, char[] output) {
+        if(key._vectorCipher != null) {
+            int written = key._vectorCipher.Encrypt(input, length, output);
+            if(written >= 0) return written;
+        }
+        return Encrypt(key, input, length, output);
+    }
+
+    /**
+     * Decrypts one value of a bulk function, on the VectorCipher if it can take the value.
+     * 
+     * @param key Key to use.
+     * @param input Encrypted chars, without a tag.
+     * @param length Number of chars of {@code input} to decrypt.
+     * @param output Buffer with room for at least {@code length} chars. Must not be {@code input}.
+     * @return Number of chars written to {@code output}.
+     * @apiNote Added in version 1.5.
+     */
+    private int BulkDecrypt(Key key, char[] input, int length, char[] output) {
+        if(key._vectorCipher != null) {
+            int written = key._vectorCipher.Decrypt(input, length, output);
+            if(written >= 0) return written;
+        }
+        return Decrypt(key, input, length, output);
     }
     //#endregion ENCRYPTION FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * One version of the alphakey and numberkey with their shifts precomputed.
+     */
+    private static class Key {
+        private final int _version;
+        private final String _alphakey;
+        private final String _numberkey;
+
+        /**
+         * Shift applied at each position of {@link #_alphakey}, precomputed from the key chars.
+         */
+        private final int[] _alphaShifts;
+
+        /**
+         * Digit value at each position of {@link #_numberkey}.
+         */
+        private final int[] _numberShifts;
+
+        /**
+         * Vectorized cipher for the bulk functions, {@code null} if they run on the scalar loop.
+         */
+        private final VectorCipher _vectorCipher;
+
+        /**
+         * Constructs a key and precomputes its shifts.
+         * 
+         * @param version Version of the key.
+         * @param alphakey Uppercase letters A-Z.
+         * @param numberkey Digits 0-9.
+         * @throws IllegalArgumentException If either key is empty or has other chars.
+         * @apiNote Added in version 1.5.
+         */
+        private Key(int version, String alphakey, String numberkey) {
+            if(alphakey.isEmpty() || !alphakey.chars().allMatch(c -> c >= 'A' && c <= 'Z')
+                || numberkey.isEmpty() || !numberkey.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw new IllegalArgumentException(
+                    "Error reading key " + version + ": the alphakey must be A-Z and the numberkey 0-9."
+                );
+            }
+            _version = version;
+            _alphakey = alphakey;
+            _numberkey = numberkey;
+            _alphaShifts = new int[alphakey.length()];
+            for(int i = 0; i < _alphaShifts.length; i++) {
+                _alphaShifts[i] = alphakey.charAt(i) - 'A';
+            }
+            _numberShifts = new int[numberkey.length()];
+            for(int i = 0; i < _numberShifts.length; i++) {
+                _numberShifts[i] = numberkey.charAt(i) - '0';
+            }
+            _vectorCipher = VECTOR_BULK ? new VectorCipher(_alphaShifts, _numberShifts) : null;
+        }
+    }
+    //#endregion NESTED CLASSES
 }
\ No newline at end of file
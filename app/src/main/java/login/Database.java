@@ -1,10 +1,20 @@
 package login;
 
 //#region IMPORTS
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import com.google.common.cache.CacheStats;
 //#endregion IMPORTS
 
 /**
@@ -15,39 +25,188 @@ import java.util.List;
  * It populates the database, and provides functions for querying.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @see Cryptographer
  * @see User
+ * @see UsernameCache
+ * @see UsernameFilter
+ * @see UserExporter
+ * @see UserLog
+ * @see UserSnapshot
+ * @see UserStore
+ * @see KeyRotator
+ * @see UserImporter
  * @apiNote Added in version 1.4. UserService class was refactored into this class in version 1.4.
+ * @apiNote Added a hash index keyed by encrypted username in version 1.5.
+ * @apiNote Singleton uses the holder idiom in version 1.5. User storage was moved to concurrent
+ * collections so lookups never take a lock.
+ * @apiNote Users and password changes are persisted to a write-ahead UserLog in version 1.5.
+ * The log is replayed on startup and the default users are only added to an empty log.
+ * @apiNote A memory-mapped UserSnapshot is taken periodically in version 1.5. On startup the
+ * Users are looked up straight from the snapshot and only the log written after it is replayed.
+ * @apiNote The login info file is written in the background by a UserExporter in version 1.5.
+ * @apiNote Users are kept in a UserStore in version 1.5, chosen with the {@code login.store}
+ * system property ({@code heap} by default, {@code columnar} or {@code offheap}).
+ * @apiNote Entered usernames are resolved through a UsernameCache in version 1.5.
+ * @apiNote Unknown usernames are rejected by a UsernameFilter before the UserStore
+ * is searched in version 1.5.
+ * @apiNote Users can be re-encrypted under a new key while the database stays online in
+ * version 1.5. They are copied into a second UserStore that replaces the first once every
+ * User is in it. New Users and password changes go to both stores in the meantime.
+ * @apiNote Users can be added in batches in version 1.5, so the UserImporter publishes a whole
+ * chunk of a file with one hold of the write lock and one wait on the UserLog.
  */
 public class Database {
     //#region SERVICES
     private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    private final DelayScheduler _delayScheduler = DelayScheduler.GetInstance();
     //#endregion SERVICES
 
     //#region CONSTANTS
     /**
-     * Stores a list of User objects to function as a database.
+     * Directory the log, snapshot and export are kept in, from {@code -Dlogin.data.dir}.
+     * Defaults to the working directory.
+     */
+    private static final Path DATA_DIR = Paths.get(System.getProperty("login.data.dir", "."));
+
+    /**
+     * File the UserLog is kept in.
+     */
+    private static final String LOG_FILE = "user_log.dat";
+
+    /**
+     * File the latest UserSnapshot is kept in.
+     */
+    private static final String SNAPSHOT_FILE = "user_snapshot.dat";
+
+    /**
+     * Time between snapshots in milliseconds.
+     */
+    private static final long SNAPSHOT_INTERVAL = 10 * 60 * 1000;
+
+    /**
+     * File the login info is exported to.
+     */
+    private static final String EXPORT_FILE = "user_info.txt";
+
+    /**
+     * Which UserStore to keep the Users in.
+     */
+    private static final String STORE_TYPE = System.getProperty("login.store", "heap");
+
+    /**
+     * How long a UserStore that was replaced after a re-key is kept before it is closed,
+     * so sessions still holding one of its Users can finish.
      */
-    private final List<User> _users;
+    private static final long RETIRED_STORE_DELAY = 10 * 60 * 1000;
+
+    /**
+     * Held while a change is applied and queued in the log so the
+     * log records changes in the same order they were made in memory.
+     * Not held while waiting for the flush, so concurrent changes share one.
+     */
+    private final Object _writeLock = new Object();
+
+    /**
+     * Held while a snapshot is taken so only one is written at a time.
+     */
+    private final Object _snapshotLock = new Object();
     //#endregion CONSTANTS
 
+    //#region VARIABLES
+    /**
+     * Stores the Users added since the snapshot was taken, and the Users of the snapshot
+     * that were looked up, to function as a database.
+     * Replaced by {@link #_rekeyStore} when a re-key finishes.
+     */
+    private volatile UserStore _store;
+
+    /**
+     * Users of the snapshot that were moved into {@link #_store} on their first lookup.
+     * They are in both, so they are only counted once.
+     */
+    private final AtomicInteger _movedUsers = new AtomicInteger();
+
+    /**
+     * Store the Users re-encrypted under the current key are copied into while a re-key
+     * runs, {@code null} otherwise. Searched before {@link #_store}.
+     */
+    private volatile UserStore _rekeyStore = null;
+
+    /**
+     * Write-ahead log of every change, {@code null} if it couldn't be opened
+     * and the database is running in memory only.
+     */
+    private final UserLog _userLog;
+
+    /**
+     * Snapshot loaded on startup, {@code null} if there wasn't one.
+     * Users in it are only turned into User objects when they are looked up,
+     * and are then kept in {@link #_store}.
+     * Dropped when a re-key finishes, since every User in it was copied.
+     */
+    private volatile UserSnapshot _snapshot;
+
+    /**
+     * Writes the login info file off the calling thread.
+     */
+    private final UserExporter _exporter;
+
+    /**
+     * Recently entered usernames with their encrypted username and User.
+     */
+    private final UsernameCache _usernameCache;
+
+    /**
+     * Bloom filter over every encrypted username in the database.
+     */
+    private final UsernameFilter _usernameFilter;
+
+    /**
+     * Set once every username in the snapshot is in {@link #_usernameFilter}.
+     * Until then the filter is not used to reject usernames.
+     */
+    private volatile boolean _filterReady = false;
+
+    /**
+     * Log position the last written snapshot is up to date with.
+     */
+    private long _snapshotPosition = -1;
+    private volatile boolean _closed = false;
+    //#endregion VARIABLES
+
     //#region SINGLETON PATTERN
-    private static Database _instance = null;
+    private static class InstanceHolder {
+        private static final Database INSTANCE = new Database();
+    }
     
     /**
-     * Constructs a new ArrayList to store the Users and populates the database.
+     * Constructs the UserStore to store the Users, maps the UserSnapshot
+     * and replays the UserLog written after it.
+     * The database is only populated with the default users if both are empty.
+     * @apiNote Updated in version 1.5 to load the Users from the UserSnapshot and UserLog
+     * instead of always populating the defaults.
      */
     private Database() {
-        _users = new ArrayList<>();
-        PopulateDatabase();
+        _store = CreateStore(STORE_TYPE);
+        _snapshot = OpenSnapshot();
+        _usernameFilter = new UsernameFilter(_snapshot == null ? 0 : _snapshot.GetUserCount());
+        _userLog = OpenLog();
+        // An off-heap store would be pointless if the exporter kept every password on the heap.
+        _exporter = new UserExporter(DATA_DIR.resolve(EXPORT_FILE), this::ForEachUser, !"offheap".equals(STORE_TYPE));
+        _usernameCache = new UsernameCache(this::GetUserByEncryptedUsername);
+        if(_snapshot != null) {
+            _snapshotPosition = _snapshot.GetLogPosition();
+        }
+        if(GetUserCount() == 0) {
+            PopulateDatabase();
+        }
+        FillUsernameFilter();
+        ScheduleSnapshot();
     }
 
     public static Database GetInstance() {
-        if(_instance == null) {
-            _instance = new Database();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
@@ -62,20 +221,444 @@ public class Database {
      * @apiNote Reverted in version 1.2 to use record class getter functions.
      * Also checks based on encrypted username now.
      * @apiNote Reverted again in version 1.3 to use normal gettter functions.
+     * @apiNote Updated in version 1.5 to use a hash index instead of a stream scan.
+     * @apiNote Updated in version 1.5 to go through the UsernameCache.
      */
     public User GetUserByUsername(String username) {
-        String encryptedUsername = _cryptographer.EncryptVigenere(username);
+        return ResolveUsername(username).GetUser();
+    }
+
+    /**
+     * Encrypts and looks up an entered username through the UsernameCache,
+     * so usernames that log in often skip both.
+     * 
+     * @param username Username of the User object to find.
+     * @return The encrypted username and the found {@code User}, which is {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public UsernameCache.Entry ResolveUsername(String username) {
+        return _usernameCache.Resolve(username);
+    }
 
-        return _users.stream()
-                     .filter(user -> user.GetUsername().equals(encryptedUsername))
-                     .findFirst()
-                     .orElse(null);
+    /**
+     * Queries the database by an already encrypted username.
+     * 
+     * @param encryptedUsername Encrypted username of the User object to find.
+     * @return The found {@code User} in the database, {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to fall back to the snapshot. A User found there
+     * is moved into the UserStore so every lookup after it returns the same User.
+     * @apiNote Updated in version 1.5 to look the User up in the UserStore.
+     * @apiNote Updated in version 1.5 to reject usernames the UsernameFilter has never seen.
+     * @apiNote Updated in version 1.5 to search the re-key store first while a re-key runs.
+     */
+    public User GetUserByEncryptedUsername(String encryptedUsername) {
+        if(_filterReady && !_usernameFilter.MightContain(encryptedUsername)) return null;
+
+        UserStore rekeyStore = _rekeyStore;
+        if(rekeyStore != null) {
+            User user = rekeyStore.Get(encryptedUsername);
+            if(user != null) return user;
+        }
+        return FindUser(encryptedUsername);
+    }
+
+    /**
+     * Encrypts and looks up an entered username without going through the UsernameCache,
+     * for bulk checks that shouldn't push out the Users that are logging in.
+     * 
+     * @param username Username of the User object to find.
+     * @return The encrypted username and the found {@code User}, which is {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public UsernameCache.Entry FindUsername(String username) {
+        return _usernameCache.Load(username);
+    }
+
+    /**
+     * Returns the number of users in the database.
+     * 
+     * @return Number of stored users.
+     * @apiNote Added in version 1.5.
+     */
+    public int GetUserCount() {
+        UserSnapshot snapshot = _snapshot;
+        return (snapshot == null ? 0 : snapshot.GetUserCount() - _movedUsers.get()) + _store.Size();
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the UsernameCache.
+     * 
+     * @return Statistics since the Database was started.
+     * @apiNote Added in version 1.5.
+     */
+    public CacheStats GetUsernameCacheStats() {
+        return _usernameCache.GetStats();
+    }
+
+    /**
+     * Returns the UsernameFilter so its size, false positive rate and rejections can be read.
+     * 
+     * @return The filter over every encrypted username.
+     * @apiNote Added in version 1.5.
+     */
+    public UsernameFilter GetUsernameFilter() {
+        return _usernameFilter;
+    }
+
+    /**
+     * Passes the encrypted username of every User to the action, without
+     * loading the Users in the snapshot.
+     * 
+     * @param action Receives each encrypted username.
+     * @apiNote Added in version 1.5.
+     */
+    public void ForEachUsername(Consumer<String> action) {
+        UserSnapshot snapshot = _snapshot;
+        if(snapshot != null) {
+            snapshot.ForEachUsername(action);
+        }
+        _store.ForEach(user -> {
+            if(snapshot == null || !snapshot.Contains(user.GetUsername())) action.accept(user.GetUsername());
+        });
+    }
+
+    /**
+     * Passes every User to the action, taking the loaded User object over the
+     * snapshot's copy where there is one. Users that were re-encrypted under a
+     * newer key are passed once, in their newest form.
+     * Users of the snapshot that were never looked up aren't loaded by this, so a
+     * full walk doesn't grow the UserStore.
+     * 
+     * @param action Receives each User. Users from the snapshot that were never
+     * looked up are read-only copies, changes go through
+     * {@link #GetUserByEncryptedUsername(String)}.
+     * @apiNote Added in version 1.5. Moved out of {@link #CopyUsers()}.
+     */
+    public void ForEachUser(Consumer<User> action) {
+        ForEachUser(action, true);
+    }
+
+    /**
+     * Same as {@link #ForEachUser(Consumer)}, but leaves out the Users already
+     * copied into the re-key store.
+     * 
+     * @param action Receives each User that still has to be copied.
+     * @see KeyRotator
+     * @apiNote Added in version 1.5.
+     */
+    public void ForEachUserToRekey(Consumer<User> action) {
+        ForEachUser(action, false);
     }
     //#endregion QUERY FUNCTIONS
 
+    //#region UPDATE FUNCTIONS
+    /**
+     * Adds a User to the database and its username index.
+     * Returns once the new User is written to the UserLog.
+     * The UserStore may keep a copy, so changes should be made on the User
+     * returned by {@link #GetUserByEncryptedUsername(String)}.
+     * 
+     * @param user User object with an encrypted username.
+     * @return {@code true} if the user was added, {@code false} if the username is already taken.
+     * @throws IllegalArgumentException If the username or password is too long for the UserLog.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to add the User to the re-key store too while a re-key runs.
+     * @apiNote Updated in version 1.5 to refuse Users too long to log before they are stored.
+     */
+    public boolean AddUser(User user) {
+        CheckFits(user.GetUsername(), user.GetPassword());
+        CompletableFuture<Void> written = null;
+        synchronized(_writeLock) {
+            UserStore rekeyStore = _rekeyStore;
+            if(rekeyStore != null && rekeyStore.Get(user.GetUsername()) != null) {
+                return false;
+            }
+            if(!Insert(user)) {
+                return false;
+            }
+            if(rekeyStore != null) {
+                // Copied now, since the KeyRotator may already be past where it lands in the store.
+                rekeyStore.Add(user);
+            }
+            if(_userLog != null) {
+                written = _userLog.AppendCreateUser(user.GetUsername(), user.GetPassword(), user.GetCode());
+            }
+        }
+        _exporter.MarkDirty(user);
+        AwaitWrite(written);
+        return true;
+    }
+
+    /**
+     * Adds a batch of Users to the database and its username index in one step.
+     * The write lock is taken once for the whole batch and the call returns once the
+     * last User is written to the UserLog, so a batch costs about as much to publish
+     * as a single User.
+     * 
+     * @param users User objects with encrypted usernames.
+     * @return Whether each User was added, in the same order. A User is not added if its
+     * username is already taken, including by an earlier User in the same batch, or if it
+     * is too long for the UserLog.
+     * @see UserImporter
+     * @apiNote Added in version 1.5.
+     */
+    public boolean[] AddUsers(User[] users) {
+        boolean[] added = new boolean[users.length];
+        CompletableFuture<Void> written = null;
+        synchronized(_writeLock) {
+            UserStore rekeyStore = _rekeyStore;
+            for(int i = 0; i < users.length; i++) {
+                User user = users[i];
+                if(!UserLog.Fits(user.GetUsername()) || !UserLog.Fits(user.GetPassword())) continue;
+                if(rekeyStore != null && rekeyStore.Get(user.GetUsername()) != null) continue;
+                if(!Insert(user)) continue;
+                if(rekeyStore != null) {
+                    rekeyStore.Add(user);
+                }
+                if(_userLog != null) {
+                    written = _userLog.AppendCreateUser(user.GetUsername(), user.GetPassword(), user.GetCode());
+                }
+                added[i] = true;
+            }
+        }
+        for(int i = 0; i < users.length; i++) {
+            if(added[i]) {
+                _exporter.MarkDirty(users[i]);
+            }
+        }
+        // Records are written in order, so the last one being on disk covers the rest.
+        AwaitWrite(written);
+        return added;
+    }
+
+    /**
+     * Sets a new password for a User in the database.
+     * Returns once the change is written to the UserLog.
+     * 
+     * @param user User object from this database.
+     * @param encryptedPassword New encrypted password.
+     * @throws IllegalArgumentException If the password is too long for the UserLog.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to also change the copy of a User that was re-encrypted.
+     */
+    public void UpdatePassword(User user, String encryptedPassword) {
+        CheckFits(encryptedPassword);
+        CompletableFuture<Void> written = null;
+        User target;
+        synchronized(_writeLock) {
+            target = GetNewestCopy(user);
+            target.SetPassword(encryptedPassword);
+            if(target != user) {
+                user.SetPassword(encryptedPassword);
+            }
+            if(_userLog != null) {
+                written = _userLog.AppendPasswordChange(target.GetUsername(), encryptedPassword);
+            }
+        }
+        _exporter.MarkDirty(target);
+        AwaitWrite(written);
+    }
+
+    /**
+     * Sets a new password for a User only if the stored password is still
+     * {@code expectedPassword}, so a rehash never overwrites a password
+     * that was changed while it was being computed.
+     * Returns once the change is written to the UserLog.
+     * 
+     * @param user User object from this database.
+     * @param expectedPassword Password the new one was derived from.
+     * @param newPassword New encrypted or hashed password.
+     * @return {@code true} if the password was replaced, {@code false} if it had changed.
+     * @throws IllegalArgumentException If the new password is too long for the UserLog.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean ReplacePassword(User user, String expectedPassword, String newPassword) {
+        CheckFits(newPassword);
+        CompletableFuture<Void> written = null;
+        User target;
+        synchronized(_writeLock) {
+            target = GetNewestCopy(user);
+            if(!Objects.equals(target.GetPassword(), expectedPassword)) {
+                return false;
+            }
+            target.SetPassword(newPassword);
+            if(target != user) {
+                user.SetPassword(newPassword);
+            }
+            if(_userLog != null) {
+                written = _userLog.AppendPasswordChange(target.GetUsername(), newPassword);
+            }
+        }
+        _exporter.MarkDirty(target);
+        AwaitWrite(written);
+        return true;
+    }
+
+    /**
+     * Starts a re-key by creating the empty UserStore that re-encrypted Users are copied into.
+     * 
+     * @return {@code true} if it was started, {@code false} if a re-key is already running.
+     * @see KeyRotator
+     * @apiNote Added in version 1.5.
+     */
+    public boolean BeginRekey() {
+        synchronized(_writeLock) {
+            if(_rekeyStore != null) return false;
+            _rekeyStore = CreateStore(STORE_TYPE);
+            return true;
+        }
+    }
+
+    /**
+     * Copies a chunk of Users into the re-key store and logs each one whose username
+     * or password changed. The copies are made by the caller beforehand so the lock is
+     * only held to check and insert them. If a User's password changed since its copy
+     * was made, it is copied again under the lock.
+     * Returns once the chunk is written to the UserLog.
+     * 
+     * @param sources Users as they were when the copies were made.
+     * @param copies Re-encrypted copies, in the same order as {@code sources}.
+     * @param rekey Makes a new copy of a User whose password changed.
+     * @return Number of Users copied. Users that were removed or are already in the re-key store aren't.
+     * @apiNote Added in version 1.5.
+     */
+    public int RekeyUsers(User[] sources, User[] copies, UnaryOperator<User> rekey) {
+        CompletableFuture<Void> written = null;
+        int copied = 0;
+        synchronized(_writeLock) {
+            UserStore rekeyStore = _rekeyStore;
+            if(rekeyStore == null) return 0;
+
+            for(int i = 0; i < sources.length; i++) {
+                // Read without moving the User out of the snapshot, only its copy is kept.
+                User live = PeekUser(sources[i].GetUsername());
+                if(live == null) continue;
+                User copy = Objects.equals(live.GetPassword(), sources[i].GetPassword()) ? copies[i] : rekey.apply(live);
+
+                // Added to the filter first so a lookup never misses a User that is in the store.
+                _usernameFilter.Put(copy.GetUsername());
+                if(!rekeyStore.Add(copy)) continue;
+                copied++;
+                if(_userLog != null && (!copy.GetUsername().equals(live.GetUsername())
+                    || !Objects.equals(copy.GetPassword(), live.GetPassword()))) {
+                    written = _userLog.AppendRekeyUser(live.GetUsername(), copy.GetUsername(), copy.GetPassword());
+                }
+            }
+        }
+        // Records are written in order, so the last one being on disk covers the rest.
+        AwaitWrite(written);
+        return copied;
+    }
+
+    /**
+     * Finishes a re-key: the re-key store replaces the UserStore, the snapshot is
+     * dropped and a new snapshot is taken so a restart doesn't need the old one.
+     * The UserExporter rebuilds its lines, since every encrypted username changed.
+     * The old store is closed once sessions that may still hold its Users are done.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void FinishRekey() {
+        UserStore retired;
+        synchronized(_writeLock) {
+            if(_rekeyStore == null) return;
+            retired = _store;
+            _store = _rekeyStore;
+            _rekeyStore = null;
+            _snapshot = null;
+            _movedUsers.set(0);
+        }
+        _usernameCache.InvalidateAll();
+        _exporter.Reload();
+        synchronized(_snapshotLock) {
+            _snapshotPosition = -1;
+        }
+        TakeSnapshot();
+        _delayScheduler.Delay(RETIRED_STORE_DELAY).thenRunAsync(retired::Close);
+    }
+
+    /**
+     * Stops a re-key before every User was copied and drops the re-key store.
+     * The Users already copied were logged, so they are re-encrypted after a restart,
+     * and the next re-key skips their old copies.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void AbortRekey() {
+        UserStore rekeyStore;
+        synchronized(_writeLock) {
+            rekeyStore = _rekeyStore;
+            _rekeyStore = null;
+        }
+        if(rekeyStore != null) {
+            _usernameCache.InvalidateAll();
+            _delayScheduler.Delay(RETIRED_STORE_DELAY).thenRunAsync(rekeyStore::Close);
+        }
+    }
+    //#endregion UPDATE FUNCTIONS
+
     //#region FUNCTIONS
     /**
-     * Populates the database {@link #_users} with provided usernames and MFA codes.
+     * Finishes any requested export, takes a final snapshot,
+     * waits for queued changes to be written, closes the UserLog and releases the UserStore.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void Close() {
+        _exporter.Close();
+        if(_userLog != null) {
+            TakeSnapshot();
+            _closed = true;
+            try {
+                _userLog.close();
+            }
+            catch(IOException e) {
+                System.err.println("Error closing user log: " + e.getMessage());
+            }
+        }
+        _store.Close();
+        UserStore rekeyStore = _rekeyStore;
+        if(rekeyStore != null) {
+            rekeyStore.Close();
+        }
+    }
+
+    /**
+     * Writes a UserSnapshot of every User if anything changed since the last one.
+     * Changes made while it is written are not blocked. They are replayed from
+     * the UserLog on top of the snapshot, which is safe since replaying a
+     * change twice gives the same result.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void TakeSnapshot() {
+        if(_userLog == null) return;
+        synchronized(_snapshotLock) {
+            long position;
+            synchronized(_writeLock) {
+                position = _userLog.GetAppendPosition();
+            }
+            if(position == _snapshotPosition) return;
+
+            List<User> users = CopyUsers();
+            try {
+                // The log must reach the snapshot's position before anything relies on it.
+                _userLog.Flush().join();
+                UserSnapshot.Write(DATA_DIR.resolve(SNAPSHOT_FILE), users, position);
+                _snapshotPosition = position;
+            }
+            catch(IOException e) {
+                System.err.println("Error writing user snapshot: " + e.getMessage());
+            }
+            catch(CompletionException e) {
+                System.err.println("Error writing user snapshot: " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Populates the database with provided usernames and MFA codes.
      * 
      * @see Cryptographer
      * @see User
@@ -86,19 +669,20 @@ public class Database {
      * and replace them with null values. Passwords are set during login now.
      * @apiNote Updated in version 1.4 to use overloaded constructor which takes
      * only the username and MFA Code and sets password to null by default.
+     * @apiNote Updated in version 1.5 to go through {@link #AddUser(User)} so the index is populated.
      */
     private void PopulateDatabase() {
-        _users.add(new User(
+        AddUser(new User(
                 _cryptographer.EncryptVigenere("scientist"), 
                 1374628910
             )
         );
-        _users.add(new User(
+        AddUser(new User(
                 _cryptographer.EncryptVigenere("engineer"), 
                 2039485712
             )
         );
-        _users.add(new User(
+        AddUser(new User(
                 _cryptographer.EncryptVigenere("security"), 
                 1748392023
             )
@@ -106,22 +690,339 @@ public class Database {
     }
 
     /**
-     * Creates/updates a text file to print out the usernames and hashed passwords.
+     * Requests the text file with the usernames and hashed passwords to be created/updated.
+     * Returns right away, the file is written by the UserExporter in the background and
+     * requests made while it is being written are combined into one more write.
      * 
+     * @return Future completed once the file has been written.
      * @apiNote Added in version 1.0.
      * @apiNote Updated in version 1.1 to use new getter functions.
      * @apiNote Reverted in version 1.2 to use record class getter functions like version 1.0.
      * @apiNote Renamed from OutputDatabaseToFile to GenerateFile in version 1.4.
+     * @apiNote Updated in version 1.5 to include the Users in the snapshot.
+     * @apiNote Updated in version 1.5 to hand the export to the UserExporter instead of
+     * rewriting the whole file on the calling thread.
      */
-    public void GenerateFile() {
-        try(FileWriter writer = new FileWriter("user_info.txt")) {
-            for(User user : _users) {
-                writer.write(user.GetUsername() + ":" + user.GetPassword() + "\n");
-            }
+    public CompletableFuture<Void> GenerateFile() {
+        return _exporter.Export();
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Maps the latest UserSnapshot.
+     * 
+     * @return The mapped snapshot, {@code null} if there is none or it couldn't be read.
+     * @apiNote Added in version 1.5.
+     */
+    private UserSnapshot OpenSnapshot() {
+        try {
+            return UserSnapshot.Open(DATA_DIR.resolve(SNAPSHOT_FILE));
         }
         catch(IOException e) {
-            System.err.println("Error writing to file: " + e.getMessage());
+            System.err.println("Error opening user snapshot: " + e.getMessage());
+            return null;
         }
     }
-    //#endregion FUNCTIONS
+
+    /**
+     * Opens the UserLog and replays what was written after the snapshot into the database.
+     * 
+     * @return The opened log, {@code null} if it couldn't be opened.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to start from the snapshot's log position.
+     * @apiNote Updated in version 1.5 to replay re-encrypted Users.
+     * @apiNote Updated in version 1.5 to create the data directory if it doesn't exist.
+     */
+    private UserLog OpenLog() {
+        UserLog userLog = null;
+        try {
+            Files.createDirectories(DATA_DIR);
+            userLog = new UserLog(DATA_DIR.resolve(LOG_FILE));
+            userLog.Replay(new UserLog.ReplayHandler() {
+                @Override
+                public void OnCreateUser(String encryptedUsername, String encryptedPassword, int code) {
+                    Insert(new User(encryptedUsername, encryptedPassword, code));
+                }
+
+                @Override
+                public void OnPasswordChange(String encryptedUsername, String encryptedPassword) {
+                    User user = GetUserByEncryptedUsername(encryptedUsername);
+                    if(user != null) {
+                        user.SetPassword(encryptedPassword);
+                    }
+                }
+
+                @Override
+                public void OnRekeyUser(String encryptedUsername, String newEncryptedUsername, String newEncryptedPassword) {
+                    // The old copy is left in place. Lookups try the newest key first, and
+                    // ForEachUser and the next re-key skip copies that were superseded.
+                    User existing = GetUserByEncryptedUsername(newEncryptedUsername);
+                    if(existing != null) {
+                        existing.SetPassword(newEncryptedPassword);
+                        return;
+                    }
+                    User user = GetUserByEncryptedUsername(encryptedUsername);
+                    if(user != null) {
+                        Insert(new User(newEncryptedUsername, newEncryptedPassword, user.GetCode()));
+                    }
+                }
+            }, _snapshot == null ? 0 : _snapshot.GetLogPosition());
+            return userLog;
+        }
+        catch(IOException e) {
+            System.err.println("Error opening user log: " + e.getMessage());
+            if(userLog != null) {
+                try {
+                    userLog.close();
+                }
+                catch(IOException ignored) {}
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Adds a User to the collections without logging it.
+     * 
+     * @param user User object with an encrypted username.
+     * @return {@code true} if the user was added, {@code false} if the username is already taken.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean Insert(User user) {
+        UserSnapshot snapshot = _snapshot;
+        if(snapshot != null && snapshot.Contains(user.GetUsername())) {
+            return false;
+        }
+        // Added to the filter first so a lookup never misses a User that is in the store.
+        _usernameFilter.Put(user.GetUsername());
+        return _store.Add(user);
+    }
+
+    /**
+     * Adds the usernames in the snapshot to the UsernameFilter on a pool thread,
+     * then starts using the filter. Usernames added since startup are already in it.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void FillUsernameFilter() {
+        UserSnapshot snapshot = _snapshot;
+        if(snapshot == null) {
+            _filterReady = true;
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            snapshot.ForEachUsername(_usernameFilter::Put);
+            _filterReady = true;
+        });
+    }
+
+    /**
+     * Creates the UserStore the Users are kept in.
+     * 
+     * @param type {@code heap}, {@code columnar} or {@code offheap}.
+     * @return The new store. Unknown types fall back to a HeapUserStore.
+     * @apiNote Added in version 1.5.
+     */
+    private static UserStore CreateStore(String type) {
+        switch(type) {
+            case "columnar":
+                return new ColumnarUserStore();
+            case "offheap":
+                return new OffHeapUserStore();
+            case "heap":
+                return new HeapUserStore();
+            default:
+                System.err.println("Error creating user store: unknown type \"" + type + "\", using heap.");
+                return new HeapUserStore();
+        }
+    }
+
+    /**
+     * Copies every User into a list, taking the loaded User object
+     * over the snapshot's copy where there is one.
+     * 
+     * @return Users in the snapshot followed by the Users added since.
+     * @apiNote Added in version 1.5.
+     */
+    private List<User> CopyUsers() {
+        List<User> users = new ArrayList<>(GetUserCount());
+        ForEachUser(users::add);
+        return users;
+    }
+
+    /**
+     * Walks the snapshot and UserStore, skipping Users that have a newer copy,
+     * and then the re-key store if asked to.
+     * 
+     * @param action Receives each User.
+     * @param includeRekeyStore Whether to walk the re-key store too.
+     * @apiNote Added in version 1.5.
+     */
+    private void ForEachUser(Consumer<User> action, boolean includeRekeyStore) {
+        UserSnapshot snapshot;
+        UserStore store;
+        UserStore rekeyStore;
+        // Read together so a re-key finishing part way through can't pass a User twice.
+        synchronized(_writeLock) {
+            snapshot = _snapshot;
+            store = _store;
+            rekeyStore = _rekeyStore;
+        }
+
+        Consumer<User> live = user -> {
+            if(!IsSuperseded(user, rekeyStore)) action.accept(user);
+        };
+        if(snapshot != null) {
+            snapshot.ForEach(user -> {
+                User moved = store.Get(user.GetUsername());
+                live.accept(moved != null ? moved : user);
+            });
+            // Users moved out of the snapshot were passed above, whenever they were moved.
+            store.ForEach(user -> {
+                if(!snapshot.Contains(user.GetUsername())) live.accept(user);
+            });
+        }
+        else {
+            store.ForEach(live);
+        }
+        if(includeRekeyStore && rekeyStore != null) {
+            rekeyStore.ForEach(action);
+        }
+    }
+
+    /**
+     * Queries the snapshot and UserStore by encrypted username, without the re-key store.
+     * 
+     * @param encryptedUsername Encrypted username of the User object to find.
+     * @return The found {@code User}, {@code null} if not found.
+     * @apiNote Added in version 1.5. Moved out of {@link #GetUserByEncryptedUsername(String)}.
+     */
+    private User FindUser(String encryptedUsername) {
+        UserStore store = _store;
+        User user = store.Get(encryptedUsername);
+        UserSnapshot snapshot = _snapshot;
+        if(user != null || snapshot == null) return user;
+
+        user = snapshot.Find(encryptedUsername);
+        if(user == null) return null;
+        if(store.Add(user)) {
+            _movedUsers.incrementAndGet();
+        }
+        // The store may keep a view instead, and another thread may have moved the User first.
+        return store.Get(encryptedUsername);
+    }
+
+    /**
+     * Reads a User from the UserStore or the snapshot without moving it out of the snapshot,
+     * for the bulk walks that only read.
+     * 
+     * @param encryptedUsername Encrypted username of the User object to find.
+     * @return The found {@code User}, a read-only copy if it is only in the snapshot,
+     * {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    private User PeekUser(String encryptedUsername) {
+        User user = _store.Get(encryptedUsername);
+        UserSnapshot snapshot = _snapshot;
+        if(user != null || snapshot == null) return user;
+        return snapshot.Find(encryptedUsername);
+    }
+
+    /**
+     * Checks if a User is in the UserStore or the snapshot without building it.
+     * 
+     * @param encryptedUsername Encrypted username to check.
+     * @return {@code true} if a User has that username, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean ContainsUser(String encryptedUsername) {
+        if(_store.Get(encryptedUsername) != null) return true;
+        UserSnapshot snapshot = _snapshot;
+        return snapshot != null && snapshot.Contains(encryptedUsername);
+    }
+
+    /**
+     * Finds the copy of a User under the current key, so a change made through a User
+     * object from before a re-key lands on the copy that will be kept.
+     * The caller must hold {@link #_writeLock}.
+     * 
+     * @param user User object from this database.
+     * @return The re-encrypted copy, {@code user} itself if there is none.
+     * @apiNote Added in version 1.5.
+     */
+    private User GetNewestCopy(User user) {
+        String username = user.GetUsername();
+        if(_rekeyStore == null && _cryptographer.IsCurrent(username)) return user;
+
+        User newest = GetUserByEncryptedUsername(_cryptographer.Reencrypt(username));
+        return newest != null ? newest : user;
+    }
+
+    /**
+     * Checks if a User in the snapshot or UserStore has a newer copy, either in the
+     * re-key store or under the current key after a re-key that was stopped early.
+     * 
+     * @param user User from the snapshot or UserStore.
+     * @param rekeyStore Re-key store, {@code null} if no re-key is running.
+     * @return {@code true} if the User should be skipped in favor of its newer copy.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean IsSuperseded(User user, UserStore rekeyStore) {
+        String username = user.GetUsername();
+        if(rekeyStore == null && _cryptographer.IsCurrent(username)) return false;
+
+        String current = _cryptographer.Reencrypt(username);
+        if(rekeyStore != null && rekeyStore.Get(current) != null) return true;
+        return !current.equals(username) && ContainsUser(current);
+    }
+
+    /**
+     * Schedules the next periodic snapshot on the DelayScheduler.
+     * The snapshot itself is written on a pool thread so it doesn't hold up the wheel.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void ScheduleSnapshot() {
+        if(_userLog == null) return;
+        _delayScheduler.Delay(SNAPSHOT_INTERVAL).thenRunAsync(() -> {
+            if(_closed) return;
+            TakeSnapshot();
+            ScheduleSnapshot();
+        });
+    }
+
+    /**
+     * Checks that usernames or passwords can be written to the UserLog,
+     * so nothing is stored that couldn't be logged.
+     * 
+     * @param values Encrypted usernames or passwords, may contain {@code null}.
+     * @throws IllegalArgumentException If a value is longer than {@link UserLog#MAX_VALUE_LENGTH}.
+     * @apiNote Added in version 1.5.
+     */
+    private static void CheckFits(String... values) {
+        for(String value : values) {
+            if(!UserLog.Fits(value)) {
+                throw new IllegalArgumentException("Value is too long for the user log.");
+            }
+        }
+    }
+
+    /**
+     * Waits for a change to reach the UserLog.
+     * The change is kept in memory even if the write fails.
+     * 
+     * @param written Future returned by the UserLog, {@code null} if there is no log.
+     * @apiNote Added in version 1.5.
+     */
+    private void AwaitWrite(CompletableFuture<Void> written) {
+        if(written == null) return;
+        try {
+            written.join();
+        }
+        catch(CompletionException e) {
+            System.err.println("Error writing to user log: " + e.getCause().getMessage());
+        }
+    }
+    //#endregion HELPER FUNCTIONS
 }
\ No newline at end of file
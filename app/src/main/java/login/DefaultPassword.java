@@ -12,11 +12,13 @@ import java.security.SecureRandom;
  * for a User if too many manual attempts to set the new password have failed.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @apiNote Added in version 1.3.
  * @apiNote Rewrote CreateDefaultPassword function and moved to 
  * PasswordHandler class in version 1.4.
  * Updated minor logic and code formattting.
+ * @apiNote Singleton uses the holder idiom in version 1.5. SecureRandom is already thread-safe.
+ * Password length limits now come from the Validation password policy.
  */
 public class DefaultPassword {
     //#region CONSTANTS
@@ -24,26 +26,24 @@ public class DefaultPassword {
     private final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
     private final String DIGITS    = "0123456789";
     private final String ALPHA_NUM = UPPERCASE + LOWERCASE + DIGITS;
-    private final int MIN_PASSWORD_LENGTH = 8;
-    private final int MAX_PASSWORD_LENGTH = 12;
     //#endregion CONSTANTS
 
     //#region SERVICES
+    private final Validation _validation = Validation.GetInstance();
     private final SecureRandom random;
     //#endregion SERVICES
 
     //#region SINGLETON PATTERN
-    private static DefaultPassword _instance = null;
+    private static class InstanceHolder {
+        private static final DefaultPassword INSTANCE = new DefaultPassword();
+    }
 
     private DefaultPassword() {
         random = new SecureRandom();
     }
 
     public static DefaultPassword GetInstance() {
-        if(_instance == null) {
-            _instance = new DefaultPassword();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
@@ -54,10 +54,14 @@ public class DefaultPassword {
      * @return Newly generated and shuffled password from {@link #ShufflePassword(String)}.
      * @apiNote Added in verison 1.3.
      * @apiNote Updated in version 1.4 to handle debug message printing.
+     * @apiNote Updated in version 1.5 to take the length limits from the current password policy.
      */
     public String GeneratePassword() {
-        // Pick random length between 8-12 chars (included).
-        int passwordLength = random.nextInt(MAX_PASSWORD_LENGTH - MIN_PASSWORD_LENGTH + 1) + MIN_PASSWORD_LENGTH;
+        // Pick random length within the policy limits (included), at least 3 for the required pools.
+        InputPolicy policy = _validation.GetPasswordPolicy();
+        int minLength = Math.max(policy.GetMinLength(), 3);
+        int maxLength = Math.max(policy.GetMaxLength(), minLength);
+        int passwordLength = random.nextInt(maxLength - minLength + 1) + minLength;
 
         StringBuilder password = new StringBuilder(passwordLength);
 
@@ -0,0 +1,200 @@
+package login;
+
+//#region IMPORTS
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: DelayScheduler.java
+ * 
+ * The DelayScheduler class runs delayed tasks on a hashed timing wheel.
+ * A single worker thread advances the wheel one tick at a time and runs
+ * every task whose deadline has passed, so any number of pending delays
+ * costs one thread instead of one sleeping thread per delay.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see FailureBackoff
+ * @apiNote Added in version 1.5 to replace Thread.sleep() brute force delays.
+ * @implNote Tasks run on the wheel thread and must be short. Completing a
+ * future returned by {@link #Delay(long)} is fine, blocking work is not.
+ */
+public class DelayScheduler {
+    //#region CONSTANTS
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE  = 512; // Must be a power of two.
+    private static final int WHEEL_MASK  = WHEEL_SIZE - 1;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Buckets of timeouts. Only touched by the wheel thread.
+     */
+    private final ArrayDeque<Timeout>[] _wheel;
+
+    /**
+     * Timeouts scheduled by other threads, moved into {@link #_wheel} each tick.
+     */
+    private final Queue<Timeout> _pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread _worker;
+    private final long _startNanos;
+    private long _tick;
+    private volatile boolean _running = true;
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final DelayScheduler INSTANCE = new DelayScheduler();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private DelayScheduler() {
+        _wheel = new ArrayDeque[WHEEL_SIZE];
+        for(int i = 0; i < WHEEL_SIZE; i++) {
+            _wheel[i] = new ArrayDeque<>();
+        }
+        _startNanos = System.nanoTime();
+        _worker = new Thread(this::Run, "login-delay-wheel");
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+
+    public static DelayScheduler GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region FUNCTIONS
+    /**
+     * Schedules a task to run after the given delay.
+     * 
+     * @param millis Delay in milliseconds. Values {@code <= 0} run on the next tick.
+     * @param task Task to run on the wheel thread.
+     * @apiNote Added in version 1.5.
+     */
+    public void Schedule(long millis, Runnable task) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+        _pending.add(new Timeout(deadline, task));
+    }
+
+    /**
+     * Returns a future that completes after the given delay
+     * without parking the calling thread.
+     * 
+     * @param millis Delay in milliseconds.
+     * @return Future completed by the wheel thread once the delay has passed.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> Delay(long millis) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Schedule(millis, () -> future.complete(null));
+        return future;
+    }
+
+    /**
+     * Stops the wheel thread. Timeouts that have not fired yet are dropped.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void Shutdown() {
+        _running = false;
+        LockSupport.unpark(_worker);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Wheel thread loop. Waits for each tick, moves pending timeouts
+     * into their buckets and expires the current bucket.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Run() {
+        while(_running) {
+            WaitForNextTick();
+            TransferPending();
+            ExpireBucket(_wheel[(int)(_tick & WHEEL_MASK)]);
+            _tick++;
+        }
+    }
+
+    /**
+     * Parks the wheel thread until the start of the next tick.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void WaitForNextTick() {
+        long deadline = _startNanos + (_tick + 1) * TICK_NANOS;
+        long remaining;
+        while(_running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Moves timeouts scheduled since the last tick into the bucket
+     * for their deadline, recording how many full turns of the wheel they must wait.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void TransferPending() {
+        Timeout timeout;
+        while((timeout = _pending.poll()) != null) {
+            long targetTick = (timeout._deadline - _startNanos + TICK_NANOS - 1) / TICK_NANOS;
+            targetTick = Math.max(targetTick, _tick);
+            timeout._rounds = (targetTick - _tick) / WHEEL_SIZE;
+            _wheel[(int)(targetTick & WHEEL_MASK)].add(timeout);
+        }
+    }
+
+    /**
+     * Runs every timeout in the bucket with no rounds left
+     * and counts down the rest.
+     * 
+     * @param bucket Bucket for the current tick.
+     * @apiNote Added in version 1.5.
+     */
+    private void ExpireBucket(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while(iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if(timeout._rounds > 0) {
+                timeout._rounds--;
+                continue;
+            }
+            iterator.remove();
+            try {
+                timeout._task.run();
+            }
+            catch(RuntimeException e) {
+                // Keep the wheel running if one task fails.
+                System.err.println("Delayed task failed: " + e.getMessage());
+            }
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * A task waiting in the wheel.
+     */
+    private static class Timeout {
+        private final long _deadline;
+        private final Runnable _task;
+        private long _rounds;
+
+        private Timeout(long deadline, Runnable task) {
+            _deadline = deadline;
+            _task = task;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package login;
+
+//#region IMPORTS
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: FailureBackoff.java
+ * 
+ * The FailureBackoff class tracks consecutive failed attempts per username
+ * and works out how long the next failed attempt should be delayed.
+ * The delay starts at one second and doubles with every failure in a row
+ * up to a cap, and resets after a successful login or a quiet period.
+ * At most {@link #MAX_TRACKED_KEYS} usernames are tracked. Once that many are
+ * failing at the same time, a new username gets the first delay without
+ * starting a streak, so a flood of made-up usernames can't push real Users
+ * to the longest delay on their first typo.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see DelayScheduler
+ * @apiNote Added in version 1.5.
+ */
+public class FailureBackoff {
+    //#region CONSTANTS
+    private static final long BASE_DELAY_MILLIS = 1000;
+    private static final long MAX_DELAY_MILLIS  = 30_000;
+    private static final long RESET_AFTER_NANOS = TimeUnit.MINUTES.toNanos(15);
+    private static final int MAX_TRACKED_KEYS   = 100_000;
+    private static final long PRUNE_INTERVAL    = TimeUnit.SECONDS.toNanos(1);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Failure streak per username.
+     */
+    private final Map<String, Streak> _streaks = new ConcurrentHashMap<>();
+
+    /**
+     * {@link System#nanoTime()} of the last prune.
+     */
+    private final AtomicLong _lastPrune = new AtomicLong(System.nanoTime());
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final FailureBackoff INSTANCE = new FailureBackoff();
+    }
+
+    private FailureBackoff() {}
+
+    public static FailureBackoff GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region FUNCTIONS
+    /**
+     * Records a failed attempt for the username.
+     * 
+     * @param username Username the attempt was made against.
+     * @return Delay in milliseconds to apply before answering the attempt.
+     * @apiNote Added in version 1.5.
+     */
+    public long RecordFailure(String username) {
+        long now = System.nanoTime();
+        if(_streaks.size() >= MAX_TRACKED_KEYS) {
+            PruneExpired(now);
+            // Still full, so this is a flood. Untracked usernames get the first delay instead of a new streak.
+            if(_streaks.size() >= MAX_TRACKED_KEYS && !_streaks.containsKey(username)) {
+                return BASE_DELAY_MILLIS;
+            }
+        }
+
+        Streak streak = _streaks.compute(username, (key, current) -> {
+            if(current == null || now - current._lastFailure > RESET_AFTER_NANOS) {
+                return new Streak(1, now);
+            }
+            return new Streak(current._failures + 1, now);
+        });
+
+        // 1s, 2s, 4s, ... capped at MAX_DELAY_MILLIS. Shift is capped to avoid overflow.
+        int shift = Math.min(streak._failures - 1, 30);
+        return Math.min(BASE_DELAY_MILLIS << shift, MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Clears the failure streak for the username after a successful login.
+     * 
+     * @param username Username that logged in.
+     * @apiNote Added in version 1.5.
+     */
+    public void RecordSuccess(String username) {
+        _streaks.remove(username);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Drops streaks that have been quiet long enough to reset,
+     * so attempts against many made-up usernames don't grow the map forever.
+     * Runs at most once every {@link #PRUNE_INTERVAL}, so a flood of failures
+     * doesn't scan the map on every attempt.
+     * 
+     * @param now Current {@link System#nanoTime()}.
+     * @apiNote Added in version 1.5.
+     */
+    private void PruneExpired(long now) {
+        long last = _lastPrune.get();
+        if(now - last < PRUNE_INTERVAL || !_lastPrune.compareAndSet(last, now)) return;
+
+        _streaks.values().removeIf(streak -> now - streak._lastFailure > RESET_AFTER_NANOS);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * Immutable failure count and time of the last failure.
+     */
+    private static class Streak {
+        private final int _failures;
+        private final long _lastFailure;
+
+        private Streak(int failures, long lastFailure) {
+            _failures = failures;
+            _lastFailure = lastFailure;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package login;
+
+//#region IMPORTS
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: HeapUserStore.java
+ * 
+ * The HeapUserStore class keeps each User as its own object on the heap,
+ * in a concurrent queue with a hash index keyed by encrypted username.
+ * This is how the Database stored Users before version 1.5 and is the default store.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserStore
+ * @apiNote Added in version 1.5. Moved out of the Database class.
+ */
+public class HeapUserStore implements UserStore {
+    //#region CONSTANTS
+    /**
+     * Stores a list of User objects to function as a database.
+     * Kept in insertion order so the exported file is stable.
+     */
+    private final Queue<User> _users = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Hash index over {@link #_users} keyed by encrypted username.
+     * Kept in sync by {@link #Add(User)} so lookups don't scan the list.
+     */
+    private final Map<String, User> _usersByName = new ConcurrentHashMap<>();
+    //#endregion CONSTANTS
+
+    //#region FUNCTIONS
+    @Override
+    public User Get(String encryptedUsername) {
+        return _usersByName.get(encryptedUsername);
+    }
+
+    @Override
+    public boolean Add(User user) {
+        if(_usersByName.putIfAbsent(user.GetUsername(), user) != null) {
+            return false;
+        }
+        _users.add(user);
+        return true;
+    }
+
+    @Override
+    public int Size() {
+        return _usersByName.size();
+    }
+
+    @Override
+    public void ForEach(Consumer<User> action) {
+        _users.forEach(action);
+    }
+    //#endregion FUNCTIONS
+}
\ No newline at end of file
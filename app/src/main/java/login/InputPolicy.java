@@ -0,0 +1,181 @@
+package login;
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: InputPolicy.java
+ * 
+ * The InputPolicy class holds the rules user input is checked against:
+ * length limits, required character classes, the allowed alphabet and
+ * forbidden characters. The rules are compiled once into a lookup table
+ * over ASCII so a check is a single pass over the input that reports
+ * every violated rule as a PolicyViolation bitmask.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see PolicyViolation
+ * @see Validation
+ * @apiNote Added in version 1.5 to replace the fixed checks in Validation.
+ */
+public class InputPolicy {
+    //#region CONSTANTS
+    /**
+     * Character class bits stored in {@link #CLASS_TABLE}.
+     * The first three are also used for {@code requiredClasses}.
+     */
+    public static final int UPPERCASE     = 1;
+    public static final int LOWERCASE     = 1 << 1;
+    public static final int DIGIT         = 1 << 2;
+    private static final int ALLOWED      = 1 << 3;
+    private static final int FORBIDDEN    = 1 << 4;
+
+    /**
+     * Characters that could be used for SQL Injection.
+     */
+    public static final String SQL_CHARACTERS = "/\\()<>'\"+-=;|\n\r";
+
+    /**
+     * Letters and digits (A-Z, a-z, 0-9).
+     */
+    public static final String ALPHANUMERIC =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /**
+     * Class bits for every char outside ASCII, filled in by the constructor.
+     */
+    private final int NON_ASCII_CLASS;
+
+    /**
+     * Class bits for each ASCII char, compiled from the rules in the constructor.
+     */
+    private final byte[] CLASS_TABLE = new byte[128];
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final int _minLength;
+    private final int _maxLength;
+    private final int _requiredClasses;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Compiles a policy from its rules.
+     * 
+     * @param minLength Minimum number of chars (included).
+     * @param maxLength Maximum number of chars (included).
+     * @param requiredClasses Bitwise OR of {@link #UPPERCASE}, {@link #LOWERCASE} and {@link #DIGIT}
+     * that must each appear at least once, {@code 0} for none.
+     * @param allowedChars Only these chars may appear, {@code null} to allow everything that isn't forbidden.
+     * @param forbiddenChars Chars that may never appear, {@code null} for none.
+     * @apiNote Added in version 1.5.
+     */
+    public InputPolicy(int minLength, int maxLength, int requiredClasses,
+                       String allowedChars, String forbiddenChars) {
+        if(minLength < 0 || maxLength < minLength) {
+            throw new IllegalArgumentException("Policy lengths must satisfy 0 <= min <= max.");
+        }
+        _minLength = minLength;
+        _maxLength = maxLength;
+        _requiredClasses = requiredClasses & (UPPERCASE | LOWERCASE | DIGIT);
+
+        for(char c = 0; c < 128; c++) {
+            int charClass = 0;
+            if(c >= 'A' && c <= 'Z') charClass |= UPPERCASE;
+            else if(c >= 'a' && c <= 'z') charClass |= LOWERCASE;
+            else if(c >= '0' && c <= '9') charClass |= DIGIT;
+
+            if(allowedChars == null || allowedChars.indexOf(c) >= 0) charClass |= ALLOWED;
+            if(forbiddenChars != null && forbiddenChars.indexOf(c) >= 0) charClass |= FORBIDDEN;
+            CLASS_TABLE[c] = (byte)charClass;
+        }
+        // Non-ASCII chars are never counted towards a required class.
+        NON_ASCII_CLASS = allowedChars == null ? ALLOWED : 0;
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public int GetMinLength()       { return _minLength;       }
+    public int GetMaxLength()       { return _maxLength;       }
+    public int GetRequiredClasses() { return _requiredClasses; }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Checks the first {@code length} chars of the input against every rule in one pass.
+     * 
+     * @param input User-entered data.
+     * @param length Number of chars of {@code input} to check.
+     * @return Bitmask of PolicyViolation masks, {@code 0} if the input passes.
+     * @apiNote Added in version 1.5.
+     */
+    public int Check(char[] input, int length) {
+        if(length == 0) return PolicyViolation.EMPTY.Mask();
+
+        int seen = 0;
+        int notAllowed = 0;
+        for(int i = 0; i < length; i++) {
+            int charClass = ClassOf(input[i]);
+            seen |= charClass;
+            notAllowed |= ~charClass;
+        }
+        return Violations(length, seen, notAllowed);
+    }
+
+    /**
+     * Checks the input against every rule in one pass.
+     * 
+     * @param input User-entered data.
+     * @return Bitmask of PolicyViolation masks, {@code 0} if the input passes.
+     * @see #Check(char[], int)
+     * @apiNote Added in version 1.5.
+     */
+    public int Check(String input) {
+        int length = input.length();
+        if(length == 0) return PolicyViolation.EMPTY.Mask();
+
+        int seen = 0;
+        int notAllowed = 0;
+        for(int i = 0; i < length; i++) {
+            int charClass = ClassOf(input.charAt(i));
+            seen |= charClass;
+            notAllowed |= ~charClass;
+        }
+        return Violations(length, seen, notAllowed);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Looks up the class bits of a char.
+     * 
+     * @param c Char from the input.
+     * @return Class bits for the char.
+     * @apiNote Added in version 1.5.
+     */
+    private int ClassOf(char c) {
+        return c < 128 ? CLASS_TABLE[c] : NON_ASCII_CLASS;
+    }
+
+    /**
+     * Turns the results of a pass into the violation bitmask.
+     * 
+     * @param length Length of the input.
+     * @param seen Bitwise OR of the class bits of every char.
+     * @param notAllowed Bitwise OR of the inverted class bits of every char.
+     * @return Bitmask of PolicyViolation masks.
+     * @apiNote Added in version 1.5.
+     */
+    private int Violations(int length, int seen, int notAllowed) {
+        int violations = 0;
+        if(length < _minLength) violations |= PolicyViolation.TOO_SHORT.Mask();
+        if(length > _maxLength) violations |= PolicyViolation.TOO_LONG.Mask();
+        if((seen & FORBIDDEN) != 0) violations |= PolicyViolation.FORBIDDEN_CHARACTER.Mask();
+        if((notAllowed & ALLOWED) != 0) violations |= PolicyViolation.INVALID_CHARACTER.Mask();
+
+        int missing = _requiredClasses & ~seen;
+        if((missing & UPPERCASE) != 0) violations |= PolicyViolation.MISSING_UPPERCASE.Mask();
+        if((missing & LOWERCASE) != 0) violations |= PolicyViolation.MISSING_LOWERCASE.Mask();
+        if((missing & DIGIT) != 0) violations |= PolicyViolation.MISSING_DIGIT.Mask();
+        return violations;
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
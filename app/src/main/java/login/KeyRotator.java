@@ -0,0 +1,305 @@
+package login;
+
+//#region IMPORTS
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: KeyRotator.java
+ * 
+ * The KeyRotator class re-encrypts every User under the current Cryptographer
+ * key while the Database keeps serving logins.
+ * Users are walked in chunks on a low-priority background thread. Each chunk is
+ * re-encrypted on the common pool and handed to the Database, which copies it
+ * into a second UserStore and logs it. Lookups try the current key and then the
+ * older ones, so a User logs in the same before, during and after their copy is
+ * made. Once every User is copied the Database switches over to the new store.
+ * Hashed passwords don't depend on the key and are copied as they are.
+ * Each chunk goes through the Cryptographer's bulk functions, so it runs on SIMD
+ * lanes when the JVM has the Vector API.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @see Database
+ * @apiNote Added in version 1.5.
+ */
+public class KeyRotator {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    private final Database _database = Database.GetInstance();
+    //#endregion SERVICES
+
+    //#region CONSTANTS
+    /**
+     * Users re-encrypted by one task and copied under one hold of the Database's lock.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Users re-encrypted per second, from {@code -Dlogin.rekey.rate}.
+     */
+    private static final int RATE = Math.max(1, Integer.getInteger("login.rekey.rate", 50_000));
+
+    /**
+     * Chunks in flight at once. Half the cores, so logins always have some to themselves.
+     */
+    private static final int MAX_IN_FLIGHT = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private Thread _rotator;
+    private volatile boolean _rotating = false;
+    private volatile long _rotateTotal = 0;
+
+    private final LongAdder _scanned = new LongAdder();
+    private final LongAdder _rekeyed = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final KeyRotator INSTANCE = new KeyRotator();
+    }
+
+    private KeyRotator() {}
+
+    public static KeyRotator GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region GETTERS
+    public long GetScanned()    { return _scanned.sum(); }
+    public long GetRekeyed()    { return _rekeyed.sum(); }
+    public boolean IsRotating() { return _rotating;      }
+
+    /**
+     * Returns how far through the Users the re-key is.
+     * 
+     * @return Fraction of Users scanned between {@code 0} and {@code 1},
+     * {@code 0} if no re-key has started.
+     * @apiNote Added in version 1.5.
+     */
+    public double GetProgress() {
+        long total = _rotateTotal;
+        return total == 0 ? 0 : Math.min(1, (double)_scanned.sum() / total);
+    }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Checks if any User is still stored under an older key.
+     * 
+     * @return {@code true} if a re-key would change something, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean NeedsRekey() {
+        boolean[] found = { false };
+        _database.ForEachUser(user -> {
+            if(found[0]) return;
+            String password = user.GetPassword();
+            found[0] = !_cryptographer.IsCurrent(user.GetUsername())
+                || (password != null && !PasswordHasher.IsHash(password) && !_cryptographer.IsCurrent(password));
+        });
+        return found[0];
+    }
+
+    /**
+     * Starts re-encrypting every User on a low-priority background thread.
+     * Does nothing if a re-key is already running or nothing needs it.
+     * 
+     * @return {@code true} if a re-key was started, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized boolean Start() {
+        if(_rotating || !NeedsRekey() || !_database.BeginRekey()) return false;
+        _rotating = true;
+        _rotateTotal = _database.GetUserCount();
+        _scanned.reset();
+        _rekeyed.reset();
+        _rotator = new Thread(this::Rotate, "login-key-rotator");
+        _rotator.setDaemon(true);
+        _rotator.setPriority(Thread.MIN_PRIORITY);
+        _rotator.start();
+        return true;
+    }
+
+    /**
+     * Stops the re-key and waits for the chunks in flight to be written.
+     * The Users copied so far stay re-encrypted, the rest are done by the next re-key.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void Stop() {
+        if(!_rotating) return;
+        _rotating = false;
+        LockSupport.unpark(_rotator);
+        try {
+            _rotator.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Rotator thread loop. Walks every User once, then switches the Database over
+     * or drops the copies if it was stopped.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Rotate() {
+        long start = System.nanoTime();
+        long interval = TimeUnit.SECONDS.toNanos(CHUNK_SIZE) / RATE;
+        long[] nextSlot = { start };
+        Queue<CompletableFuture<Integer>> inFlight = new ArrayDeque<>(MAX_IN_FLIGHT);
+        User[][] chunk = { new User[CHUNK_SIZE] };
+        int[] size = { 0 };
+
+        _database.ForEachUserToRekey(user -> {
+            // The Database has no way to stop part way, so the rest are passed over.
+            if(!_rotating) return;
+            _scanned.increment();
+            chunk[0][size[0]++] = user;
+            if(size[0] < CHUNK_SIZE) return;
+
+            WaitUntil(nextSlot[0]);
+            nextSlot[0] = Math.max(nextSlot[0], System.nanoTime()) + interval;
+            Submit(chunk[0], inFlight);
+            chunk[0] = new User[CHUNK_SIZE];
+            size[0] = 0;
+        });
+        if(_rotating && size[0] > 0) {
+            User[] last = new User[size[0]];
+            System.arraycopy(chunk[0], 0, last, 0, size[0]);
+            Submit(last, inFlight);
+        }
+        while(!inFlight.isEmpty()) {
+            Await(inFlight.poll());
+        }
+
+        if(_rotating) {
+            _database.FinishRekey();
+            _rotating = false;
+            System.out.println(
+                "Key rotation to version " + _cryptographer.GetKeyVersion() + " finished: "
+                + _scanned.sum() + " scanned, " + _rekeyed.sum() + " re-encrypted in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms."
+            );
+        }
+        else {
+            _database.AbortRekey();
+        }
+    }
+
+    /**
+     * Re-encrypts a chunk on the common pool and copies it into the Database,
+     * waiting for the oldest chunk first if too many are in flight.
+     * 
+     * @param sources Users to re-encrypt.
+     * @param inFlight Chunks that aren't written yet.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to copy the chunk with the Cryptographer's bulk functions.
+     */
+    private void Submit(User[] sources, Queue<CompletableFuture<Integer>> inFlight) {
+        if(inFlight.size() == MAX_IN_FLIGHT) {
+            Await(inFlight.poll());
+        }
+        inFlight.add(CompletableFuture.supplyAsync(() -> _database.RekeyUsers(sources, RekeyAll(sources), this::Rekey)));
+    }
+
+    /**
+     * Makes copies of a chunk of Users under the current key with the bulk functions.
+     * 
+     * @param sources Users to copy.
+     * @return The copies, in the same order.
+     * @apiNote Added in version 1.5.
+     */
+    private User[] RekeyAll(User[] sources) {
+        String[] usernames = new String[sources.length];
+        String[] passwords = new String[sources.length];
+        String[] encrypted = new String[sources.length];
+        for(int i = 0; i < sources.length; i++) {
+            usernames[i] = sources[i].GetUsername();
+            passwords[i] = sources[i].GetPassword();
+            if(passwords[i] != null && !PasswordHasher.IsHash(passwords[i])) {
+                encrypted[i] = passwords[i];
+            }
+        }
+
+        User[] copies = new User[sources.length];
+        try {
+            usernames = _cryptographer.ReencryptAll(usernames);
+            encrypted = _cryptographer.ReencryptAll(encrypted);
+        }
+        catch(IllegalArgumentException e) {
+            // A value is under a key that isn't known, so the chunk is copied one User at a time.
+            for(int i = 0; i < sources.length; i++) {
+                copies[i] = Rekey(sources[i]);
+            }
+            return copies;
+        }
+        for(int i = 0; i < sources.length; i++) {
+            copies[i] = new User(usernames[i], encrypted[i] != null ? encrypted[i] : passwords[i], sources[i].GetCode());
+        }
+        return copies;
+    }
+
+    /**
+     * Waits for a chunk to be written and counts its Users.
+     * 
+     * @param chunk Future of the number of Users the chunk copied.
+     * @apiNote Added in version 1.5.
+     */
+    private void Await(CompletableFuture<Integer> chunk) {
+        try {
+            _rekeyed.add(chunk.join());
+        }
+        catch(RuntimeException e) {
+            System.err.println("Error re-encrypting users: " + e.getMessage());
+            _rotating = false;
+        }
+    }
+
+    /**
+     * Makes a copy of a User with the username and encrypted password under the current key.
+     * 
+     * @param user User to copy.
+     * @return The copy, {@code user} itself if its key isn't known.
+     * @apiNote Added in version 1.5.
+     */
+    private User Rekey(User user) {
+        try {
+            String password = user.GetPassword();
+            if(password != null && !PasswordHasher.IsHash(password)) {
+                password = _cryptographer.Reencrypt(password);
+            }
+            return new User(_cryptographer.Reencrypt(user.GetUsername()), password, user.GetCode());
+        }
+        catch(IllegalArgumentException e) {
+            return user;
+        }
+    }
+
+    /**
+     * Parks the rotator until the given time or until the re-key is stopped.
+     * 
+     * @param deadline {@link System#nanoTime()} to wait until.
+     * @apiNote Added in version 1.5.
+     */
+    private void WaitUntil(long deadline) {
+        long remaining;
+        while(_rotating && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
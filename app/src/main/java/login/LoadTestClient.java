@@ -0,0 +1,212 @@
+package login;
+
+//#region IMPORTS
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: LoadTestClient.java
+ * 
+ * The LoadTestClient class opens many concurrent sessions against a
+ * LoginServer, each on its own virtual thread, and logs every one of them
+ * in with the same credentials. It reports how many logins finished per
+ * second and the latency of a full login at the 50th and 99th percentile.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see LoginServer
+ * @apiNote Added in version 1.5.
+ */
+public class LoadTestClient {
+    //#region CONSTANTS
+    public static final String DEFAULT_USERNAME = "scientist";
+    public static final String DEFAULT_PASSWORD = "LoadTest2024";
+    public static final String DEFAULT_CODE     = "1374628910";
+
+    private static final int SOCKET_TIMEOUT = (int)TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * Answer to {@code NEW_PASSWORD} when another session set the password first.
+     * The server asks for the password next, so it isn't a failure.
+     */
+    private static final String PASSWORD_ALREADY_SET =
+        "FAIL " + MessageHandler.GetExceptionMessage(MessageHandler.PASSWORD_ALREADY_SET);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final int _port;
+    private final String _username;
+    private final String _password;
+    private final String _code;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs a client for a LoginServer on the loopback address.
+     * 
+     * @param port Port the server listens on.
+     * @param username Username every session logs in with.
+     * @param password Password every session logs in with, also used if the server asks for a new one.
+     * @param code MFA Code every session logs in with.
+     * @apiNote Added in version 1.5.
+     */
+    public LoadTestClient(int port, String username, String password, String code) {
+        _port = port;
+        _username = username;
+        _password = password;
+        _code = code;
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region FUNCTIONS
+    /**
+     * Opens the sessions all at once, waits for every one to finish and prints the report.
+     * 
+     * @param sessions Number of concurrent sessions.
+     * @return {@code true} if every session logged in, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean Run(int sessions) {
+        long[] latencies = new long[sessions];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for(int i = 0; i < sessions; i++) {
+            int session = i;
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    long begin = System.nanoTime();
+                    if(Login()) {
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                    }
+                    else {
+                        failed.incrementAndGet();
+                    }
+                }
+                catch(IOException e) {
+                    // Only the first error is printed so a refused run doesn't flood the console.
+                    if(failed.incrementAndGet() == 1) {
+                        System.err.println("Error in session " + session + ": " + e.getMessage());
+                    }
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        // Waits for every session.
+        executor.close();
+        long elapsed = System.nanoTime() - begin;
+
+        PrintReport(sessions, Arrays.copyOf(latencies, completed.get()), failed.get(), elapsed);
+        return failed.get() == 0;
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Runs one login, answering whichever prompts the server sends.
+     * On a fresh Database every session is asked for a new password and only
+     * the first one sets it, the rest go on to the password prompt.
+     * 
+     * @return {@code true} if the server sent {@code WELCOME}, {@code false} if otherwise.
+     * @throws IOException If the connection fails.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean Login() throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), _port)) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+            );
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)
+            );
+
+            String line;
+            String prompt = null;
+            while((line = reader.readLine()) != null) {
+                String answer = switch(line) {
+                    case "USERNAME"                 -> _username;
+                    case "PASSWORD", "NEW_PASSWORD" -> _password;
+                    case "CODE"                     -> _code;
+                    default                         -> null;
+                };
+                if(answer != null) {
+                    prompt = line;
+                    writer.write(answer);
+                    writer.write('\n');
+                    writer.flush();
+                }
+                else if(line.startsWith("WELCOME")) {
+                    return true;
+                }
+                else if("NEW_PASSWORD".equals(prompt) && line.equals(PASSWORD_ALREADY_SET)) {
+                    continue;
+                }
+                else if(!line.startsWith("OK")) {
+                    // Any failure means the credentials are wrong for this run.
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Prints the throughput and latency of the run.
+     * 
+     * @param sessions Number of sessions started.
+     * @param latencies Nanoseconds taken by every successful login.
+     * @param failed Number of sessions that didn't log in.
+     * @param elapsed Nanoseconds taken by the whole run.
+     * @apiNote Added in version 1.5.
+     */
+    private static void PrintReport(int sessions, long[] latencies, int failed, long elapsed) {
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        System.out.println("Sessions:      " + sessions);
+        System.out.println("Logged in:     " + latencies.length);
+        System.out.println("Failed:        " + failed);
+        System.out.printf("Elapsed:       %.2f s%n", seconds);
+        System.out.printf("Logins/second: %.1f%n", latencies.length / seconds);
+        System.out.printf("p50 latency:   %.2f ms%n", Percentile(latencies, 0.50) / 1e6);
+        System.out.printf("p99 latency:   %.2f ms%n", Percentile(latencies, 0.99) / 1e6);
+    }
+
+    /**
+     * Returns a percentile of sorted values using the nearest rank.
+     * 
+     * @param sorted Values in ascending order.
+     * @param percentile Percentile between {@code 0} and {@code 1}.
+     * @return The value at the percentile, {@code 0} if there are none.
+     * @apiNote Added in version 1.5.
+     */
+    private static long Percentile(long[] sorted, double percentile) {
+        if(sorted.length == 0) return 0;
+        int rank = (int)Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
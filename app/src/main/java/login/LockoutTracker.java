@@ -0,0 +1,213 @@
+package login;
+
+//#region IMPORTS
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: LockoutTracker.java
+ * 
+ * The LockoutTracker class counts failed password and MFA Code attempts per
+ * User across every session and locks the User out once too many fail inside
+ * a sliding window. Unlike the attempt counters in the Login class, the count
+ * survives going back to the username prompt and is shared by every client.
+ * The window is approximated from the failures in the current fixed window
+ * plus a decaying share of the previous one, so old failures fade out
+ * instead of dropping off all at once.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see CodeHandler
+ * @see PasswordHandler
+ * @apiNote Added in version 1.5.
+ * @implNote Nothing here takes a lock. Lockout checks are a map read and a volatile
+ * read, and failures are added to a striped LongAdder, so many threads failing
+ * against the same User don't contend on one counter.
+ */
+public class LockoutTracker {
+    //#region CONSTANTS
+    /**
+     * Failures inside one window that lock the User out.
+     */
+    public static final int MAX_FAILURES = 10;
+
+    private static final long WINDOW_NANOS     = TimeUnit.MINUTES.toNanos(15);
+    private static final long LOCKOUT_NANOS    = TimeUnit.MINUTES.toNanos(15);
+    private static final long PRUNE_INTERVAL   = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_TRACKED_USERS = 100_000;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Failure counter per encrypted username.
+     */
+    private final Map<String, Counter> _counters = new ConcurrentHashMap<>();
+
+    private final LongAdder _lockouts = new LongAdder();
+    private final AtomicLong _lastPrune = new AtomicLong(System.nanoTime());
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final LockoutTracker INSTANCE = new LockoutTracker();
+    }
+
+    private LockoutTracker() {}
+
+    public static LockoutTracker GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region GETTERS
+    public long GetLockouts()    { return _lockouts.sum();  }
+    public int GetTrackedUsers() { return _counters.size(); }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Checks if the User is locked out.
+     * 
+     * @param encryptedUsername Encrypted username of the User.
+     * @return {@code true} if the User is locked out, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean IsLockedOut(String encryptedUsername) {
+        Counter counter = _counters.get(encryptedUsername);
+        return counter != null && counter._lockedUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * Records a failed attempt against the User and locks it out
+     * if the failures in the window reach {@link #MAX_FAILURES}.
+     * 
+     * @param encryptedUsername Encrypted username of the User.
+     * @return {@code true} if the User is now locked out, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean RecordFailure(String encryptedUsername) {
+        long now = System.nanoTime();
+        if(_counters.size() >= MAX_TRACKED_USERS) {
+            PruneIdle(now);
+        }
+
+        Counter counter = _counters.get(encryptedUsername);
+        if(counter == null) {
+            counter = _counters.computeIfAbsent(encryptedUsername, key -> new Counter(now));
+        }
+
+        if(counter.Record(now) < MAX_FAILURES) return false;
+        if(counter._lockedUntil - now <= 0) {
+            _lockouts.increment();
+        }
+        counter._lockedUntil = now + LOCKOUT_NANOS;
+        return true;
+    }
+
+    /**
+     * Clears the failures of the User after a successful login.
+     * 
+     * @param encryptedUsername Encrypted username of the User.
+     * @apiNote Added in version 1.5.
+     */
+    public void RecordSuccess(String encryptedUsername) {
+        _counters.remove(encryptedUsername);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Drops counters that are no longer locked out and have no failures left in
+     * the window, at most once every {@link #PRUNE_INTERVAL}, so a flood of
+     * failures doesn't scan the map on every attempt.
+     * 
+     * @param now Current {@link System#nanoTime()}.
+     * @apiNote Added in version 1.5.
+     */
+    private void PruneIdle(long now) {
+        long last = _lastPrune.get();
+        if(now - last < PRUNE_INTERVAL || !_lastPrune.compareAndSet(last, now)) return;
+
+        _counters.values().removeIf(counter -> counter.IsIdle(now));
+    }
+
+    /**
+     * Returns the fixed window a time falls in.
+     * 
+     * @param now A {@link System#nanoTime()} value, may be negative.
+     * @return Index of the window.
+     * @apiNote Added in version 1.5.
+     */
+    private static long WindowIndex(long now) {
+        return Math.floorDiv(now, WINDOW_NANOS);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * Failures of one User. The current window is swapped out with a
+     * compare-and-set when time moves past it, keeping the count of the
+     * window before it for the decayed estimate.
+     */
+    private static class Counter {
+        private final AtomicReference<Window> _window;
+        private volatile long _lockedUntil;
+
+        private Counter(long now) {
+            _window = new AtomicReference<>(new Window(WindowIndex(now), 0));
+            _lockedUntil = now;
+        }
+
+        /**
+         * Adds a failure and estimates the failures in the last {@link #WINDOW_NANOS}.
+         * 
+         * @param now Current {@link System#nanoTime()}.
+         * @return Estimated failures in the sliding window, including this one.
+         * @apiNote Added in version 1.5.
+         */
+        private long Record(long now) {
+            long index = WindowIndex(now);
+            Window window = _window.get();
+            while(window._index < index) {
+                long previous = window._index == index - 1 ? window._failures.sum() : 0;
+                Window next = new Window(index, previous);
+                if(_window.compareAndSet(window, next)) {
+                    window = next;
+                    break;
+                }
+                window = _window.get();
+            }
+            window._failures.increment();
+
+            // Share of the previous window still inside the sliding window.
+            double elapsed = (now - index * WINDOW_NANOS) / (double)WINDOW_NANOS;
+            return window._failures.sum() + (long)(window._previous * (1.0 - elapsed));
+        }
+
+        private boolean IsIdle(long now) {
+            return _lockedUntil - now <= 0 && _window.get()._index < WindowIndex(now) - 1;
+        }
+    }
+
+    /**
+     * One fixed window: its index, the failures counted in the window
+     * before it and a striped counter of its own failures.
+     */
+    private static class Window {
+        private final long _index;
+        private final long _previous;
+        private final LongAdder _failures = new LongAdder();
+
+        private Window(long index, long previous) {
+            _index = index;
+            _previous = previous;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -4,22 +4,17 @@ package login;
 import java.io.Console;
 //#endregion IMPORTS
 
-import login.exception_handlers.DefaultPasswordException;
-
 /**
  * COP 4078 Exercise: 5
  * File Name: Login.java
  * 
- * The Login class handles the login flow of the program.
- * All console inputs are taken in here and processed
- * with their relevant functions and classes.
+ * The Login class handles the console login flow of the program.
+ * All console inputs are taken in here and passed to the AuthService,
+ * which does the actual authentication.
  * 
  * @author Noah Nickles
- * @version 1.4
- * @see CodeHandler
- * @see Database
- * @see PasswordHandler
- * @see UsernameHandler
+ * @version 1.5
+ * @see AuthService
  * @apiNote Moved IsUsernameValid, IsPasswordValid methods into Validation class
  * in version 1.1.
  * @apiNote Updated methods to work with Cryptographer class in version 1.2.
@@ -27,13 +22,12 @@ import login.exception_handlers.DefaultPasswordException;
  * @apiNote Added {@link #PromptNewPassword(String)} in version 1.3 to ask for a new password if
  * there is not already one associated with the User object (specified by the entered username).
  * @apiNote Completely rewrote all logic and most functions in version 1.4.
+ * @apiNote Moved authentication calls behind the headless AuthService in version 1.5.
+ * This class is now only the console client. Stages share a LoginSession.
  */
 public class Login {
     //#region SERVICES
-    private final CodeHandler _codeHandler = CodeHandler.GetInstance();
-    private final Database _database = Database.GetInstance();
-    private final PasswordHandler _passwordHandler = PasswordHandler.GetInstance();
-    private final UsernameHandler _usernameHandler = UsernameHandler.GetInstance();
+    private final AuthService _authService = AuthService.GetInstance();
     //#endregion SERVICES
     
     //#region CONSTANTS
@@ -82,47 +76,51 @@ public class Login {
      * @apiNote Updated in version 1.1 to handle displaying the welcome
      * message or login failed message.
      * @apiNote Rewrote all logic in version 1.4.
+     * @apiNote Updated in version 1.5 to finish the login through AuthService.
+     * Passes a LoginSession between the stages instead of the username.
      */
     private void Run() {
-        String username = "";
+        LoginSession session = null;
         while(_correctCredentials < 3) {
             // Reset number of correct credentials on each loop.
             _correctCredentials = 0;
             
             // Gather login information.
-            username = ReadUsername();
-            ReadPassword(username);
+            session = ReadUsername();
+            ReadPassword(session);
             if(_correctCredentials >= 2) {
-                ReadCode(username);
+                ReadCode(session);
             }
         }
         // Print encrypted login info to text file and display welcome message.
-        _database.GenerateFile();
-        System.out.println("Login successful, welcome " + username + "!");
+        _authService.CompleteLogin(session);
+        System.out.println("Login successful, welcome " + session.GetUsername() + "!");
     }
 
     /**
      * Prompts the user for a username.
      * Attempts to authenticate the username and prompts again if failed.
      * 
-     * @return {@code username} if client is authenticated.
-     * @see UsernameHandler
+     * @return LoginSession for the username once the client is authenticated.
+     * @see AuthService
      * @apiNote Updated logic in version 1.1 to work with new validation methods.
      * Moved welcome message to {@link #Run()}.
      * @apiNote Updated logic in version 1.4 to use new UsernameHandler class for
      * authentication.
+     * @apiNote Updated in version 1.5 to authenticate through AuthService and return a LoginSession.
      */
-    private String ReadUsername() {
-        String username;
+    private LoginSession ReadUsername() {
+        LoginSession session;
+        AuthResult result;
         while(true) {
-            username = CONSOLE.readLine("Username: ");
-            if(_usernameHandler.AuthenticateUsername(username)) {
+            session = _authService.StartSession(CONSOLE.readLine("Username: "));
+            // Failed results are delayed by the AuthService to prevent brute force.
+            result = _authService.AuthenticateUsernameAsync(session).join();
+            if(result.IsSuccess()) {
                 _correctCredentials++;
-                return username;
+                return session;
             }
-            // Print error and delay to prevent brute force.
-            MessageHandler.PrintMessage(MessageHandler.INCORRECT_INPUT, "Username");
-            AddDelay(ONE_SECOND);
+            PrintResult(result);
         }
     }
 
@@ -131,21 +129,24 @@ public class Login {
      * Attempts to authenticate the password and prompts again if failed.
      * If input fails more times than the number of attempts, the loop in {@link #Run()}
      * will jump back to {@link #ReadUsername()}.
-     * It calls {@link #ReadNewPassword(String)} if the password is {@code null} with the associated
+     * It calls {@link #ReadNewPassword(LoginSession)} if the password is {@code null} with the associated
      * username.
      *
-     * @param username The username associated with the password.
-     * @see PasswordHandler
+     * @param session The LoginSession of the username associated with the password.
+     * @see AuthService
      * @apiNote Updated logic in version 1.1 to work with new validation methods.
      * @apiNote Rewrote logic in version 1.4 and updated to work with new PasswordHandler class.
+     * @apiNote Updated in version 1.5 to verify through AuthService.
+     * Returns to the start right away if the User is locked out.
      */
-    private void ReadPassword(String username) {
+    private void ReadPassword(LoginSession session) {
         char[] passwordChars;
+        AuthResult result;
         int attempts = 2;
 
         // Create new password if one doesn't already exist.
-        if(!_passwordHandler.DoesPasswordExist(username)) {
-            ReadNewPassword(username);
+        if(!_authService.HasPassword(session)) {
+            ReadNewPassword(session);
         }
 
         // Prompt user for password.
@@ -154,13 +155,17 @@ public class Login {
             // if(App.DEBUG) {
             //     System.out.println("[DEBUG] Entered Password: " + new String(passwordChars));
             // }
-            if(_passwordHandler.AuthenticatePassword(username, passwordChars)) {
+            result = _authService.VerifyPasswordAsync(session, passwordChars).join();
+            if(result.IsSuccess()) {
                 _correctCredentials++;
                 break;
             }
-            // Print remaining attempts and delay to prevent brute force.
+            PrintResult(result);
+            if(result.IsLockedOut()) {
+                attempts = 0;
+                break;
+            }
             attempts = RemainingAttempts(attempts);
-            AddDelay(ONE_SECOND);
         }
 
         // Return user back to start of program after too many fails.
@@ -175,14 +180,17 @@ public class Login {
      * If user fails to create a new password, it uses the PasswordHandler to
      * call the DefaultPassword class and generate a random default password.
      *
-     * @param username The username associated with the password.
-     * @see PasswordHandler
+     * @param session The LoginSession of the username associated with the password.
+     * @see AuthService
      * @apiNote Updated logic in version 1.1 to work with new validation methods.
      * @apiNote Rewrote logic in version 1.4 and updated to work with new PasswordHandler class.
      * Renamed function from PromptNewPassword to ReadNewPassword.
+     * @apiNote Updated in version 1.5 to create passwords through AuthService
+     * and to stop once the User has a password.
      */
-    private void ReadNewPassword(String username) {
+    private void ReadNewPassword(LoginSession session) {
         char[] passwordChars;
+        AuthResult result;
         int attempts = 2;
 
         while(attempts > 0) {
@@ -190,20 +198,20 @@ public class Login {
             // if(App.DEBUG) {
             //     System.out.println("[DEBUG] Entered Password: " + new String(passwordChars));
             // }
-            if(_passwordHandler.CreateNewPassword(username, passwordChars)) {
+            result = _authService.CreatePasswordAsync(session, passwordChars).join();
+            if(result.IsSuccess()) {
                 break;
             }
-            // Print remaining attempts and delay to prevent brute force.
+            PrintResult(result);
+            if(_authService.HasPassword(session)) {
+                return;
+            }
             attempts = RemainingAttempts(attempts);
-            AddDelay(ONE_SECOND);
         }
 
         if(attempts <= 0) {
             MessageHandler.PrintMessage(MessageHandler.DEFAULT_PASSWORD);
-            try {
-                _passwordHandler.CreateDefaultPassword(username);
-            }
-            catch(DefaultPasswordException e) {} // Nothing to do.
+            PrintResult(_authService.CreateDefaultPassword(session));
         }
     }
 
@@ -213,24 +221,31 @@ public class Login {
      * If input fails more times than the number of attempts, the loop in {@link #Run()}
      * will jump back to {@link #ReadUsername()}.
      *
-     * @param username The username associated with the MFA Code.
-     * @see CodeHandler
+     * @param session The LoginSession of the username associated with the MFA Code.
+     * @see AuthService
      * @apiNote Updated logic in version 1.1 to work with new validation methods.
      * @apiNote Rewrote logic in version 1.4 and updated to work with new CodeHandler class.
      * Renamed function from ReadMFA to ReadCode.
+     * @apiNote Updated in version 1.5 to verify through AuthService.
+     * Returns to the start right away if the User is locked out.
      */
-    private void ReadCode(String username) {
+    private void ReadCode(LoginSession session) {
         String code;
+        AuthResult result;
         int attempts = 2;
         while(attempts > 0) {
             code = CONSOLE.readLine("MFA Code: ");
-            if(_codeHandler.AuthenticateCode(username, code)) {
+            result = _authService.VerifyCodeAsync(session, code).join();
+            if(result.IsSuccess()) {
                 _correctCredentials++;
                 break;
             }
-            // Print remaining attempts and delay to prevent brute force.
+            PrintResult(result);
+            if(result.IsLockedOut()) {
+                attempts = 0;
+                break;
+            }
             attempts = RemainingAttempts(attempts);
-            AddDelay(ONE_SECOND);
         }
 
         // Return user back to start of program after too many fails.
@@ -242,6 +257,18 @@ public class Login {
     //#endregion FUNCTIONS
 
     //#region HELPER FUNCTIONS
+    /**
+     * Prints the message attached to an AuthResult, if there is one.
+     * 
+     * @param result Result returned by the AuthService.
+     * @apiNote Added in version 1.5.
+     */
+    private void PrintResult(AuthResult result) {
+        if(result.HasMessage()) {
+            System.out.println(result.GetMessage());
+        }
+    }
+
     /**
      * Counts the number of remaining attempts for user input.
      * Prints to console number of remaining attempts.
@@ -258,37 +285,17 @@ public class Login {
     }
 
     /**
-     * Makes the caller thread sleep for the time set by the parameter.
+     * Waits for the time set by the parameter.
      * 
      * @param millis Time in milliseconds.
+     * @see AuthService
      * @apiNote Added in version 1.0.
      * @apiNote Moved from Utils class which no longer exists in version 1.4.
+     * @apiNote Updated in version 1.5 to wait on the AuthService delay instead of Thread.sleep().
+     * Removed InterruptThread() since waiting on the delay can't be interrupted.
      */
     private void AddDelay(long millis) {
-        try {
-            Thread.sleep(millis);
-        }
-        catch(IllegalArgumentException e){
-            System.err.println("Parameter 'millis' must be >= 0.");
-        }
-        catch(InterruptedException e) {
-            InterruptThread();
-        }
-    }
-
-    /**
-     * Helper function to avoid nesting try-catch in {@link #AddDelay(long)}.
-     * 
-     * @apiNote Added in version 1.0.
-     * @apiNote Moved from Utils class which no longer exists in version 1.4.
-     */
-    private void InterruptThread() {
-        try{
-            Thread.currentThread().interrupt();
-        }
-        catch(SecurityException e) {
-            System.err.println(e.getMessage());
-        }
+        _authService.Delay(millis).join();
     }
     //#endregion HELPER FUNCTIONS
 }
\ No newline at end of file
@@ -0,0 +1,566 @@
+package login;
+
+//#region IMPORTS
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: LoginServer.java
+ * 
+ * The LoginServer class runs the login flow over TCP on the loopback address,
+ * so many clients can log in against one Database at once. Each connection
+ * gets its own virtual thread, which walks the same username, password (or
+ * create password) and MFA Code stages as the Login class through the
+ * AuthService. Blocking on a brute force delay only parks the virtual thread.
+ * 
+ * The protocol is one line per message. The server sends a prompt
+ * ({@code USERNAME}, {@code PASSWORD}, {@code NEW_PASSWORD} or {@code CODE})
+ * and the client answers with one line. After each answer the server sends
+ * {@code OK}, {@code FAIL <message>} or {@code LOCKED <message>}. A finished
+ * login ends with {@code WELCOME <username>}, and a stage left unanswered for
+ * too long ends with {@code TIMEOUT}. {@code BYE} is sent before the server
+ * closes a connection for any other reason.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see Login
+ * @see LoadTestClient
+ * @apiNote Added in version 1.5.
+ */
+public class LoginServer {
+    //#region SERVICES
+    private final AuthService _authService = AuthService.GetInstance();
+    //#endregion SERVICES
+
+    //#region ENUMS
+    /**
+     * Stages of the login flow, each with its own read timeout.
+     */
+    public enum Stage {
+        USERNAME,
+        PASSWORD,
+        NEW_PASSWORD,
+        CODE
+    }
+    //#endregion ENUMS
+
+    //#region CONSTANTS
+    public static final int DEFAULT_PORT = 4078;
+
+    private static final int BACKLOG             = 4096;
+    private static final int ATTEMPTS            = 2;
+    private static final int MAX_LINE_LENGTH     = 256;
+    private static final long DEFAULT_TIMEOUT    = TimeUnit.SECONDS.toMillis(60);
+    private static final long SHUTDOWN_GRACE     = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * How long the acceptor waits after a failed accept, so running out of
+     * file descriptors doesn't turn into a busy loop.
+     */
+    private static final long ACCEPT_BACKOFF     = 100;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final int _port;
+    private ServerSocket _serverSocket;
+    private Thread _acceptor;
+    private volatile boolean _running = false;
+
+    private final Map<Stage, Long> _timeouts = new EnumMap<>(Stage.class);
+    private final Set<Connection> _connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder _accepted = new LongAdder();
+    private final LongAdder _logins = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs a server for the given port. Nothing is bound until {@link #Start()}.
+     * Stage timeouts default to the {@code login.timeout.<stage>} system properties
+     * in milliseconds, such as {@code -Dlogin.timeout.password=30000}. Values outside
+     * {@code 0} to {@link Integer#MAX_VALUE} are clamped into it.
+     * 
+     * @param port Loopback port to listen on, {@code 0} for any free port.
+     * @apiNote Added in version 1.5.
+     */
+    public LoginServer(int port) {
+        _port = port;
+        for(Stage stage : Stage.values()) {
+            String property = "login.timeout." + stage.name().toLowerCase();
+            long timeout = Long.getLong(property, DEFAULT_TIMEOUT);
+            long clamped = Math.max(0, Math.min(Integer.MAX_VALUE, timeout));
+            if(clamped != timeout) {
+                System.err.println("Error reading " + property + ": " + timeout + " is out of range, using " + clamped + ".");
+            }
+            _timeouts.put(stage, clamped);
+        }
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public int GetActiveConnections() { return _connections.size(); }
+    public long GetAccepted()         { return _accepted.sum();     }
+    public long GetLogins()           { return _logins.sum();       }
+
+    /**
+     * Returns the port the server is listening on.
+     * 
+     * @return Bound port, or the configured port if the server hasn't started.
+     * @apiNote Added in version 1.5.
+     */
+    public int GetPort() {
+        ServerSocket serverSocket = _serverSocket;
+        return serverSocket == null ? _port : serverSocket.getLocalPort();
+    }
+    //#endregion GETTERS
+
+    //#region SETTERS
+    /**
+     * Sets how long a client has to answer a stage before the connection is closed.
+     * The time counts from the prompt to the end of the answer, however it is split across reads.
+     * 
+     * @param stage Stage to set the timeout for.
+     * @param millis Timeout in milliseconds, {@code 0} for none.
+     * @apiNote Added in version 1.5.
+     */
+    public void SetTimeout(Stage stage, long millis) {
+        if(millis < 0 || millis > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Timeout out of range: " + millis);
+        }
+        synchronized(_timeouts) {
+            _timeouts.put(stage, millis);
+        }
+    }
+    //#endregion SETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Binds the loopback port and starts accepting connections.
+     * 
+     * @throws IOException If the port can't be bound.
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void Start() throws IOException {
+        if(_running) return;
+
+        _serverSocket = new ServerSocket();
+        _serverSocket.setReuseAddress(true);
+        _serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), _port), BACKLOG);
+        _running = true;
+        _acceptor = Thread.ofPlatform().name("login-server-accept").start(this::AcceptLoop);
+    }
+
+    /**
+     * Stops accepting connections and gives the open ones up to
+     * {@link #SHUTDOWN_GRACE} to finish their login before closing them.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void Close() {
+        synchronized(this) {
+            if(!_running) return;
+            _running = false;
+        }
+
+        try {
+            _serverSocket.close();
+            _acceptor.join();
+        }
+        catch(IOException e) {
+            System.err.println("Error closing login server: " + e.getMessage());
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE);
+        for(Connection connection : _connections) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(remaining <= 0 || !connection.Await(remaining)) break;
+        }
+        for(Connection connection : _connections) {
+            connection.Close();
+        }
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Acceptor thread loop. Starts one virtual thread per connection.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void AcceptLoop() {
+        while(_running) {
+            Socket socket;
+            try {
+                socket = _serverSocket.accept();
+            }
+            catch(IOException e) {
+                if(_running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                    Backoff();
+                }
+                continue;
+            }
+
+            _accepted.increment();
+            Connection connection = new Connection(socket);
+            _connections.add(connection);
+            connection._thread = Thread.ofVirtual().name("login-connection").start(() -> {
+                try {
+                    Serve(connection);
+                }
+                finally {
+                    connection.Close();
+                    _connections.remove(connection);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the login flow for one connection until the client logs in,
+     * disconnects or times out. Mirrors {@link Login}: a failed stage
+     * goes back to the username prompt. Failures are only counted per
+     * source for clients that don't connect over loopback.
+     * 
+     * @param connection Connection to serve.
+     * @apiNote Added in version 1.5.
+     */
+    private void Serve(Connection connection) {
+        InetAddress address = connection._socket.getInetAddress();
+        // Every client of a loopback server shares one address, so counting it as a source
+        // would have the SprayDetector throttle every client at once.
+        String source = address.isLoopbackAddress() ? null : address.getHostAddress();
+        try {
+            while(_running) {
+                LoginSession session = ReadUsername(connection, source);
+                if(session == null) return;
+                if(!ReadPassword(connection, session)) continue;
+                if(!ReadCode(connection, session)) continue;
+
+                _authService.CompleteLogin(session);
+                _logins.increment();
+                connection.Send("WELCOME " + session.GetUsername());
+                return;
+            }
+            connection.Send("BYE");
+        }
+        catch(SocketTimeoutException e) {
+            connection.TrySend("TIMEOUT");
+        }
+        catch(IOException e) {
+            // The client went away or the server is shutting down.
+        }
+    }
+
+    /**
+     * Reads usernames until one is found.
+     * 
+     * @param connection Connection to read from.
+     * @param source Address of the client, {@code null} if it connected over loopback.
+     * @return Session for the username, {@code null} if the client disconnected.
+     * @throws IOException If the connection fails or times out.
+     * @apiNote Added in version 1.5.
+     */
+    private LoginSession ReadUsername(Connection connection, String source) throws IOException {
+        while(_running) {
+            String username = connection.Prompt(Stage.USERNAME, GetTimeout(Stage.USERNAME));
+            if(username == null) return null;
+
+            LoginSession session = _authService.StartSession(username, source);
+            AuthResult result = _authService.AuthenticateUsernameAsync(session).join();
+            connection.SendResult(result);
+            if(result.IsSuccess()) return session;
+        }
+        return null;
+    }
+
+    /**
+     * Creates a password if the User has none, then reads the password.
+     * 
+     * @param connection Connection to read from.
+     * @param session Authenticated session.
+     * @return {@code true} if the password was verified, {@code false} if the attempts ran out.
+     * @throws IOException If the connection fails, times out or is closed by the client.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean ReadPassword(Connection connection, LoginSession session) throws IOException {
+        if(!_authService.HasPassword(session)) {
+            ReadNewPassword(connection, session);
+        }
+
+        for(int attempts = ATTEMPTS; attempts > 0; attempts--) {
+            char[] passwordChars = connection.PromptChars(Stage.PASSWORD, GetTimeout(Stage.PASSWORD));
+            AuthResult result;
+            try {
+                result = _authService.VerifyPasswordAsync(session, passwordChars).join();
+            }
+            finally {
+                Arrays.fill(passwordChars, '\0');
+            }
+            connection.SendResult(result);
+            if(result.IsSuccess()) return true;
+            if(result.IsLockedOut()) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a new password, falling back to a default password if the attempts run out.
+     * Stops early if another session sets the password first, the password is then read
+     * and checked like any other.
+     * 
+     * @param connection Connection to read from.
+     * @param session Authenticated session.
+     * @throws IOException If the connection fails, times out or is closed by the client.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to stop once the User has a password.
+     */
+    private void ReadNewPassword(Connection connection, LoginSession session) throws IOException {
+        for(int attempts = ATTEMPTS; attempts > 0; attempts--) {
+            char[] passwordChars = connection.PromptChars(Stage.NEW_PASSWORD, GetTimeout(Stage.NEW_PASSWORD));
+            AuthResult result;
+            try {
+                result = _authService.CreatePasswordAsync(session, passwordChars).join();
+            }
+            finally {
+                Arrays.fill(passwordChars, '\0');
+            }
+            connection.SendResult(result);
+            if(result.IsSuccess() || _authService.HasPassword(session)) return;
+        }
+        connection.SendResult(_authService.CreateDefaultPassword(session));
+    }
+
+    /**
+     * Reads the MFA Code.
+     * 
+     * @param connection Connection to read from.
+     * @param session Session with a verified password.
+     * @return {@code true} if the code was verified, {@code false} if the attempts ran out.
+     * @throws IOException If the connection fails, times out or is closed by the client.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean ReadCode(Connection connection, LoginSession session) throws IOException {
+        for(int attempts = ATTEMPTS; attempts > 0; attempts--) {
+            String code = connection.Prompt(Stage.CODE, GetTimeout(Stage.CODE));
+            if(code == null) throw new IOException("Client disconnected.");
+
+            AuthResult result = _authService.VerifyCodeAsync(session, code).join();
+            connection.SendResult(result);
+            if(result.IsSuccess()) return true;
+            if(result.IsLockedOut()) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Waits {@link #ACCEPT_BACKOFF} before the acceptor tries again.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Backoff() {
+        try {
+            Thread.sleep(ACCEPT_BACKOFF);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long GetTimeout(Stage stage) {
+        synchronized(_timeouts) {
+            return _timeouts.get(stage);
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * One client connection and the virtual thread serving it.
+     */
+    private static class Connection {
+        private final Socket _socket;
+        private final BufferedReader _reader;
+        private final Writer _writer;
+        private volatile Thread _thread;
+
+        private Connection(Socket socket) {
+            _socket = socket;
+            BufferedReader reader = null;
+            Writer writer = null;
+            try {
+                socket.setTcpNoDelay(true);
+                reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            }
+            catch(IOException e) {
+                System.err.println("Error opening connection: " + e.getMessage());
+            }
+            _reader = reader;
+            _writer = writer;
+        }
+
+        /**
+         * Sends a stage prompt and reads the answer.
+         * 
+         * @param stage Stage to prompt for.
+         * @param timeout Time the client has to answer in milliseconds, {@code 0} for no limit.
+         * @return The answer, {@code null} if the client disconnected.
+         * @throws IOException If the connection fails, times out or the line is too long.
+         * @apiNote Added in version 1.5.
+         */
+        private String Prompt(Stage stage, long timeout) throws IOException {
+            char[] line = PromptChars(stage, timeout, false);
+            return line == null ? null : new String(line);
+        }
+
+        /**
+         * Same as {@link #Prompt(Stage, long)} without building a String, for passwords.
+         * 
+         * @param stage Stage to prompt for.
+         * @param timeout Time the client has to answer in milliseconds, {@code 0} for no limit.
+         * @return The answer. The caller should clear it once used.
+         * @throws IOException If the connection fails, times out, the line is too long or the client disconnected.
+         * @apiNote Added in version 1.5.
+         */
+        private char[] PromptChars(Stage stage, long timeout) throws IOException {
+            return PromptChars(stage, timeout, true);
+        }
+
+        /**
+         * Sends a stage prompt and reads the answer before the stage's deadline.
+         * The socket timeout only covers a single read, so it is set to the time
+         * left before every read, and a client trickling in one char at a time
+         * still runs out of time.
+         * 
+         * @param stage Stage to prompt for.
+         * @param timeout Time the client has to answer in milliseconds, {@code 0} for no limit.
+         * @param required Whether a disconnect is an error rather than a {@code null} answer.
+         * @return The answer, {@code null} if the client disconnected and it wasn't required.
+         * @throws IOException If the connection fails, the deadline passes or the line is too long.
+         * @apiNote Added in version 1.5.
+         */
+        private char[] PromptChars(Stage stage, long timeout, boolean required) throws IOException {
+            if(_reader == null) throw new IOException("Connection was not opened.");
+            Send(stage.name());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            if(timeout == 0) {
+                _socket.setSoTimeout(0);
+            }
+
+            char[] line = new char[MAX_LINE_LENGTH];
+            int length = 0;
+            while(true) {
+                if(timeout > 0) {
+                    SetReadTimeout(deadline, line);
+                }
+                int c = _reader.read();
+                if(c == '\n') break;
+                if(c < 0) {
+                    Arrays.fill(line, '\0');
+                    if(required) throw new IOException("Client disconnected.");
+                    return null;
+                }
+                if(c == '\r') continue;
+                if(length == line.length) {
+                    Arrays.fill(line, '\0');
+                    throw new IOException("Line too long.");
+                }
+                line[length++] = (char)c;
+            }
+            char[] answer = Arrays.copyOf(line, length);
+            Arrays.fill(line, '\0');
+            return answer;
+        }
+
+        /**
+         * Sets the socket timeout to the time left before a deadline.
+         * 
+         * @param deadline {@link System#nanoTime()} the answer is due by.
+         * @param line Answer read so far, cleared if the deadline has passed.
+         * @throws IOException If the deadline has passed or the timeout can't be set.
+         * @apiNote Added in version 1.5.
+         */
+        private void SetReadTimeout(long deadline, char[] line) throws IOException {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime() + 999_999);
+            if(remaining <= 0) {
+                Arrays.fill(line, '\0');
+                throw new SocketTimeoutException("Stage deadline passed.");
+            }
+            _socket.setSoTimeout((int)Math.min(remaining, Integer.MAX_VALUE));
+        }
+
+        private void SendResult(AuthResult result) throws IOException {
+            String status = result.IsSuccess() ? "OK" : result.IsLockedOut() ? "LOCKED" : "FAIL";
+            // Messages can span lines, the protocol can't.
+            Send(result.HasMessage() ? status + " " + result.GetMessage().replace('\n', ' ') : status);
+        }
+
+        private void Send(String line) throws IOException {
+            _writer.write(line);
+            _writer.write('\n');
+            _writer.flush();
+        }
+
+        private void TrySend(String line) {
+            try {
+                Send(line);
+            }
+            catch(IOException e) {
+                // The client is already gone.
+            }
+        }
+
+        /**
+         * Waits for the connection's thread to finish.
+         * 
+         * @param millis Longest time to wait.
+         * @return {@code true} if it finished, {@code false} if the time ran out.
+         * @apiNote Added in version 1.5.
+         */
+        private boolean Await(long millis) {
+            Thread thread = _thread;
+            if(thread == null) return true;
+            try {
+                return thread.join(Duration.ofMillis(millis));
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void Close() {
+            try {
+                _socket.close();
+            }
+            catch(IOException e) {
+                System.err.println("Error closing connection: " + e.getMessage());
+            }
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package login;
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: LoginSession.java
+ * 
+ * The LoginSession class carries one login attempt through the
+ * username, password and MFA Code stages. The username is encrypted
+ * and looked up once by the UsernameHandler, and the resolved User
+ * is reused by the PasswordHandler and CodeHandler.
+ * The session also carries where the client connected from, so the
+ * SprayDetector can count failures per source.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see SprayDetector
+ * @see UsernameHandler
+ * @apiNote Added in version 1.5.
+ * @implNote A session belongs to one client and is not meant to be shared between threads.
+ */
+public class LoginSession {
+    //#region VARIABLES
+    private final String _username;
+    private final String _source;
+    private String _encryptedUsername;
+    private User _user;
+    private boolean _suspicious;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs a session for the entered username. Nothing is looked up yet.
+     * 
+     * @param username Client-entered username.
+     * @apiNote Added in version 1.5.
+     */
+    public LoginSession(String username) {
+        this(username, null);
+    }
+
+    /**
+     * Constructs a session for the entered username from a known source.
+     * 
+     * @param username Client-entered username.
+     * @param source Where the client connected from, {@code null} if unknown.
+     * @apiNote Added in version 1.5.
+     */
+    public LoginSession(String username, String source) {
+        _username = username;
+        _source = source;
+        _encryptedUsername = null;
+        _user = null;
+        _suspicious = false;
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public String GetUsername()          { return _username;          }
+    public String GetSource()            { return _source;            }
+    public String GetEncryptedUsername() { return _encryptedUsername; }
+    public User GetUser()                { return _user;              }
+    public boolean IsResolved()          { return _user != null;      }
+    public boolean IsSuspicious()        { return _suspicious;        }
+    //#endregion GETTERS
+
+    //#region SETTERS
+    /**
+     * Stores the result of the username lookup.
+     * 
+     * @param encryptedUsername Encrypted form of {@link #GetUsername()}.
+     * @param user User found in the Database, {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public void Resolve(String encryptedUsername, User user) {
+        _encryptedUsername = encryptedUsername;
+        _user = user;
+    }
+
+    /**
+     * Marks the session as part of a password spray or credential stuffing attack.
+     * Failed attempts on a suspicious session are slowed down by the AuthService.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void MarkSuspicious() {
+        _suspicious = true;
+    }
+    //#endregion SETTERS
+}
\ No newline at end of file
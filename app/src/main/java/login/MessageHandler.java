@@ -14,7 +14,7 @@ import java.util.Map;
  * to the console at any time.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @apiNote Added in version 1.1 to manage and display error messages
  * in a more robust way.
  * @apiNote Made keys constants to avoid mispelling in validation functions in version 1.2.
@@ -22,6 +22,9 @@ import java.util.Map;
  * them in the console output.
  * @apiNote Removed BuildErrorMessage() function in version 1.4. Renamed class from ErrorMessages
  * to MessageHandler. Removed and reformatted various messages.
+ * @apiNote Added the DEFAULT_PASSWORD_SET message in version 1.5, moved from PasswordHandler.
+ * Added the ACCOUNT_LOCKED and SERVER_BUSY messages in version 1.5.
+ * Added the PASSWORD_ALREADY_SET message in version 1.5.
  */
 public class MessageHandler {
     //#region VARIABLES
@@ -32,26 +35,35 @@ public class MessageHandler {
     //#endregion VARIABLES
 
     //#region KEYS
-    public static final String DEFAULT_PASSWORD = "DEFAULT_PASSWORD";
-    public static final String EMPTY_INPUT      = "EMPTY_INPUT";
-    public static final String INCORRECT_INPUT  = "INCORRECT_INPUT";
-    public static final String INVALID_INPUT    = "INVALID_INPUT";
-    public static final String NO_MORE_ATTEMPTS = "NO_MORE_ATTEMPTS";
-    public static final String POLICY_FAILED    = "POLICY_FAILED";
-    public static final String SQL_INJECTION    = "SQL_INJECTION";
-    public static final String TOO_MANY_FAILS   = "TOO_MANY_FAILS";
+    public static final String ACCOUNT_LOCKED       = "ACCOUNT_LOCKED";
+    public static final String DEFAULT_PASSWORD     = "DEFAULT_PASSWORD";
+    public static final String DEFAULT_PASSWORD_SET = "DEFAULT_PASSWORD_SET";
+    public static final String EMPTY_INPUT          = "EMPTY_INPUT";
+    public static final String INCORRECT_INPUT      = "INCORRECT_INPUT";
+    public static final String INVALID_INPUT        = "INVALID_INPUT";
+    public static final String NO_MORE_ATTEMPTS     = "NO_MORE_ATTEMPTS";
+    public static final String PASSWORD_ALREADY_SET = "PASSWORD_ALREADY_SET";
+    public static final String POLICY_FAILED        = "POLICY_FAILED";
+    public static final String SERVER_BUSY          = "SERVER_BUSY";
+    public static final String SQL_INJECTION        = "SQL_INJECTION";
+    public static final String TOO_MANY_FAILS       = "TOO_MANY_FAILS";
     //#endregion KEYS
 
     //#region STATIC INITIALIZER
     static {
-        _messages.put(DEFAULT_PASSWORD, "Too many failed attempts, creating default password.");
-        _messages.put(EMPTY_INPUT,      "%s cannot be empty.");
-        _messages.put(INCORRECT_INPUT,  "%s is incorrect or not found.");
-        _messages.put(INVALID_INPUT,    "%s contains invalid input.");
-        _messages.put(NO_MORE_ATTEMPTS, "No attempts remaining.");
-        _messages.put(POLICY_FAILED,    "%s failed to meet one or more requirements.");
-        _messages.put(SQL_INJECTION,    "Input contains invalid characters.");
-        _messages.put(TOO_MANY_FAILS,   "Too many failed attempts, returning to start.");
+        _messages.put(ACCOUNT_LOCKED,       "Too many failed attempts, the account is locked. Try again later.");
+        _messages.put(DEFAULT_PASSWORD,     "Too many failed attempts, creating default password.");
+        _messages.put(DEFAULT_PASSWORD_SET, "The password has been set to a default password.\n" +
+                                            "You will recieve a secure email containing the password.");
+        _messages.put(EMPTY_INPUT,          "%s cannot be empty.");
+        _messages.put(INCORRECT_INPUT,      "%s is incorrect or not found.");
+        _messages.put(INVALID_INPUT,        "%s contains invalid input.");
+        _messages.put(NO_MORE_ATTEMPTS,     "No attempts remaining.");
+        _messages.put(PASSWORD_ALREADY_SET, "A password has already been set for this account.");
+        _messages.put(POLICY_FAILED,        "%s failed to meet one or more requirements.");
+        _messages.put(SERVER_BUSY,          "The server is busy, please try again.");
+        _messages.put(SQL_INJECTION,        "Input contains invalid characters.");
+        _messages.put(TOO_MANY_FAILS,       "Too many failed attempts, returning to start.");
     }
     //#endregion STATIC INITIALIZER
 
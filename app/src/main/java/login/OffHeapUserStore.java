@@ -0,0 +1,616 @@
+package login;
+
+//#region IMPORTS
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: OffHeapUserStore.java
+ * 
+ * The OffHeapUserStore class keeps Users in native memory outside the
+ * GC-managed heap, so heap size and GC pauses don't grow with the number of Users.
+ * Each User is a fixed-size record in a MemorySegment, found through an
+ * open addressing index of record numbers in a second segment.
+ * Key tags are kept as a version byte in the record, and PBKDF2 hashes are
+ * packed into a third segment of fixed-size hash slots.
+ * A lookup returns a small view that reads and writes the password in its record.
+ * Password slots are zeroed before they are reused and every segment is
+ * zeroed before it is freed, so old passwords don't linger in memory.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserStore
+ * @see ColumnarUserStore
+ * @apiNote Added in version 1.5 for very large deployments.
+ * @implNote Usernames that don't fit a record are kept in a HeapUserStore instead,
+ * and passwords that fit neither a record nor a hash slot, which the default password
+ * policy doesn't allow, are kept in a side map on the heap.
+ */
+public class OffHeapUserStore implements UserStore {
+    //#region CONSTANTS
+    private static final int USERNAME_WIDTH = 16;
+
+    /**
+     * Wide enough for any password allowed by the default password policy
+     * once its key tag is taken off.
+     */
+    private static final int PASSWORD_WIDTH = Validation.DEFAULT_PASSWORD_POLICY.GetMaxLength();
+    private static final int HASH_WIDTH     = PasswordHasher.PACKED_LENGTH;
+
+    /**
+     * Record layout: MFA Code (int), hash slot + 1 (int), username length, password length,
+     * username tag version and password tag version (bytes), username slot, password slot,
+     * padded so every record starts int-aligned.
+     */
+    private static final long CODE_OFFSET             = 0;
+    private static final long HASH_SLOT_OFFSET        = 4;
+    private static final long USERNAME_LENGTH_OFFSET  = 8;
+    private static final long PASSWORD_LENGTH_OFFSET  = 9;
+    private static final long USERNAME_VERSION_OFFSET = 10;
+    private static final long PASSWORD_VERSION_OFFSET = 11;
+    private static final long USERNAME_OFFSET         = 12;
+    private static final long PASSWORD_OFFSET         = USERNAME_OFFSET + USERNAME_WIDTH;
+    private static final long RECORD_SIZE             = (PASSWORD_OFFSET + PASSWORD_WIDTH + 3) & ~3L;
+
+    private static final byte NO_PASSWORD       = -1;
+    private static final byte OVERFLOW_PASSWORD = -2;
+    private static final byte HASHED_PASSWORD   = -3;
+    private static final int INITIAL_CAPACITY   = 1024; // Must be a power of two.
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Arena owning {@link #_records} and {@link #_index}. Replaced when they grow.
+     */
+    private Arena _arena;
+    private MemorySegment _records;
+
+    /**
+     * Open addressing index of record number + 1 by username hash, {@code 0} for an empty slot.
+     */
+    private MemorySegment _index;
+    private long _indexSlots;
+    private int _capacity;
+    private int _size = 0;
+
+    /**
+     * Arena owning {@link #_hashes}, replaced when it grows. Kept apart from {@link #_arena}
+     * so stores without hashed passwords don't pay for it.
+     */
+    private Arena _hashArena;
+
+    /**
+     * Packed PBKDF2 hashes, {@link #HASH_WIDTH} bytes each. A record keeps its
+     * slot once it has one, hashes are only replaced by newer hashes.
+     */
+    private MemorySegment _hashes = MemorySegment.NULL;
+    private int _hashCount = 0;
+
+    /**
+     * Passwords that fit neither a record nor a hash slot, by record number.
+     */
+    private final Map<Integer, String> _overflowPasswords = new HashMap<>();
+
+    /**
+     * Records changed since the UserExporter last read them. Kept per record since
+     * every lookup returns a new view, and views of one record share the mark.
+     */
+    private final BitSet _dirtyRecords = new BitSet();
+
+    private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    /**
+     * Users whose username doesn't fit in a record.
+     */
+    private final HeapUserStore _overflowUsers = new HeapUserStore();
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Allocates the initial records and index.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public OffHeapUserStore() {
+        _capacity = INITIAL_CAPACITY;
+        _indexSlots = INITIAL_CAPACITY * 2L;
+        _arena = Arena.ofShared();
+        _records = _arena.allocate(_capacity * RECORD_SIZE, Integer.BYTES);
+        _index = _arena.allocate(_indexSlots * Integer.BYTES, Integer.BYTES);
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region FUNCTIONS
+    @Override
+    public User Get(String encryptedUsername) {
+        int version = ReadTagVersion(encryptedUsername);
+        if(!FitsSlot(encryptedUsername, Cryptographer.GetTagLength(version), USERNAME_WIDTH)) {
+            return _overflowUsers.Get(encryptedUsername);
+        }
+
+        _lock.readLock().lock();
+        try {
+            int record = FindRecord(encryptedUsername, version);
+            if(record < 0) return null;
+            int code = _records.get(ValueLayout.JAVA_INT, record * RECORD_SIZE + CODE_OFFSET);
+            return new RecordView(encryptedUsername, code, record);
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean Add(User user) {
+        String username = user.GetUsername();
+        int version = ReadTagVersion(username);
+        int tagLength = Cryptographer.GetTagLength(version);
+        if(!FitsSlot(username, tagLength, USERNAME_WIDTH)) {
+            return _overflowUsers.Add(user);
+        }
+
+        _lock.writeLock().lock();
+        try {
+            if(FindRecord(username, version) >= 0) return false;
+            if(_size == _capacity || (_size + 1) * 4L > _indexSlots * 3L) Grow();
+
+            int record = _size;
+            long base = record * RECORD_SIZE;
+            _records.set(ValueLayout.JAVA_INT, base + CODE_OFFSET, user.GetCode());
+            _records.set(ValueLayout.JAVA_BYTE, base + USERNAME_LENGTH_OFFSET, (byte)(username.length() - tagLength));
+            _records.set(ValueLayout.JAVA_BYTE, base + USERNAME_VERSION_OFFSET, (byte)version);
+            for(int i = tagLength; i < username.length(); i++) {
+                _records.set(ValueLayout.JAVA_BYTE, base + USERNAME_OFFSET + i - tagLength, (byte)username.charAt(i));
+            }
+            WritePassword(record, user.GetPassword());
+            PlaceInIndex(record, Hash(username, tagLength, version));
+            _size++;
+            return true;
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int Size() {
+        _lock.readLock().lock();
+        try {
+            return _size + _overflowUsers.Size();
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void ForEach(Consumer<User> action) {
+        for(int record = 0; ; record++) {
+            RecordView view;
+            _lock.readLock().lock();
+            try {
+                if(record >= _size) break;
+                long base = record * RECORD_SIZE;
+                view = new RecordView(
+                    ReadUsername(base),
+                    _records.get(ValueLayout.JAVA_INT, base + CODE_OFFSET),
+                    record
+                );
+            }
+            finally {
+                _lock.readLock().unlock();
+            }
+            action.accept(view);
+        }
+        _overflowUsers.ForEach(action);
+    }
+
+    /**
+     * Zeroes and frees the native memory. The store can't be used afterwards.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    @Override
+    public void Close() {
+        _lock.writeLock().lock();
+        try {
+            Wipe();
+            _arena.close();
+            if(_hashArena != null) _hashArena.close();
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Zeroes every record and hash slot and drops the side map passwords without
+     * freeing the memory. {@link #Close()} calls it before freeing, and tests call it
+     * to check nothing is left behind.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    void Wipe() {
+        _lock.writeLock().lock();
+        try {
+            _records.fill((byte)0);
+            _hashes.fill((byte)0);
+            _overflowPasswords.clear();
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Reads the key version from the tag of a value, if it fits in a version byte.
+     * 
+     * @param value Encrypted username or password.
+     * @return Version of the tag, {@code 0} if the value is kept whole.
+     * @apiNote Added in version 1.5.
+     */
+    private static int ReadTagVersion(String value) {
+        int version = Cryptographer.ReadTagVersion(value);
+        return version <= Byte.MAX_VALUE ? version : 0;
+    }
+
+    /**
+     * Checks if the part of a value after its tag fits in a slot: ASCII only and no longer than the slot.
+     * 
+     * @param value Value to store.
+     * @param start Length of the tag that is kept as a version byte.
+     * @param width Width of the slot in bytes.
+     * @return {@code true} if the value fits, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean FitsSlot(String value, int start, int width) {
+        if(value.length() - start > width) return false;
+        for(int i = start; i < value.length(); i++) {
+            if(value.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the record of a username that fits in a slot. The caller must hold {@link #_lock}.
+     * 
+     * @param username Encrypted username.
+     * @param version Version of its tag from {@link #ReadTagVersion(String)}.
+     * @return Record number of the username, {@code -1} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    private int FindRecord(String username, int version) {
+        int start = Cryptographer.GetTagLength(version);
+        long mask = _indexSlots - 1;
+        long slot = Hash(username, start, version) & mask;
+        while(true) {
+            int entry = _index.getAtIndex(ValueLayout.JAVA_INT, slot);
+            if(entry == 0) return -1;
+            if(UsernameEquals((entry - 1) * RECORD_SIZE, username, start, version)) return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Compares the username stored in a record to the given one.
+     * 
+     * @param base Offset of the record.
+     * @param username Encrypted username that fits in a slot.
+     * @param start Length of its tag.
+     * @param version Version of its tag.
+     * @return {@code true} if they match, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean UsernameEquals(long base, String username, int start, int version) {
+        if(_records.get(ValueLayout.JAVA_BYTE, base + USERNAME_VERSION_OFFSET) != version) return false;
+        if(_records.get(ValueLayout.JAVA_BYTE, base + USERNAME_LENGTH_OFFSET) != username.length() - start) return false;
+        for(int i = start; i < username.length(); i++) {
+            if(_records.get(ValueLayout.JAVA_BYTE, base + USERNAME_OFFSET + i - start) != (byte)username.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the username stored in a record, with its tag put back.
+     * 
+     * @param base Offset of the record.
+     * @return The encrypted username.
+     * @apiNote Added in version 1.5.
+     */
+    private String ReadUsername(long base) {
+        byte[] username = new byte[_records.get(ValueLayout.JAVA_BYTE, base + USERNAME_LENGTH_OFFSET)];
+        MemorySegment.copy(_records, ValueLayout.JAVA_BYTE, base + USERNAME_OFFSET, username, 0, username.length);
+        return Cryptographer.RestoreTag(
+            _records.get(ValueLayout.JAVA_BYTE, base + USERNAME_VERSION_OFFSET),
+            new String(username, StandardCharsets.ISO_8859_1)
+        );
+    }
+
+    /**
+     * Puts a record in the first free index slot after its hash.
+     * 
+     * @param record Record number to place.
+     * @param hash Hash of the record's username.
+     * @apiNote Added in version 1.5.
+     */
+    private void PlaceInIndex(int record, int hash) {
+        long mask = _indexSlots - 1;
+        long slot = hash & mask;
+        while(_index.getAtIndex(ValueLayout.JAVA_INT, slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        _index.setAtIndex(ValueLayout.JAVA_INT, slot, record + 1);
+    }
+
+    /**
+     * Doubles the records and index into a new arena, then zeroes and frees the old one.
+     * The caller must hold the write lock.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Grow() {
+        Arena oldArena = _arena;
+        MemorySegment oldRecords = _records;
+
+        _capacity *= 2;
+        _indexSlots *= 2;
+        _arena = Arena.ofShared();
+        _records = _arena.allocate(_capacity * RECORD_SIZE, Integer.BYTES);
+        _index = _arena.allocate(_indexSlots * Integer.BYTES, Integer.BYTES);
+        MemorySegment.copy(oldRecords, 0, _records, 0, _size * RECORD_SIZE);
+        for(int record = 0; record < _size; record++) {
+            String username = ReadUsername(record * RECORD_SIZE);
+            int version = _records.get(ValueLayout.JAVA_BYTE, record * RECORD_SIZE + USERNAME_VERSION_OFFSET);
+            PlaceInIndex(record, Hash(username, Cryptographer.GetTagLength(version), version));
+        }
+
+        oldRecords.fill((byte)0);
+        oldArena.close();
+    }
+
+    /**
+     * Reads the password stored in a record.
+     * 
+     * @param record Record number to read.
+     * @return The encrypted password, {@code null} if none is set.
+     * @apiNote Added in version 1.5.
+     */
+    private String ReadPassword(int record) {
+        _lock.readLock().lock();
+        try {
+            long base = record * RECORD_SIZE;
+            byte length = _records.get(ValueLayout.JAVA_BYTE, base + PASSWORD_LENGTH_OFFSET);
+            if(length == NO_PASSWORD) return null;
+            if(length == OVERFLOW_PASSWORD) return _overflowPasswords.get(record);
+            if(length == HASHED_PASSWORD) return ReadHash(record);
+
+            byte[] password = new byte[length];
+            MemorySegment.copy(_records, ValueLayout.JAVA_BYTE, base + PASSWORD_OFFSET, password, 0, length);
+            return Cryptographer.RestoreTag(
+                _records.get(ValueLayout.JAVA_BYTE, base + PASSWORD_VERSION_OFFSET),
+                new String(password, StandardCharsets.ISO_8859_1)
+            );
+        }
+        finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Zeroes the password slot and hash slot of a record and stores a new password:
+     * a hash in its hash slot, an encrypted password in the password slot with its
+     * tag as a version byte, or in the side map if it fits neither.
+     * The caller must hold the write lock.
+     * 
+     * @param record Record number to write.
+     * @param password Encrypted password or hash, {@code null} for none.
+     * @apiNote Added in version 1.5.
+     */
+    private void WritePassword(int record, String password) {
+        long base = record * RECORD_SIZE;
+        _records.asSlice(base + PASSWORD_OFFSET, PASSWORD_WIDTH).fill((byte)0);
+        int hashSlot = _records.get(ValueLayout.JAVA_INT, base + HASH_SLOT_OFFSET);
+        if(hashSlot != 0) {
+            _hashes.asSlice((hashSlot - 1) * (long)HASH_WIDTH, HASH_WIDTH).fill((byte)0);
+        }
+        _overflowPasswords.remove(record);
+        _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_VERSION_OFFSET, (byte)0);
+
+        if(password == null) {
+            _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_LENGTH_OFFSET, NO_PASSWORD);
+            return;
+        }
+        if(PasswordHasher.IsHash(password) && WriteHash(record, password)) {
+            _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_LENGTH_OFFSET, HASHED_PASSWORD);
+            return;
+        }
+
+        int version = ReadTagVersion(password);
+        int tagLength = Cryptographer.GetTagLength(version);
+        if(!FitsSlot(password, tagLength, PASSWORD_WIDTH)) {
+            _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_LENGTH_OFFSET, OVERFLOW_PASSWORD);
+            _overflowPasswords.put(record, password);
+            return;
+        }
+        for(int i = tagLength; i < password.length(); i++) {
+            _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_OFFSET + i - tagLength, (byte)password.charAt(i));
+        }
+        _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_LENGTH_OFFSET, (byte)(password.length() - tagLength));
+        _records.set(ValueLayout.JAVA_BYTE, base + PASSWORD_VERSION_OFFSET, (byte)version);
+    }
+
+    /**
+     * Packs a hash into the hash slot of a record, giving it one if it has none.
+     * The caller must hold the write lock.
+     * 
+     * @param record Record number to write.
+     * @param hash Stored form of the hash.
+     * @return {@code true} if it was packed, {@code false} if it can't be packed.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean WriteHash(int record, String hash) {
+        byte[] packed = new byte[HASH_WIDTH];
+        try {
+            if(!PasswordHasher.Pack(hash, packed, 0)) return false;
+
+            long base = record * RECORD_SIZE;
+            int hashSlot = _records.get(ValueLayout.JAVA_INT, base + HASH_SLOT_OFFSET);
+            if(hashSlot == 0) {
+                if(_hashCount * (long)HASH_WIDTH == _hashes.byteSize()) GrowHashes();
+                hashSlot = ++_hashCount;
+                _records.set(ValueLayout.JAVA_INT, base + HASH_SLOT_OFFSET, hashSlot);
+            }
+            MemorySegment.copy(packed, 0, _hashes, ValueLayout.JAVA_BYTE, (hashSlot - 1) * (long)HASH_WIDTH, HASH_WIDTH);
+            return true;
+        }
+        finally {
+            Arrays.fill(packed, (byte)0);
+        }
+    }
+
+    /**
+     * Unpacks the hash in the hash slot of a record.
+     * 
+     * @param record Record number to read.
+     * @return The stored form of the hash.
+     * @apiNote Added in version 1.5.
+     */
+    private String ReadHash(int record) {
+        int hashSlot = _records.get(ValueLayout.JAVA_INT, record * RECORD_SIZE + HASH_SLOT_OFFSET);
+        byte[] packed = new byte[HASH_WIDTH];
+        try {
+            MemorySegment.copy(_hashes, ValueLayout.JAVA_BYTE, (hashSlot - 1) * (long)HASH_WIDTH, packed, 0, HASH_WIDTH);
+            return PasswordHasher.Unpack(packed, 0);
+        }
+        finally {
+            Arrays.fill(packed, (byte)0);
+        }
+    }
+
+    /**
+     * Doubles the hash slots into a new arena, then zeroes and frees the old one.
+     * The caller must hold the write lock.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void GrowHashes() {
+        Arena oldArena = _hashArena;
+        MemorySegment oldHashes = _hashes;
+
+        _hashArena = Arena.ofShared();
+        _hashes = _hashArena.allocate(Math.max(INITIAL_CAPACITY, _hashCount * 2L) * HASH_WIDTH, Integer.BYTES);
+        if(oldArena != null) {
+            MemorySegment.copy(oldHashes, 0, _hashes, 0, oldHashes.byteSize());
+            oldHashes.fill((byte)0);
+            oldArena.close();
+        }
+    }
+
+    /**
+     * Marks a record as changed since the last export.
+     * 
+     * @param record Record to mark.
+     * @return {@code true} if the record was not already marked.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean MarkRecordDirty(int record) {
+        _lock.writeLock().lock();
+        try {
+            if(_dirtyRecords.get(record)) return false;
+            _dirtyRecords.set(record);
+            return true;
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears the mark set by {@link #MarkRecordDirty(int)}.
+     * 
+     * @param record Record to clear.
+     * @apiNote Added in version 1.5.
+     */
+    private void ClearRecordDirty(int record) {
+        _lock.writeLock().lock();
+        try {
+            _dirtyRecords.clear(record);
+        }
+        finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hashes the version of an ASCII username's tag and the rest of it with FNV-1a,
+     * spreading the high bits into the low ones.
+     * 
+     * @param username Encrypted username that fits in a slot.
+     * @param start Length of its tag.
+     * @param version Version of its tag.
+     * @return Hash of the username.
+     * @apiNote Added in version 1.5.
+     */
+    private static int Hash(String username, int start, int version) {
+        int hash = (0x811C9DC5 ^ version) * 0x01000193;
+        for(int i = start; i < username.length(); i++) {
+            hash = (hash ^ username.charAt(i)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * A User that reads and writes its password in its record and shares its dirty mark.
+     */
+    private class RecordView extends User {
+        private final int _record;
+
+        private RecordView(String username, int code, int record) {
+            super(username, code);
+            _record = record;
+        }
+
+        @Override
+        public String GetPassword() {
+            return ReadPassword(_record);
+        }
+
+        @Override
+        public void SetPassword(String password) {
+            _lock.writeLock().lock();
+            try {
+                WritePassword(_record, password);
+            }
+            finally {
+                _lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean MarkDirty() {
+            return MarkRecordDirty(_record);
+        }
+
+        @Override
+        public void ClearDirty() {
+            ClearRecordDirty(_record);
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -1,7 +1,12 @@
 package login;
 
+//#region IMPORTS
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+//#endregion IMPORTS
+
 import login.exception_handlers.DefaultPasswordException;
-import login.exception_handlers.PasswordValidationException;
 
 /**
  * COP 4078 Exercise: 5
@@ -10,31 +15,80 @@ import login.exception_handlers.PasswordValidationException;
  * This class handles the authentication of the password for a User.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @see Cryptographer
  * @see Database
  * @see DefaultPassword
+ * @see LockoutTracker
+ * @see LoginSession
+ * @see PasswordHasher
+ * @see PasswordMigrator
+ * @see SprayDetector
  * @see Validation
  * @apiNote Added in version 1.4.
+ * @apiNote Singleton uses the holder idiom in version 1.5 so it is safe to share across threads.
+ * Passwords are encrypted from the char[] using the new Cryptographer overloads.
+ * @apiNote Functions return AuthResult objects instead of printing messages in version 1.5.
+ * Functions take the LoginSession so the Database is only queried once per login.
+ * @apiNote New passwords are stored through the Database in version 1.5 so they are persisted.
+ * @apiNote Wrong passwords count towards the LockoutTracker and SprayDetector in version 1.5.
+ * @apiNote Passwords can be hashed with PBKDF2 by the PasswordHasher in version 1.5 by
+ * setting {@code -Dlogin.hash=pbkdf2}. Stored passwords are checked by whichever scheme
+ * they were stored with, so encrypted and hashed passwords work side by side.
+ * @apiNote Passwords in an old format are rehashed by the PasswordMigrator on a successful
+ * login in version 1.5 when hashing is on.
  */
 public class PasswordHandler {
     //#region SERVICES
     private final Cryptographer _cryptographer = Cryptographer.GetInstance();
     private final Database _database = Database.GetInstance();
     private final DefaultPassword _defaultPassword = DefaultPassword.GetInstance();
+    private final LockoutTracker _lockoutTracker = LockoutTracker.GetInstance();
+    private final PasswordHasher _passwordHasher = PasswordHasher.GetInstance();
+    private final PasswordMigrator _passwordMigrator = PasswordMigrator.GetInstance();
+    private final SprayDetector _sprayDetector = SprayDetector.GetInstance();
     private final Validation _validation = Validation.GetInstance();
     //#endregion SERVICES
 
+    //#region CONSTANTS
+    /**
+     * Per-thread buffer that passwords are encrypted into for comparison.
+     * Sized well past the password policy so valid passwords never need a bigger one.
+     */
+    private static final ThreadLocal<char[]> ENCRYPT_BUFFER = ThreadLocal.withInitial(() -> new char[64]);
+
+    /**
+     * Whether new passwords are hashed with PBKDF2 instead of encrypted,
+     * from {@code -Dlogin.hash}. Either {@code vigenere} (the default) or {@code pbkdf2}.
+     */
+    public static final boolean HASH_PASSWORDS = "pbkdf2".equalsIgnoreCase(System.getProperty("login.hash", "vigenere"));
+
+    private static final AuthResult PASSWORD_INCORRECT = AuthResult.Failed(
+        MessageHandler.GetExceptionMessage(MessageHandler.INCORRECT_INPUT, "Password")
+    );
+
+    private static final AuthResult ACCOUNT_LOCKED = AuthResult.LockedOut(
+        MessageHandler.GetExceptionMessage(MessageHandler.ACCOUNT_LOCKED)
+    );
+
+    private static final AuthResult SERVER_BUSY = AuthResult.Failed(
+        MessageHandler.GetExceptionMessage(MessageHandler.SERVER_BUSY)
+    );
+
+    private static final AuthResult PASSWORD_ALREADY_SET = AuthResult.Failed(
+        MessageHandler.GetExceptionMessage(MessageHandler.PASSWORD_ALREADY_SET)
+    );
+    //#endregion CONSTANTS
+
     //#region SINGLETON PATTERN
-    private static PasswordHandler _instance = null;
+    private static class InstanceHolder {
+        private static final PasswordHandler INSTANCE = new PasswordHandler();
+    }
 
     private PasswordHandler() {}
 
     public static PasswordHandler GetInstance() {
-        if(_instance == null) {
-            _instance = new PasswordHandler();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
@@ -42,10 +96,14 @@ public class PasswordHandler {
     /**
      * Authenticates the user input against the stored password in the Database.
      * 
-     * @param username Username of the associated User object.
-     * @return {@code true} if password exists and matches, {@code false} if otherwise.
+     * @param session Session holding the User resolved at the username stage.
+     * @param passwordChars User-entered password.
+     * @return Successful result if password exists and matches, locked out result if the User
+     * is locked out, failed result with the reason if otherwise.
      * @see Cryptographer
-     * @see Database
+     * @see LockoutTracker
+     * @see LoginSession
+     * @see SprayDetector
      * @see Validation
      * @see User
      * @apiNote Added in version 1.0.
@@ -54,113 +112,309 @@ public class PasswordHandler {
      * @apiNote Reverted in version 1.2 to use record class getter functions.
      * @apiNote Reverted again in version 1.3 to use normal getter functions.
      * @apiNote Rewrote and moved from UserService class which no longer exists in version 1.4.
+     * @apiNote Updated in version 1.5 to validate and encrypt straight from the char[] into
+     * a reusable buffer instead of building Strings.
+     * @apiNote Updated in version 1.5 to return an AuthResult and validate without exceptions or printing.
+     * Takes a LoginSession instead of querying the Database again.
+     * @apiNote Updated in version 1.5 to refuse Users that are locked out and
+     * record wrong passwords with the LockoutTracker.
+     * @apiNote Updated in version 1.5 to record wrong passwords with the SprayDetector
+     * and mark the session suspicious if it flags them.
+     * @apiNote Updated in version 1.5 to wait on {@link #AuthenticatePasswordAsync(LoginSession, char[])}.
+     * @apiNote Updated in version 1.5 to rehash passwords in an old format once they match.
      */
-    public boolean AuthenticatePassword(String username, char[] passwordChars) {
-        User user = _database.GetUserByUsername(username);
-        if(user == null) return false;
+    public AuthResult AuthenticatePassword(LoginSession session, char[] passwordChars) {
+        return AuthenticatePasswordAsync(session, passwordChars).join();
+    }
 
-        String password = new String(passwordChars);
-        String encryptedPassword = _cryptographer.EncryptVigenere(password);
-        
-        // Check if password failed validation checks.
-        try {
-            _validation.ValidatePassword(password);
+    /**
+     * Same as {@link #AuthenticatePassword(LoginSession, char[])}, but a hashed password is
+     * checked on the PasswordHasher pool instead of the calling thread. Encrypted passwords
+     * are checked right away.
+     * 
+     * @param session Session holding the User resolved at the username stage.
+     * @param passwordChars User-entered password. Not used after this returns, so the caller may clear it.
+     * @return Future holding the result. The result says the server is busy if the hash
+     * couldn't be queued or waited past its deadline. That isn't counted as a wrong password.
+     * @see PasswordHasher
+     * @see PasswordMigrator
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<AuthResult> AuthenticatePasswordAsync(LoginSession session, char[] passwordChars) {
+        User user = session.GetUser();
+        if(user == null) return CompletableFuture.completedFuture(PASSWORD_INCORRECT);
+
+        // Checked before anything else so a locked out User costs no encryption.
+        if(_lockoutTracker.IsLockedOut(session.GetEncryptedUsername())) {
+            return CompletableFuture.completedFuture(ACCOUNT_LOCKED);
         }
-        catch(PasswordValidationException e) {
-            System.out.println(e.getMessage());
-            return false;
+
+        // Check if password failed validation checks.
+        int violations = _validation.CheckPassword(passwordChars, passwordChars.length);
+        if(violations != 0) {
+            return CompletableFuture.completedFuture(
+                AuthResult.Failed(_validation.GetViolationMessage(violations, "Password"))
+            );
         }
 
         // Check if password matches.
-        if(!user.GetPassword().equals(encryptedPassword)) {
-            MessageHandler.PrintMessage(MessageHandler.INCORRECT_INPUT, "Password");
-            return false;
+        String storedPassword = user.GetPassword();
+        if(!PasswordHasher.IsHash(storedPassword)) {
+            if(EncryptedEquals(storedPassword, passwordChars)) {
+                if(HASH_PASSWORDS) _passwordMigrator.MigrateOnLogin(user, storedPassword, passwordChars);
+                return CompletableFuture.completedFuture(AuthResult.Success());
+            }
+            char[] sprayChars = EncryptForSpray(passwordChars);
+            RecordFailure(session, sprayChars);
+            Arrays.fill(sprayChars, '\0');
+            return CompletableFuture.completedFuture(PASSWORD_INCORRECT);
+        }
+
+        // The caller may clear the password once this returns, so the spray detector's copy is taken now.
+        // So is a copy for rehashing, but only for the rare hash with too few iterations.
+        char[] sprayChars = EncryptForSpray(passwordChars);
+        char[] rehashChars = HASH_PASSWORDS && PasswordHasher.NeedsRehash(storedPassword) ? passwordChars.clone() : null;
+        return _passwordHasher.VerifyAsync(storedPassword, passwordChars).handle((matches, error) -> {
+            try {
+                if(error != null) return SERVER_BUSY;
+                if(matches) {
+                    if(rehashChars != null) _passwordMigrator.MigrateOnLogin(user, storedPassword, rehashChars);
+                    return AuthResult.Success();
+                }
+                RecordFailure(session, sprayChars);
+                return PASSWORD_INCORRECT;
+            }
+            finally {
+                Arrays.fill(sprayChars, '\0');
+                if(rehashChars != null) Arrays.fill(rehashChars, '\0');
+            }
+        });
+    }
+
+    /**
+     * Compares a password to the one stored for the User without counting
+     * it as a login attempt, for checking credentials in bulk.
+     * Hashed passwords are checked on the PasswordHasher's pool, like logins.
+     * 
+     * @param user User to check the password of.
+     * @param passwordChars Password to check. Copied before returning, so the caller may clear it.
+     * @return Future holding {@code true} if it matches, {@code false} if otherwise or if the
+     * User has no password. Fails the same way as {@link PasswordHasher#VerifyAsync(String, char[])}
+     * when the PasswordHasher is busy.
+     * @see BatchAuthenticator
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Boolean> MatchesPasswordAsync(User user, char[] passwordChars) {
+        String storedPassword = user.GetPassword();
+        if(PasswordHasher.IsHash(storedPassword)) {
+            return _passwordHasher.VerifyAsync(storedPassword, passwordChars);
         }
-        
-        return true;
+        return CompletableFuture.completedFuture(EncryptedEquals(storedPassword, passwordChars));
     }
 
     /**
      * Checks if the password exists or is {@code null} given the
      * username of the user.
      * 
-     * @param username Username of the associated User object.
+     * @param session Session holding the User resolved at the username stage.
      * @return {@code true} if the password exists, {@code false} if otherwise.
-     * @see Database
+     * @see LoginSession
      * @see User
      * @apiNote Added in version 1.3.
      * @apiNote Rewrote and moved from UserService class which no longer exists in version 1.4.
+     * @apiNote Updated in version 1.5 to take a LoginSession instead of querying the Database again.
      */
-    public boolean DoesPasswordExist(String username) {
-        User user = _database.GetUserByUsername(username);
-        return user.GetPassword() != null;
+    public boolean DoesPasswordExist(LoginSession session) {
+        User user = session.GetUser();
+        return user != null && user.GetPassword() != null;
     }
 
     /**
      * Takes in input from Login class.
      * Validates new password then encrypts and stores it in the related User object.
      * 
-     * @param username Username of the User object to associate the password with.
+     * @param session Session holding the User to associate the password with.
      * @param newPasswordChars User-entered password.
-     * @return {@code true} if new password is valid and was set, {@code false} if otherwise.
+     * @return Successful result if new password is valid and was set, failed result with the reason if otherwise.
      * @see Cryptographer
-     * @see Database
+     * @see LoginSession
      * @see User
      * @see Validation
      * @apiNote Added in version 1.3.
      * @apiNote Rewrote and moved from UserService class which no longer exists in version 1.4.
+     * @apiNote Updated in version 1.5 to validate and encrypt straight from the char[].
+     * Returns an AuthResult and validates without exceptions or printing.
+     * Takes a LoginSession instead of querying the Database again.
+     * Stores the password through the Database so it is persisted.
+     * @apiNote Updated in version 1.5 to hash the password if {@link #HASH_PASSWORDS} is set.
+     * @apiNote Updated in version 1.5 to only set the password if the User still has none,
+     * so a session left waiting can't overwrite a password another session just set.
      */
-    public boolean CreateNewPassword(String username, char[] newPasswordChars) {
-        User user = _database.GetUserByUsername(username);
-        if(user == null) return false;
+    public AuthResult CreateNewPassword(LoginSession session, char[] newPasswordChars) {
+        User user = session.GetUser();
+        if(user == null) return PASSWORD_INCORRECT;
+        if(user.GetPassword() != null) return PASSWORD_ALREADY_SET;
+
+        int violations = _validation.CheckPassword(newPasswordChars, newPasswordChars.length);
+        if(violations != 0) {
+            return AuthResult.Failed(_validation.GetViolationMessage(violations, "Password"));
+        }
 
-        String newPassword = new String(newPasswordChars);
         try {
-            _validation.ValidatePassword(newPassword);
-            user.SetPassword(_cryptographer.EncryptVigenere(newPassword));
+            if(!_database.ReplacePassword(user, null, Store(newPasswordChars))) {
+                return PASSWORD_ALREADY_SET;
+            }
         }
-        catch(PasswordValidationException e) {
-            System.out.println(e.getMessage());
-            return false;
+        catch(CompletionException e) {
+            return SERVER_BUSY;
         }
-
-        return true;
+        return AuthResult.Success();
     }
 
     /**
      * Uses the DefaultPassword class to generate a default password for the user.
      * Validates the password and sets it for the User object.
-     * Prints confirmation message.
      * 
-     * @param username Username of the User object to associate the password with.
+     * @param session Session holding the User to associate the password with.
+     * @throws DefaultPasswordException If the generated password doesn't pass the password policy,
+     * the PasswordHasher is too busy to hash it or the User already has a password.
      * @see Cryptographer
-     * @see Database
+     * @see LoginSession
      * @see DefaultPassword
      * @see Validation
      * @see User
      * @apiNote Added in version 1.4.
+     * @apiNote Updated in version 1.5 to validate without exceptions. The confirmation message
+     * is returned to the client by the AuthService instead of printed here.
+     * Takes a LoginSession instead of querying the Database again.
+     * Stores the password through the Database so it is persisted.
+     * @apiNote Updated in version 1.5 to hash the password if {@link #HASH_PASSWORDS} is set.
+     * @apiNote Updated in version 1.5 to only set the password if the User still has none.
      */
-    public void CreateDefaultPassword(String username) throws DefaultPasswordException {
-        User user = _database.GetUserByUsername(username);
-        String generatedPassword;
-        while(true) {
-            generatedPassword = _defaultPassword.GeneratePassword();
-            try {
-                _validation.ValidatePassword(generatedPassword);
-                break;
-            }
-            catch(PasswordValidationException e) {
-                // This should never happen...
-                throw new DefaultPasswordException("Default password failed to generate.");
-            }
+    public void CreateDefaultPassword(LoginSession session) throws DefaultPasswordException {
+        User user = session.GetUser();
+        if(user == null) {
+            throw new DefaultPasswordException("No user to set a default password for.");
+        }
+        char[] generatedPassword = _defaultPassword.GeneratePassword().toCharArray();
+
+        if(_validation.CheckPassword(generatedPassword, generatedPassword.length) != 0) {
+            // This should never happen...
+            throw new DefaultPasswordException("Default password failed to generate.");
+        }
+        boolean replaced;
+        try {
+            replaced = _database.ReplacePassword(user, null, Store(generatedPassword));
+        }
+        catch(CompletionException e) {
+            throw new DefaultPasswordException(MessageHandler.GetExceptionMessage(MessageHandler.SERVER_BUSY));
+        }
+        if(!replaced) {
+            throw new DefaultPasswordException(MessageHandler.GetExceptionMessage(MessageHandler.PASSWORD_ALREADY_SET));
         }
-        user.SetPassword(_cryptographer.EncryptVigenere(generatedPassword));
-        System.out.print(
-            """
-            The password has been set to a default password.
-            You will recieve a secure email containing the password.
-            """
-        );
     }
     //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Turns a new password into the form stored in the User object:
+     * a PBKDF2 hash if {@link #HASH_PASSWORDS} is set, encrypted if not.
+     * 
+     * @param passwordChars Validated password.
+     * @return Password to store.
+     * @throws CompletionException If the PasswordHasher is too busy to hash it.
+     * @apiNote Added in version 1.5.
+     */
+    private String Store(char[] passwordChars) {
+        return HASH_PASSWORDS ? _passwordHasher.HashAsync(passwordChars).join() : Encrypt(passwordChars);
+    }
+
+    /**
+     * Encrypts the password into a String for storing in a User object.
+     * 
+     * @param passwordChars Validated password.
+     * @return Encrypted password, tagged with the version of the current key.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to tag the password with the key version.
+     */
+    private String Encrypt(char[] passwordChars) {
+        char[] buffer = GetEncryptBuffer(passwordChars.length);
+        int length = _cryptographer.EncryptVigenere(passwordChars, passwordChars.length, buffer);
+        String encrypted = _cryptographer.TagCurrent(new String(buffer, 0, length));
+        Arrays.fill(buffer, 0, length, '\0');
+        return encrypted;
+    }
+
+    /**
+     * Encrypts the password and compares it to the stored one without allocating.
+     * Every char is compared so the time taken doesn't reveal where they differ.
+     * 
+     * @param storedPassword Encrypted password from the User object, may be {@code null}.
+     * @param passwordChars User-entered password.
+     * @return {@code true} if they match, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to encrypt under the key named by the stored password's tag.
+     */
+    private boolean EncryptedEquals(String storedPassword, char[] passwordChars) {
+        if(storedPassword == null) return false;
+        int version = _cryptographer.GetTagVersion(storedPassword);
+        if(version < 0) return false;
+        int tagLength = _cryptographer.GetTagLength(storedPassword);
+
+        char[] buffer = GetEncryptBuffer(passwordChars.length);
+        int length = _cryptographer.EncryptVigenere(passwordChars, passwordChars.length, buffer, version);
+
+        int storedLength = storedPassword.length() - tagLength;
+        int difference = storedLength ^ length;
+        int shorter = Math.min(storedLength, length);
+        for(int i = 0; i < shorter; i++) {
+            difference |= storedPassword.charAt(tagLength + i) ^ buffer[i];
+        }
+        Arrays.fill(buffer, 0, length, '\0');
+        return difference == 0;
+    }
+
+    /**
+     * Encrypts a password into a new array for the SprayDetector, which counts
+     * passwords by their encrypted form whatever scheme they are stored with.
+     * 
+     * @param passwordChars User-entered password.
+     * @return Encrypted password. The caller should clear it once used.
+     * @apiNote Added in version 1.5.
+     */
+    private char[] EncryptForSpray(char[] passwordChars) {
+        char[] buffer = GetEncryptBuffer(passwordChars.length);
+        int length = _cryptographer.EncryptVigenere(passwordChars, passwordChars.length, buffer);
+        char[] encrypted = Arrays.copyOf(buffer, length);
+        Arrays.fill(buffer, 0, length, '\0');
+        return encrypted;
+    }
+
+    /**
+     * Records a wrong password with the LockoutTracker and SprayDetector,
+     * and marks the session suspicious if the SprayDetector flags it.
+     * 
+     * @param session Session the attempt was made with.
+     * @param sprayChars Encrypted password from {@link #EncryptForSpray(char[])}.
+     * @apiNote Added in version 1.5.
+     */
+    private void RecordFailure(LoginSession session, char[] sprayChars) {
+        _lockoutTracker.RecordFailure(session.GetEncryptedUsername());
+        if(_sprayDetector.RecordFailure(sprayChars, sprayChars.length, session.GetSource())) {
+            session.MarkSuspicious();
+        }
+    }
+
+    /**
+     * Returns this thread's encryption buffer, or a new one if the input is too long for it.
+     * 
+     * @param length Number of chars that will be encrypted.
+     * @return Buffer with room for at least {@code length} chars.
+     * @apiNote Added in version 1.5.
+     */
+    private char[] GetEncryptBuffer(int length) {
+        char[] buffer = ENCRYPT_BUFFER.get();
+        return buffer.length >= length ? buffer : new char[length];
+    }
+    //#endregion HELPER FUNCTIONS
 }
\ No newline at end of file
@@ -0,0 +1,337 @@
+package login;
+
+//#region IMPORTS
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: PasswordHasher.java
+ * 
+ * The PasswordHasher class hashes passwords with PBKDF2 (HMAC-SHA256), a
+ * random salt per password and a tunable iteration count, so every guess
+ * costs an attacker as much as it costs us. Hashes are stored as
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>}, so the iteration count
+ * can be raised later without breaking existing passwords.
+ * Hashing runs on its own bounded pool with one thread per core and a
+ * limited queue. Work that can't be queued is refused right away, and work
+ * that waited past its deadline is dropped, so a burst of expensive hashes
+ * never holds up the threads running the rest of the login flow.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see PasswordHandler
+ * @apiNote Added in version 1.5.
+ */
+public class PasswordHasher {
+    //#region CONSTANTS
+    public static final String PREFIX = "$pbkdf2-sha256$";
+
+    /**
+     * Iterations used for new hashes, from {@code -Dlogin.hash.iterations}.
+     * The default follows the OWASP recommendation for PBKDF2-HMAC-SHA256.
+     */
+    public static final int ITERATIONS = Integer.getInteger("login.hash.iterations", 600_000);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES   = 16;
+    private static final int HASH_BITS    = 256;
+
+    /**
+     * Bytes taken by a hash packed with {@link #Pack(String, byte[], int)}: iterations, salt and derived bytes.
+     */
+    public static final int PACKED_LENGTH = Integer.BYTES + SALT_BYTES + HASH_BITS / 8;
+
+    private static final int THREADS      = Runtime.getRuntime().availableProcessors();
+    private static final int QUEUE_DEPTH  = Integer.getInteger("login.hash.queue", THREADS * 64);
+    private static final long DEADLINE    = TimeUnit.SECONDS.toNanos(Long.getLong("login.hash.deadline", 10));
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final SecureRandom _random = new SecureRandom();
+    private final ThreadPoolExecutor _executor;
+    private final LongAdder _hashed = new LongAdder();
+    private final LongAdder _rejected = new LongAdder();
+    private final LongAdder _expired = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final PasswordHasher INSTANCE = new PasswordHasher();
+    }
+
+    private PasswordHasher() {
+        AtomicInteger count = new AtomicInteger();
+        _executor = new ThreadPoolExecutor(
+            THREADS, THREADS,
+            0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_DEPTH),
+            task -> {
+                Thread thread = new Thread(task, "login-hash-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    public static PasswordHasher GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region GETTERS
+    public long GetHashed()    { return _hashed.sum();               }
+    public long GetRejected()  { return _rejected.sum();             }
+    public long GetExpired()   { return _expired.sum();              }
+    public int GetQueueDepth() { return _executor.getQueue().size(); }
+
+    /**
+     * Checks if nothing is waiting for the hashing pool and at least one of its threads is free.
+     * 
+     * @return {@code true} if a hash submitted now would start right away.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean IsIdle() {
+        return _executor.getQueue().isEmpty() && _executor.getActiveCount() < THREADS;
+    }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Checks if a stored password is a PBKDF2 hash rather than an encrypted password.
+     * 
+     * @param storedPassword Password stored in a User object, may be {@code null}.
+     * @return {@code true} if it is a hash, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public static boolean IsHash(String storedPassword) {
+        return storedPassword != null && storedPassword.startsWith(PREFIX);
+    }
+
+    /**
+     * Packs the stored form of a hash into {@link #PACKED_LENGTH} bytes, for stores that keep
+     * hashes in a fixed-width binary column instead of as Strings.
+     * 
+     * @param storedHash Stored form of the hash.
+     * @param packed Array to pack into.
+     * @param offset Offset in {@code packed} to start at.
+     * @return {@code true} if it was packed, {@code false} if it isn't a hash with the current
+     * salt and hash lengths or {@link #Unpack(byte[], int)} wouldn't give back the same String.
+     * @apiNote Added in version 1.5.
+     */
+    public static boolean Pack(String storedHash, byte[] packed, int offset) {
+        ParsedHash parsed = Parse(storedHash);
+        if(parsed == null || parsed._salt.length != SALT_BYTES || parsed._hash.length != HASH_BITS / 8) return false;
+        if(!Format(parsed._iterations, parsed._salt, parsed._hash).equals(storedHash)) return false;
+
+        for(int i = 0; i < Integer.BYTES; i++) {
+            packed[offset + i] = (byte)(parsed._iterations >>> (24 - i * 8));
+        }
+        System.arraycopy(parsed._salt, 0, packed, offset + Integer.BYTES, SALT_BYTES);
+        System.arraycopy(parsed._hash, 0, packed, offset + Integer.BYTES + SALT_BYTES, HASH_BITS / 8);
+        return true;
+    }
+
+    /**
+     * Rebuilds the stored form of a hash packed by {@link #Pack(String, byte[], int)}.
+     * 
+     * @param packed Array holding the packed hash.
+     * @param offset Offset of the packed hash in {@code packed}.
+     * @return The stored form of the hash.
+     * @apiNote Added in version 1.5.
+     */
+    public static String Unpack(byte[] packed, int offset) {
+        int iterations = 0;
+        for(int i = 0; i < Integer.BYTES; i++) {
+            iterations = (iterations << 8) | (packed[offset + i] & 0xFF);
+        }
+        int start = offset + Integer.BYTES;
+        return Format(
+            iterations,
+            Arrays.copyOfRange(packed, start, start + SALT_BYTES),
+            Arrays.copyOfRange(packed, start + SALT_BYTES, start + SALT_BYTES + HASH_BITS / 8)
+        );
+    }
+
+    /**
+     * Checks if a stored password should be rehashed: it is encrypted rather
+     * than hashed, or hashed with fewer iterations than {@link #ITERATIONS}.
+     * 
+     * @param storedPassword Password stored in a User object, may be {@code null}.
+     * @return {@code true} if it is in an old format, {@code false} if it is current or {@code null}.
+     * @apiNote Added in version 1.5.
+     */
+    public static boolean NeedsRehash(String storedPassword) {
+        if(storedPassword == null) return false;
+        if(!IsHash(storedPassword)) return true;
+        ParsedHash parsed = Parse(storedPassword);
+        return parsed != null && parsed._iterations < ITERATIONS;
+    }
+
+    /**
+     * Hashes a new password on the hashing pool.
+     * 
+     * @param passwordChars Password to hash. Copied before returning, so the caller may clear it.
+     * @return Future holding the stored form of the hash. Fails with a
+     * {@link RejectedExecutionException} if the queue is full or a
+     * {@link TimeoutException} if the deadline passed.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<String> HashAsync(char[] passwordChars) {
+        byte[] salt = new byte[SALT_BYTES];
+        _random.nextBytes(salt);
+        PBEKeySpec spec = new PBEKeySpec(passwordChars, salt, ITERATIONS, HASH_BITS);
+        return Submit(spec, hash -> Format(ITERATIONS, salt, hash));
+    }
+
+    /**
+     * Checks a password against a stored hash on the hashing pool.
+     * 
+     * @param storedHash Stored form of the hash from {@link #HashAsync(char[])}.
+     * @param passwordChars Password to check. Copied before returning, so the caller may clear it.
+     * @return Future holding {@code true} if it matches, {@code false} if otherwise.
+     * Fails the same way as {@link #HashAsync(char[])}.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Boolean> VerifyAsync(String storedHash, char[] passwordChars) {
+        ParsedHash parsed = Parse(storedHash);
+        if(parsed == null) return CompletableFuture.completedFuture(false);
+
+        PBEKeySpec spec = new PBEKeySpec(passwordChars, parsed._salt, parsed._iterations, parsed._hash.length * 8);
+        return Submit(spec, hash -> MessageDigest.isEqual(hash, parsed._hash));
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Runs a key derivation on the hashing pool. Tasks still queued when their
+     * deadline passes are dropped without hashing.
+     * 
+     * @param <T> Type of the result.
+     * @param spec Key spec holding a copy of the password. Cleared once used.
+     * @param finish Turns the derived bytes into the result.
+     * @return Future holding the result.
+     * @apiNote Added in version 1.5.
+     */
+    private <T> CompletableFuture<T> Submit(PBEKeySpec spec, Function<byte[], T> finish) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + DEADLINE;
+        try {
+            _executor.execute(() -> {
+                try {
+                    if(System.nanoTime() - deadline > 0) {
+                        _expired.increment();
+                        future.completeExceptionally(new TimeoutException("Password hash deadline passed."));
+                        return;
+                    }
+                    future.complete(finish.apply(Derive(spec)));
+                    _hashed.increment();
+                }
+                catch(RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+                finally {
+                    spec.clearPassword();
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            spec.clearPassword();
+            _rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs PBKDF2 over the key spec.
+     * 
+     * @param spec Password, salt, iterations and length.
+     * @return Derived bytes.
+     * @apiNote Added in version 1.5.
+     */
+    private static byte[] Derive(PBEKeySpec spec) {
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        }
+        catch(NoSuchAlgorithmException | InvalidKeySpecException e) {
+            // Every JDK ships PBKDF2WithHmacSHA256.
+            throw new IllegalStateException("Error hashing password: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the stored form of a hash.
+     * 
+     * @param iterations Iterations used.
+     * @param salt Salt used.
+     * @param hash Derived bytes.
+     * @return {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 parts.
+     * @apiNote Added in version 1.5.
+     */
+    private static String Format(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Reads the stored form of a hash.
+     * 
+     * @param storedHash Stored form of the hash.
+     * @return The parts of the hash, {@code null} if it isn't a valid hash.
+     * @apiNote Added in version 1.5.
+     */
+    private static ParsedHash Parse(String storedHash) {
+        if(!IsHash(storedHash)) return null;
+
+        String[] parts = storedHash.substring(PREFIX.length()).split("\\$");
+        if(parts.length != 3) return null;
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1].getBytes(StandardCharsets.US_ASCII));
+            byte[] hash = Base64.getDecoder().decode(parts[2].getBytes(StandardCharsets.US_ASCII));
+            if(iterations <= 0 || hash.length == 0) return null;
+            return new ParsedHash(iterations, salt, hash);
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println("Error reading password hash: " + e.getMessage());
+            return null;
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * Iterations, salt and derived bytes of a stored hash.
+     */
+    private static class ParsedHash {
+        private final int _iterations;
+        private final byte[] _salt;
+        private final byte[] _hash;
+
+        private ParsedHash(int iterations, byte[] salt, byte[] hash) {
+            _iterations = iterations;
+            _salt = salt;
+            _hash = hash;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package login;
+
+//#region IMPORTS
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: PasswordMigrator.java
+ * 
+ * The PasswordMigrator class moves stored passwords over to the current
+ * PasswordHasher format without taking the Database offline.
+ * A User is rehashed the moment they log in with a password in an old format,
+ * and a background sweep rehashes everyone else. Encrypted passwords can be
+ * decrypted, so the sweep doesn't need the User to log in. Hashes with too
+ * few iterations can't be reversed and are only upgraded on login.
+ * Every swap only goes through if the stored password is still the one that
+ * was rehashed, so a password changed in the meantime is never overwritten.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see PasswordHandler
+ * @see PasswordHasher
+ * @apiNote Added in version 1.5.
+ */
+public class PasswordMigrator {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    private final Database _database = Database.GetInstance();
+    private final PasswordHasher _passwordHasher = PasswordHasher.GetInstance();
+    //#endregion SERVICES
+
+    //#region CONSTANTS
+    /**
+     * Passwords the sweep rehashes per second, from {@code -Dlogin.migrate.rate}.
+     * Users that are skipped because they are already migrated don't count.
+     */
+    private static final int RATE = Math.max(1, Integer.getInteger("login.migrate.rate", 10));
+
+    /**
+     * How long the sweep waits before checking again whether the PasswordHasher is free.
+     */
+    private static final long BUSY_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private Thread _sweeper;
+    private volatile boolean _sweeping = false;
+    private volatile long _sweepTotal = 0;
+
+    private final LongAdder _scanned = new LongAdder();
+    private final LongAdder _migratedOnLogin = new LongAdder();
+    private final LongAdder _migratedBySweep = new LongAdder();
+    private final LongAdder _skipped = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final PasswordMigrator INSTANCE = new PasswordMigrator();
+    }
+
+    private PasswordMigrator() {}
+
+    public static PasswordMigrator GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region GETTERS
+    public long GetScanned()         { return _scanned.sum();         }
+    public long GetMigratedOnLogin() { return _migratedOnLogin.sum(); }
+    public long GetMigratedBySweep() { return _migratedBySweep.sum(); }
+    public long GetSkipped()         { return _skipped.sum();         }
+    public boolean IsSweeping()      { return _sweeping;              }
+
+    /**
+     * Returns how far through the Users the sweep is.
+     * 
+     * @return Fraction of Users scanned between {@code 0} and {@code 1},
+     * {@code 0} if no sweep has started.
+     * @apiNote Added in version 1.5.
+     */
+    public double GetProgress() {
+        long total = _sweepTotal;
+        return total == 0 ? 0 : Math.min(1, (double)_scanned.sum() / total);
+    }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Rehashes a User's password after they logged in with it, if it is stored
+     * in an old format. The hash is queued on the PasswordHasher and swapped in
+     * afterwards, so the login isn't held up. If the PasswordHasher is busy the
+     * password is left as it is and rehashed on a later login or by the sweep.
+     * 
+     * @param user User that logged in.
+     * @param storedPassword Stored password the login was checked against.
+     * @param passwordChars Password the User logged in with. Copied before returning,
+     * so the caller may clear it.
+     * @apiNote Added in version 1.5.
+     */
+    public void MigrateOnLogin(User user, String storedPassword, char[] passwordChars) {
+        if(!PasswordHasher.NeedsRehash(storedPassword)) return;
+
+        _passwordHasher.HashAsync(passwordChars).whenCompleteAsync((hash, error) -> {
+            if(error == null && _database.ReplacePassword(user, storedPassword, hash)) {
+                _migratedOnLogin.increment();
+            }
+            else {
+                _skipped.increment();
+            }
+        });
+    }
+
+    /**
+     * Starts sweeping every User on a low-priority background thread.
+     * Encrypted passwords are rehashed at up to {@link #RATE} per second and only
+     * while the PasswordHasher has no logins waiting, so the sweep takes
+     * whatever hashing capacity the logins leave over.
+     * Does nothing if a sweep is already running.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void StartSweep() {
+        if(_sweeping) return;
+        _sweeping = true;
+        _sweepTotal = _database.GetUserCount();
+        _scanned.reset();
+        _sweeper = new Thread(this::Sweep, "login-password-migrator");
+        _sweeper.setDaemon(true);
+        _sweeper.setPriority(Thread.MIN_PRIORITY);
+        _sweeper.start();
+    }
+
+    /**
+     * Stops the sweep after the User it is working on and waits for it to finish.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void StopSweep() {
+        if(!_sweeping) return;
+        _sweeping = false;
+        LockSupport.unpark(_sweeper);
+        try {
+            _sweeper.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Sweeper thread loop. Walks every User once, then prints a summary.
+     * Users are read without being loaded, only the ones to migrate are looked up.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Sweep() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long[] nextSlot = { System.nanoTime() };
+
+        _database.ForEachUser(copy -> {
+            // The Database has no way to stop part way, so the rest are passed over.
+            if(!_sweeping) return;
+            _scanned.increment();
+
+            String copiedPassword = copy.GetPassword();
+            if(copiedPassword == null || PasswordHasher.IsHash(copiedPassword)) return;
+            User user = _database.GetUserByEncryptedUsername(copy.GetUsername());
+            if(user == null) return;
+            String storedPassword = user.GetPassword();
+            if(storedPassword == null || PasswordHasher.IsHash(storedPassword)) return;
+
+            WaitUntil(nextSlot[0]);
+            WaitForIdleHasher();
+            if(!_sweeping) return;
+            nextSlot[0] = Math.max(nextSlot[0], System.nanoTime()) + interval;
+
+            if(SweepUser(user, storedPassword)) {
+                _migratedBySweep.increment();
+            }
+            else {
+                _skipped.increment();
+            }
+        });
+
+        if(_sweeping) {
+            _sweeping = false;
+            System.out.println(
+                "Password migration finished: " + _scanned.sum() + " scanned, "
+                + _migratedBySweep.sum() + " migrated, " + _skipped.sum() + " skipped."
+            );
+        }
+    }
+
+    /**
+     * Decrypts an encrypted password, hashes it and swaps the hash in.
+     * 
+     * @param user User to migrate.
+     * @param storedPassword Encrypted password read from the User.
+     * @return {@code true} if the hash was swapped in, {@code false} if the
+     * PasswordHasher refused it, the password's key isn't known or the password changed in the meantime.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean SweepUser(User user, String storedPassword) {
+        int version = _cryptographer.GetTagVersion(storedPassword);
+        if(version < 0) return false;
+        char[] buffer = storedPassword.substring(_cryptographer.GetTagLength(storedPassword)).toCharArray();
+        int length = _cryptographer.DecryptVigenere(buffer, buffer.length, buffer, version);
+        char[] passwordChars = Arrays.copyOf(buffer, length);
+        Arrays.fill(buffer, '\0');
+        try {
+            String hash = _passwordHasher.HashAsync(passwordChars).join();
+            return _database.ReplacePassword(user, storedPassword, hash);
+        }
+        catch(CompletionException e) {
+            return false;
+        }
+        finally {
+            Arrays.fill(passwordChars, '\0');
+        }
+    }
+
+    /**
+     * Parks the sweeper until the given time or until the sweep is stopped.
+     * 
+     * @param deadline {@link System#nanoTime()} to wait until.
+     * @apiNote Added in version 1.5.
+     */
+    private void WaitUntil(long deadline) {
+        long remaining;
+        while(_sweeping && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Parks the sweeper while logins are waiting for the PasswordHasher
+     * or every hashing thread is busy.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void WaitForIdleHasher() {
+        while(_sweeping && !_passwordHasher.IsIdle()) {
+            LockSupport.parkNanos(this, BUSY_WAIT);
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
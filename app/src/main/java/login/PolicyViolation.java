@@ -0,0 +1,76 @@
+package login;
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: PolicyViolation.java
+ * 
+ * The PolicyViolation enum lists every rule an InputPolicy or Validation check can report.
+ * Checks return an int bitmask of {@link #Mask()} values so all
+ * violated rules are reported at once without allocating.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see InputPolicy
+ * @apiNote Added in version 1.5.
+ */
+public enum PolicyViolation {
+    EMPTY(MessageHandler.EMPTY_INPUT),
+    TOO_SHORT(MessageHandler.POLICY_FAILED),
+    TOO_LONG(MessageHandler.POLICY_FAILED),
+    FORBIDDEN_CHARACTER(MessageHandler.SQL_INJECTION),
+    INVALID_CHARACTER(MessageHandler.POLICY_FAILED),
+    MISSING_UPPERCASE(MessageHandler.POLICY_FAILED),
+    MISSING_LOWERCASE(MessageHandler.POLICY_FAILED),
+    MISSING_DIGIT(MessageHandler.POLICY_FAILED),
+    NOT_A_NUMBER(MessageHandler.INVALID_INPUT);
+
+    //#region CONSTANTS
+    private static final PolicyViolation[] VALUES = values();
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final String _messageKey;
+    private final int _mask;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    PolicyViolation(String messageKey) {
+        _messageKey = messageKey;
+        _mask = 1 << ordinal();
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public String GetMessageKey() { return _messageKey; }
+    public int Mask()             { return _mask;       }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Checks if this violation is set in the bitmask.
+     * 
+     * @param violations Bitmask returned by an InputPolicy check.
+     * @return {@code true} if this violation is in the bitmask.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean In(int violations) {
+        return (violations & _mask) != 0;
+    }
+
+    /**
+     * Picks the violation whose message should be shown to the user.
+     * Empty input comes first, then forbidden characters, then policy rules,
+     * matching the order the checks were done in before version 1.5.
+     * 
+     * @param violations Bitmask returned by an InputPolicy check.
+     * @return Violation to report, {@code null} if the bitmask is empty.
+     * @apiNote Added in version 1.5.
+     */
+    public static PolicyViolation First(int violations) {
+        if(violations == 0) return null;
+        if(EMPTY.In(violations)) return EMPTY;
+        if(FORBIDDEN_CHARACTER.In(violations)) return FORBIDDEN_CHARACTER;
+        return VALUES[Integer.numberOfTrailingZeros(violations)];
+    }
+    //#endregion FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,393 @@
+package login;
+
+//#region IMPORTS
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: SprayDetector.java
+ * 
+ * The SprayDetector class looks for credential stuffing and password spraying,
+ * where one password is tried against many usernames or one source tries many
+ * logins. The LockoutTracker can't see either since each User only fails a few
+ * times. Every wrong password is counted by its encrypted form and by the
+ * source it came from in count-min sketches over a sliding window, and the
+ * most frequent of each are kept in a small top-K list. Memory is fixed no
+ * matter how many passwords or sources are seen.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see LockoutTracker
+ * @see PasswordHandler
+ * @apiNote Added in version 1.5.
+ * @implNote Counts are estimates that are at most slightly too high from
+ * collisions in the sketch. Passwords are only kept as a hash fingerprint,
+ * never as text.
+ */
+public class SprayDetector {
+    //#region CONSTANTS
+    /**
+     * Failures with the same password inside the window that flag it as sprayed.
+     */
+    public static final int PASSWORD_THRESHOLD = 100;
+
+    /**
+     * Failures from the same source inside the window that flag the source.
+     */
+    public static final int SOURCE_THRESHOLD = 200;
+
+    private static final int DEPTH          = 4;
+    private static final int WIDTH          = 8192; // Must be a power of two.
+    private static final int SLICES         = 10;
+    private static final long SLICE_NANOS   = TimeUnit.MINUTES.toNanos(1);
+    private static final int TOP_K          = 10;
+    private static final int MIN_TOP_COUNT  = 5;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final Dimension _passwords = new Dimension();
+    private final Dimension _sources = new Dimension();
+    private final LongAdder _flagged = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final SprayDetector INSTANCE = new SprayDetector();
+    }
+
+    private SprayDetector() {}
+
+    public static SprayDetector GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region GETTERS
+    public long GetFlagged() { return _flagged.sum(); }
+
+    /**
+     * Returns the memory used by the sketches.
+     * 
+     * @return Size of every counter in bytes.
+     * @apiNote Added in version 1.5.
+     */
+    public long GetSizeBytes() {
+        return 2L * SLICES * DEPTH * WIDTH * Integer.BYTES;
+    }
+
+    /**
+     * Returns the most frequent wrong passwords in the window.
+     * 
+     * @return Up to {@link #TOP_K} password fingerprints with their estimated failures, most first.
+     * @apiNote Added in version 1.5.
+     */
+    public List<HeavyHitter> GetTopPasswords() {
+        return _passwords.GetTop(System.nanoTime());
+    }
+
+    /**
+     * Returns the sources with the most wrong passwords in the window.
+     * 
+     * @return Up to {@link #TOP_K} sources with their estimated failures, most first.
+     * @apiNote Added in version 1.5.
+     */
+    public List<HeavyHitter> GetTopSources() {
+        return _sources.GetTop(System.nanoTime());
+    }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Records a wrong password.
+     * 
+     * @param encryptedPassword Buffer holding the encrypted attempted password.
+     * @param length Number of chars used in the buffer.
+     * @param source Where the attempt came from, {@code null} if unknown.
+     * @return {@code true} if the password or source is now over its threshold, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean RecordFailure(char[] encryptedPassword, int length, String source) {
+        long now = System.nanoTime();
+
+        long passwordHash = Hash(encryptedPassword, length);
+        long passwordCount = _passwords.Add(passwordHash, now);
+        if(_passwords.IsTopCandidate(passwordCount)) {
+            _passwords.Offer(String.format("%016x", passwordHash), passwordHash, passwordCount, now);
+        }
+
+        long sourceCount = 0;
+        if(source != null) {
+            long sourceHash = Hash(source);
+            sourceCount = _sources.Add(sourceHash, now);
+            if(_sources.IsTopCandidate(sourceCount)) {
+                _sources.Offer(source, sourceHash, sourceCount, now);
+            }
+        }
+
+        if(passwordCount < PASSWORD_THRESHOLD && sourceCount < SOURCE_THRESHOLD) return false;
+        _flagged.increment();
+        return true;
+    }
+
+    /**
+     * Checks if a source is over its threshold, without recording anything.
+     * 
+     * @param source Where an attempt came from, {@code null} if unknown.
+     * @return {@code true} if the source is flagged, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean IsSourceFlagged(String source) {
+        if(source == null) return false;
+        return _sources.Estimate(Hash(source), SliceIndex(System.nanoTime())) >= SOURCE_THRESHOLD;
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Returns the time slice a time falls in.
+     * 
+     * @param now A {@link System#nanoTime()} value, may be negative.
+     * @return Index of the slice.
+     * @apiNote Added in version 1.5.
+     */
+    private static long SliceIndex(long now) {
+        return Math.floorDiv(now, SLICE_NANOS);
+    }
+
+    /**
+     * Hashes chars into 64 bits with FNV-1a followed by a final mix.
+     * 
+     * @param chars Chars to hash.
+     * @param length Number of chars to hash.
+     * @return 64-bit hash, split into two 32-bit hashes for the sketch rows.
+     * @apiNote Added in version 1.5.
+     */
+    private static long Hash(char[] chars, int length) {
+        long hash = 0xCBF29CE484222325L;
+        for(int i = 0; i < length; i++) {
+            hash = (hash ^ chars[i]) * 0x100000001B3L;
+        }
+        return Mix(hash);
+    }
+
+    /**
+     * Same as {@link #Hash(char[], int)} over a String.
+     * 
+     * @param value String to hash.
+     * @return 64-bit hash.
+     * @apiNote Added in version 1.5.
+     */
+    private static long Hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return Mix(hash);
+    }
+
+    /**
+     * Spreads every bit of the hash across the whole value.
+     * 
+     * @param hash Hash to mix.
+     * @return Mixed hash.
+     * @apiNote Added in version 1.5.
+     */
+    private static long Mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * A key and its estimated failures in the window.
+     */
+    public static class HeavyHitter {
+        private final String _key;
+        private final long _count;
+
+        private HeavyHitter(String key, long count) {
+            _key = key;
+            _count = count;
+        }
+
+        public String GetKey() { return _key;   }
+        public long GetCount() { return _count; }
+    }
+
+    /**
+     * A count-min sketch per time slice in a ring, plus the top-K keys.
+     * A slice is cleared by the first thread to write to it after its time
+     * has passed, so the window slides one slice at a time. A failure counted
+     * by another thread while a slice is being cleared can be lost. Only the
+     * top-K list takes a lock, and only for counts high enough to get into it.
+     */
+    private static class Dimension {
+        private final AtomicIntegerArray[] _slices = new AtomicIntegerArray[SLICES];
+        private final AtomicLongArray _sliceIndexes = new AtomicLongArray(SLICES);
+
+        private final String[] _topKeys = new String[TOP_K];
+        private final long[] _topHashes = new long[TOP_K];
+        private final long[] _topCounts = new long[TOP_K];
+        private final long[] _topSlices = new long[TOP_K];
+        private int _topSize = 0;
+        private volatile long _topMin = MIN_TOP_COUNT - 1;
+
+        private Dimension() {
+            for(int i = 0; i < SLICES; i++) {
+                _slices[i] = new AtomicIntegerArray(DEPTH * WIDTH);
+                _sliceIndexes.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        /**
+         * Counts a failure for the key and estimates its failures in the window.
+         * 
+         * @param hash Hash of the key.
+         * @param now Current {@link System#nanoTime()}.
+         * @return Estimated failures in the window, including this one.
+         * @apiNote Added in version 1.5.
+         */
+        private long Add(long hash, long now) {
+            long index = SliceIndex(now);
+            int slot = (int)Math.floorMod(index, (long)SLICES);
+            AtomicIntegerArray cells = _slices[slot];
+
+            long seen = _sliceIndexes.get(slot);
+            if(seen < index && _sliceIndexes.compareAndSet(slot, seen, index)) {
+                for(int i = 0; i < cells.length(); i++) {
+                    cells.set(i, 0);
+                }
+            }
+
+            // Conservative update: only the rows at the key's current minimum are raised,
+            // which keeps the other rows from drifting up on collisions.
+            int min = Integer.MAX_VALUE;
+            for(int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, cells.get(Cell(hash, row)));
+            }
+            for(int row = 0; row < DEPTH; row++) {
+                int cell = Cell(hash, row);
+                if(cells.get(cell) <= min) cells.incrementAndGet(cell);
+            }
+            return Estimate(hash, index);
+        }
+
+        /**
+         * Estimates the failures for the key in the slices of the window ending at the given one.
+         * 
+         * @param hash Hash of the key.
+         * @param index Newest slice of the window.
+         * @return Smallest row total, which is never below the real count.
+         * @apiNote Added in version 1.5.
+         */
+        private long Estimate(long hash, long index) {
+            long estimate = Long.MAX_VALUE;
+            for(int row = 0; row < DEPTH; row++) {
+                int cell = Cell(hash, row);
+                long total = 0;
+                for(int slot = 0; slot < SLICES; slot++) {
+                    long seen = _sliceIndexes.get(slot);
+                    if(seen <= index && seen > index - SLICES) {
+                        total += _slices[slot].get(cell);
+                    }
+                }
+                estimate = Math.min(estimate, total);
+            }
+            return estimate;
+        }
+
+        private static int Cell(long hash, int row) {
+            int h1 = (int)hash;
+            int h2 = (int)(hash >>> 32) | 1;
+            return row * WIDTH + ((h1 + row * h2) & (WIDTH - 1));
+        }
+
+        private boolean IsTopCandidate(long count) {
+            return count > _topMin;
+        }
+
+        /**
+         * Puts a key in the top-K list if its count beats the smallest one there.
+         * Keys last counted before the window started count as zero.
+         * 
+         * @param key Key to report.
+         * @param hash Hash of the key.
+         * @param count Estimated failures of the key.
+         * @param now Current {@link System#nanoTime()}.
+         * @apiNote Added in version 1.5.
+         */
+        private synchronized void Offer(String key, long hash, long count, long now) {
+            long index = SliceIndex(now);
+            int smallest = 0;
+            for(int i = 0; i < _topSize; i++) {
+                if(_topHashes[i] == hash) {
+                    _topCounts[i] = count;
+                    _topSlices[i] = index;
+                    UpdateTopMin(index);
+                    return;
+                }
+                if(TopCount(i, index) < TopCount(smallest, index)) smallest = i;
+            }
+
+            if(_topSize < TOP_K) {
+                smallest = _topSize++;
+            }
+            else if(count <= TopCount(smallest, index)) {
+                return;
+            }
+            _topKeys[smallest] = key;
+            _topHashes[smallest] = hash;
+            _topCounts[smallest] = count;
+            _topSlices[smallest] = index;
+            UpdateTopMin(index);
+        }
+
+        private long TopCount(int i, long index) {
+            return _topSlices[i] > index - SLICES ? _topCounts[i] : 0;
+        }
+
+        private void UpdateTopMin(long index) {
+            long min = Long.MAX_VALUE;
+            for(int i = 0; i < _topSize; i++) {
+                min = Math.min(min, TopCount(i, index));
+            }
+            _topMin = _topSize < TOP_K ? MIN_TOP_COUNT - 1 : Math.max(min, MIN_TOP_COUNT - 1);
+        }
+
+        /**
+         * Returns the top-K keys with their counts estimated again for the current window,
+         * dropping keys that have slid out of it.
+         * 
+         * @param now Current {@link System#nanoTime()}.
+         * @return Keys with their estimated failures, most first.
+         * @apiNote Added in version 1.5.
+         */
+        private synchronized List<HeavyHitter> GetTop(long now) {
+            long index = SliceIndex(now);
+            List<HeavyHitter> top = new ArrayList<>(_topSize);
+            for(int i = 0; i < _topSize; i++) {
+                _topCounts[i] = Estimate(_topHashes[i], index);
+                _topSlices[i] = index;
+                if(_topCounts[i] >= MIN_TOP_COUNT) {
+                    top.add(new HeavyHitter(_topKeys[i], _topCounts[i]));
+                }
+            }
+            UpdateTopMin(index);
+            top.sort(Comparator.comparingLong(HeavyHitter::GetCount).reversed());
+            return top;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
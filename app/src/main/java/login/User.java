@@ -8,20 +8,29 @@ package login;
  * Users have a username, password, and 10-digit MFA code.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @apiNote Added in version 1.0.
  * @apiNote Changed in version 1.1 from a record class to a normal class
  * in order to gain more control over boilerplate code (getters).
  * @apiNote Reverted to record class in version 1.2 due to new Cryptographer class.
  * @apiNote Reverted to normal class again in version 1.3 due to new DefaultPassword class.
  * @apiNote Renamed variables and functions, and adjusted formatting in version 1.4.
+ * @apiNote Made the password field volatile in version 1.5 so a password set on one
+ * thread is immediately visible to logins on other threads.
+ * @apiNote Added a dirty flag in version 1.5 so the UserExporter only re-encodes changed Users.
  * @implNote Can take in plaintext variables, but preferred to use Cryptographer class if possible.
  */
 public class User {
     //#region VARIABLES
     private final String _username;
-    private String _password;
+    private volatile String _password;
     private final int _code;
+
+    /**
+     * Set when the User changed since it was last exported by the UserExporter.
+     * Guarded by {@code this}.
+     */
+    private boolean _dirty = false;
     //#endregion VARIABLES
 
     //#region CONSTRUCTORS
@@ -30,6 +39,7 @@ public class User {
      * 
      * @param username Username of the User.
      * @param code MFA Code of the User.
+     * @apiNote Updated in version 1.5 to store the password in a volatile field.
      */
     public User(String username, int code) {
         _username = username;
@@ -43,6 +53,7 @@ public class User {
      * @param username Username of the User.
      * @param password Password of the User.
      * @param code MFA Code of the User.
+     * @apiNote Updated in version 1.5 to store the password in a volatile field.
      */
     public User(String username, String password, int code) {
         _username = username;
@@ -60,4 +71,29 @@ public class User {
     //#region SETTERS
     public void SetPassword(String password) { _password = password; }
     //#endregion SETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Marks the User as changed since the last export.
+     * 
+     * @return {@code true} if the User was not already marked.
+     * @see UserExporter
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized boolean MarkDirty() {
+        if(_dirty) return false;
+        _dirty = true;
+        return true;
+    }
+
+    /**
+     * Clears the mark set by {@link #MarkDirty()} once the User is being exported.
+     * 
+     * @see UserExporter
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void ClearDirty() {
+        _dirty = false;
+    }
+    //#endregion FUNCTIONS
 }
\ No newline at end of file
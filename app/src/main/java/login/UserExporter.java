@@ -0,0 +1,362 @@
+package login;
+
+//#region IMPORTS
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserExporter.java
+ * 
+ * The UserExporter class writes the login info file on a background thread.
+ * Any number of export requests made while an export is running are
+ * coalesced into the one after it. The exported line of every User is kept,
+ * so an export only re-encodes the Users marked dirty since the last one.
+ * For UserStores that keep Users off the heap the lines aren't kept, so every
+ * export re-reads each User from the store instead of holding a heap copy of
+ * every password.
+ * The file is written to a temporary file through a buffered channel and
+ * renamed over the old one, so readers never see a partial file.
+ * After a re-key every line is dropped and rebuilt from the current Users.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see User
+ * @apiNote Added in version 1.5 to take the export off the login path.
+ */
+public class UserExporter {
+    //#region CONSTANTS
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final Path _path;
+    private final Consumer<Consumer<User>> _forEachUser;
+    private final Thread _worker;
+
+    /**
+     * Whether the line of every User is kept in {@link #_lines} between exports.
+     */
+    private final boolean _keepLines;
+
+    /**
+     * Users whose line has to be re-encoded. A User is only queued once until it is exported.
+     */
+    private final Queue<User> _dirty = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Last exported line of every User, in file order. Only touched by the worker thread.
+     */
+    private final Map<String, byte[]> _lines = new LinkedHashMap<>();
+    private boolean _loaded = false;
+
+    /**
+     * Set once the file has been written with every line in {@link #_lines}.
+     */
+    private boolean _written = false;
+
+    /**
+     * Completed by the next export, {@code null} if none has been requested.
+     * Guarded by {@code this}.
+     */
+    private CompletableFuture<Void> _requested = null;
+    private boolean _closed = false;
+
+    /**
+     * Set when every line has to be rebuilt before the next export. Guarded by {@code this}.
+     */
+    private boolean _reloadRequested = false;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs the exporter and starts its worker thread.
+     * 
+     * @param path Path of the login info file.
+     * @param forEachUser Passes every User to its argument. Called for the first export,
+     * or for every export if the lines aren't kept.
+     * @param keepLines {@code true} to keep every line on the heap between exports,
+     * {@code false} to re-read every User on each export.
+     * @apiNote Added in version 1.5.
+     */
+    public UserExporter(Path path, Consumer<Consumer<User>> forEachUser, boolean keepLines) {
+        _path = path;
+        _forEachUser = forEachUser;
+        _keepLines = keepLines;
+        _worker = new Thread(this::Run, "login-user-export");
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region FUNCTIONS
+    /**
+     * Marks a User as changed so its line is re-encoded by the next export.
+     * 
+     * @param user New User or User whose password changed.
+     * @apiNote Added in version 1.5.
+     */
+    public void MarkDirty(User user) {
+        if(user.MarkDirty()) {
+            _dirty.add(user);
+        }
+    }
+
+    /**
+     * Drops every exported line so the next export rebuilds them from the current Users.
+     * Used after a re-key, when every User has a new encrypted username.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized void Reload() {
+        _reloadRequested = true;
+    }
+
+    /**
+     * Requests an export without waiting for it.
+     * 
+     * @return Future completed once an export started after this call has finished.
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized CompletableFuture<Void> Export() {
+        if(_closed) {
+            return CompletableFuture.failedFuture(new IOException("User exporter is closed."));
+        }
+        if(_requested == null) {
+            _requested = new CompletableFuture<>();
+            notifyAll();
+        }
+        return _requested;
+    }
+
+    /**
+     * Stops the worker thread after it finishes any requested export.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void Close() {
+        synchronized(this) {
+            _closed = true;
+            notifyAll();
+        }
+        try {
+            _worker.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Worker thread loop. Waits for a request and runs one export for
+     * every request made up to the point it starts.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Run() {
+        while(true) {
+            CompletableFuture<Void> request;
+            boolean reload;
+            synchronized(this) {
+                while(_requested == null && !_closed) {
+                    try {
+                        wait();
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                if(_requested == null) return;
+                request = _requested;
+                _requested = null;
+                reload = _reloadRequested;
+                _reloadRequested = false;
+            }
+
+            try {
+                WriteFile(reload);
+                request.complete(null);
+            }
+            catch(IOException | RuntimeException e) {
+                System.err.println("Error writing to file: " + e.getMessage());
+                request.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Re-encodes the dirty Users and writes every line to the file.
+     * Nothing is written if no User changed since the last export.
+     * 
+     * @param reload {@code true} to drop every line and load the Users again.
+     * @throws IOException If the file can't be written.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to rebuild every line after a re-key.
+     * @apiNote Updated in version 1.5 to re-read every User instead of keeping the lines
+     * when {@link #_keepLines} is off.
+     */
+    private void WriteFile(boolean reload) throws IOException {
+        boolean changed = _keepLines ? UpdateLines(reload) : ClearDirtyUsers() || reload;
+        if(_written && !changed) return;
+
+        Path temp = _path.resolveSibling(_path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            if(_keepLines) {
+                for(byte[] line : _lines.values()) {
+                    PutLine(channel, buffer, line);
+                }
+            }
+            else {
+                try {
+                    _forEachUser.accept(user -> {
+                        try {
+                            PutLine(channel, buffer, EncodeLine(user));
+                        }
+                        catch(IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+                catch(UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            WriteBuffer(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temp, _path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        _written = true;
+    }
+
+    /**
+     * Re-encodes the lines of the dirty Users, loading every line first if they
+     * aren't loaded or have to be rebuilt.
+     * 
+     * @param reload {@code true} to drop every line and load the Users again.
+     * @return {@code true} if any line changed, {@code false} if otherwise.
+     * @apiNote Added in version 1.5. Moved out of {@link #WriteFile(boolean)}.
+     */
+    private boolean UpdateLines(boolean reload) {
+        boolean changed = false;
+        if(reload && _loaded) {
+            // Queued Users may be old copies, the load below reads every current User anyway.
+            ClearDirtyUsers();
+            _lines.clear();
+            _loaded = false;
+        }
+        if(!_loaded) {
+            _forEachUser.accept(user -> _lines.put(user.GetUsername(), EncodeLine(user)));
+            _loaded = true;
+            changed = true;
+        }
+
+        User user;
+        while((user = _dirty.poll()) != null) {
+            // Cleared before reading so a change made during the export queues the User again.
+            user.ClearDirty();
+            _lines.put(user.GetUsername(), EncodeLine(user));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Empties the dirty queue without re-encoding anything. Cleared before the Users
+     * are read so a change made during the export queues the User again.
+     * 
+     * @return {@code true} if any User was queued, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean ClearDirtyUsers() {
+        boolean cleared = false;
+        User user;
+        while((user = _dirty.poll()) != null) {
+            user.ClearDirty();
+            cleared = true;
+        }
+        return cleared;
+    }
+
+    /**
+     * Adds a line to the buffer, writing out the buffer first if the line doesn't fit.
+     * 
+     * @param channel Channel to write to.
+     * @param buffer Buffer being filled.
+     * @param line Line to add.
+     * @throws IOException If the channel can't be written.
+     * @apiNote Added in version 1.5. Moved out of {@link #WriteFile(boolean)}.
+     */
+    private static void PutLine(FileChannel channel, ByteBuffer buffer, byte[] line) throws IOException {
+        if(line.length > buffer.remaining()) {
+            WriteBuffer(channel, buffer);
+            if(line.length > buffer.capacity()) {
+                WriteFully(channel, ByteBuffer.wrap(line));
+                return;
+            }
+        }
+        buffer.put(line);
+    }
+
+    /**
+     * Encodes the line written for a User.
+     * 
+     * @param user User to encode.
+     * @return The {@code username:password} line as UTF-8 bytes.
+     * @apiNote Added in version 1.5.
+     */
+    private static byte[] EncodeLine(User user) {
+        return (user.GetUsername() + ":" + user.GetPassword() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes out and clears the buffer.
+     * 
+     * @param channel Channel to write to.
+     * @param buffer Buffer filled since it was last cleared.
+     * @throws IOException If the channel can't be written.
+     * @apiNote Added in version 1.5.
+     */
+    private static void WriteBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        WriteFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes everything remaining in the buffer.
+     * 
+     * @param channel Channel to write to.
+     * @param buffer Buffer to write.
+     * @throws IOException If the channel can't be written.
+     * @apiNote Added in version 1.5.
+     */
+    private static void WriteFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
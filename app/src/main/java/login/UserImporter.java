@@ -0,0 +1,620 @@
+package login;
+
+//#region IMPORTS
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserImporter.java
+ * 
+ * The UserImporter class loads accounts from CSV or JSON-lines files into the Database.
+ * The file is read through a FileChannel in fixed-size chunks cut at the last line break,
+ * and each chunk is parsed, validated and encrypted on the common fork-join pool.
+ * Chunks are published in file order, each with one call to
+ * {@link Database#AddUsers(User[])}. Only a fixed number of chunks are in flight at
+ * once, so memory stays the same however large the file is.
+ * Rows that can't be imported are written to a reject file with their line number and
+ * reason. Passwords are never written there.
+ * Passwords are stored encrypted, hashing millions of them would take hours. With
+ * {@code -Dlogin.hash=pbkdf2} the PasswordMigrator rehashes them afterwards.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see Validation
+ * @see Cryptographer
+ * @apiNote Added in version 1.5.
+ */
+public class UserImporter {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    private final Database _database = Database.GetInstance();
+    private final Validation _validation = Validation.GetInstance();
+    //#endregion SERVICES
+
+    //#region ENUMS
+    /**
+     * Layout of an import file.
+     */
+    public enum Format {
+        /**
+         * {@code username,password,code} per line, an optional header and double-quoted fields.
+         */
+        CSV,
+
+        /**
+         * One {@code {"username": ..., "password": ..., "code": ...}} object per line.
+         */
+        JSON_LINES
+    }
+    //#endregion ENUMS
+
+    //#region CONSTANTS
+    /**
+     * Bytes read per chunk. Also the longest line that can be imported.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Chunks in flight per core. Keeps every core busy when one chunk takes longer
+     * than the others, while bounding memory to a few chunks per core.
+     */
+    private static final int CHUNKS_PER_CORE = 2;
+
+    /**
+     * How often progress is printed while importing.
+     */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private static final String LINE_TOO_LONG      = "Line is longer than " + CHUNK_SIZE + " bytes.";
+    private static final String WRONG_COLUMN_COUNT = "Expected the columns username,password,code.";
+    private static final String MALFORMED_JSON     = "Expected a JSON object with username, password and code.";
+    private static final String USERNAME_TAKEN     = "Username is already taken.";
+    private static final String VALUE_TOO_LONG     = "Username or password is too long to store.";
+    //#endregion CONSTANTS
+
+    //#region SINGLETON PATTERN
+    private static class InstanceHolder {
+        private static final UserImporter INSTANCE = new UserImporter();
+    }
+
+    private UserImporter() {}
+
+    public static UserImporter GetInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    //#endregion SINGLETON PATTERN
+
+    //#region FUNCTIONS
+    /**
+     * Imports a file, telling the format from its extension: {@code .jsonl},
+     * {@code .ndjson} and {@code .json} are JSON lines, anything else is CSV.
+     * 
+     * @param file File to import.
+     * @param rejectFile File to write rejected rows to, replaced if it exists.
+     * @return Report of the import.
+     * @throws IOException If either file can't be read or written.
+     * @apiNote Added in version 1.5.
+     */
+    public Report Import(Path file, Path rejectFile) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json");
+        return Import(file, json ? Format.JSON_LINES : Format.CSV, rejectFile);
+    }
+
+    /**
+     * Imports a file.
+     * 
+     * @param file File to import.
+     * @param format Layout of the file.
+     * @param rejectFile File to write rejected rows to, replaced if it exists.
+     * @return Report of the import.
+     * @throws IOException If either file can't be read or written.
+     * @apiNote Added in version 1.5.
+     */
+    public Report Import(Path file, Format format, Path rejectFile) throws IOException {
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+        Queue<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>(maxInFlight);
+        Report report = new Report();
+        long[] nextProgress = { report._start + PROGRESS_INTERVAL };
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            rejects.write("line,username,reason");
+            rejects.newLine();
+
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            boolean ended = false;
+            boolean skipping = false;
+            boolean first = true;
+            while(!ended || buffer.position() > 0) {
+                if(!ended && channel.read(buffer) < 0) {
+                    ended = true;
+                }
+                if(!ended && buffer.hasRemaining()) continue;
+
+                int lineBreak = LastLineBreak(buffer);
+                int length = lineBreak >= 0 ? lineBreak + 1 : ended ? buffer.position() : -1;
+                if(length < 0) {
+                    // A line too long for the buffer is dropped up to its line break.
+                    if(!skipping) {
+                        Chunk chunk = new Chunk();
+                        chunk._lines = 1;
+                        chunk._rows = 1;
+                        chunk.Reject(1, "", LINE_TOO_LONG);
+                        Submit(CompletableFuture.completedFuture(chunk), inFlight, maxInFlight, rejects, report, nextProgress);
+                        skipping = true;
+                        first = false;
+                    }
+                    report._bytes += buffer.position();
+                    buffer.clear();
+                    continue;
+                }
+
+                int offset = 0;
+                if(skipping) {
+                    offset = Math.min(length, IndexOfLineBreak(buffer, length) + 1);
+                    skipping = false;
+                }
+                byte[] bytes = new byte[length - offset];
+                buffer.get(offset, bytes);
+                buffer.flip().position(length);
+                buffer.compact();
+                report._bytes += length;
+
+                boolean header = first;
+                first = false;
+                Submit(CompletableFuture.supplyAsync(() -> ParseChunk(bytes, format, header)),
+                    inFlight, maxInFlight, rejects, report, nextProgress);
+            }
+            while(!inFlight.isEmpty()) {
+                Deliver(inFlight.poll(), rejects, report);
+            }
+        }
+        report._elapsed = System.nanoTime() - report._start;
+        return report;
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Queues a chunk, publishing the oldest one first if too many are in flight.
+     * 
+     * @param chunk Chunk being parsed.
+     * @param inFlight Chunks that aren't published yet.
+     * @param maxInFlight Most chunks in flight at once.
+     * @param rejects Reject file.
+     * @param report Report of the import.
+     * @param nextProgress When progress is printed next.
+     * @throws IOException If the reject file can't be written.
+     * @apiNote Added in version 1.5.
+     */
+    private void Submit(CompletableFuture<Chunk> chunk, Queue<CompletableFuture<Chunk>> inFlight, int maxInFlight,
+        BufferedWriter rejects, Report report, long[] nextProgress) throws IOException {
+        if(inFlight.size() == maxInFlight) {
+            Deliver(inFlight.poll(), rejects, report);
+        }
+        inFlight.add(chunk);
+
+        long now = System.nanoTime();
+        if(now >= nextProgress[0]) {
+            nextProgress[0] = now + PROGRESS_INTERVAL;
+            report._elapsed = now - report._start;
+            System.out.printf("Imported %d of %d rows, %.0f rows/s%n",
+                report._imported, report._rows, report.GetRowsPerSecond());
+        }
+    }
+
+    /**
+     * Waits for a chunk, adds its Users to the Database and writes its rejected rows.
+     * 
+     * @param future Chunk being parsed.
+     * @param rejects Reject file.
+     * @param report Report of the import.
+     * @throws IOException If the reject file can't be written.
+     * @apiNote Added in version 1.5.
+     */
+    private void Deliver(CompletableFuture<Chunk> future, BufferedWriter rejects, Report report) throws IOException {
+        Chunk chunk = future.join();
+        User[] users = chunk._users.toArray(new User[0]);
+        boolean[] added = _database.AddUsers(users);
+        for(int i = 0; i < added.length; i++) {
+            if(added[i]) {
+                report._imported++;
+            }
+            else {
+                boolean fits = UserLog.Fits(users[i].GetUsername()) && UserLog.Fits(users[i].GetPassword());
+                chunk.Reject(chunk._userLines.get(i), chunk._usernames.get(i), fits ? USERNAME_TAKEN : VALUE_TOO_LONG);
+            }
+        }
+
+        chunk._rejects.sort(Comparator.comparingInt(reject -> reject._line));
+        for(Reject reject : chunk._rejects) {
+            rejects.write(Long.toString(report._lines + reject._line));
+            rejects.write(',');
+            rejects.write(QuoteCsv(reject._username));
+            rejects.write(',');
+            rejects.write(QuoteCsv(reject._reason));
+            rejects.newLine();
+        }
+        report._rows += chunk._rows;
+        report._rejected += chunk._rejects.size();
+        report._lines += chunk._lines;
+    }
+
+    /**
+     * Parses, validates and encrypts the rows of a chunk on a pool thread.
+     * 
+     * @param bytes Whole lines of the file.
+     * @param format Layout of the file.
+     * @param first {@code true} if the chunk starts the file and may have a CSV header.
+     * @return The parsed chunk, with line numbers counted from its first line.
+     * @apiNote Added in version 1.5.
+     */
+    private Chunk ParseChunk(byte[] bytes, Format format, boolean first) {
+        Chunk chunk = new Chunk();
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        List<String> passwords = new ArrayList<>();
+        List<Integer> codes = new ArrayList<>();
+        String[] fields = new String[3];
+
+        int start = 0;
+        while(start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if(end < 0) end = text.length();
+            int stop = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            String line = text.substring(start, stop);
+            start = end + 1;
+            int lineNumber = ++chunk._lines;
+            if(line.isBlank()) continue;
+
+            boolean parsed = format == Format.CSV ? ParseCsv(line, fields) : ParseJson(line, fields);
+            if(format == Format.CSV && first && lineNumber == 1 && parsed && "username".equalsIgnoreCase(fields[0].trim())) continue;
+            chunk._rows++;
+            if(!parsed) {
+                chunk.Reject(lineNumber, fields[0] != null ? fields[0] : "", format == Format.CSV ? WRONG_COLUMN_COUNT : MALFORMED_JSON);
+                continue;
+            }
+
+            String reason = Validate(fields);
+            if(reason != null) {
+                chunk.Reject(lineNumber, fields[0], reason);
+                continue;
+            }
+            chunk._usernames.add(fields[0]);
+            chunk._userLines.add(lineNumber);
+            passwords.add(fields[1].isEmpty() ? null : fields[1]);
+            codes.add(_validation.ParseCode(fields[2]));
+        }
+
+        String[] usernames = _cryptographer.EncryptAll(chunk._usernames.toArray(new String[0]));
+        String[] encrypted = _cryptographer.EncryptAll(passwords.toArray(new String[0]));
+        for(int i = 0; i < usernames.length; i++) {
+            chunk._users.add(new User(usernames[i], encrypted[i], codes.get(i)));
+        }
+        return chunk;
+    }
+
+    /**
+     * Checks a row against the same policies a User signing up is held to.
+     * A missing password is allowed, the User then creates one on their first login.
+     * 
+     * @param fields Username, password and MFA Code.
+     * @return Reason the row is rejected, {@code null} if it is valid.
+     * @apiNote Added in version 1.5.
+     */
+    private String Validate(String[] fields) {
+        int violations = _validation.CheckUsername(fields[0]);
+        if(violations != 0) return _validation.GetViolationMessage(violations, "Username");
+
+        if(!fields[1].isEmpty()) {
+            char[] password = fields[1].toCharArray();
+            violations = _validation.CheckPassword(password, password.length);
+            if(violations != 0) return _validation.GetViolationMessage(violations, "Password");
+        }
+
+        violations = _validation.CheckCode(fields[2]);
+        if(violations != 0) return _validation.GetViolationMessage(violations, "MFA Code");
+        return null;
+    }
+
+    /**
+     * Splits a CSV line into its three fields. Fields may be wrapped in double quotes,
+     * with {@code ""} standing for a quote inside them.
+     * 
+     * @param line Line without its line break.
+     * @param fields Filled with the username, password and MFA Code. The username
+     * is filled in even if the line is malformed, for the reject file.
+     * @return {@code true} if the line has exactly three fields, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean ParseCsv(String line, String[] fields) {
+        fields[0] = null;
+        StringBuilder field = new StringBuilder();
+        int count = 0;
+        int i = 0;
+        while(true) {
+            field.setLength(0);
+            if(i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while(true) {
+                    if(i >= line.length()) return false;
+                    char c = line.charAt(i++);
+                    if(c != '"') {
+                        field.append(c);
+                    }
+                    else if(i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                if(i < line.length() && line.charAt(i) != ',') return false;
+            }
+            else {
+                int comma = line.indexOf(',', i);
+                int end = comma < 0 ? line.length() : comma;
+                field.append(line, i, end);
+                i = end;
+            }
+
+            if(count == 3) return false;
+            fields[count++] = field.toString();
+            if(i >= line.length()) break;
+            i++;
+        }
+        return count == 3;
+    }
+
+    /**
+     * Reads the username, password and code of a flat JSON object.
+     * Values may be strings, numbers or {@code null}, other keys are ignored.
+     * 
+     * @param line Line without its line break.
+     * @param fields Filled with the username, password and MFA Code. A missing or
+     * {@code null} password is filled in as empty.
+     * @return {@code true} if the line is an object with a username and code, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean ParseJson(String line, String[] fields) {
+        fields[0] = null;
+        fields[1] = "";
+        fields[2] = null;
+        int[] position = { SkipSpace(line, 0) };
+        if(!Expect(line, position, '{')) return false;
+        if(Expect(line, position, '}')) return position[0] == line.length();
+
+        do {
+            String key = ReadJsonString(line, position);
+            if(key == null || !Expect(line, position, ':')) return false;
+            String value = ReadJsonValue(line, position);
+            if(value == null) return false;
+            switch(key) {
+                case "username" -> fields[0] = value;
+                case "password" -> fields[1] = value;
+                case "code"     -> fields[2] = value;
+                default         -> {}
+            }
+        } while(Expect(line, position, ','));
+
+        return Expect(line, position, '}') && position[0] == line.length()
+            && fields[0] != null && fields[2] != null;
+    }
+
+    /**
+     * Reads a JSON value and the space after it.
+     * 
+     * @param line Line being parsed.
+     * @param position Index to read from, moved past the value.
+     * @return The value as text, empty for {@code null}, {@code null} if it isn't a
+     * string, number or {@code null}.
+     * @apiNote Added in version 1.5.
+     */
+    private static String ReadJsonValue(String line, int[] position) {
+        if(position[0] < line.length() && line.charAt(position[0]) == '"') {
+            return ReadJsonString(line, position);
+        }
+        int start = position[0];
+        int end = start;
+        while(end < line.length() && "-+.eE0123456789nul".indexOf(line.charAt(end)) >= 0) end++;
+        String value = line.substring(start, end);
+        position[0] = SkipSpace(line, end);
+        if(value.equals("null")) return "";
+        return !value.isEmpty() && value.chars().allMatch(c -> c >= '0' && c <= '9') ? value : null;
+    }
+
+    /**
+     * Reads a JSON string and the space after it.
+     * 
+     * @param line Line being parsed.
+     * @param position Index of the opening quote, moved past the string.
+     * @return The unescaped string, {@code null} if it is malformed.
+     * @apiNote Added in version 1.5.
+     */
+    private static String ReadJsonString(String line, int[] position) {
+        int i = position[0];
+        if(i >= line.length() || line.charAt(i) != '"') return null;
+        StringBuilder value = new StringBuilder();
+        i++;
+        while(i < line.length()) {
+            char c = line.charAt(i++);
+            if(c == '"') {
+                position[0] = SkipSpace(line, i);
+                return value.toString();
+            }
+            if(c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if(i >= line.length()) return null;
+            char escaped = line.charAt(i++);
+            switch(escaped) {
+                case '"', '\\', '/' -> value.append(escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if(i + 4 > line.length()) return null;
+                    int code = 0;
+                    for(int j = 0; j < 4; j++) {
+                        int digit = Character.digit(line.charAt(i++), 16);
+                        if(digit < 0) return null;
+                        code = code * 16 + digit;
+                    }
+                    value.append((char)code);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Consumes a char and the space after it if it is next.
+     * 
+     * @param line Line being parsed.
+     * @param position Index to read from, moved past the char if it matched.
+     * @param expected Char to look for.
+     * @return {@code true} if it was next, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    private static boolean Expect(String line, int[] position, char expected) {
+        if(position[0] >= line.length() || line.charAt(position[0]) != expected) return false;
+        position[0] = SkipSpace(line, position[0] + 1);
+        return true;
+    }
+
+    /**
+     * Skips JSON whitespace.
+     * 
+     * @param line Line being parsed.
+     * @param index Index to start at.
+     * @return Index of the next char that isn't whitespace.
+     * @apiNote Added in version 1.5.
+     */
+    private static int SkipSpace(String line, int index) {
+        while(index < line.length() && " \t\r".indexOf(line.charAt(index)) >= 0) index++;
+        return index;
+    }
+
+    /**
+     * Quotes a value for the reject file if it has a comma, quote or line break.
+     * 
+     * @param value Value to write.
+     * @return The value, quoted if needed.
+     * @apiNote Added in version 1.5.
+     */
+    private static String QuoteCsv(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Finds the last line break in the bytes read so far.
+     * 
+     * @param buffer Buffer being read into.
+     * @return Index of the last {@code '\n'}, {@code -1} if there is none.
+     * @apiNote Added in version 1.5.
+     */
+    private static int LastLineBreak(ByteBuffer buffer) {
+        for(int i = buffer.position() - 1; i >= 0; i--) {
+            if(buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first line break in the bytes read so far.
+     * 
+     * @param buffer Buffer being read into.
+     * @param length Number of bytes to search.
+     * @return Index of the first {@code '\n'}, {@code length} if there is none.
+     * @apiNote Added in version 1.5.
+     */
+    private static int IndexOfLineBreak(ByteBuffer buffer, int length) {
+        for(int i = 0; i < length; i++) {
+            if(buffer.get(i) == '\n') return i;
+        }
+        return length;
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * Rows of one chunk after parsing.
+     */
+    private static class Chunk {
+        private final List<User> _users = new ArrayList<>();
+        private final List<String> _usernames = new ArrayList<>();
+        private final List<Integer> _userLines = new ArrayList<>();
+        private final List<Reject> _rejects = new ArrayList<>();
+        private int _rows;
+        private int _lines;
+
+        private void Reject(int line, String username, String reason) {
+            _rejects.add(new Reject(line, username, reason));
+        }
+    }
+
+    /**
+     * A row that wasn't imported.
+     */
+    private static class Reject {
+        private final int _line;
+        private final String _username;
+        private final String _reason;
+
+        private Reject(int line, String username, String reason) {
+            _line = line;
+            _username = username;
+            _reason = reason;
+        }
+    }
+
+    /**
+     * Counts and timing of an import.
+     */
+    public static class Report {
+        private final long _start = System.nanoTime();
+        private long _elapsed;
+        private long _bytes;
+        private long _lines;
+        private long _rows;
+        private long _imported;
+        private long _rejected;
+
+        public long GetRows()     { return _rows;                                   }
+        public long GetImported() { return _imported;                               }
+        public long GetRejected() { return _rejected;                               }
+        public long GetBytes()    { return _bytes;                                  }
+        public long GetMillis()   { return TimeUnit.NANOSECONDS.toMillis(_elapsed); }
+
+        public double GetRowsPerSecond()      { return _elapsed == 0 ? 0 : _rows * 1e9 / _elapsed;                   }
+        public double GetMegabytesPerSecond() { return _elapsed == 0 ? 0 : _bytes * 1e9 / _elapsed / (1024 * 1024); }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
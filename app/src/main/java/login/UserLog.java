@@ -0,0 +1,517 @@
+package login;
+
+//#region IMPORTS
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserLog.java
+ * 
+ * The UserLog class is the append-only write-ahead log behind the Database.
+ * Every created user and password change is written as a checksummed record.
+ * A single writer thread drains all records queued since its last flush,
+ * writes them together and forces them to disk with one fsync, so concurrent
+ * changes share the cost of a flush (group commit).
+ * On startup the log is replayed to rebuild the users, and a torn or corrupt
+ * tail left by a crash is cut off.
+ * When a UserSnapshot is loaded, only the tail written after it is replayed.
+ * If a write fails the log is cut back to the last committed record and stops
+ * taking records, so a torn record never sits in front of later ones.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see UserSnapshot
+ * @apiNote Added in version 1.5.
+ * @apiNote Users re-encrypted under a new key are written as their own record in version 1.5.
+ */
+public class UserLog implements AutoCloseable {
+    //#region CONSTANTS
+    private static final byte CREATE_USER     = 1;
+    private static final byte PASSWORD_CHANGE = 2;
+    private static final byte REKEY_USER      = 3;
+
+    /**
+     * Largest record the log will accept or replay. Anything bigger is treated as corruption.
+     */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    /**
+     * Largest encoded username or password a record can hold. Three of them still fit in one record.
+     */
+    public static final int MAX_VALUE_LENGTH = 16 * 1024;
+
+    /**
+     * Queued by {@link #close()} to tell the writer thread to stop.
+     */
+    private static final PendingWrite CLOSE_SIGNAL = new PendingWrite(new byte[0]);
+    //#endregion CONSTANTS
+
+    //#region INTERFACES
+    /**
+     * Receives each record while the log is replayed.
+     */
+    public interface ReplayHandler {
+        void OnCreateUser(String encryptedUsername, String encryptedPassword, int code);
+        void OnPasswordChange(String encryptedUsername, String encryptedPassword);
+        void OnRekeyUser(String encryptedUsername, String newEncryptedUsername, String newEncryptedPassword);
+    }
+    //#endregion INTERFACES
+
+    //#region VARIABLES
+    private final FileChannel _channel;
+    private final BlockingQueue<PendingWrite> _queue = new LinkedBlockingQueue<>();
+    private final Thread _writer;
+    private volatile boolean _closed = false;
+
+    /**
+     * Position in the log where the next queued record will be written.
+     */
+    private long _appendPosition = 0;
+
+    /**
+     * End of the last group forced to disk. Only used by the writer thread after replay.
+     */
+    private long _committedPosition = 0;
+
+    /**
+     * First write error, {@code null} while the log is healthy.
+     */
+    private volatile IOException _failure = null;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Opens or creates the log file. Call {@link #Replay(ReplayHandler)} before appending.
+     * 
+     * @param path Path of the log file.
+     * @throws IOException If the file can't be opened.
+     * @apiNote Added in version 1.5.
+     */
+    public UserLog(Path path) throws IOException {
+        _channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        _writer = new Thread(this::RunWriter, "login-user-log");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region FUNCTIONS
+    /**
+     * Replays every intact record from the start of the log, then cuts off
+     * anything after the last intact record so new records follow it.
+     * 
+     * @param handler Receives each record in the order it was written.
+     * @return Number of records replayed.
+     * @throws IOException If the file can't be read.
+     * @apiNote Added in version 1.5.
+     */
+    public long Replay(ReplayHandler handler) throws IOException {
+        return Replay(handler, 0);
+    }
+
+    /**
+     * Replays every intact record after the given position, then cuts off
+     * anything after the last intact record so new records follow it.
+     * 
+     * @param handler Receives each record in the order it was written.
+     * @param position Position to start from, as returned by {@link #GetAppendPosition()}.
+     * @return Number of records replayed.
+     * @throws IOException If the file can't be read or is shorter than {@code position}.
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized long Replay(ReplayHandler handler, long position) throws IOException {
+        if(position > _channel.size()) {
+            throw new IOException("User log ends before position " + position + ".");
+        }
+        long validEnd = position;
+        long records = 0;
+        _channel.position(position);
+
+        DataInputStream input = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(_channel), 64 * 1024)
+        );
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[256];
+        while(true) {
+            int length;
+            try {
+                length = input.readInt();
+                if(length <= 0 || length > MAX_RECORD_LENGTH) break;
+                if(body.length < length) body = new byte[length];
+                input.readFully(body, 0, length);
+                int checksum = input.readInt();
+
+                crc.reset();
+                crc.update(body, 0, length);
+                if((int)crc.getValue() != checksum) break;
+            }
+            catch(EOFException e) {
+                break; // Torn write at the end of the log.
+            }
+
+            if(!ApplyRecord(ByteBuffer.wrap(body, 0, length), handler)) break;
+            validEnd += Integer.BYTES + length + Integer.BYTES;
+            records++;
+        }
+
+        _channel.truncate(validEnd);
+        _channel.position(validEnd);
+        _appendPosition = validEnd;
+        _committedPosition = validEnd;
+        return records;
+    }
+
+    /**
+     * Queues a created user to be written.
+     * 
+     * @param encryptedUsername Encrypted username of the new User.
+     * @param encryptedPassword Encrypted password, {@code null} if none is set.
+     * @param code MFA Code of the new User.
+     * @return Future completed once the record is on disk.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> AppendCreateUser(String encryptedUsername, String encryptedPassword, int code) {
+        byte[] username = encryptedUsername.getBytes(StandardCharsets.UTF_8);
+        byte[] password = encryptedPassword == null ? null : encryptedPassword.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer body = ByteBuffer.allocate(1 + 2 + username.length + 4 + 2 + (password == null ? 0 : password.length));
+        body.put(CREATE_USER);
+        PutBytes(body, username);
+        body.putInt(code);
+        PutBytes(body, password);
+        return Enqueue(body.array());
+    }
+
+    /**
+     * Queues a password change to be written.
+     * 
+     * @param encryptedUsername Encrypted username of the User.
+     * @param encryptedPassword New encrypted password.
+     * @return Future completed once the record is on disk.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> AppendPasswordChange(String encryptedUsername, String encryptedPassword) {
+        byte[] username = encryptedUsername.getBytes(StandardCharsets.UTF_8);
+        byte[] password = encryptedPassword.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer body = ByteBuffer.allocate(1 + 2 + username.length + 2 + password.length);
+        body.put(PASSWORD_CHANGE);
+        PutBytes(body, username);
+        PutBytes(body, password);
+        return Enqueue(body.array());
+    }
+
+    /**
+     * Queues a User re-encrypted under a new key to be written.
+     * 
+     * @param encryptedUsername Encrypted username of the User under the old key.
+     * @param newEncryptedUsername Encrypted username under the new key.
+     * @param newEncryptedPassword Password under the new key, {@code null} if none is set.
+     * @return Future completed once the record is on disk.
+     * @see KeyRotator
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> AppendRekeyUser(String encryptedUsername, String newEncryptedUsername, String newEncryptedPassword) {
+        byte[] username = encryptedUsername.getBytes(StandardCharsets.UTF_8);
+        byte[] newUsername = newEncryptedUsername.getBytes(StandardCharsets.UTF_8);
+        byte[] password = newEncryptedPassword == null ? null : newEncryptedPassword.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer body = ByteBuffer.allocate(1 + 2 + username.length + 2 + newUsername.length + 2 + (password == null ? 0 : password.length));
+        body.put(REKEY_USER);
+        PutBytes(body, username);
+        PutBytes(body, newUsername);
+        PutBytes(body, password);
+        return Enqueue(body.array());
+    }
+
+    /**
+     * Checks if a username or password is short enough to be written to the log.
+     * 
+     * @param value Encrypted username or password, may be {@code null}.
+     * @return {@code true} if its UTF-8 form is at most {@link #MAX_VALUE_LENGTH} bytes
+     * or it is {@code null}, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public static boolean Fits(String value) {
+        if(value == null || value.length() * 3 <= MAX_VALUE_LENGTH) return true;
+        return value.length() <= MAX_VALUE_LENGTH
+            && value.getBytes(StandardCharsets.UTF_8).length <= MAX_VALUE_LENGTH;
+    }
+
+    /**
+     * Returns a future that completes once every record queued before this call is on disk.
+     * 
+     * @return Future completed after the writer's next flush.
+     * @apiNote Added in version 1.5.
+     */
+    public CompletableFuture<Void> Flush() {
+        return Enqueue(null);
+    }
+
+    /**
+     * Returns the position the next queued record will be written at.
+     * Every record queued before this call lies before it.
+     * 
+     * @return Position in bytes from the start of the log.
+     * @apiNote Added in version 1.5.
+     */
+    public synchronized long GetAppendPosition() {
+        return _appendPosition;
+    }
+
+    /**
+     * Stops the writer thread after it flushes what is already queued, then closes the file.
+     * 
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        _closed = true;
+        _queue.add(CLOSE_SIGNAL);
+        try {
+            _writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Fail anything that raced in behind the close signal.
+        PendingWrite write;
+        while((write = _queue.poll()) != null) {
+            write._done.completeExceptionally(new IOException("User log is closed."));
+        }
+        _channel.close();
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Adds a record body to the queue for the writer thread.
+     * 
+     * @param body Record type and payload, {@code null} to only wait for a flush.
+     * @return Future completed once the record is on disk.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to refuse records once a write has failed.
+     */
+    private synchronized CompletableFuture<Void> Enqueue(byte[] body) {
+        PendingWrite write = new PendingWrite(body);
+        if(_closed) {
+            write._done.completeExceptionally(new IOException("User log is closed."));
+            return write._done;
+        }
+        if(_failure != null) {
+            write._done.completeExceptionally(new IOException("User log failed: " + _failure.getMessage(), _failure));
+            return write._done;
+        }
+        if(body != null) {
+            _appendPosition += Integer.BYTES + body.length + Integer.BYTES;
+        }
+        _queue.add(write);
+        return write._done;
+    }
+
+    /**
+     * Writer thread loop. Waits for at least one record, takes everything
+     * else that queued up in the meantime and commits it as one group.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void RunWriter() {
+        List<PendingWrite> group = new ArrayList<>();
+        while(true) {
+            try {
+                group.add(_queue.take());
+            }
+            catch(InterruptedException e) {
+                return;
+            }
+            _queue.drainTo(group);
+
+            boolean closing = group.remove(CLOSE_SIGNAL);
+            if(!group.isEmpty()) {
+                CommitGroup(group);
+            }
+            group.clear();
+            if(closing) return;
+        }
+    }
+
+    /**
+     * Writes a group of records and forces them to disk with a single fsync.
+     * 
+     * @param group Records to commit. Their futures are completed here.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to cut the log back and fail every later record after a write error.
+     */
+    private void CommitGroup(List<PendingWrite> group) {
+        IOException failure = _failure;
+        if(failure != null) {
+            // Queued before the error was seen, so they are past the last good record too.
+            for(PendingWrite write : group) {
+                write._done.completeExceptionally(new IOException("User log failed: " + failure.getMessage(), failure));
+            }
+            return;
+        }
+
+        int size = 0;
+        for(PendingWrite write : group) {
+            if(write._body == null) continue;
+            size += Integer.BYTES + write._body.length + Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for(PendingWrite write : group) {
+            if(write._body == null) continue;
+            crc.reset();
+            crc.update(write._body);
+            buffer.putInt(write._body.length);
+            buffer.put(write._body);
+            buffer.putInt((int)crc.getValue());
+        }
+        buffer.flip();
+
+        try {
+            while(buffer.hasRemaining()) {
+                _channel.write(buffer);
+            }
+            _channel.force(false);
+            _committedPosition += size;
+            for(PendingWrite write : group) {
+                write._done.complete(null);
+            }
+        }
+        catch(IOException e) {
+            System.err.println("Error writing to user log: " + e.getMessage());
+            synchronized(this) {
+                _failure = e;
+            }
+            Rollback();
+            for(PendingWrite write : group) {
+                write._done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Cuts the log back to the end of the last committed group after a failed write,
+     * so a partly written group can't hide the records before it from a replay.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    private void Rollback() {
+        try {
+            _channel.truncate(_committedPosition);
+            _channel.position(_committedPosition);
+            _channel.force(false);
+        }
+        catch(IOException e) {
+            // Replay still stops at the torn record, only the failed group is past it.
+            System.err.println("Error rolling back user log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes one record body and passes it to the handler.
+     * 
+     * @param body Record type and payload.
+     * @param handler Receives the decoded record.
+     * @return {@code true} if the record was understood, {@code false} if it is corrupt.
+     * @apiNote Added in version 1.5.
+     */
+    private boolean ApplyRecord(ByteBuffer body, ReplayHandler handler) {
+        try {
+            byte type = body.get();
+            String username = GetString(body);
+            if(type == CREATE_USER) {
+                int code = body.getInt();
+                handler.OnCreateUser(username, GetString(body), code);
+                return true;
+            }
+            if(type == PASSWORD_CHANGE) {
+                handler.OnPasswordChange(username, GetString(body));
+                return true;
+            }
+            if(type == REKEY_USER) {
+                String newUsername = GetString(body);
+                handler.OnRekeyUser(username, newUsername, GetString(body));
+                return true;
+            }
+            return false;
+        }
+        catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a length-prefixed byte array, {@code -1} length for {@code null}.
+     * 
+     * @param buffer Buffer to write to.
+     * @param bytes Bytes to write, may be {@code null}.
+     * @apiNote Added in version 1.5.
+     */
+    private static void PutBytes(ByteBuffer buffer, byte[] bytes) {
+        if(bytes == null) {
+            buffer.putShort((short)-1);
+            return;
+        }
+        if(bytes.length > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Value is too long for the user log.");
+        }
+        buffer.putShort((short)bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a String written by {@link #PutBytes(ByteBuffer, byte[])}.
+     * 
+     * @param buffer Buffer to read from.
+     * @return The String, {@code null} if {@code null} was written.
+     * @apiNote Added in version 1.5.
+     */
+    private static String GetString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if(length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * A record waiting for the writer thread. A {@code null} body only waits for the flush.
+     */
+    private static class PendingWrite {
+        private final byte[] _body;
+        private final CompletableFuture<Void> _done = new CompletableFuture<>();
+
+        private PendingWrite(byte[] body) {
+            _body = body;
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
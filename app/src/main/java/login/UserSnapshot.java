@@ -0,0 +1,417 @@
+package login;
+
+//#region IMPORTS
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserSnapshot.java
+ * 
+ * The UserSnapshot class is a compact binary copy of every User in the Database.
+ * The file is an open addressing hash table of fixed-width slots keyed by
+ * encrypted username, each holding the MFA Code and where the password is
+ * stored in the data area after the table.
+ * Slots are only as wide as the longest username up to {@link #MAX_USERNAME_WIDTH}.
+ * Longer usernames are stored in the data area too, so one long username
+ * doesn't widen every slot.
+ * The file is memory-mapped and searched in place, so loading it costs the
+ * same at any number of users and only the users that are looked up are
+ * turned into User objects.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see UserLog
+ * @apiNote Added in version 1.5.
+ * @implNote The whole file is mapped as one buffer, so a snapshot is limited to 2 GB.
+ */
+public class UserSnapshot {
+    //#region CONSTANTS
+    private static final int MAGIC          = 0x55534E50; // "USNP"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Header layout: magic, format version, user count, slot count,
+     * username width, data area offset (ints) and log position (long).
+     */
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * Slot layout: username length (short), username bytes padded to the
+     * username width, MFA Code (int), password offset (int), password length (short).
+     * A username longer than the username width is stored in the data area and
+     * its slot holds the offset (int) instead of the bytes.
+     * A username length of {@code 0} marks an empty slot.
+     */
+    private static final int SLOT_FIXED_SIZE = Short.BYTES + Integer.BYTES + Integer.BYTES + Short.BYTES;
+
+    /**
+     * Widest a slot's username can be. Room for a 64-char username and its key tag.
+     */
+    private static final int MAX_USERNAME_WIDTH = 72;
+
+    /**
+     * Narrowest a slot's username can be, so the offset of a long username fits.
+     */
+    private static final int MIN_USERNAME_WIDTH = Integer.BYTES;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final MappedByteBuffer _buffer;
+    private final int _userCount;
+    private final int _slotMask;
+    private final int _usernameWidth;
+    private final int _slotSize;
+    private final int _dataAreaOffset;
+    private final long _logPosition;
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Reads and checks the header of a mapped snapshot.
+     * 
+     * @param buffer The mapped snapshot file.
+     * @throws IOException If the header doesn't describe a valid snapshot.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to also read format 1, which never has long usernames.
+     */
+    private UserSnapshot(MappedByteBuffer buffer) throws IOException {
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a user snapshot.");
+        }
+        if(buffer.getInt(4) < 1 || buffer.getInt(4) > FORMAT_VERSION) {
+            throw new IOException("Unsupported user snapshot version " + buffer.getInt(4) + ".");
+        }
+        _buffer = buffer;
+        _userCount = buffer.getInt(8);
+        int slotCount = buffer.getInt(12);
+        _usernameWidth = buffer.getInt(16);
+        _dataAreaOffset = buffer.getInt(20);
+        _logPosition = buffer.getLong(24);
+        _slotMask = slotCount - 1;
+        _slotSize = SLOT_FIXED_SIZE + _usernameWidth;
+
+        if(slotCount <= 0 || Integer.bitCount(slotCount) != 1 || _userCount < 0 || _userCount >= slotCount
+            || _usernameWidth <= 0 || _usernameWidth > Short.MAX_VALUE
+            || _dataAreaOffset != HEADER_SIZE + (long)slotCount * _slotSize
+            || _dataAreaOffset > buffer.capacity()) {
+            throw new IOException("User snapshot header is corrupt.");
+        }
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public int GetUserCount()    { return _userCount;   }
+    public long GetLogPosition() { return _logPosition; }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Memory-maps a snapshot file.
+     * 
+     * @param path Path of the snapshot file.
+     * @return The mapped snapshot, {@code null} if the file doesn't exist.
+     * @throws IOException If the file can't be mapped or isn't a valid snapshot.
+     * @apiNote Added in version 1.5.
+     */
+    public static UserSnapshot Open(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("User snapshot is too large to map.");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new UserSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        catch(NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds a User by encrypted username without loading any other User.
+     * 
+     * @param encryptedUsername Encrypted username of the User object to find.
+     * @return A new {@code User} built from the snapshot, {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public User Find(String encryptedUsername) {
+        int base = FindSlot(encryptedUsername);
+        return base < 0 ? null : ReadUser(base, encryptedUsername);
+    }
+
+    /**
+     * Checks if a User is in the snapshot without building it.
+     * 
+     * @param encryptedUsername Encrypted username to check.
+     * @return {@code true} if a User has that username, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean Contains(String encryptedUsername) {
+        return FindSlot(encryptedUsername) >= 0;
+    }
+
+    /**
+     * Builds every User in the snapshot and passes it to the action.
+     * 
+     * @param action Receives each User.
+     * @apiNote Added in version 1.5.
+     */
+    public void ForEach(Consumer<User> action) {
+        for(int slot = 0; slot <= _slotMask; slot++) {
+            int base = SlotOffset(slot);
+            int length = _buffer.getShort(base);
+            if(length == 0) continue;
+
+            action.accept(ReadUser(base, ReadUsername(base, length)));
+        }
+    }
+
+    /**
+     * Passes every encrypted username in the snapshot to the action
+     * without building the Users.
+     * 
+     * @param action Receives each encrypted username.
+     * @apiNote Added in version 1.5.
+     */
+    public void ForEachUsername(Consumer<String> action) {
+        for(int slot = 0; slot <= _slotMask; slot++) {
+            int base = SlotOffset(slot);
+            int length = _buffer.getShort(base);
+            if(length == 0) continue;
+
+            action.accept(ReadUsername(base, length));
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given users. The file is written next to
+     * {@code path} and renamed over it once it is on disk, so a crash
+     * never leaves a partial snapshot behind.
+     * 
+     * @param path Path of the snapshot file.
+     * @param users Users to store. Usernames must be unique and not empty.
+     * @param logPosition Position in the UserLog that the users are up to date with.
+     * @throws IOException If the file can't be written or would be too large.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to cap the slot width and store longer usernames in the data area.
+     */
+    public static void Write(Path path, List<User> users, long logPosition) throws IOException {
+        int count = users.size();
+        byte[][] usernames = new byte[count][];
+        byte[][] passwords = new byte[count][];
+        int longestUsername = 1;
+        long dataAreaSize = 0;
+        for(int i = 0; i < count; i++) {
+            User user = users.get(i);
+            String password = user.GetPassword();
+            usernames[i] = user.GetUsername().getBytes(StandardCharsets.UTF_8);
+            if(usernames[i].length == 0 || usernames[i].length > Short.MAX_VALUE) {
+                throw new IOException("Username can't be stored in the user snapshot.");
+            }
+            longestUsername = Math.max(longestUsername, usernames[i].length);
+            if(password != null) {
+                passwords[i] = password.getBytes(StandardCharsets.UTF_8);
+                if(passwords[i].length > Short.MAX_VALUE) {
+                    throw new IOException("Password can't be stored in the user snapshot.");
+                }
+                dataAreaSize += passwords[i].length;
+            }
+        }
+        int usernameWidth = Math.max(MIN_USERNAME_WIDTH, Math.min(longestUsername, MAX_USERNAME_WIDTH));
+        for(byte[] username : usernames) {
+            if(username.length > usernameWidth) {
+                dataAreaSize += username.length;
+            }
+        }
+
+        // Keep the table at most three quarters full so probes stay short.
+        int slotCount = 16;
+        while(slotCount * 3L < count * 4L) {
+            slotCount <<= 1;
+        }
+        int slotSize = SLOT_FIXED_SIZE + usernameWidth;
+        long dataAreaOffset = HEADER_SIZE + (long)slotCount * slotSize;
+        long fileSize = dataAreaOffset + dataAreaSize;
+        if(fileSize > Integer.MAX_VALUE) {
+            throw new IOException("User snapshot would be too large to map.");
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            )) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, count);
+            buffer.putInt(12, slotCount);
+            buffer.putInt(16, usernameWidth);
+            buffer.putInt(20, (int)dataAreaOffset);
+            buffer.putLong(24, logPosition);
+
+            int slotMask = slotCount - 1;
+            int dataOffset = (int)dataAreaOffset;
+            for(int i = 0; i < count; i++) {
+                int slot = Hash(usernames[i]) & slotMask;
+                int base = HEADER_SIZE + slot * slotSize;
+                while(buffer.getShort(base) != 0) {
+                    slot = (slot + 1) & slotMask;
+                    base = HEADER_SIZE + slot * slotSize;
+                }
+
+                buffer.putShort(base, (short)usernames[i].length);
+                if(usernames[i].length > usernameWidth) {
+                    buffer.putInt(base + Short.BYTES, dataOffset);
+                    buffer.put(dataOffset, usernames[i]);
+                    dataOffset += usernames[i].length;
+                }
+                else {
+                    buffer.put(base + Short.BYTES, usernames[i]);
+                }
+                int fields = base + Short.BYTES + usernameWidth;
+                buffer.putInt(fields, users.get(i).GetCode());
+                if(passwords[i] == null) {
+                    buffer.putInt(fields + 4, 0);
+                    buffer.putShort(fields + 8, (short)-1);
+                }
+                else {
+                    buffer.putInt(fields + 4, dataOffset);
+                    buffer.putShort(fields + 8, (short)passwords[i].length);
+                    buffer.put(dataOffset, passwords[i]);
+                    dataOffset += passwords[i].length;
+                }
+            }
+            buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Finds the slot of a username.
+     * 
+     * @param encryptedUsername Encrypted username to find.
+     * @return Offset of its slot, {@code -1} if not found.
+     * @apiNote Added in version 1.5. Moved out of {@link #Find(String)}.
+     */
+    private int FindSlot(String encryptedUsername) {
+        byte[] username = encryptedUsername.getBytes(StandardCharsets.UTF_8);
+        if(username.length == 0 || username.length > Short.MAX_VALUE) return -1;
+
+        int slot = Hash(username) & _slotMask;
+        while(true) {
+            int base = SlotOffset(slot);
+            int length = _buffer.getShort(base);
+            if(length == 0) return -1;
+            if(length == username.length && UsernameEquals(base, username)) return base;
+            slot = (slot + 1) & _slotMask;
+        }
+    }
+
+    /**
+     * Returns the offset of a slot in the file.
+     * 
+     * @param slot Index of the slot.
+     * @return Offset in bytes from the start of the file.
+     * @apiNote Added in version 1.5.
+     */
+    private int SlotOffset(int slot) {
+        return HEADER_SIZE + slot * _slotSize;
+    }
+
+    /**
+     * Compares the username stored in a slot to the given one.
+     * 
+     * @param base Offset of the slot.
+     * @param username Username bytes with the same length as the stored one.
+     * @return {@code true} if they match, {@code false} if otherwise.
+     * @apiNote Added in version 1.5.
+     * @apiNote Updated in version 1.5 to compare long usernames in the data area.
+     */
+    private boolean UsernameEquals(int base, byte[] username) {
+        int start = UsernameOffset(base, username.length);
+        for(int i = 0; i < username.length; i++) {
+            if(_buffer.get(start + i) != username[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns where the bytes of a slot's username are stored.
+     * 
+     * @param base Offset of the slot.
+     * @param length Length of the stored username.
+     * @return Offset in the slot, or in the data area if the username is wider than the slot.
+     * @apiNote Added in version 1.5.
+     */
+    private int UsernameOffset(int base, int length) {
+        return length > _usernameWidth ? _buffer.getInt(base + Short.BYTES) : base + Short.BYTES;
+    }
+
+    /**
+     * Reads the username stored in a slot.
+     * 
+     * @param base Offset of the slot.
+     * @param length Length of the stored username.
+     * @return The encrypted username.
+     * @apiNote Added in version 1.5.
+     */
+    private String ReadUsername(int base, int length) {
+        byte[] username = new byte[length];
+        _buffer.get(UsernameOffset(base, length), username);
+        return new String(username, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a User from the MFA Code and password stored in a slot.
+     * 
+     * @param base Offset of the slot.
+     * @param username Encrypted username stored in the slot.
+     * @return A new User.
+     * @apiNote Added in version 1.5.
+     */
+    private User ReadUser(int base, String username) {
+        int fields = base + Short.BYTES + _usernameWidth;
+        int code = _buffer.getInt(fields);
+        int passwordLength = _buffer.getShort(fields + 8);
+        if(passwordLength < 0) {
+            return new User(username, code);
+        }
+
+        byte[] password = new byte[passwordLength];
+        _buffer.get(_buffer.getInt(fields + 4), password);
+        return new User(username, new String(password, StandardCharsets.UTF_8), code);
+    }
+
+    /**
+     * Hashes username bytes with FNV-1a, spreading the high bits into the low ones.
+     * 
+     * @param bytes Username bytes.
+     * @return Hash of the bytes.
+     * @apiNote Added in version 1.5.
+     */
+    private static int Hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for(byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package login;
+
+//#region IMPORTS
+import java.util.function.Consumer;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserStore.java
+ * 
+ * The UserStore interface is the in-memory table behind the Database.
+ * The Database handles the UserLog, UserSnapshot and exports, and keeps
+ * the Users themselves in whichever UserStore it was started with.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see HeapUserStore
+ * @see ColumnarUserStore
+ * @see OffHeapUserStore
+ * @apiNote Added in version 1.5.
+ * @implNote A store may copy a User when it is added. Changes must be made on
+ * the User returned by {@link #Get(String)}, which writes them through to the store.
+ */
+public interface UserStore {
+    /**
+     * Finds a User by encrypted username.
+     * 
+     * @param encryptedUsername Encrypted username of the User object to find.
+     * @return The found {@code User}, {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    User Get(String encryptedUsername);
+
+    /**
+     * Adds a User to the store.
+     * 
+     * @param user User object with an encrypted username.
+     * @return {@code true} if the user was added, {@code false} if the username is already taken.
+     * @apiNote Added in version 1.5.
+     */
+    boolean Add(User user);
+
+    /**
+     * Returns the number of Users in the store.
+     * 
+     * @return Number of stored Users.
+     * @apiNote Added in version 1.5.
+     */
+    int Size();
+
+    /**
+     * Passes every User in the store to the action.
+     * 
+     * @param action Receives each User.
+     * @apiNote Added in version 1.5.
+     */
+    void ForEach(Consumer<User> action);
+
+    /**
+     * Releases anything the store holds outside the heap. The store can't be used afterwards.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    default void Close() {}
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package login;
+
+//#region IMPORTS
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UsernameCache.java
+ * 
+ * The UsernameCache class remembers the encrypted username and User of
+ * recently entered usernames, so a username that logs in often isn't
+ * encrypted and looked up again every time.
+ * The cache is bounded in size, entries expire after a while, and hit,
+ * miss and eviction counts are recorded. Only usernames that exist are cached,
+ * and Users are never removed, so adding a User can't make an entry stale.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @see Cryptographer
+ * @apiNote Added in version 1.5.
+ */
+public class UsernameCache {
+    //#region SERVICES
+    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
+    //#endregion SERVICES
+
+    //#region CONSTANTS
+    private static final int MAXIMUM_SIZE         = 10_000;
+    private static final long EXPIRE_AFTER_MINUTES = 10;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    /**
+     * Finds a User by encrypted username on a miss.
+     */
+    private final Function<String, User> _lookup;
+
+    private final Cache<String, Entry> _cache = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .expireAfterWrite(EXPIRE_AFTER_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs an empty cache.
+     * 
+     * @param lookup Finds a User by encrypted username, returning {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public UsernameCache(Function<String, User> lookup) {
+        _lookup = lookup;
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public CacheStats GetStats() { return _cache.stats(); }
+    public long GetSize()        { return _cache.size();  }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Encrypts and looks up a username, or returns the cached result.
+     * Misses go through {@link #Load(String)}.
+     * 
+     * @param username Client-entered username.
+     * @return Encrypted username and the User, whose User is {@code null} if not found.
+     * @apiNote Added in version 1.5.
+     */
+    public Entry Resolve(String username) {
+        Entry entry = _cache.getIfPresent(username);
+        if(entry != null) return entry;
+
+        entry = Load(username);
+        // Unknown usernames aren't cached so guessing can't push out real ones.
+        if(entry.GetUser() != null) {
+            _cache.put(username, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Encrypts and looks up a username without going through the cache.
+     * While keys are being rotated, the username is tried under the current
+     * key first and then under each older key.
+     * 
+     * @param username Client-entered username.
+     * @return Encrypted username the User was found under and the User, or the username
+     * under the current key and a {@code null} User if not found.
+     * @see KeyRotator
+     * @apiNote Added in version 1.5.
+     */
+    public Entry Load(String username) {
+        String encryptedUsername = _cryptographer.EncryptVigenere(username);
+        User user = _lookup.apply(encryptedUsername);
+        if(user != null) return new Entry(encryptedUsername, user);
+
+        for(int version = _cryptographer.GetKeyVersion() - 1; version >= Cryptographer.BUILT_IN_VERSION; version--) {
+            String olderUsername = _cryptographer.EncryptVigenere(username, version);
+            user = _lookup.apply(olderUsername);
+            if(user != null) return new Entry(olderUsername, user);
+        }
+        return new Entry(encryptedUsername, null);
+    }
+
+    /**
+     * Drops every entry, for when the encryption key changes.
+     * 
+     * @apiNote Added in version 1.5.
+     */
+    public void InvalidateAll() {
+        _cache.invalidateAll();
+    }
+    //#endregion FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * The encrypted username of an entered username and the User it belongs to.
+     */
+    public static class Entry {
+        private final String _encryptedUsername;
+        private final User _user;
+
+        private Entry(String encryptedUsername, User user) {
+            _encryptedUsername = encryptedUsername;
+            _user = user;
+        }
+
+        public String GetEncryptedUsername() { return _encryptedUsername; }
+        public User GetUser()                { return _user;              }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
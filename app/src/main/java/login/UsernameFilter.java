@@ -0,0 +1,219 @@
+package login;
+
+//#region IMPORTS
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UsernameFilter.java
+ * 
+ * The UsernameFilter class is a Bloom filter over the encrypted usernames
+ * in the Database. If it says a username isn't there, it definitely isn't,
+ * so most unknown usernames are rejected without touching the UserStore.
+ * The filter grows in stages: once a stage holds as many usernames as it
+ * was sized for, a new stage twice the size with half the false positive
+ * rate is added, so it never has to be rebuilt and the overall false
+ * positive rate stays under {@link #TARGET_FALSE_POSITIVE_RATE}.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Database
+ * @apiNote Added in version 1.5.
+ */
+public class UsernameFilter {
+    //#region CONSTANTS
+    /**
+     * Overall false positive rate the stages are sized for.
+     */
+    public static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int MIN_CAPACITY = 1024;
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private final List<Stage> _stages = new CopyOnWriteArrayList<>();
+    private final LongAdder _checks = new LongAdder();
+    private final LongAdder _rejections = new LongAdder();
+    //#endregion VARIABLES
+
+    //#region CONSTRUCTORS
+    /**
+     * Constructs an empty filter.
+     * 
+     * @param expectedUsernames Number of usernames the first stage is sized for.
+     * @apiNote Added in version 1.5.
+     */
+    public UsernameFilter(int expectedUsernames) {
+        // Stage rates halve each time, so they add up to at most twice the first one.
+        _stages.add(new Stage(Math.max(expectedUsernames, MIN_CAPACITY), TARGET_FALSE_POSITIVE_RATE / 2));
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    public long GetChecks()     { return _checks.sum();     }
+    public long GetRejections() { return _rejections.sum(); }
+    public int GetStageCount()  { return _stages.size();    }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Adds an encrypted username to the filter.
+     * 
+     * @param encryptedUsername Encrypted username to add.
+     * @apiNote Added in version 1.5.
+     */
+    public void Put(String encryptedUsername) {
+        long hash = Hash(encryptedUsername);
+        Stage stage = _stages.get(_stages.size() - 1);
+        if(stage._count.get() >= stage._capacity) {
+            stage = AddStage(stage);
+        }
+        stage.Put(hash);
+    }
+
+    /**
+     * Checks if an encrypted username might have been added.
+     * 
+     * @param encryptedUsername Encrypted username to check.
+     * @return {@code false} if it was definitely never added, {@code true} if it might have been.
+     * @apiNote Added in version 1.5.
+     */
+    public boolean MightContain(String encryptedUsername) {
+        _checks.increment();
+        long hash = Hash(encryptedUsername);
+        for(Stage stage : _stages) {
+            if(stage.MightContain(hash)) return true;
+        }
+        _rejections.increment();
+        return false;
+    }
+
+    /**
+     * Returns the memory used by the filter's bits.
+     * 
+     * @return Size of every stage in bytes.
+     * @apiNote Added in version 1.5.
+     */
+    public long GetSizeBytes() {
+        long bits = 0;
+        for(Stage stage : _stages) {
+            bits += stage._bitCount;
+        }
+        return bits / 8;
+    }
+
+    /**
+     * Estimates the current false positive rate from how full each stage is.
+     * 
+     * @return Chance that a username that was never added passes {@link #MightContain(String)}.
+     * @apiNote Added in version 1.5.
+     */
+    public double GetFalsePositiveRate() {
+        double allMiss = 1.0;
+        for(Stage stage : _stages) {
+            allMiss *= 1.0 - stage.GetFalsePositiveRate();
+        }
+        return 1.0 - allMiss;
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Adds a new stage after the given full one, unless another thread already did.
+     * 
+     * @param full Stage that reached its capacity.
+     * @return The newest stage.
+     * @apiNote Added in version 1.5.
+     */
+    private synchronized Stage AddStage(Stage full) {
+        Stage last = _stages.get(_stages.size() - 1);
+        if(last != full) return last;
+
+        Stage next = new Stage(full._capacity * 2, full._targetRate / 2);
+        _stages.add(next);
+        return next;
+    }
+
+    /**
+     * Hashes a username into 64 bits with FNV-1a followed by a final mix.
+     * 
+     * @param value Username to hash.
+     * @return 64-bit hash, split into two 32-bit hashes by the stages.
+     * @apiNote Added in version 1.5.
+     */
+    private static long Hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * One fixed-size Bloom filter. The bit positions come from two halves of
+     * the hash ({@code h1 + i * h2}), so each check hashes the username once.
+     */
+    private static class Stage {
+        private final AtomicLongArray _bits;
+        private final long _bitCount;
+        private final int _hashCount;
+        private final int _capacity;
+        private final double _targetRate;
+        private final AtomicInteger _count = new AtomicInteger();
+
+        private Stage(int capacity, double targetRate) {
+            double ln2 = Math.log(2);
+            long bits = (long)Math.ceil(-capacity * Math.log(targetRate) / (ln2 * ln2));
+            _bits = new AtomicLongArray((int)((bits + 63) / 64));
+            _bitCount = _bits.length() * 64L;
+            _hashCount = Math.max(1, (int)Math.round(_bitCount / (double)capacity * ln2));
+            _capacity = capacity;
+            _targetRate = targetRate;
+        }
+
+        private void Put(long hash) {
+            int h1 = (int)hash;
+            int h2 = (int)(hash >>> 32);
+            for(int i = 0; i < _hashCount; i++) {
+                long bit = ((h1 + i * h2) & Integer.MAX_VALUE) % _bitCount;
+                int word = (int)(bit >>> 6);
+                long mask = 1L << bit;
+                long current = _bits.get(word);
+                while((current & mask) == 0 && !_bits.weakCompareAndSetVolatile(word, current, current | mask)) {
+                    current = _bits.get(word);
+                }
+            }
+            _count.incrementAndGet();
+        }
+
+        private boolean MightContain(long hash) {
+            int h1 = (int)hash;
+            int h2 = (int)(hash >>> 32);
+            for(int i = 0; i < _hashCount; i++) {
+                long bit = ((h1 + i * h2) & Integer.MAX_VALUE) % _bitCount;
+                if((_bits.get((int)(bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private double GetFalsePositiveRate() {
+            long set = 0;
+            for(int i = 0; i < _bits.length(); i++) {
+                set += Long.bitCount(_bits.get(i));
+            }
+            return Math.pow(set / (double)_bitCount, _hashCount);
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
@@ -7,61 +7,76 @@ package login;
  * This class handles the authentication of the username for a User.
  * 
  * @author Noah Nickles
- * @version 1.4
- * @see Cryptographer
+ * @version 1.5
  * @see Database
+ * @see UsernameCache
  * @see Validation
  * @apiNote Added in version 1.4.
+ * @apiNote Singleton uses the holder idiom in version 1.5 so it is safe to share across threads.
+ * @apiNote Usernames are resolved through the Database's UsernameCache in version 1.5.
  */
 public class UsernameHandler {
     //#region SERVICES
-    private final Cryptographer _cryptographer = Cryptographer.GetInstance();
     private final Database _database = Database.GetInstance();
     private final Validation _validation = Validation.GetInstance();
     //#endregion SERVICES
 
+    //#region CONSTANTS
+    private static final AuthResult USERNAME_INCORRECT = AuthResult.Failed(
+        MessageHandler.GetExceptionMessage(MessageHandler.INCORRECT_INPUT, "Username")
+    );
+    //#endregion CONSTANTS
+
     //#region SINGLETON PATTERN
-    private static UsernameHandler _instance = null;
+    private static class InstanceHolder {
+        private static final UsernameHandler INSTANCE = new UsernameHandler();
+    }
 
     private UsernameHandler() {}
 
     public static UsernameHandler GetInstance() {
-        if(_instance == null) {
-            _instance = new UsernameHandler();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
     //#region FUNCTIONS
     /**
      * Authenticates the user input against the stored username in the Database.
+     * The username is encrypted and looked up once, and the User is stored in the session
+     * for the password and MFA Code stages.
      * 
-     * @param username User input from the Login class.
-     * @return {@code true} if username exists and matches, {@code false} if otherwise.
-     * @see Cryptographer
+     * @param session Session holding the username from the AuthService class.
+     * @return Successful result if username exists and matches, failed result with the reason if otherwise.
      * @see Database
+     * @see UsernameCache
      * @see Validation
+     * @see LoginSession
      * @see User
      * @apiNote Added in version 1.0.
      * @apiNote Updated in version 1.1 to use new getter functions.
      * @apiNote Reverted in version 1.2 to use record class getter functions.
      * @apiNote Reverted again in version 1.3 to use normal getter functions.
      * @apiNote Rewrote logic and moved from UserService class which no longer exists in version 1.4.
+     * @apiNote Updated in version 1.5 to return an AuthResult and validate without printing.
+     * Takes a LoginSession and resolves the User into it. The second encryption to compare
+     * usernames was removed since the lookup is already by encrypted username.
+     * @apiNote Updated in version 1.5 to resolve the username through the UsernameCache.
      */
-    public boolean AuthenticateUsername(String username) {
+    public AuthResult AuthenticateUsername(LoginSession session) {
+        String username = session.GetUsername();
+
         // Validate the user input.
-        if(!_validation.ValidateUsername(username)) {
-            return false;
+        int violations = _validation.CheckUsername(username);
+        if(violations != 0) {
+            return AuthResult.Failed(_validation.GetViolationMessage(violations, "Username"));
         }
         
-        // Grab user object from the Database.
-        User user = _database.GetUserByUsername(username);
-        if(user == null) return false;
+        // Encrypt once and grab user object from the Database, or both from the cache.
+        UsernameCache.Entry entry = _database.ResolveUsername(username);
+        session.Resolve(entry.GetEncryptedUsername(), entry.GetUser());
+        if(entry.GetUser() == null) return USERNAME_INCORRECT;
 
-        // Verify the input matches the User object's username.
-        String encryptedUsername = _cryptographer.EncryptVigenere(username);
-        return user.GetUsername().equals(encryptedUsername);
+        return AuthResult.Success();
     }
     //#endregion FUNCTIONS
 }
\ No newline at end of file
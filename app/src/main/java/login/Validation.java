@@ -10,34 +10,72 @@ import login.exception_handlers.PasswordValidationException;
  * The Validation class handles validation of user input when logging
  * in to the program to ensure the program doesn't crash or get hacked. 
  * It checks for SQL Injection, Password Policy, and Interger Overflow.
+ * Username and password rules come from configurable InputPolicy objects.
  * 
  * @author Noah Nickles
- * @version 1.4
+ * @version 1.5
  * @apiNote Added in version 1.1.
  * @apiNote Added validation for Cryptographer class in version 1.2.
  * @apiNote Removed Cryptographer class validations as Handler classes now use
  * this class to verify that information in version 1.4.
+ * @apiNote Singleton uses the holder idiom in version 1.5. The policies are immutable
+ * and swapped through volatile fields, so the class is safe to share across threads.
+ * @apiNote Replaced the fixed length constants and multi-pass checks with compiled
+ * InputPolicy objects in version 1.5.
+ * @apiNote Added CheckUsername(), CheckPassword() and CheckCode() in version 1.5. They return
+ * PolicyViolation bitmasks instead of printing or throwing. The MFA Code is parsed without
+ * relying on NumberFormatException.
  */
 public class Validation {
     //#region CONSTANTS
-    private static final int MIN_PASSWORD_LENGTH = 8;
-    private static final int MAX_PASSWORD_LENGTH = 12;
     private static final int MIN_CODE_LENGTH     = 10;
+
+    /**
+     * Default password policy: 8-12 chars (included), only A-Z, a-z, 0-9,
+     * at least one uppercase, one lowercase and one digit.
+     */
+    public static final InputPolicy DEFAULT_PASSWORD_POLICY = new InputPolicy(
+        8, 12,
+        InputPolicy.UPPERCASE | InputPolicy.LOWERCASE | InputPolicy.DIGIT,
+        InputPolicy.ALPHANUMERIC,
+        InputPolicy.SQL_CHARACTERS
+    );
+
+    /**
+     * Default username policy: 1-64 chars (included) and no SQL chars.
+     */
+    public static final InputPolicy DEFAULT_USERNAME_POLICY = new InputPolicy(
+        1, 64, 0, null, InputPolicy.SQL_CHARACTERS
+    );
     //#endregion CONSTANTS
 
+    //#region VARIABLES
+    private volatile InputPolicy _passwordPolicy = DEFAULT_PASSWORD_POLICY;
+    private volatile InputPolicy _usernamePolicy = DEFAULT_USERNAME_POLICY;
+    //#endregion VARIABLES
+
     //#region SINGLETON PATTERN
-    private static Validation _instance = null;
+    private static class InstanceHolder {
+        private static final Validation INSTANCE = new Validation();
+    }
 
     private Validation() {}
 
     public static Validation GetInstance() {
-        if(_instance == null) {
-            _instance = new Validation();
-        }
-        return _instance;
+        return InstanceHolder.INSTANCE;
     }
     //#endregion SINGLETON PATTERN
 
+    //#region GETTERS
+    public InputPolicy GetPasswordPolicy() { return _passwordPolicy; }
+    public InputPolicy GetUsernamePolicy() { return _usernamePolicy; }
+    //#endregion GETTERS
+
+    //#region SETTERS
+    public void SetPasswordPolicy(InputPolicy policy) { _passwordPolicy = policy; }
+    public void SetUsernamePolicy(InputPolicy policy) { _usernamePolicy = policy; }
+    //#endregion SETTERS
+
     //#region VALIDATION FUNCTIONS
     /**
      * Takes in the username from the UsernameHandler class and
@@ -50,20 +88,14 @@ public class Validation {
      * to work with new validation methods.
      * @apiNote Renamed from IsUsernameValid to ValidateUsername in version 1.4.
      * Rewrote all logic to simplify function.
+     * @apiNote Updated in version 1.5 to print the result of {@link #CheckUsername(String)}.
      */
     public boolean ValidateUsername(String username) {
-        String value = "Username";
-
-        if(username.isEmpty()) {
-            MessageHandler.PrintMessage(MessageHandler.EMPTY_INPUT, value);
-            return false;
-        }
-        
-        if(!SQLInjectionCheck(username)) {
-            MessageHandler.PrintMessage(MessageHandler.SQL_INJECTION);
+        int violations = CheckUsername(username);
+        if(violations != 0) {
+            System.out.println(GetViolationMessage(violations, "Username"));
             return false;
         }
-
         return true;
     }
 
@@ -72,33 +104,42 @@ public class Validation {
      * checks it against various validation methods to ensure that the input is valid.
      * 
      * @param password Password from the PasswordHandler class.
-     * @return {@code true} if the input is valid, {@code false} if otherwise.
+     * @throws PasswordValidationException If the password is empty, contains SQL chars or fails the policy.
      * @see PasswordHandler
      * @apiNote Moved from Login class in version 1.1 and updated logic
      * to work with new validation methods.
      * @apiNote Renamed from IsPasswordValid to ValidatePassword in version 1.4.
      * Rewrote all logic to simplify function.
+     * @apiNote Updated in version 1.5 to check against the password InputPolicy in one pass.
      */
     public void ValidatePassword(String password) throws PasswordValidationException {
-        String value = "Password";
+        ThrowViolation(_passwordPolicy.Check(password));
+    }
 
-        // Check if password is empty.
-        if(password.isEmpty()) {
-            throw new PasswordValidationException(MessageHandler.EMPTY_INPUT, value);
-        }
-        
-        // Check if password contains SQL chars.
-        if(!SQLInjectionCheck(password)) {
-            throw new PasswordValidationException(MessageHandler.SQL_INJECTION, value);
-        }
+    /**
+     * Same as {@link #ValidatePassword(String)} but takes the password as a char[]
+     * so it never needs to become a String.
+     * 
+     * @param password Password from the PasswordHandler class.
+     * @throws PasswordValidationException If the password is empty, contains SQL chars or fails the policy.
+     * @see PasswordHandler
+     * @apiNote Added in version 1.5.
+     */
+    public void ValidatePassword(char[] password) throws PasswordValidationException {
+        ThrowViolation(_passwordPolicy.Check(password, password.length));
+    }
 
-        // Check if password adheres to policy.
-        try {
-            PasswordPolicyCheck(password);
-        }
-        catch(PasswordPolicyException e) {
-            throw new PasswordValidationException(e.getMessage());
-        }
+    /**
+     * Checks the password against every rule of the password policy at once.
+     * 
+     * @param password Password to check.
+     * @param length Number of chars of {@code password} to check.
+     * @return Bitmask of PolicyViolation masks, {@code 0} if the password is valid.
+     * @see InputPolicy
+     * @apiNote Added in version 1.5.
+     */
+    public int CheckPassword(char[] password, int length) {
+        return _passwordPolicy.Check(password, length);
     }
 
     /**
@@ -113,116 +154,138 @@ public class Validation {
      * @apiNote Updated in version 1.2 to use Integer.parseInt() method.
      * @apiNote Renamed from IsMFAValid to ValidateCode in version 1.4.
      * Rewrote all logic to simplify function.
+     * @apiNote Updated in version 1.5 to print the result of {@link #CheckCode(String)}.
      */
     public boolean ValidateCode(String code) {
-        String value = "MFA Code";
-
-        // Check if code is empty.
-        if(code.isEmpty()) {
-            MessageHandler.PrintMessage(MessageHandler.EMPTY_INPUT, value);
+        int violations = CheckCode(code);
+        if(violations != 0) {
+            System.out.println(GetViolationMessage(violations, "MFA Code"));
             return false;
         }
+        return true;
+    }
+    //#endregion VALIDATION FUNCTIONS
 
-        // Check if code contains non-digits or overflows.
-        if(!IntOverflowCheck(code)) {
-            MessageHandler.PrintMessage(MessageHandler.INVALID_INPUT, value);
-            return false;
-        }
+    //#region RESULT FUNCTIONS
+    /**
+     * Checks the username against the username policy without printing or throwing.
+     * 
+     * @param username Username from the UsernameHandler class.
+     * @return Bitmask of PolicyViolation masks, {@code 0} if the username is valid.
+     * @apiNote Added in version 1.5.
+     */
+    public int CheckUsername(String username) {
+        return _usernamePolicy.Check(username);
+    }
 
-        // Check if code is less than 10 digits.
+    /**
+     * Checks the MFA Code without printing or throwing.
+     * Checks are done in the same order as {@link #ValidateCode(String)} always has:
+     * empty, then non-digits or overflow, then length.
+     * 
+     * @param code MFA Code from the CodeHandler class.
+     * @return Bitmask of PolicyViolation masks, {@code 0} if the code is valid.
+     * @apiNote Added in version 1.5.
+     */
+    public int CheckCode(String code) {
+        if(code.isEmpty()) {
+            return PolicyViolation.EMPTY.Mask();
+        }
+        if(ParseCode(code) < 0) {
+            return PolicyViolation.NOT_A_NUMBER.Mask();
+        }
         if(code.length() < MIN_CODE_LENGTH) {
-            MessageHandler.PrintMessage(MessageHandler.POLICY_FAILED, value);
-            return false;
+            return PolicyViolation.TOO_SHORT.Mask();
         }
-
-        return true;
+        return 0;
     }
-    //#endregion VALIDATION FUNCTIONS
 
-    //#region POLICY FUNCTIONS
     /**
-     * Checks if user-entered data contains any SQL chars to protect against SQL Injection.
+     * Parses an MFA Code made only of the digits 0-9 without throwing.
      * 
-     * @param input User-entered data.
-     * @return {@code true} if all checks passed, {@code false if otherwise}
-     * @apiNote Added in version 1.1.
-     * @apiNote Changed function to return a bool instead of a String in version 1.4.
+     * @param code MFA Code from the CodeHandler class.
+     * @return The parsed code, {@code -1} if it is empty, has a non-digit or overflows an int.
+     * @apiNote Added in version 1.5 to replace the NumberFormatException check in IntOverflowCheck().
      */
-    private boolean SQLInjectionCheck(String input) {
-        char[] illegalChars = {
-            '/', '\\', '(', ')', '<', '>', '\'', '\"', 
-            '+', '-', '=', ';', '|',
-            '\n', '\r'
-        };
-
-        for(char c : input.toCharArray()) {
-            for(char i : illegalChars) {
-                if(c == i) {
-                    return false;
-                }
-            }
+    public int ParseCode(String code) {
+        int length = code.length();
+        if(length == 0) return -1;
+
+        long value = 0;
+        for(int i = 0; i < length; i++) {
+            int digit = code.charAt(i) - '0';
+            if(digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+            if(value > Integer.MAX_VALUE) return -1;
         }
-        return true;
+        return (int)value;
     }
 
     /**
-     * Takes in user password from {@link #ValidatePassword(String)}
-     * and checks if it meets all policies for a good password.
+     * Builds the message for the violation that should be reported first.
      * 
-     * @param input User password from {@link #ValidatePassword(String)}.
-     * @return {@code true} if all checks passed, {@code false if otherwise}
-     * @apiNote Added in version 1.1.
-     * @apiNote Added check for only letters or numbers in password in version 1.2.
-     * @apiNote Changed function to return a bool instead of a String in version 1.4.
+     * @param violations Bitmask returned by one of the check functions.
+     * @param value Name of the checked value, e.g. "Password".
+     * @return Message for the user, {@code null} if there are no violations.
+     * @see PolicyViolation#First(int)
+     * @apiNote Added in version 1.5.
      */
-    private void PasswordPolicyCheck(String input) throws PasswordPolicyException {
+    public String GetViolationMessage(int violations, String value) {
+        PolicyViolation violation = PolicyViolation.First(violations);
+        if(violation == null) return null;
+        return MessageHandler.GetExceptionMessage(violation.GetMessageKey(), value);
+    }
+    //#endregion RESULT FUNCTIONS
+
+    //#region POLICY FUNCTIONS
+    /**
+     * Throws the exception for the violation that should be reported first.
+     * Empty input and SQL chars are reported directly, anything else
+     * goes through {@link #PasswordPolicyCheck(int)}.
+     * 
+     * @param violations Bitmask from the password policy.
+     * @throws PasswordValidationException If any rule was violated.
+     * @apiNote Added in version 1.5. Replaces the SQLInjectionCheck() function,
+     * which is now the forbidden chars of the InputPolicy.
+     */
+    private void ThrowViolation(int violations) throws PasswordValidationException {
         String value = "Password";
+        PolicyViolation violation = PolicyViolation.First(violations);
 
-        // Check if password is between 8-12 chars (included).
-        if(input.length() < MIN_PASSWORD_LENGTH ||
-           input.length() > MAX_PASSWORD_LENGTH) {
-            throw new PasswordPolicyException(MessageHandler.POLICY_FAILED, value);
+        if(violation == null) return;
+        if(violation == PolicyViolation.EMPTY) {
+            throw new PasswordValidationException(MessageHandler.EMPTY_INPUT, value);
         }
-
-        // Check if password contains only valid characters (A-Z, a-z, 0-9)
-        if(!input.matches("[A-Za-z0-9]+")) {
-            throw new PasswordPolicyException(MessageHandler.POLICY_FAILED, value);
+        if(violation == PolicyViolation.FORBIDDEN_CHARACTER) {
+            throw new PasswordValidationException(MessageHandler.SQL_INJECTION, value);
         }
 
-        // Check for password policies.
-        boolean hasUpper  = false;
-        boolean hasLower  = false;
-        boolean hasNumber = false;
-        for(char c : input.toCharArray()) {
-            if(Character.isUpperCase(c)) hasUpper      = true;
-            else if(Character.isLowerCase(c)) hasLower = true;
-            else if(Character.isDigit(c)) hasNumber    = true;
+        // Check if password adheres to policy.
+        try {
+            PasswordPolicyCheck(violations);
         }
-
-        if(!hasUpper || !hasLower || !hasNumber) {
-            throw new PasswordPolicyException(MessageHandler.POLICY_FAILED, value);
+        catch(PasswordPolicyException e) {
+            throw new PasswordValidationException(e.getMessage());
         }
     }
 
     /**
-     * Takes in MFA Code from {@link #ValidateCode(String)}
-     * and checks if it contains all digits and doesn't overflow.
+     * Takes in the result of the password policy check
+     * and throws if it doesn't meet all policies for a good password.
      * 
-     * @param input MFA Code from {@link #ValidateCode(String)}.
-     * @return {@code true} if all checks passed, {@code false if otherwise}
+     * @param violations Bitmask from the password policy.
+     * @throws PasswordPolicyException If any policy rule was violated.
      * @apiNote Added in version 1.1.
-     * @apiNote Updated in version 1.2 to use built in Java function that checks for overflow.
+     * @apiNote Added check for only letters or numbers in password in version 1.2.
      * @apiNote Changed function to return a bool instead of a String in version 1.4.
-     * @implNote valueOf() function calls parseInt() with extra input validation checks.
+     * @apiNote Updated in version 1.5 to take the bitmask from the InputPolicy
+     * instead of checking the String three times.
      */
-    private boolean IntOverflowCheck(String input) {
-        try {
-            Integer.valueOf(input);
-            return true;
-        } 
-        catch(NumberFormatException e) {
-            return false;
+    private void PasswordPolicyCheck(int violations) throws PasswordPolicyException {
+        if(violations != 0) {
+            throw new PasswordPolicyException(MessageHandler.POLICY_FAILED, "Password");
         }
     }
+
     //#endregion POLICY FUNCTIONS
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package login;
+
+//#region IMPORTS
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: VectorCipher.java
+ * 
+ * The VectorCipher class runs the Vigenere cipher of one Cryptographer key
+ * across SIMD lanes with the incubating Vector API. A whole block of chars is
+ * classified at once with lane masks, and the key position of each letter and
+ * digit comes from a prefix count of the letters and digits before it, so the
+ * block has no branches. The key shifts for every starting position are
+ * precomputed, so looking them up is a single lane shuffle.
+ * Only values made of A-Z, a-z and 0-9 are handled. Anything else is left to
+ * the Cryptographer's scalar loop, which drops or maps those chars.
+ * Only used when the {@code jdk.incubator.vector} module is present, loading
+ * this class without it fails.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @apiNote Added in version 1.5.
+ */
+final class VectorCipher {
+    //#region CONSTANTS
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Alphakey shifts for each lane, one row per key position the block starts at.
+     */
+    private final short[][] ALPHA_ROTATIONS;
+
+    /**
+     * Numberkey digits for each lane, one row per key position the block starts at.
+     */
+    private final short[][] NUMBER_ROTATIONS;
+    //#endregion CONSTANTS
+
+    //#region CONSTRUCTORS
+    /**
+     * Precomputes the shift of every lane for every starting key position.
+     * 
+     * @param alphaShifts Shift of each alphakey position.
+     * @param numberShifts Digit of each numberkey position.
+     * @apiNote Added in version 1.5.
+     */
+    VectorCipher(int[] alphaShifts, int[] numberShifts) {
+        ALPHA_ROTATIONS = Rotations(alphaShifts);
+        NUMBER_ROTATIONS = Rotations(numberShifts);
+    }
+    //#endregion CONSTRUCTORS
+
+    //#region GETTERS
+    static int GetLanes()      { return LANES;              }
+    static String GetSpecies() { return SPECIES.toString(); }
+    //#endregion GETTERS
+
+    //#region FUNCTIONS
+    /**
+     * Encrypts {@code length} chars, restarting the key at the first one.
+     * 
+     * @param input Plain chars.
+     * @param length Number of chars of {@code input} to encrypt.
+     * @param output Buffer with room for at least {@code length} chars. Must not be {@code input}.
+     * @return {@code length}, or {@code -1} if a char isn't A-Z, a-z or 0-9 and the scalar loop
+     * has to encrypt the value instead. {@code output} may be partly written then.
+     * @apiNote Added in version 1.5.
+     */
+    int Encrypt(char[] input, int length, char[] output) {
+        return Apply(input, length, output, true);
+    }
+
+    /**
+     * Decrypts {@code length} chars, restarting the key at the first one.
+     * 
+     * @param input Encrypted chars, without a tag.
+     * @param length Number of chars of {@code input} to decrypt.
+     * @param output Buffer with room for at least {@code length} chars. Must not be {@code input}.
+     * @return {@code length}, or {@code -1} if a char isn't A-Z, a-z or 0-9 and the scalar loop
+     * has to decrypt the value instead. {@code output} may be partly written then.
+     * @apiNote Added in version 1.5.
+     */
+    int Decrypt(char[] input, int length, char[] output) {
+        return Apply(input, length, output, false);
+    }
+    //#endregion FUNCTIONS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Runs the cipher over the chars one block of lanes at a time.
+     * Letters are shifted mod 26 like {@code Cryptographer.Encrypt} does and digits
+     * go through {@code (10 + key - digit) % 10}, the formula the Vigenere table is
+     * built from. That formula is its own inverse, so digits decrypt the same way.
+     * 
+     * @param input Chars to read.
+     * @param length Number of chars to read.
+     * @param output Buffer to write to.
+     * @param encrypt {@code true} to encrypt, {@code false} to decrypt.
+     * @return {@code length}, {@code -1} if the value has a char this class doesn't handle.
+     * @apiNote Added in version 1.5.
+     */
+    private int Apply(char[] input, int length, char[] output, boolean encrypt) {
+        int alphaStart = 0;
+        int numberStart = 0;
+
+        for(int i = 0; i < length; i += LANES) {
+            VectorMask<Short> inRange = SPECIES.indexInRange(i, length);
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, input, i, inRange);
+
+            VectorMask<Short> upper = chars.compare(VectorOperators.GE, 'A').and(chars.compare(VectorOperators.LE, 'Z'));
+            VectorMask<Short> lower = chars.compare(VectorOperators.GE, 'a').and(chars.compare(VectorOperators.LE, 'z'));
+            VectorMask<Short> digit = chars.compare(VectorOperators.GE, '0').and(chars.compare(VectorOperators.LE, '9'));
+            VectorMask<Short> letter = upper.or(lower);
+            if(inRange.andNot(letter.or(digit)).anyTrue()) return -1;
+
+            ShortVector base = ShortVector.zero(SPECIES)
+                .blend((short)'A', upper)
+                .blend((short)'a', lower)
+                .blend((short)'0', digit);
+            ShortVector values = chars.sub(base);
+
+            ShortVector alphaShifts = ExclusiveCount(letter)
+                .selectFrom(ShortVector.fromArray(SPECIES, ALPHA_ROTATIONS[alphaStart], 0));
+            ShortVector numberShifts = ExclusiveCount(digit)
+                .selectFrom(ShortVector.fromArray(SPECIES, NUMBER_ROTATIONS[numberStart], 0));
+
+            ShortVector letters;
+            if(encrypt) {
+                letters = values.add(alphaShifts);
+                letters = letters.sub((short)26, letters.compare(VectorOperators.GE, 26));
+            }
+            else {
+                letters = values.sub(alphaShifts);
+                letters = letters.add((short)26, letters.compare(VectorOperators.LT, 0));
+            }
+            ShortVector digits = numberShifts.sub(values);
+            digits = digits.add((short)10, digits.compare(VectorOperators.LT, 0));
+
+            digits.blend(letters, letter).add(base).intoCharArray(output, i, inRange);
+
+            alphaStart = (alphaStart + letter.trueCount()) % ALPHA_ROTATIONS.length;
+            numberStart = (numberStart + digit.trueCount()) % NUMBER_ROTATIONS.length;
+        }
+        return length;
+    }
+
+    /**
+     * Counts, for each lane, how many lanes before it are set in the mask.
+     * Takes log2 of the lane count shifted adds instead of a loop over the lanes.
+     * 
+     * @param mask Lanes to count.
+     * @return Count of set lanes below each lane, always less than the lane count.
+     * @apiNote Added in version 1.5.
+     */
+    private static ShortVector ExclusiveCount(VectorMask<Short> mask) {
+        ShortVector ones = ShortVector.zero(SPECIES).blend((short)1, mask);
+        ShortVector count = ones;
+        for(int shift = 1; shift < LANES; shift <<= 1) {
+            count = count.add(count.unslice(shift));
+        }
+        return count.sub(ones);
+    }
+
+    /**
+     * Builds the lane shifts of a key for every position a block can start at.
+     * 
+     * @param shifts Shift of each key position.
+     * @return Row {@code start} holds the shifts of positions {@code start}, {@code start + 1}, ...
+     * wrapped around the key, one per lane.
+     * @apiNote Added in version 1.5.
+     */
+    private static short[][] Rotations(int[] shifts) {
+        short[][] rotations = new short[shifts.length][LANES];
+        for(int start = 0; start < shifts.length; start++) {
+            for(int lane = 0; lane < LANES; lane++) {
+                rotations[start][lane] = (short)shifts[(start + lane) % shifts.length];
+            }
+        }
+        return rotations;
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: ColumnarUserStoreTest.java
+ * 
+ * Tests that the ColumnarUserStore keeps every User it is given, including
+ * usernames and passwords that don't fit its slots.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see ColumnarUserStore
+ * @apiNote Added in version 1.5.
+ */
+class ColumnarUserStoreTest {
+    //#region TESTS
+    @Test
+    void GetReadsBackTheColumns() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        assertTrue(store.Add(new User("$k1$Alice", "$k1$pw", 1111111111)));
+        assertTrue(store.Add(new User("$k1$Bob", 1222222222)));
+
+        User alice = store.Get("$k1$Alice");
+        assertEquals("$k1$Alice", alice.GetUsername());
+        assertEquals("$k1$pw", alice.GetPassword());
+        assertEquals(1111111111, alice.GetCode());
+        assertNull(store.Get("$k1$Bob").GetPassword());
+        assertNull(store.Get("$k1$Carol"));
+        assertEquals(2, store.Size());
+    }
+
+    @Test
+    void AddRejectsTakenUsername() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        assertTrue(store.Add(new User("$k1$Alice", "$k1$pw", 1111111111)));
+        assertFalse(store.Add(new User("$k1$Alice", "$k1$other", 1333333333)));
+
+        assertEquals("$k1$pw", store.Get("$k1$Alice").GetPassword());
+        assertEquals(1, store.Size());
+    }
+
+    @Test
+    void SetPasswordWritesTheColumn() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        store.Add(new User("$k1$Alice", 1111111111));
+        store.Get("$k1$Alice").SetPassword("$k1$pw");
+
+        assertEquals("$k1$pw", store.Get("$k1$Alice").GetPassword());
+        store.Get("$k1$Alice").SetPassword(null);
+        assertNull(store.Get("$k1$Alice").GetPassword());
+    }
+
+    @Test
+    void ViewsOfOneRowShareTheDirtyMark() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        store.Add(new User("$k1$Alice", 1111111111));
+        store.Add(new User("$k1$Bob", 1222222222));
+
+        assertTrue(store.Get("$k1$Alice").MarkDirty());
+        assertFalse(store.Get("$k1$Alice").MarkDirty());
+        assertTrue(store.Get("$k1$Bob").MarkDirty());
+
+        store.Get("$k1$Alice").ClearDirty();
+        assertTrue(store.Get("$k1$Alice").MarkDirty());
+    }
+
+    @Test
+    void ValuesThatDontFitASlotAreKept() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        String longUsername = "$k1$" + "u".repeat(40);
+        String hash = "$pbkdf2$210000$" + "s".repeat(22) + "$" + "h".repeat(43);
+        store.Add(new User(longUsername, "$k1$pw", 1111111111));
+        store.Add(new User("$k1$jürgen", null, 1222222222));
+        store.Add(new User("$k1$Carol", hash, 1333333333));
+
+        assertEquals("$k1$pw", store.Get(longUsername).GetPassword());
+        assertEquals(1222222222, store.Get("$k1$jürgen").GetCode());
+        assertEquals(hash, store.Get("$k1$Carol").GetPassword());
+
+        // Swapping between a slot and the side map leaves nothing behind.
+        store.Get("$k1$Carol").SetPassword("$k1$short");
+        assertEquals("$k1$short", store.Get("$k1$Carol").GetPassword());
+        store.Get("$k1$Carol").SetPassword(hash);
+        assertEquals(hash, store.Get("$k1$Carol").GetPassword());
+        assertEquals(3, store.Size());
+    }
+
+    @Test
+    void TaggedValuesAndHashesRoundTrip() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        String salt = Base64.getEncoder().withoutPadding().encodeToString(new byte[16]);
+        String digest = Base64.getEncoder().withoutPadding().encodeToString(new byte[32]).replace('A', 'Q');
+        String hash = PasswordHasher.PREFIX + "600000$" + salt + "$" + digest;
+        String taggedUsername = "$k12$" + "u".repeat(16);
+        String taggedPassword = "$k127$" + "p".repeat(12);
+        store.Add(new User(taggedUsername, taggedPassword, 1111111111));
+        store.Add(new User("$k01$Bob", "$k01$pw", 1222222222));
+        store.Add(new User("u".repeat(16), hash, 1333333333));
+
+        assertEquals(taggedUsername, store.Get(taggedUsername).GetUsername());
+        assertEquals(taggedPassword, store.Get(taggedUsername).GetPassword());
+        assertNull(store.Get("$k13$" + "u".repeat(16)));
+        assertEquals("$k01$pw", store.Get("$k01$Bob").GetPassword());
+        assertEquals(hash, store.Get("u".repeat(16)).GetPassword());
+
+        // A row moves between the hash slab and its password slot without mixing them up.
+        store.Get("u".repeat(16)).SetPassword("$k2$pw");
+        assertEquals("$k2$pw", store.Get("u".repeat(16)).GetPassword());
+        store.Get("u".repeat(16)).SetPassword(hash);
+        assertEquals(hash, store.Get("u".repeat(16)).GetPassword());
+
+        Set<String> usernames = new HashSet<>();
+        store.ForEach(user -> usernames.add(user.GetUsername()));
+        assertEquals(Set.of(taggedUsername, "$k01$Bob", "u".repeat(16)), usernames);
+    }
+
+    @Test
+    void GrowingKeepsEveryUser() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        for(int i = 0; i < 10_000; i++) {
+            assertTrue(store.Add(new User("user" + i, i % 2 == 0 ? "pw" + i : null, i)));
+        }
+
+        assertEquals(10_000, store.Size());
+        for(int i = 0; i < 10_000; i++) {
+            User user = store.Get("user" + i);
+            assertEquals(i, user.GetCode());
+            assertEquals(i % 2 == 0 ? "pw" + i : null, user.GetPassword());
+        }
+    }
+
+    @Test
+    void ForEachVisitsSlotsAndOverflow() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        for(int i = 0; i < 100; i++) {
+            store.Add(new User("user" + i, i));
+        }
+        store.Add(new User("$k1$" + "u".repeat(40), 100));
+
+        Set<Integer> codes = new HashSet<>();
+        store.ForEach(user -> codes.add(user.GetCode()));
+        assertEquals(101, codes.size());
+    }
+
+    @Test
+    void ConcurrentAddsKeepOneUserPerUsername() {
+        ColumnarUserStore store = new ColumnarUserStore();
+        long added = IntStream.range(0, 8 * 2000).parallel()
+            .filter(i -> store.Add(new User("user" + (i % 2000), i)))
+            .count();
+
+        assertEquals(2000, added);
+        assertEquals(2000, store.Size());
+        IntStream.range(0, 2000).forEach(i -> assertTrue(store.Get("user" + i) != null));
+    }
+    //#endregion TESTS
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: ConcurrencyStressTest.java
+ * 
+ * Hammers the AuthService with concurrent password creation and logins
+ * against the same Users, through the real Database singleton.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see AuthService
+ * @see Database
+ * @apiNote Added in version 1.5.
+ */
+class ConcurrencyStressTest {
+    //#region CONSTANTS
+    private static final int USERS   = 50;
+    private static final int THREADS = 8;
+    private static final int ROUNDS  = 20;
+
+    private static final AuthService AUTH_SERVICE = AuthService.GetInstance();
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private static String _prefix;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    /**
+     * Adds Users {@code 0} to {@code USERS - 1} without a password for the creation test
+     * and Users {@code USERS} to {@code 2 * USERS - 1} with one for the login test.
+     */
+    @BeforeAll
+    static void AddUsers() {
+        // Unique per run, since the Database keeps its Users in the working directory.
+        _prefix = "stress" + Long.toString(System.nanoTime(), 36);
+        Cryptographer cryptographer = Cryptographer.GetInstance();
+        for(int i = 0; i < USERS * 2; i++) {
+            String password = i < USERS ? null : cryptographer.EncryptVigenere(Password(i));
+            assertTrue(Database.GetInstance().AddUser(new User(cryptographer.EncryptVigenere(_prefix + i), password, Code(i))));
+        }
+    }
+    //#endregion SETUP
+
+    //#region TESTS
+    @Test
+    void OnlyOnePasswordIsCreatedPerUser() throws Exception {
+        String[] winners = new String[USERS];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int t = 0; t < THREADS; t++) {
+            String password = "Stress" + t + "pw";
+            tasks.add(() -> {
+                for(int i = 0; i < USERS; i++) {
+                    LoginSession session = Start(i);
+                    if(AUTH_SERVICE.CreatePassword(session, password.toCharArray()).IsSuccess()) {
+                        synchronized(winners) {
+                            assertEquals(null, winners[i], "Two sessions created a password for one User.");
+                            winners[i] = password;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        RunTogether(tasks);
+
+        for(int i = 0; i < USERS; i++) {
+            assertTrue(winners[i] != null, "No session created a password.");
+            assertTrue(AUTH_SERVICE.VerifyPassword(Start(i), winners[i].toCharArray()).IsSuccess());
+        }
+    }
+
+    @Test
+    void ConcurrentLoginsAllSucceed() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                for(int round = 0; round < ROUNDS; round++) {
+                    for(int i = USERS; i < USERS * 2; i++) {
+                        LoginSession session = Start(i);
+                        assertTrue(AUTH_SERVICE.VerifyPassword(session, Password(i).toCharArray()).IsSuccess());
+                        assertTrue(AUTH_SERVICE.VerifyCode(session, Integer.toString(Code(i))).IsSuccess());
+                        AUTH_SERVICE.CompleteLogin(session);
+                    }
+                }
+                return null;
+            });
+        }
+        RunTogether(tasks);
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    private static LoginSession Start(int user) {
+        LoginSession session = AUTH_SERVICE.StartSession(_prefix + user);
+        assertTrue(AUTH_SERVICE.AuthenticateUsername(session).IsSuccess());
+        return session;
+    }
+
+    private static int Code(int user) {
+        return 1_000_000_000 + user;
+    }
+
+    private static String Password(int user) {
+        return "Login" + user + "pw";
+    }
+
+    /**
+     * Starts every task at once and rethrows the first failure.
+     * @apiNote Added in version 1.5.
+     */
+    private static void RunTogether(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for(Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for(Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: CryptographerBulkTest.java
+ * 
+ * Tests that the bulk functions of the Cryptographer give the same output as
+ * the one-value functions. The test task runs with the Vector API module, so
+ * this checks the VectorCipher against the scalar loop.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @see VectorCipher
+ * @apiNote Added in version 1.5.
+ */
+class CryptographerBulkTest {
+    //#region CONSTANTS
+    private static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /**
+     * Chars the VectorCipher hands back to the scalar loop.
+     */
+    private static final String OTHER_CHARS = "-_.@é٣";
+
+    private static final Cryptographer CRYPTOGRAPHER = Cryptographer.GetInstance();
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private static String[] _values;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    /**
+     * Builds 10,000 random values up to 80 chars long, so they span several blocks
+     * of lanes. About 1 in 50 has a char the VectorCipher doesn't handle, and one is
+     * {@code null}.
+     */
+    @BeforeAll
+    static void BuildValues() {
+        Random random = new Random(4078);
+        _values = new String[10_000];
+        for(int i = 0; i < _values.length; i++) {
+            char[] value = new char[random.nextInt(81)];
+            for(int j = 0; j < value.length; j++) {
+                value[j] = CHARS.charAt(random.nextInt(CHARS.length()));
+            }
+            if(value.length > 0 && random.nextInt(50) == 0) {
+                value[random.nextInt(value.length)] = OTHER_CHARS.charAt(random.nextInt(OTHER_CHARS.length()));
+            }
+            _values[i] = new String(value);
+        }
+        _values[_values.length / 2] = null;
+    }
+    //#endregion SETUP
+
+    //#region TESTS
+    @Test
+    void EncryptAllMatchesEncryptVigenere() {
+        String[] expected = new String[_values.length];
+        for(int i = 0; i < _values.length; i++) {
+            expected[i] = _values[i] == null ? null : CRYPTOGRAPHER.EncryptVigenere(_values[i]);
+        }
+        assertArrayEquals(expected, CRYPTOGRAPHER.EncryptAll(_values));
+    }
+
+    @Test
+    void DecryptAllMatchesDecryptVigenere() {
+        String[] encrypted = CRYPTOGRAPHER.EncryptAll(_values);
+        String[] expected = new String[encrypted.length];
+        for(int i = 0; i < encrypted.length; i++) {
+            expected[i] = encrypted[i] == null ? null : CRYPTOGRAPHER.DecryptVigenere(encrypted[i]);
+        }
+        assertArrayEquals(expected, CRYPTOGRAPHER.DecryptAll(encrypted));
+    }
+
+    @Test
+    void ReencryptAllMatchesReencrypt() {
+        String[] encrypted = new String[_values.length];
+        for(int i = 0; i < _values.length; i++) {
+            // Every key version in turn, so values from older keys are moved over.
+            int version = 1 + i % CRYPTOGRAPHER.GetKeyCount();
+            encrypted[i] = _values[i] == null ? null : CRYPTOGRAPHER.EncryptVigenere(_values[i], version);
+        }
+        String[] expected = new String[encrypted.length];
+        for(int i = 0; i < encrypted.length; i++) {
+            expected[i] = encrypted[i] == null ? null : CRYPTOGRAPHER.Reencrypt(encrypted[i]);
+        }
+        assertArrayEquals(expected, CRYPTOGRAPHER.ReencryptAll(encrypted));
+    }
+    //#endregion TESTS
+}
\ No newline at end of file
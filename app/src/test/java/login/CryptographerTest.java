@@ -0,0 +1,92 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: CryptographerTest.java
+ * 
+ * Tests that the allocation-free char[] functions of the Cryptographer
+ * give the same results as the String functions.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see Cryptographer
+ * @apiNote Added in version 1.5.
+ */
+class CryptographerTest {
+    //#region CONSTANTS
+    private static final Cryptographer CRYPTOGRAPHER = Cryptographer.GetInstance();
+    //#endregion CONSTANTS
+
+    //#region TESTS
+    @ParameterizedTest
+    @ValueSource(strings = { "", "a", "Password1", "ARGOSROCK1963", "abcdefghijklmnopqrstuvwxyz0123456789", "MiXeD123cAsE456" })
+    void CharEncryptMatchesStringEncrypt(String plaintext) {
+        char[] output = new char[plaintext.length()];
+        int length = CRYPTOGRAPHER.EncryptVigenere(plaintext.toCharArray(), plaintext.length(), output);
+
+        assertEquals(Untagged(CRYPTOGRAPHER.EncryptVigenere(plaintext)), new String(output, 0, length));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "Password1", "ARGOSROCK1963", "MiXeD123cAsE456" })
+    void CharEncryptWorksInPlace(String plaintext) {
+        char[] buffer = plaintext.toCharArray();
+        int length = CRYPTOGRAPHER.EncryptVigenere(buffer, buffer.length, buffer);
+
+        assertEquals(Untagged(CRYPTOGRAPHER.EncryptVigenere(plaintext)), new String(buffer, 0, length));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "Password1", "ARGOSROCK1963", "MiXeD123cAsE456" })
+    void ByteEncryptMatchesCharEncrypt(String plaintext) {
+        char[] chars = new char[plaintext.length()];
+        byte[] bytes = new byte[plaintext.length()];
+        int charLength = CRYPTOGRAPHER.EncryptVigenere(plaintext.toCharArray(), plaintext.length(), chars);
+        int byteLength = CRYPTOGRAPHER.EncryptVigenere(plaintext.toCharArray(), plaintext.length(), bytes);
+
+        assertArrayEquals(
+            new String(chars, 0, charLength).getBytes(StandardCharsets.US_ASCII),
+            Arrays.copyOf(bytes, byteLength)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "Password1", "ARGOSROCK1963", "abcdefghijklmnopqrstuvwxyz0123456789" })
+    void CharDecryptReversesCharEncrypt(String plaintext) {
+        char[] buffer = plaintext.toCharArray();
+        int length = CRYPTOGRAPHER.EncryptVigenere(buffer, buffer.length, buffer);
+        length = CRYPTOGRAPHER.DecryptVigenere(buffer, length, buffer);
+
+        assertEquals(plaintext, new String(buffer, 0, length));
+        assertEquals(plaintext, CRYPTOGRAPHER.DecryptVigenere(CRYPTOGRAPHER.EncryptVigenere(plaintext)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "pass word!1", "user@example.com", "a-b_c.d" })
+    void SymbolsAreDropped(String plaintext) {
+        char[] output = new char[plaintext.length()];
+        int length = CRYPTOGRAPHER.EncryptVigenere(plaintext.toCharArray(), plaintext.length(), output);
+
+        String kept = plaintext.replaceAll("[^A-Za-z0-9]", "");
+        assertEquals(kept.length(), length);
+        assertEquals(Untagged(CRYPTOGRAPHER.EncryptVigenere(kept)), new String(output, 0, length));
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    private static String Untagged(String encrypted) {
+        return encrypted.substring(CRYPTOGRAPHER.GetTagLength(encrypted));
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
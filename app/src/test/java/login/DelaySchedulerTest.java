@@ -0,0 +1,108 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: DelaySchedulerTest.java
+ * 
+ * Tests that the DelayScheduler's timing wheel never fires a delay early
+ * and keeps up with many pending delays, and that delayed failures through
+ * the AuthService don't hold a thread each.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see DelayScheduler
+ * @apiNote Added in version 1.5.
+ */
+class DelaySchedulerTest {
+    //#region CONSTANTS
+    private static final DelayScheduler SCHEDULER = DelayScheduler.GetInstance();
+    private static final AuthService AUTH_SERVICE = AuthService.GetInstance();
+
+    private static final int ATTEMPTS = 10_000;
+    private static final int MAX_EXTRA_THREADS = 4;
+    //#endregion CONSTANTS
+
+    //#region TESTS
+    @Test
+    void DelayNeverCompletesEarly() {
+        long start = System.nanoTime();
+        SCHEDULER.Delay(120).join();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed >= 120, "Completed after " + elapsed + " ms.");
+    }
+
+    @Test
+    void NonPositiveDelayRunsOnTheNextTick() {
+        CompletableFuture<Void> zero = SCHEDULER.Delay(0);
+        CompletableFuture<Void> negative = SCHEDULER.Delay(-50);
+
+        zero.orTimeout(1, TimeUnit.SECONDS).join();
+        negative.orTimeout(1, TimeUnit.SECONDS).join();
+    }
+
+    @Test
+    void TasksRunInDeadlineOrder() {
+        List<Integer> order = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        // Scheduled out of order and several ticks apart, so the wheel has to sort them.
+        SCHEDULER.Schedule(250, () -> { order.add(3); done.complete(null); });
+        SCHEDULER.Schedule(50,  () -> order.add(1));
+        SCHEDULER.Schedule(150, () -> order.add(2));
+
+        done.orTimeout(2, TimeUnit.SECONDS).join();
+        assertEquals(List.of(1, 2, 3), order);
+    }
+
+    @Test
+    void ManyPendingDelaysAllComplete() {
+        List<CompletableFuture<Void>> delays = new ArrayList<>();
+        for(int i = 0; i < 10_000; i++) {
+            delays.add(SCHEDULER.Delay(i % 200));
+        }
+
+        CompletableFuture.allOf(delays.toArray(new CompletableFuture[0])).orTimeout(2, TimeUnit.SECONDS).join();
+    }
+
+    @Test
+    void DelayedFailuresDontHoldThreads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // One attempt first, so the Database and the DelayScheduler have started their own threads.
+        String prefix = "nobody" + Long.toString(System.nanoTime(), 36);
+        AUTH_SERVICE.AuthenticateUsernameAsync(AUTH_SERVICE.StartSession(prefix)).orTimeout(5, TimeUnit.SECONDS).join();
+        int before = threads.getThreadCount();
+
+        List<CompletableFuture<AuthResult>> attempts = new ArrayList<>();
+        for(int i = 0; i < ATTEMPTS; i++) {
+            attempts.add(AUTH_SERVICE.AuthenticateUsernameAsync(AUTH_SERVICE.StartSession(prefix + i)));
+        }
+        int during = threads.getThreadCount();
+        long pending = attempts.stream().filter(attempt -> !attempt.isDone()).count();
+
+        assertTrue(pending > 0, "No attempt was delayed.");
+        assertTrue(
+            during - before <= MAX_EXTRA_THREADS,
+            (during - before) + " extra threads for " + pending + " pending attempts."
+        );
+        CompletableFuture.allOf(attempts.toArray(new CompletableFuture[0])).orTimeout(10, TimeUnit.SECONDS).join();
+        for(CompletableFuture<AuthResult> attempt : attempts) {
+            assertFalse(attempt.join().IsSuccess());
+        }
+    }
+    //#endregion TESTS
+}
\ No newline at end of file
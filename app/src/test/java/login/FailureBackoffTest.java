@@ -0,0 +1,67 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: FailureBackoffTest.java
+ * 
+ * Tests the per-username exponential backoff of the FailureBackoff.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see FailureBackoff
+ * @apiNote Added in version 1.5.
+ */
+class FailureBackoffTest {
+    //#region CONSTANTS
+    private static final FailureBackoff BACKOFF = FailureBackoff.GetInstance();
+    //#endregion CONSTANTS
+
+    //#region TESTS
+    @Test
+    void DelayDoublesUpToTheCap() {
+        String username = Unique("doubles");
+        long[] expected = { 1000, 2000, 4000, 8000, 16_000, 30_000, 30_000, 30_000 };
+        for(long delay : expected) {
+            assertEquals(delay, BACKOFF.RecordFailure(username));
+        }
+    }
+
+    @Test
+    void SuccessResetsTheStreak() {
+        String username = Unique("reset");
+        BACKOFF.RecordFailure(username);
+        BACKOFF.RecordFailure(username);
+        BACKOFF.RecordSuccess(username);
+
+        assertEquals(1000, BACKOFF.RecordFailure(username));
+    }
+
+    @Test
+    void UsernamesHaveTheirOwnStreak() {
+        String first = Unique("first");
+        String second = Unique("second");
+        BACKOFF.RecordFailure(first);
+        BACKOFF.RecordFailure(first);
+        BACKOFF.RecordFailure(first);
+
+        assertEquals(1000, BACKOFF.RecordFailure(second));
+        assertEquals(8000, BACKOFF.RecordFailure(first));
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Returns a username no other test records failures for, since the FailureBackoff is shared.
+     * @apiNote Added in version 1.5.
+     */
+    private static String Unique(String name) {
+        return name + System.nanoTime();
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
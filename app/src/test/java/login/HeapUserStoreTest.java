@@ -0,0 +1,78 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: HeapUserStoreTest.java
+ * 
+ * Tests the encrypted username index of the HeapUserStore.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see HeapUserStore
+ * @apiNote Added in version 1.5.
+ */
+class HeapUserStoreTest {
+    //#region TESTS
+    @Test
+    void GetFindsAddedUsers() {
+        HeapUserStore store = new HeapUserStore();
+        User alice = new User("$k1$Alice", "pw1", 1111111111);
+        User bob = new User("$k1$Bob", null, 1222222222);
+        assertTrue(store.Add(alice));
+        assertTrue(store.Add(bob));
+
+        assertSame(alice, store.Get("$k1$Alice"));
+        assertSame(bob, store.Get("$k1$Bob"));
+        assertNull(store.Get("$k1$Carol"));
+        assertEquals(2, store.Size());
+    }
+
+    @Test
+    void AddRejectsTakenUsername() {
+        HeapUserStore store = new HeapUserStore();
+        User first = new User("$k1$Alice", "pw1", 1111111111);
+        assertTrue(store.Add(first));
+        assertFalse(store.Add(new User("$k1$Alice", "pw2", 1333333333)));
+
+        assertSame(first, store.Get("$k1$Alice"));
+        assertEquals(1, store.Size());
+    }
+
+    @Test
+    void ForEachKeepsInsertionOrder() {
+        HeapUserStore store = new HeapUserStore();
+        for(int i = 0; i < 100; i++) {
+            store.Add(new User("user" + i, i));
+        }
+
+        List<String> usernames = new ArrayList<>();
+        store.ForEach(user -> usernames.add(user.GetUsername()));
+        assertEquals(IntStream.range(0, 100).mapToObj(i -> "user" + i).toList(), usernames);
+    }
+
+    @Test
+    void ConcurrentAddsKeepOneUserPerUsername() {
+        HeapUserStore store = new HeapUserStore();
+        long added = IntStream.range(0, 8 * 1000).parallel()
+            .filter(i -> store.Add(new User("user" + (i % 1000), i)))
+            .count();
+
+        assertEquals(1000, added);
+        assertEquals(1000, store.Size());
+    }
+    //#endregion TESTS
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: InputPolicyTest.java
+ * 
+ * Tests the single-pass rule checks of the InputPolicy against the default
+ * password and username policies.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see InputPolicy
+ * @see PolicyViolation
+ * @apiNote Added in version 1.5.
+ */
+class InputPolicyTest {
+    //#region CONSTANTS
+    private static final InputPolicy PASSWORD = Validation.DEFAULT_PASSWORD_POLICY;
+    private static final InputPolicy USERNAME = Validation.DEFAULT_USERNAME_POLICY;
+    //#endregion CONSTANTS
+
+    //#region TESTS
+    @ParameterizedTest
+    @ValueSource(strings = { "Passw0rd", "Abcdefgh1234", "aB3aB3aB" })
+    void ValidPasswordsPass(String password) {
+        assertEquals(0, PASSWORD.Check(password));
+        assertEquals(0, PASSWORD.Check(password.toCharArray(), password.length()));
+    }
+
+    @Test
+    void EmptyInputIsOnlyEmpty() {
+        assertEquals(PolicyViolation.EMPTY.Mask(), PASSWORD.Check(""));
+        assertEquals(PolicyViolation.EMPTY.Mask(), PASSWORD.Check(new char[8], 0));
+    }
+
+    @Test
+    void LengthLimitsAreIncluded() {
+        assertEquals(PolicyViolation.TOO_SHORT.Mask(), PASSWORD.Check("Passw0r"));
+        assertEquals(0, PASSWORD.Check("Passw0rd"));
+        assertEquals(0, PASSWORD.Check("Passw0rd1234"));
+        assertEquals(PolicyViolation.TOO_LONG.Mask(), PASSWORD.Check("Passw0rd12345"));
+    }
+
+    @Test
+    void EveryViolationIsReportedAtOnce() {
+        int violations = PASSWORD.Check("abc;");
+
+        assertEquals(
+            PolicyViolation.TOO_SHORT.Mask() | PolicyViolation.FORBIDDEN_CHARACTER.Mask()
+                | PolicyViolation.INVALID_CHARACTER.Mask() | PolicyViolation.MISSING_UPPERCASE.Mask()
+                | PolicyViolation.MISSING_DIGIT.Mask(),
+            violations
+        );
+        // Forbidden characters are reported before the other rules.
+        assertEquals(PolicyViolation.FORBIDDEN_CHARACTER, PolicyViolation.First(violations));
+    }
+
+    @Test
+    void MissingClassesAreReportedSeparately() {
+        assertEquals(PolicyViolation.MISSING_UPPERCASE.Mask(), PASSWORD.Check("passw0rd"));
+        assertEquals(PolicyViolation.MISSING_LOWERCASE.Mask(), PASSWORD.Check("PASSW0RD"));
+        assertEquals(PolicyViolation.MISSING_DIGIT.Mask(), PASSWORD.Check("Password"));
+    }
+
+    @Test
+    void NonAsciiIsNeverAlphanumeric() {
+        // The accented letters are not in the allowed alphabet and don't count as lowercase.
+        assertEquals(PolicyViolation.INVALID_CHARACTER.Mask(), PASSWORD.Check("PÄSSW0Rdé"));
+        assertEquals(0, USERNAME.Check("jürgen"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "bob'--", "a;b", "x=y", "<admin>", "a/b", "a\\b", "a|b" })
+    void UsernamesRejectSqlCharacters(String username) {
+        assertEquals(PolicyViolation.FORBIDDEN_CHARACTER.Mask(), USERNAME.Check(username));
+    }
+
+    @Test
+    void UsernamesAreCapped() {
+        assertEquals(0, USERNAME.Check("u".repeat(64)));
+        assertEquals(PolicyViolation.TOO_LONG.Mask(), USERNAME.Check("u".repeat(65)));
+    }
+
+    @Test
+    void CharCheckOnlyReadsTheGivenLength() {
+        char[] buffer = "Passw0rd;;;;".toCharArray();
+
+        assertEquals(0, PASSWORD.Check(buffer, 8));
+    }
+
+    @Test
+    void InvalidLengthsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new InputPolicy(-1, 5, 0, null, null));
+        assertThrows(IllegalArgumentException.class, () -> new InputPolicy(5, 4, 0, null, null));
+    }
+    //#endregion TESTS
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: KeyRotatorTest.java
+ * 
+ * Tests that Users stored under the built-in key can be looked up and log in
+ * before, during and after a re-key to the newest key, through the real
+ * Database singleton. Needs a second key from {@code -Dlogin.keys}, which the
+ * test task sets, and is skipped without one.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see KeyRotator
+ * @see Database
+ * @apiNote Added in version 1.5.
+ */
+class KeyRotatorTest {
+    //#region CONSTANTS
+    private static final int USERS = 3000;
+
+    private static final Cryptographer CRYPTOGRAPHER = Cryptographer.GetInstance();
+    private static final Database DATABASE = Database.GetInstance();
+    private static final KeyRotator KEY_ROTATOR = KeyRotator.GetInstance();
+    //#endregion CONSTANTS
+
+    //#region VARIABLES
+    private String _prefix;
+    //#endregion VARIABLES
+
+    //#region SETUP
+    /**
+     * Adds {@code USERS} Users encrypted under the built-in key.
+     */
+    @BeforeEach
+    void AddUsers() {
+        assumeTrue(CRYPTOGRAPHER.GetKeyCount() > 1, "No second key to rotate to.");
+        // Unique per run, since the Database keeps its Users in the working directory.
+        _prefix = "rotate" + Long.toString(System.nanoTime(), 36);
+        User[] users = new User[USERS];
+        for(int i = 0; i < USERS; i++) {
+            users[i] = new User(
+                CRYPTOGRAPHER.EncryptVigenere(_prefix + i, Cryptographer.BUILT_IN_VERSION),
+                CRYPTOGRAPHER.EncryptVigenere(Password(i), Cryptographer.BUILT_IN_VERSION),
+                Code(i)
+            );
+        }
+        for(boolean added : DATABASE.AddUsers(users)) {
+            assertTrue(added);
+        }
+    }
+    //#endregion SETUP
+
+    //#region TESTS
+    @Test
+    void HalfCopiedUsersAreFoundUnderBothKeys() {
+        assertTrue(DATABASE.BeginRekey());
+        try {
+            User[] sources = new User[USERS / 2];
+            User[] copies = new User[USERS / 2];
+            for(int i = 0; i < USERS / 2; i++) {
+                sources[i] = DATABASE.GetUserByEncryptedUsername(OldUsername(i));
+                copies[i] = new User(
+                    CRYPTOGRAPHER.Reencrypt(sources[i].GetUsername()),
+                    CRYPTOGRAPHER.Reencrypt(sources[i].GetPassword()),
+                    sources[i].GetCode()
+                );
+            }
+            assertEquals(USERS / 2, DATABASE.RekeyUsers(sources, copies, user -> user));
+
+            for(int i = 0; i < USERS; i++) {
+                UsernameCache.Entry entry = DATABASE.FindUsername(_prefix + i);
+                String expected = i < USERS / 2 ? CRYPTOGRAPHER.EncryptVigenere(_prefix + i) : OldUsername(i);
+                assertEquals(expected, entry.GetEncryptedUsername());
+                assertEquals(Code(i), entry.GetUser().GetCode());
+                assertEquals(Password(i), CRYPTOGRAPHER.DecryptVigenere(entry.GetUser().GetPassword()));
+            }
+        }
+        finally {
+            DATABASE.AbortRekey();
+        }
+    }
+
+    @Test
+    void UsersStayReachableThroughARotation() {
+        assertTrue(KEY_ROTATOR.Start());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        // Every User is looked up while the copies are being made, whichever key it is under at the time.
+        int checks = 0;
+        while(KEY_ROTATOR.IsRotating() && System.nanoTime() < deadline) {
+            int i = checks++ % USERS;
+            User user = DATABASE.FindUsername(_prefix + i).GetUser();
+            assertTrue(user != null, "User " + i + " went missing after " + KEY_ROTATOR.GetScanned() + " scanned.");
+            assertEquals(Code(i), user.GetCode());
+        }
+        assertFalse(KEY_ROTATOR.IsRotating(), "Rotation didn't finish.");
+
+        AuthService authService = AuthService.GetInstance();
+        for(int i = 0; i < USERS; i++) {
+            UsernameCache.Entry entry = DATABASE.FindUsername(_prefix + i);
+            assertEquals(CRYPTOGRAPHER.EncryptVigenere(_prefix + i), entry.GetEncryptedUsername());
+            assertTrue(CRYPTOGRAPHER.IsCurrent(entry.GetUser().GetPassword()));
+        }
+        for(int i = 0; i < USERS; i += 500) {
+            LoginSession session = authService.StartSession(_prefix + i);
+            assertTrue(authService.AuthenticateUsername(session).IsSuccess());
+            assertTrue(authService.VerifyPassword(session, Password(i).toCharArray()).IsSuccess());
+        }
+        assertFalse(KEY_ROTATOR.NeedsRekey());
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    private String OldUsername(int user) {
+        return CRYPTOGRAPHER.EncryptVigenere(_prefix + user, Cryptographer.BUILT_IN_VERSION);
+    }
+
+    private static int Code(int user) {
+        return 1_000_000_000 + user;
+    }
+
+    private static String Password(int user) {
+        return "Rotate" + user + "pw";
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
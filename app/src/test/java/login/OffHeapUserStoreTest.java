@@ -0,0 +1,198 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: OffHeapUserStoreTest.java
+ * 
+ * Tests that the OffHeapUserStore keeps every User it is given across growth,
+ * including values that overflow its records, and zeroes its memory on Close().
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see OffHeapUserStore
+ * @apiNote Added in version 1.5.
+ */
+class OffHeapUserStoreTest {
+    //#region TESTS
+    @Test
+    void GetReadsBackTheRecord() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        assertTrue(store.Add(new User("$k1$Alice", "$k1$pw", 1111111111)));
+        assertTrue(store.Add(new User("$k1$Bob", 1222222222)));
+        assertFalse(store.Add(new User("$k1$Alice", "$k1$other", 1333333333)));
+
+        User alice = store.Get("$k1$Alice");
+        assertEquals("$k1$Alice", alice.GetUsername());
+        assertEquals("$k1$pw", alice.GetPassword());
+        assertEquals(1111111111, alice.GetCode());
+        assertNull(store.Get("$k1$Bob").GetPassword());
+        assertNull(store.Get("$k1$Carol"));
+        assertNull(store.Get("$k2$Alice"));
+        assertEquals(2, store.Size());
+        store.Close();
+    }
+
+    @Test
+    void TaggedValuesAndHashesRoundTrip() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        String hash = Hash('Q');
+        String taggedUsername = "$k12$" + "u".repeat(16);
+        String taggedPassword = "$k127$" + "p".repeat(12);
+        store.Add(new User(taggedUsername, taggedPassword, 1111111111));
+        store.Add(new User("$k01$Bob", "$k01$pw", 1222222222));
+        store.Add(new User("u".repeat(16), hash, 1333333333));
+
+        assertEquals(taggedUsername, store.Get(taggedUsername).GetUsername());
+        assertEquals(taggedPassword, store.Get(taggedUsername).GetPassword());
+        assertNull(store.Get("$k13$" + "u".repeat(16)));
+        assertEquals("$k01$pw", store.Get("$k01$Bob").GetPassword());
+        assertEquals(hash, store.Get("u".repeat(16)).GetPassword());
+
+        // A record keeps its hash slot and moves between it and its password slot without mixing them up.
+        store.Get("u".repeat(16)).SetPassword("$k2$pw");
+        assertEquals("$k2$pw", store.Get("u".repeat(16)).GetPassword());
+        store.Get("u".repeat(16)).SetPassword(Hash('R'));
+        assertEquals(Hash('R'), store.Get("u".repeat(16)).GetPassword());
+        store.Close();
+    }
+
+    @Test
+    void ValuesThatDontFitARecordAreKept() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        String longUsername = "$k1$" + "u".repeat(40);
+        String longPassword = "$k1$" + "p".repeat(40);
+        // A hash whose salt isn't the packed length can't go in a hash slot.
+        String oddHash = PasswordHasher.PREFIX + "600000$c2FsdA$" + "h".repeat(43);
+        store.Add(new User(longUsername, "$k1$pw", 1111111111));
+        store.Add(new User("$k1$jürgen", null, 1222222222));
+        store.Add(new User("$k1$Carol", longPassword, 1333333333));
+        store.Add(new User("$k1$Dave", oddHash, 1444444444));
+
+        assertEquals("$k1$pw", store.Get(longUsername).GetPassword());
+        assertEquals(1222222222, store.Get("$k1$jürgen").GetCode());
+        assertEquals(longPassword, store.Get("$k1$Carol").GetPassword());
+        assertEquals(oddHash, store.Get("$k1$Dave").GetPassword());
+
+        // Swapping between a record and the side map leaves nothing behind.
+        store.Get("$k1$Carol").SetPassword("$k1$short");
+        assertEquals("$k1$short", store.Get("$k1$Carol").GetPassword());
+        store.Get("$k1$Carol").SetPassword(longPassword);
+        assertEquals(longPassword, store.Get("$k1$Carol").GetPassword());
+        assertEquals(4, store.Size());
+
+        Set<Integer> codes = new HashSet<>();
+        store.ForEach(user -> codes.add(user.GetCode()));
+        assertEquals(Set.of(1111111111, 1222222222, 1333333333, 1444444444), codes);
+        store.Close();
+    }
+
+    @Test
+    void GrowingReindexesEveryUser() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        // Several doublings of the records, index and hash slots, with tags so the versions are rehashed too.
+        for(int i = 0; i < 10_000; i++) {
+            String password = i % 3 == 0 ? Hash((char)('A' + i % 26)) : i % 3 == 1 ? "$k2$pw" + i : null;
+            assertTrue(store.Add(new User("$k" + (1 + i % 3) + "$user" + i, password, i)));
+        }
+
+        assertEquals(10_000, store.Size());
+        for(int i = 0; i < 10_000; i++) {
+            User user = store.Get("$k" + (1 + i % 3) + "$user" + i);
+            assertEquals(i, user.GetCode());
+            String password = i % 3 == 0 ? Hash((char)('A' + i % 26)) : i % 3 == 1 ? "$k2$pw" + i : null;
+            assertEquals(password, user.GetPassword());
+            assertNull(store.Get("$k" + (2 + i % 3) + "$user" + i));
+        }
+        store.Close();
+    }
+
+    @Test
+    void WipeZeroesEveryRecord() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.Add(new User("$k1$Alice", "$k1$pw", 1111111111));
+        store.Add(new User("$k1$Bob", Hash('Q'), 1222222222));
+        store.Add(new User("$k1$Carol", "$k1$" + "p".repeat(40), 1333333333));
+        store.Wipe();
+
+        assertNull(store.Get("$k1$Alice"));
+        assertNull(store.Get("$k1$Bob"));
+        int[] records = { 0 };
+        store.ForEach(user -> {
+            records[0]++;
+            assertEquals("", user.GetUsername());
+            assertEquals(0, user.GetCode());
+            assertEquals("", user.GetPassword());
+        });
+        assertEquals(3, records[0]);
+        store.Close();
+    }
+
+    @Test
+    void CloseFreesTheMemory() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.Add(new User("$k1$Alice", "$k1$pw", 1111111111));
+        store.Close();
+
+        assertThrows(IllegalStateException.class, () -> store.Get("$k1$Alice"));
+    }
+
+    @Test
+    void ConcurrentAddsKeepOneUserPerUsername() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        long added = IntStream.range(0, 8 * 2000).parallel()
+            .filter(i -> store.Add(new User("user" + (i % 2000), i)))
+            .count();
+
+        assertEquals(2000, added);
+        assertEquals(2000, store.Size());
+        IntStream.range(0, 2000).forEach(i -> assertTrue(store.Get("user" + i) != null));
+        store.Close();
+    }
+
+    @Test
+    void ConcurrentPasswordChangesAreNeverTorn() {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.Add(new User("$k1$Alice", "$k1$pw", 1111111111));
+        Set<String> allowed = Set.of("$k1$pw", "$k2$" + "p".repeat(12), Hash('Q'), "$k1$" + "p".repeat(40));
+
+        IntStream.range(0, 8 * 1000).parallel().forEach(i -> {
+            User alice = store.Get("$k1$Alice");
+            if(i % 2 == 0) {
+                alice.SetPassword(allowed.stream().skip(i / 2 % allowed.size()).findFirst().get());
+            }
+            else {
+                String password = alice.GetPassword();
+                assertTrue(allowed.contains(password), "Read a torn password: " + password);
+            }
+        });
+        store.Close();
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Returns a hash in the stored form with a zero salt and a digest made of the given character.
+     * @apiNote Added in version 1.5.
+     */
+    private static String Hash(char digit) {
+        String salt = Base64.getEncoder().withoutPadding().encodeToString(new byte[16]);
+        String digest = Base64.getEncoder().withoutPadding().encodeToString(new byte[32]).replace('A', digit);
+        return PasswordHasher.PREFIX + "600000$" + salt + "$" + digest;
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file
@@ -0,0 +1,213 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserLogTest.java
+ * 
+ * Tests that the UserLog replays what was committed and cuts off a torn
+ * or corrupt tail.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserLog
+ * @apiNote Added in version 1.5.
+ */
+class UserLogTest {
+    //#region VARIABLES
+    @TempDir
+    private Path _directory;
+    //#endregion VARIABLES
+
+    //#region TESTS
+    @Test
+    void ReplayReturnsEveryRecordInOrder() throws IOException {
+        Path path = _directory.resolve("user_log.dat");
+        try(UserLog log = Open(path)) {
+            log.AppendCreateUser("$k1$Alice", null, 1111111111).join();
+            log.AppendCreateUser("$k1$Bob", "$k1$pw", 1222222222).join();
+            log.AppendPasswordChange("$k1$Alice", "$k1$new").join();
+            log.AppendRekeyUser("$k1$Bob", "$k2$Bob", null).join();
+        }
+
+        Recorder recorder = new Recorder();
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(4, log.Replay(recorder));
+        }
+        assertEquals(List.of(
+            "create $k1$Alice null 1111111111",
+            "create $k1$Bob $k1$pw 1222222222",
+            "password $k1$Alice $k1$new",
+            "rekey $k1$Bob $k2$Bob null"
+        ), recorder._records);
+    }
+
+    @Test
+    void ConcurrentAppendsAreAllReplayed() throws IOException {
+        Path path = _directory.resolve("user_log.dat");
+        try(UserLog log = Open(path)) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                int user = i;
+                writes.add(CompletableFuture.supplyAsync(() -> log.AppendCreateUser("user" + user, null, user)).thenCompose(f -> f));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        }
+
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(1000, log.Replay(new Recorder()));
+        }
+    }
+
+    @Test
+    void TornTailIsCutOff() throws IOException {
+        Path path = _directory.resolve("user_log.dat");
+        long end;
+        try(UserLog log = Open(path)) {
+            log.AppendCreateUser("$k1$Alice", null, 1111111111).join();
+            log.AppendCreateUser("$k1$Bob", null, 1222222222).join();
+            end = log.GetAppendPosition();
+        }
+        // A crash part way through the next record: its length and some of its body.
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(7).putInt(40).put((byte)1).putShort((short)9).flip());
+        }
+
+        Recorder recorder = new Recorder();
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(2, log.Replay(recorder));
+            assertEquals(end, log.GetAppendPosition());
+            log.AppendCreateUser("$k1$Carol", null, 1333333333).join();
+        }
+        assertEquals(end + RecordLength("$k1$Carol", null), Files.size(path));
+
+        // The record written after the cut follows the intact ones.
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(3, log.Replay(new Recorder()));
+        }
+    }
+
+    @Test
+    void CorruptRecordStopsReplay() throws IOException {
+        Path path = _directory.resolve("user_log.dat");
+        long second;
+        try(UserLog log = Open(path)) {
+            log.AppendCreateUser("$k1$Alice", null, 1111111111).join();
+            second = log.GetAppendPosition();
+            log.AppendCreateUser("$k1$Bob", null, 1222222222).join();
+            log.AppendCreateUser("$k1$Carol", null, 1333333333).join();
+        }
+        // Flips a byte in the body of the second record, so its checksum no longer matches.
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, second + 6);
+            b.put(0, (byte)(b.get(0) ^ 0x20)).rewind();
+            channel.write(b, second + 6);
+        }
+
+        Recorder recorder = new Recorder();
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(1, log.Replay(recorder));
+        }
+        assertEquals(List.of("create $k1$Alice null 1111111111"), recorder._records);
+        assertEquals(second, Files.size(path));
+    }
+
+    @Test
+    void ReplayStartsFromAPosition() throws IOException {
+        Path path = _directory.resolve("user_log.dat");
+        long position;
+        try(UserLog log = Open(path)) {
+            log.AppendCreateUser("$k1$Alice", null, 1111111111).join();
+            position = log.GetAppendPosition();
+            log.AppendPasswordChange("$k1$Alice", "$k1$pw").join();
+        }
+
+        Recorder recorder = new Recorder();
+        try(UserLog log = new UserLog(path)) {
+            assertEquals(1, log.Replay(recorder, position));
+            assertThrows(IOException.class, () -> log.Replay(recorder, Files.size(path) + 1));
+        }
+        assertEquals(List.of("password $k1$Alice $k1$pw"), recorder._records);
+    }
+
+    @Test
+    void FitsMatchesTheValueLimit() {
+        assertTrue(UserLog.Fits(null));
+        assertTrue(UserLog.Fits("a".repeat(UserLog.MAX_VALUE_LENGTH)));
+        assertFalse(UserLog.Fits("a".repeat(UserLog.MAX_VALUE_LENGTH + 1)));
+        // Three bytes each in UTF-8, so a third as many chars fit.
+        assertTrue(UserLog.Fits("€".repeat(UserLog.MAX_VALUE_LENGTH / 3)));
+        assertFalse(UserLog.Fits("€".repeat(UserLog.MAX_VALUE_LENGTH / 3 + 1)));
+    }
+
+    @Test
+    void ClosedLogRefusesRecords() throws IOException {
+        UserLog log = Open(_directory.resolve("user_log.dat"));
+        log.close();
+
+        assertThrows(CompletionException.class, () -> log.AppendCreateUser("$k1$Alice", null, 1111111111).join());
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    private static UserLog Open(Path path) throws IOException {
+        UserLog log = new UserLog(path);
+        log.Replay(new Recorder());
+        return log;
+    }
+
+    /**
+     * Size on disk of a create record: length, type, username, MFA Code, password and checksum.
+     * @apiNote Added in version 1.5.
+     */
+    private static long RecordLength(String username, String password) {
+        int body = 1 + 2 + username.length() + 4 + 2 + (password == null ? 0 : password.length());
+        return Integer.BYTES + body + Integer.BYTES;
+    }
+    //#endregion HELPER FUNCTIONS
+
+    //#region NESTED CLASSES
+    /**
+     * Keeps every replayed record as a line of text.
+     */
+    private static class Recorder implements UserLog.ReplayHandler {
+        private final List<String> _records = new ArrayList<>();
+
+        @Override
+        public void OnCreateUser(String encryptedUsername, String encryptedPassword, int code) {
+            _records.add("create " + encryptedUsername + " " + encryptedPassword + " " + code);
+        }
+
+        @Override
+        public void OnPasswordChange(String encryptedUsername, String encryptedPassword) {
+            _records.add("password " + encryptedUsername + " " + encryptedPassword);
+        }
+
+        @Override
+        public void OnRekeyUser(String encryptedUsername, String newEncryptedUsername, String newEncryptedPassword) {
+            _records.add("rekey " + encryptedUsername + " " + newEncryptedUsername + " " + newEncryptedPassword);
+        }
+    }
+    //#endregion NESTED CLASSES
+}
\ No newline at end of file
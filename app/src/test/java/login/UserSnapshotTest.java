@@ -0,0 +1,186 @@
+package login;
+
+//#region IMPORTS
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+//#endregion IMPORTS
+
+/**
+ * COP 4078 Exercise: 5
+ * File Name: UserSnapshotTest.java
+ * 
+ * Tests that the UserSnapshot finds every User it was written with,
+ * reads snapshots in the older format and refuses files that aren't snapshots.
+ * 
+ * @author Noah Nickles
+ * @version 1.5
+ * @see UserSnapshot
+ * @apiNote Added in version 1.5.
+ */
+class UserSnapshotTest {
+    //#region VARIABLES
+    @TempDir
+    private Path _directory;
+    //#endregion VARIABLES
+
+    //#region TESTS
+    @Test
+    void FindReadsBackEveryUser() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        String hash = PasswordHasher.PREFIX + "600000$" + "s".repeat(22) + "$" + "h".repeat(43);
+        UserSnapshot.Write(path, List.of(
+            new User("$k1$Alice", "$k1$pw", 1111111111),
+            new User("$k1$Bob", 1222222222),
+            new User("$k2$jürgen", hash, 1333333333)
+        ), 4096);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        assertEquals(3, snapshot.GetUserCount());
+        assertEquals(4096, snapshot.GetLogPosition());
+        assertEquals("$k1$pw", snapshot.Find("$k1$Alice").GetPassword());
+        assertEquals(1111111111, snapshot.Find("$k1$Alice").GetCode());
+        assertNull(snapshot.Find("$k1$Bob").GetPassword());
+        assertEquals(hash, snapshot.Find("$k2$jürgen").GetPassword());
+        assertNull(snapshot.Find("$k1$Carol"));
+        assertNull(snapshot.Find(""));
+        assertTrue(snapshot.Contains("$k1$Bob"));
+        assertFalse(snapshot.Contains("$k2$Bob"));
+        assertFalse(Files.exists(_directory.resolve("user_snapshot.dat.tmp")));
+    }
+
+    @Test
+    void LongUsernamesAreKeptInTheDataArea() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        String longUsername = "$k1$" + "u".repeat(200);
+        List<User> users = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            users.add(new User("$k1$user" + i, "$k1$pw" + i, i));
+        }
+        users.add(new User(longUsername, "$k1$long", 100));
+        UserSnapshot.Write(path, users, 0);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        assertEquals("$k1$long", snapshot.Find(longUsername).GetPassword());
+        assertNull(snapshot.Find("$k1$" + "u".repeat(199) + "v"));
+        for(int i = 0; i < 100; i++) {
+            assertEquals("$k1$pw" + i, snapshot.Find("$k1$user" + i).GetPassword());
+        }
+        // One long username doesn't widen all 256 slots to its length.
+        assertTrue(Files.size(path) < 256L * (12 + longUsername.length()));
+
+        Set<String> usernames = new HashSet<>();
+        snapshot.ForEachUsername(usernames::add);
+        Set<Integer> codes = new HashSet<>();
+        snapshot.ForEach(user -> codes.add(user.GetCode()));
+        assertEquals(101, usernames.size());
+        assertTrue(usernames.contains(longUsername));
+        assertEquals(101, codes.size());
+    }
+
+    @Test
+    void ReadsFormatOneSnapshots() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        UserSnapshot.Write(path, List.of(
+            new User("$k1$Alice", "$k1$pw", 1111111111),
+            new User("$k1$Bob", 1222222222)
+        ), 64);
+        // Format 1 had the same layout as long as no username is wider than a slot, which it never allowed.
+        WriteInt(path, 4, 1);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        assertEquals(2, snapshot.GetUserCount());
+        assertEquals(64, snapshot.GetLogPosition());
+        assertEquals("$k1$pw", snapshot.Find("$k1$Alice").GetPassword());
+        assertEquals(1222222222, snapshot.Find("$k1$Bob").GetCode());
+        assertNull(snapshot.Find("$k1$Carol"));
+    }
+
+    @Test
+    void EmptySnapshotHasNoUsers() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        UserSnapshot.Write(path, List.of(), 0);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        assertEquals(0, snapshot.GetUserCount());
+        assertNull(snapshot.Find("$k1$Alice"));
+        snapshot.ForEach(user -> { throw new AssertionError("Found " + user.GetUsername() + "."); });
+    }
+
+    @Test
+    void MissingFileOpensAsNull() throws IOException {
+        assertNull(UserSnapshot.Open(_directory.resolve("user_snapshot.dat")));
+    }
+
+    @Test
+    void BadHeadersAreRefused() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        UserSnapshot.Write(path, List.of(new User("$k1$Alice", 1111111111)), 0);
+
+        WriteInt(path, 4, 3);
+        assertThrows(IOException.class, () -> UserSnapshot.Open(path));
+        WriteInt(path, 4, 2);
+        WriteInt(path, 12, 15);
+        assertThrows(IOException.class, () -> UserSnapshot.Open(path));
+        WriteInt(path, 0, 0);
+        assertThrows(IOException.class, () -> UserSnapshot.Open(path));
+    }
+
+    @Test
+    void RewriteReplacesTheSnapshot() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        UserSnapshot.Write(path, List.of(new User("$k1$Alice", "$k1$old", 1111111111)), 0);
+        UserSnapshot.Write(path, List.of(new User("$k1$Alice", "$k1$new", 1111111111)), 128);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        assertEquals("$k1$new", snapshot.Find("$k1$Alice").GetPassword());
+        assertEquals(128, snapshot.GetLogPosition());
+    }
+
+    @Test
+    void ConcurrentFindsSeeEveryUser() throws IOException {
+        Path path = _directory.resolve("user_snapshot.dat");
+        List<User> users = new ArrayList<>();
+        for(int i = 0; i < 10_000; i++) {
+            users.add(new User("user" + i, i % 2 == 0 ? "pw" + i : null, i));
+        }
+        UserSnapshot.Write(path, users, 0);
+
+        UserSnapshot snapshot = UserSnapshot.Open(path);
+        IntStream.range(0, 8 * 10_000).parallel().forEach(i -> {
+            User user = snapshot.Find("user" + (i % 10_000));
+            assertEquals(i % 10_000, user.GetCode());
+            assertEquals(i % 2 == 0 ? "pw" + (i % 10_000) : null, user.GetPassword());
+        });
+    }
+    //#endregion TESTS
+
+    //#region HELPER FUNCTIONS
+    /**
+     * Overwrites an int in the header of a snapshot file.
+     * @apiNote Added in version 1.5.
+     */
+    private static void WriteInt(Path path, long position, int value) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(value).flip(), position);
+        }
+    }
+    //#endregion HELPER FUNCTIONS
+}
\ No newline at end of file